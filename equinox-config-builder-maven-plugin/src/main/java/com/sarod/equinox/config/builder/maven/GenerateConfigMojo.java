@@ -0,0 +1,233 @@
+package com.sarod.equinox.config.builder.maven;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.sarod.equinox.config.builder.BuildInputs;
+import com.sarod.equinox.config.builder.ConfigBuilder;
+import com.sarod.equinox.config.builder.ConfigBuildingException;
+import com.sarod.equinox.config.builder.ConfigFormat;
+import com.sarod.equinox.config.builder.DuplicateBundlePolicy;
+import com.sarod.equinox.config.builder.ResolutionPolicy;
+import com.sarod.equinox.config.builder.StartLevelPlanner;
+import com.sarod.equinox.config.builder.StartPolicy;
+import com.sarod.equinox.config.builder.StartupProfile;
+import com.sarod.equinox.config.builder.WriteResult;
+
+/**
+ * Generate the config.ini file of an eclipse directory in the build JVM.
+ * <p>
+ * The inputs of each generation are recorded in {@link #stateFile}: the
+ * plugin files with their size and modification time, the start levels and
+ * the other settings. The goal does nothing when they did not change since
+ * the last generation and all the generated files are still there.
+ *
+ * @author sarod
+ *
+ */
+@Mojo(name = "generate-config", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, threadSafe = true)
+public class GenerateConfigMojo extends AbstractMojo {
+
+	private static final String CONFIG_INI_FILE = "config.ini";
+
+	/**
+	 * The eclipse directory or a zip or tar.gz product archive
+	 */
+	@Parameter(property = "equinox.eclipseDirectory", required = true)
+	private File eclipseDirectory;
+
+	@Parameter(property = "equinox.defaultStartLevel", defaultValue = "4")
+	private int defaultStartLevel = ConfigBuilder.DEFAULT_DEFAULT_START_LEVEL;
+
+	/**
+	 * Property file of bundle start levels, overridden by
+	 * {@link #bundleStartLevels}
+	 */
+	@Parameter
+	private File bundlesStartLevelPropertyFile;
+
+	/**
+	 * Start levels keyed by bundle symbolic name, -1 resets a bundle of the
+	 * property file to the default start level
+	 */
+	@Parameter
+	private Map<String, String> bundleStartLevels = new HashMap<String, String>();
+
+	@Parameter(defaultValue = "1")
+	private int scanThreads = 1;
+
+	@Parameter
+	private boolean cache;
+
+	@Parameter
+	private boolean memoryMapped;
+
+	@Parameter
+	private boolean recursive;
+
+	@Parameter
+	private boolean dropins;
+
+	@Parameter
+	private boolean fingerprint;
+
+	@Parameter
+	private boolean updateArchive;
+
+	@Parameter
+	private boolean referenceDirectoryBundles;
+
+	/**
+	 * A {@link ConfigFormat} name e.g. simple-configurator
+	 */
+	@Parameter(defaultValue = "osgi-bundles")
+	private String format = "osgi-bundles";
+
+	/**
+	 * A {@link DuplicateBundlePolicy} name e.g. keep-highest
+	 */
+	@Parameter(defaultValue = "keep-all")
+	private String duplicates = "keep-all";
+
+	/**
+	 * A {@link ResolutionPolicy} name e.g. exclude
+	 */
+	@Parameter(defaultValue = "none")
+	private String resolve = "none";
+
+	@Parameter
+	private boolean autoStartLevels;
+
+	/**
+	 * A {@link StartPolicy} name e.g. lazy
+	 */
+	@Parameter(defaultValue = "start-all")
+	private String startPolicy = "start-all";
+
+	/**
+	 * A CSV file of bundle activation times, see {@link StartupProfile}
+	 */
+	@Parameter
+	private File startupProfile;
+
+	@Parameter
+	private long slowActivationMillis = StartLevelPlanner.DEFAULT_SLOW_ACTIVATION_MILLIS;
+
+	/**
+	 * auto for one activation thread per available processor, a number of
+	 * threads or 0 to disable parallel activation
+	 */
+	@Parameter(defaultValue = "0")
+	private String parallelActivation = "0";
+
+	/**
+	 * Where the inputs of the last generation are recorded
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/equinox-config-builder.inputs")
+	private File stateFile;
+
+	/**
+	 * Generate even if the inputs did not change
+	 */
+	@Parameter(property = "equinox.force")
+	private boolean force;
+
+	@Parameter(property = "equinox.skip")
+	private boolean skip;
+
+	public void execute() throws MojoExecutionException {
+		if (skip) {
+			getLog().info("Skipping config.ini generation");
+			return;
+		}
+		try {
+			ConfigBuilder builder = createBuilder();
+			BuildInputs inputs = BuildInputs.of(builder, bundlesStartLevelPropertyFile, startupProfile);
+			BuildInputs previousInputs = force ? null : BuildInputs.read(stateFile);
+			File configFile = new File(builder.getConfigurationDirectory(), CONFIG_INI_FILE);
+			if (inputs.equals(previousInputs) && allFiles(builder.getGeneratedFiles())) {
+				getLog().info("config.ini is up to date: " + configFile);
+				return;
+			}
+			getLog().debug("Generating config.ini: " + inputs.describeChanges(previousInputs));
+			WriteResult result = builder.buildConfigFile();
+			getLog().info("config.ini " + result.name().toLowerCase() + ": " + configFile);
+			inputs.write(stateFile);
+		} catch (ConfigBuildingException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+	}
+
+	private static boolean allFiles(List<File> files) {
+		for (File file : files) {
+			if (!file.isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private ConfigBuilder createBuilder() throws MojoExecutionException {
+		ConfigBuilder builder = new ConfigBuilder(eclipseDirectory, defaultStartLevel, buildBundleStartLevelMap());
+		builder.setScanThreads(scanThreads);
+		builder.setMemoryMappedScan(memoryMapped);
+		builder.setRecursiveScan(recursive);
+		builder.setScanDropins(dropins);
+		builder.setBundleCacheEnabled(cache);
+		builder.setReferenceDirectoryBundles(referenceDirectoryBundles);
+		builder.setFingerprintEnabled(fingerprint);
+		try {
+			builder.setConfigFormat(ConfigFormat.fromString(format));
+			builder.setDuplicateBundlePolicy(DuplicateBundlePolicy.fromString(duplicates));
+			builder.setResolutionPolicy(ResolutionPolicy.fromString(resolve));
+			builder.setStartPolicy(StartPolicy.fromString(startPolicy));
+			builder.setParallelActivationThreads(ConfigBuilder.parseParallelActivationThreads(parallelActivation));
+			if (updateArchive) {
+				builder.setUpdateArchive(true);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		builder.setAutoStartLevels(autoStartLevels);
+		if (startupProfile != null) {
+			builder.setStartupProfile(StartupProfile.load(startupProfile));
+		}
+		builder.setSlowActivationMillis(slowActivationMillis);
+		return builder;
+	}
+
+	private Map<String, Integer> buildBundleStartLevelMap() throws MojoExecutionException {
+		Map<String, Integer> startLevels = new HashMap<String, Integer>();
+
+		// Load from property file first
+		if (bundlesStartLevelPropertyFile != null) {
+			startLevels.putAll(ConfigBuilder.startLevelsMapFromPropertyFile(bundlesStartLevelPropertyFile));
+		}
+
+		// Override/complements with the configured start levels
+		for (Map.Entry<String, String> bundleStartLevel : bundleStartLevels.entrySet()) {
+			int startLevel;
+			try {
+				startLevel = Integer.parseInt(bundleStartLevel.getValue().trim());
+			} catch (NumberFormatException e) {
+				throw new MojoExecutionException("Invalid start level " + bundleStartLevel.getValue() + " for bundle "
+						+ bundleStartLevel.getKey());
+			}
+			if (startLevel == -1) {
+				// override to -1 means reset to default
+				startLevels.remove(bundleStartLevel.getKey());
+			} else {
+				startLevels.put(bundleStartLevel.getKey(), startLevel);
+			}
+		}
+		return startLevels;
+	}
+}
@@ -0,0 +1,105 @@
+package com.sarod.equinox.config.builder.maven;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GenerateConfigMojoTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File eclipseDirectory;
+
+	private File configFile;
+
+	private File bundlesInfoFile;
+
+	private File fingerprintFile;
+
+	private GenerateConfigMojo mojo;
+
+	@Before
+	public void setup() throws Exception {
+		eclipseDirectory = temporaryFolder.newFolder("eclipse");
+		File pluginsDirectory = new File(eclipseDirectory, "plugins");
+		assertTrue(pluginsDirectory.mkdir());
+		writeBundle(new File(pluginsDirectory, "org.eclipse.equinox.simpleconfigurator_1.1.0.jar"),
+				"org.eclipse.equinox.simpleconfigurator", "1.1.0");
+		writeBundle(new File(pluginsDirectory, "com.sarod.test.bundle_1.0.0.jar"), "com.sarod.test.bundle", "1.0.0");
+
+		File configurationDirectory = new File(eclipseDirectory, "configuration");
+		configFile = new File(configurationDirectory, "config.ini");
+		bundlesInfoFile = new File(configurationDirectory, "org.eclipse.equinox.simpleconfigurator/bundles.info");
+		fingerprintFile = new File(configurationDirectory, "config.fingerprint");
+
+		mojo = new GenerateConfigMojo();
+		set("eclipseDirectory", eclipseDirectory);
+		set("stateFile", new File(temporaryFolder.getRoot(), "equinox-config-builder.inputs"));
+		set("format", "simple-configurator");
+		set("fingerprint", true);
+	}
+
+	@Test
+	public void testUpToDate() throws Exception {
+		mojo.execute();
+		assertTrue(configFile.isFile());
+		assertTrue(bundlesInfoFile.isFile());
+		assertTrue(fingerprintFile.isFile());
+
+		// Nothing changed: config.ini is not rewritten
+		assertTrue(configFile.delete());
+		assertTrue(configFile.createNewFile());
+		mojo.execute();
+		assertEquals(0, configFile.length());
+
+		// A setting changed
+		set("defaultStartLevel", 5);
+		mojo.execute();
+		assertTrue(configFile.length() > 0);
+	}
+
+	@Test
+	public void testMissingGeneratedFiles() throws Exception {
+		mojo.execute();
+
+		assertTrue(bundlesInfoFile.delete());
+		mojo.execute();
+		assertTrue(bundlesInfoFile.isFile());
+
+		assertTrue(fingerprintFile.delete());
+		mojo.execute();
+		assertTrue(fingerprintFile.isFile());
+
+		assertTrue(configFile.delete());
+		mojo.execute();
+		assertTrue(configFile.isFile());
+	}
+
+	private void set(String fieldName, Object value) throws ReflectiveOperationException {
+		Field field = GenerateConfigMojo.class.getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(mojo, value);
+	}
+
+	private static void writeBundle(File file, String symbolicName, String version) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Bundle-SymbolicName", symbolicName);
+		attributes.putValue("Bundle-Version", version);
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest);
+		out.close();
+	}
+}
@@ -0,0 +1,72 @@
+package com.sarod.equinox.config.builder.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sarod.equinox.config.builder.BundleInfo;
+import com.sarod.equinox.config.builder.BundleInfoLoader;
+import com.sarod.equinox.config.builder.benchmarks.SyntheticPlugins.JarKind;
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+/**
+ * Loading a single plugin jar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BundleInfoLoaderBenchmark {
+
+	@Param({ "SMALL", "LARGE", "MANIFEST_AT_END" })
+	public JarKind jarKind;
+
+	private File jarFile;
+
+	private BundleInfoLoader loader;
+
+	private BundleInfoLoader memoryMappedLoader;
+
+	@Setup
+	public void setup() throws IOException {
+		jarFile = SyntheticPlugins.jar(jarKind);
+		loader = new BundleInfoLoader();
+		memoryMappedLoader = new BundleInfoLoader();
+		memoryMappedLoader.setMemoryMapped(true);
+	}
+
+	@Benchmark
+	public BundleInfo loadBundleInfoFromFile() {
+		return loader.loadBundleInfo(jarFile);
+	}
+
+	@Benchmark
+	public BundleInfo loadBundleInfoFromFileMemoryMapped() {
+		return memoryMappedLoader.loadBundleInfo(jarFile);
+	}
+
+	@Benchmark
+	public BundleInfo loadBundleInfoFromStream() throws IOException {
+		FileInputStream in = new FileInputStream(jarFile);
+		try {
+			return loader.loadBundleInfo(in, jarFile.getName());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+}
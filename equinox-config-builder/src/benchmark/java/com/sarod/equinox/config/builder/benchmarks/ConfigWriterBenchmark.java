@@ -0,0 +1,98 @@
+package com.sarod.equinox.config.builder.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sarod.equinox.config.builder.BundleInfo;
+import com.sarod.equinox.config.builder.ConfigDescriptor;
+import com.sarod.equinox.config.builder.ConfigWriter;
+import com.sarod.equinox.config.builder.WriteResult;
+
+/**
+ * Building and writing config.ini content.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigWriterBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int bundleCount;
+
+	private ConfigWriter writer;
+
+	private ConfigDescriptor descriptor;
+
+	private ConfigDescriptor otherDescriptor;
+
+	private File configFile;
+
+	private boolean writeOther;
+
+	@Setup
+	public void setup() throws IOException {
+		writer = new ConfigWriter();
+		descriptor = descriptor(bundleCount, 1);
+		otherDescriptor = descriptor(bundleCount, 2);
+		configFile = new File(File.createTempFile("config-writer-benchmark", "").getPath() + ".dir", "config.ini");
+	}
+
+	private static ConfigDescriptor descriptor(int bundleCount, int startLevel) {
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>();
+		Map<String, Integer> startLevels = new HashMap<String, Integer>();
+		for (int i = 0; i < bundleCount; i++) {
+			String name = "com.sarod.bench.plugin" + i;
+			if (i % 10 == 9) {
+				bundleInfos.add(BundleInfo.fragment(name + "_1.0.0.jar", name, "1.0.0", "com.sarod.bench.plugin" + (i - 1)));
+			} else {
+				bundleInfos.add(BundleInfo.bundle(name + "_1.0.0.jar", name, "1.0.0"));
+			}
+			if (i % 20 == 0) {
+				startLevels.put(name, startLevel);
+			}
+		}
+		return new ConfigDescriptor(4, bundleInfos, startLevels);
+	}
+
+	@Benchmark
+	public String buildConfigContent() {
+		return writer.buildConfigContent(descriptor);
+	}
+
+	/**
+	 * Content changes at each invocation so the file is always rewritten.
+	 */
+	@Benchmark
+	public WriteResult writeConfigChanged() {
+		writeOther = !writeOther;
+		return writer.writeConfig(writeOther ? otherDescriptor : descriptor, configFile);
+	}
+
+	/**
+	 * Same content at each invocation so the file is left untouched.
+	 */
+	@Benchmark
+	public WriteResult writeConfigUnchanged() {
+		return writer.writeConfig(descriptor, configFile);
+	}
+}
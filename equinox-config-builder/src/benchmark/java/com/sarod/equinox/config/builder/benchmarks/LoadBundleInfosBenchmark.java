@@ -0,0 +1,55 @@
+package com.sarod.equinox.config.builder.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sarod.equinox.config.builder.BundleInfo;
+import com.sarod.equinox.config.builder.BundleInfoLoader;
+
+/**
+ * Loading a whole plugins directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBundleInfosBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int pluginCount;
+
+	@Param({ "1", "4" })
+	public int threadCount;
+
+	private File pluginsDirectory;
+
+	private BundleInfoLoader loader;
+
+	@Setup
+	public void setup() throws IOException {
+		pluginsDirectory = new File(SyntheticPlugins.eclipseDirectory(pluginCount), "plugins");
+		loader = new BundleInfoLoader();
+		loader.setThreadCount(threadCount);
+	}
+
+	@Benchmark
+	public Collection<BundleInfo> loadBundleInfos() {
+		return loader.loadBundleInfos(pluginsDirectory);
+	}
+}
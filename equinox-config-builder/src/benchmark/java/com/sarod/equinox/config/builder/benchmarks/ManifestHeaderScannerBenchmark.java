@@ -0,0 +1,83 @@
+package com.sarod.equinox.config.builder.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sarod.equinox.config.builder.ManifestHeaderScanner;
+
+/**
+ * Reading three headers of a manifest with java.util.jar.Manifest and with
+ * {@link ManifestHeaderScanner}. Run with -prof gc to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManifestHeaderScannerBenchmark {
+
+	/**
+	 * Number of exported packages, the bulk of real bundle manifests
+	 */
+	@Param({ "10", "500" })
+	public int exportedPackages;
+
+	private byte[] manifestBytes;
+
+	private ManifestHeaderScanner scanner;
+
+	@Setup
+	public void setup() throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Bundle-ManifestVersion", "2");
+		attributes.putValue("Bundle-SymbolicName", "com.sarod.bench;singleton:=true");
+		attributes.putValue("Bundle-Version", "1.0.0.v20140101");
+		StringBuilder exportPackage = new StringBuilder();
+		for (int i = 0; i < exportedPackages; i++) {
+			exportPackage.append(i == 0 ? "" : ",").append("com.sarod.bench.internal.package").append(i)
+					.append(";version=\"1.0.0\";x-internal:=true");
+		}
+		attributes.putValue("Export-Package", exportPackage.toString());
+		attributes.putValue("Bundle-RequiredExecutionEnvironment", "JavaSE-1.6");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		manifest.write(out);
+		manifestBytes = out.toByteArray();
+		scanner = new ManifestHeaderScanner("Bundle-SymbolicName", "Bundle-Version", "Fragment-Host");
+	}
+
+	@Benchmark
+	public String manifest() throws IOException {
+		Attributes attributes = new Manifest(new ByteArrayInputStream(manifestBytes)).getMainAttributes();
+		attributes.getValue("Fragment-Host");
+		attributes.getValue("Bundle-Version");
+		return attributes.getValue("Bundle-SymbolicName");
+	}
+
+	@Benchmark
+	public String scanner() throws IOException {
+		Map<String, String> headers = scanner.scan(new ByteArrayInputStream(manifestBytes));
+		headers.get("Fragment-Host");
+		headers.get("Bundle-Version");
+		return headers.get("Bundle-SymbolicName");
+	}
+}
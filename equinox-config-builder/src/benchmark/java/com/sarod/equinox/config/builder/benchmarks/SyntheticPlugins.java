@@ -0,0 +1,173 @@
+package com.sarod.equinox.config.builder.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+/**
+ * Generates synthetic plugin jars and plugins directories for benchmarks.
+ * <p>
+ * Generated directories are kept under target/benchmark-plugins and reused by
+ * later runs. They can also be generated explicitly:
+ * 
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:java -Dexec.mainClass=com.sarod.equinox.config.builder.benchmarks.SyntheticPlugins -Dexec.args="target/plugins 1000"
+ * </pre>
+ * 
+ * @author sarod
+ *
+ */
+public final class SyntheticPlugins {
+
+	public enum JarKind {
+		/**
+		 * Manifest first followed by 10 small classes.
+		 */
+		SMALL(10, 2 * 1024, false),
+		/**
+		 * Manifest first followed by 500 classes (around 4MB).
+		 */
+		LARGE(500, 8 * 1024, false),
+		/**
+		 * Same as {@link #LARGE} with the manifest as last entry.
+		 */
+		MANIFEST_AT_END(500, 8 * 1024, true);
+
+		private final int entryCount;
+		private final int entrySize;
+		private final boolean manifestAtEnd;
+
+		private JarKind(int entryCount, int entrySize, boolean manifestAtEnd) {
+			this.entryCount = entryCount;
+			this.entrySize = entrySize;
+			this.manifestAtEnd = manifestAtEnd;
+		}
+	}
+
+	private static final File DEFAULT_ROOT = new File("target/benchmark-plugins");
+
+	private SyntheticPlugins() {
+		throw new AssertionError("Utility class do not instantiate");
+	}
+
+	/**
+	 * @param args
+	 *            target directory and plugin count
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: SyntheticPlugins <targetDirectory> <pluginCount>");
+			System.exit(2);
+		}
+		File directory = new File(args[0]);
+		generatePluginsDirectory(directory, Integer.parseInt(args[1]));
+		System.out.println("Generated " + args[1] + " plugins in " + directory);
+	}
+
+	/**
+	 * @return a jar of the given kind, generated the first time
+	 */
+	public static File jar(JarKind kind) throws IOException {
+		File jarFile = new File(new File(DEFAULT_ROOT, "jars"), kind.name().toLowerCase() + ".jar");
+		if (!jarFile.exists()) {
+			jarFile.getParentFile().mkdirs();
+			writeJar(jarFile, "com.sarod.bench." + kind.name().toLowerCase(), kind, 0);
+		}
+		return jarFile;
+	}
+
+	/**
+	 * @return an eclipse directory whose plugins directory contains
+	 *         pluginCount small plugins, generated the first time
+	 */
+	public static File eclipseDirectory(int pluginCount) throws IOException {
+		File eclipseDirectory = new File(DEFAULT_ROOT, "eclipse-" + pluginCount);
+		File pluginsDirectory = new File(eclipseDirectory, "plugins");
+		File[] existing = pluginsDirectory.listFiles();
+		if (existing == null || existing.length != pluginCount) {
+			generatePluginsDirectory(pluginsDirectory, pluginCount);
+		}
+		return eclipseDirectory;
+	}
+
+	/**
+	 * Generate pluginCount plugins: one out of 10 is a fragment, one out of 50
+	 * a large jar and one out of 50 a jar with the manifest at end.
+	 */
+	public static void generatePluginsDirectory(File pluginsDirectory, int pluginCount) throws IOException {
+		pluginsDirectory.mkdirs();
+		for (File file : pluginsDirectory.listFiles()) {
+			file.delete();
+		}
+		for (int i = 0; i < pluginCount; i++) {
+			JarKind kind = i % 50 == 1 ? JarKind.LARGE : i % 50 == 2 ? JarKind.MANIFEST_AT_END : JarKind.SMALL;
+			String symbolicName = "com.sarod.bench.plugin" + i;
+			writeJar(new File(pluginsDirectory, symbolicName + "_1.0.0.jar"), symbolicName, kind, i);
+		}
+	}
+
+	private static void writeJar(File jarFile, String symbolicName, JarKind kind, int seed) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Bundle-ManifestVersion", "2");
+		attributes.putValue("Bundle-SymbolicName", symbolicName + ";singleton:=true");
+		attributes.putValue("Bundle-Version", "1.0.0.v20140101");
+		if (seed % 10 == 9) {
+			attributes.putValue("Fragment-Host", "com.sarod.bench.plugin" + (seed - 1));
+		}
+		attributes.putValue("Export-Package", exportPackage(symbolicName, 30));
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(jarFile));
+		try {
+			ZipOutputStream zipOut = new ZipOutputStream(out);
+			if (!kind.manifestAtEnd) {
+				writeManifest(zipOut, manifest);
+			}
+			Random random = new Random(seed);
+			byte[] content = new byte[kind.entrySize];
+			for (int i = 0; i < kind.entryCount; i++) {
+				// Half random half constant to get a realistic compression
+				random.nextBytes(content);
+				Arrays.fill(content, 0, content.length / 2, (byte) i);
+				zipOut.putNextEntry(new ZipEntry(symbolicName.replace('.', '/') + "/Class" + i + ".class"));
+				zipOut.write(content);
+				zipOut.closeEntry();
+			}
+			if (kind.manifestAtEnd) {
+				writeManifest(zipOut, manifest);
+			}
+			zipOut.finish();
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private static String exportPackage(String symbolicName, int packageCount) {
+		StringBuilder exportPackage = new StringBuilder();
+		for (int i = 0; i < packageCount; i++) {
+			if (i > 0) {
+				exportPackage.append(',');
+			}
+			exportPackage.append(symbolicName).append(".internal").append(i).append(";version=\"1.0.0\"");
+		}
+		return exportPackage.toString();
+	}
+
+	private static void writeManifest(ZipOutputStream zipOut, Manifest manifest) throws IOException {
+		zipOut.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		manifest.write(zipOut);
+		zipOut.closeEntry();
+	}
+}
@@ -0,0 +1,85 @@
+#!/bin/sh
+#
+# Measure the wall clock time of complete command line invocations, JVM
+# startup included, with and without an AppCDS archive.
+#
+# Usage: src/benchmark/startup-benchmark.sh [<jar> [<eclipseDirectory> [<runs>]]]
+#
+# The jar defaults to target/equinox-config-builder-*.jar and the eclipse
+# directory to the test eclipse directory extracted in
+# target/startup-benchmark. Each configuration is run once to warm the file
+# system cache then <runs> times (default 20); the minimum and median times
+# are reported in milliseconds. Times are taken with GNU date, or with perl
+# where date has no nanoseconds (BSD, macOS).
+
+set -e
+
+cd "$(dirname "$0")/../.."
+
+JAR=${1:-$(ls target/equinox-config-builder-*.jar 2>/dev/null | grep -v -e sources -e javadoc | head -n 1)}
+ECLIPSE_DIR=$2
+RUNS=${3:-20}
+WORK_DIR=target/startup-benchmark
+if [ -n "$JAVA_HOME" ]; then
+	JAVA=$JAVA_HOME/bin/java
+else
+	JAVA=java
+fi
+
+if [ -z "$JAR" ] || [ ! -f "$JAR" ]; then
+	echo "No jar found, run mvn package first or pass the jar as first argument." >&2
+	exit 1
+fi
+mkdir -p "$WORK_DIR"
+if [ -z "$ECLIPSE_DIR" ]; then
+	ECLIPSE_DIR=$WORK_DIR/eclipse
+	rm -rf "$ECLIPSE_DIR"
+	mkdir -p "$ECLIPSE_DIR"
+	(cd "$ECLIPSE_DIR" && unzip -q ../../../src/test/resources/com/sarod/equinox/config/builder/eclipsedir-for-tests.zip)
+fi
+ARCHIVE=$WORK_DIR/equinox-config-builder.jsa
+
+# GNU date prints nanoseconds, BSD and macOS date print a literal N: fall
+# back to perl there, whose own startup then adds a few ms to each run
+if [ "$(date +%N)" != N ] && [ -n "$(date +%N)" ]; then
+	now_millis() {
+		echo $(($(date +%s%N) / 1000000))
+	}
+elif command -v perl > /dev/null 2>&1; then
+	now_millis() {
+		perl -MTime::HiRes=time -e 'printf "%d\n", time() * 1000'
+	}
+else
+	echo "Millisecond timing needs GNU date or perl." >&2
+	exit 1
+fi
+
+# measure <label> <java options...>
+measure() {
+	label=$1
+	shift
+	"$JAVA" "$@" -jar "$JAR" "$ECLIPSE_DIR" > /dev/null 2>&1
+	times=
+	i=0
+	while [ $i -lt "$RUNS" ]; do
+		start=$(now_millis)
+		"$JAVA" "$@" -jar "$JAR" "$ECLIPSE_DIR" > /dev/null 2>&1
+		end=$(now_millis)
+		times="$times $((end - start))"
+		i=$((i + 1))
+	done
+	echo "$times" | tr ' ' '\n' | grep -v '^$' | sort -n | awk -v label="$label" '
+		{ t[NR] = $1 }
+		END { printf "%-32s min %5d ms   median %5d ms\n", label, t[1], t[int((NR + 1) / 2)] }'
+}
+
+"$JAVA" -version 2>&1 | head -n 1
+echo "$JAR, $ECLIPSE_DIR, $RUNS runs"
+
+rm -f "$ARCHIVE"
+"$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$JAR" "$ECLIPSE_DIR" > /dev/null 2>&1
+
+measure "no class data sharing" -Xshare:off
+measure "JDK class data sharing" -Xshare:auto
+measure "AppCDS" -XX:SharedArchiveFile="$ARCHIVE"
+measure "AppCDS, C1 only, serial GC" -XX:SharedArchiveFile="$ARCHIVE" -XX:TieredStopAtLevel=1 -XX:+UseSerialGC
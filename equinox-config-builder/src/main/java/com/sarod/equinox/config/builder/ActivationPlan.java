@@ -0,0 +1,67 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Result of {@link ActivationPlanner#plan(java.util.Collection, StartPolicy, Set)}.
+ * This class is immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class ActivationPlan {
+
+	private final List<BundleInfo> bundleInfos;
+	private final Set<String> installOnlyBundleNames;
+	private final int startedCount;
+	private final int avoidedActivationCount;
+	private final int omittedCount;
+
+	ActivationPlan(List<BundleInfo> bundleInfos, Set<String> installOnlyBundleNames, int startedCount,
+			int avoidedActivationCount, int omittedCount) {
+		this.bundleInfos = Collections.unmodifiableList(bundleInfos);
+		this.installOnlyBundleNames = Collections.unmodifiableSet(installOnlyBundleNames);
+		this.startedCount = startedCount;
+		this.avoidedActivationCount = avoidedActivationCount;
+		this.omittedCount = omittedCount;
+	}
+
+	/**
+	 * @return the bundles and fragments to write in osgi.bundles
+	 */
+	public List<BundleInfo> getBundleInfos() {
+		return bundleInfos;
+	}
+
+	/**
+	 * @return names of the bundles written without @start
+	 */
+	public Set<String> getInstallOnlyBundleNames() {
+		return installOnlyBundleNames;
+	}
+
+	/**
+	 * @return number of bundles started at boot
+	 */
+	public int getStartedCount() {
+		return startedCount;
+	}
+
+	/**
+	 * @return number of bundles that would have been started with
+	 *         {@link StartPolicy#START_ALL} and are not
+	 */
+	public int getAvoidedActivationCount() {
+		return avoidedActivationCount;
+	}
+
+	/**
+	 * @return number of bundles and fragments left out of osgi.bundles
+	 */
+	public int getOmittedCount() {
+		return omittedCount;
+	}
+
+}
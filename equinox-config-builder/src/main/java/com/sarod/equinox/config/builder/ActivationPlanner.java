@@ -0,0 +1,135 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Decide which bundles equinox should start at boot according to a
+ * {@link StartPolicy}.
+ * <p>
+ * A bundle needs to be started when it has a Bundle-Activator or declarative
+ * services components (Service-Component, possibly contributed by a
+ * fragment) and does not declare Bundle-ActivationPolicy: lazy. Lazy bundles
+ * are activated by equinox on first class load, other bundles only need to
+ * be installed and resolved. Bundles with an explicit start level are always
+ * started.
+ * <p>
+ * With {@link StartPolicy#MINIMAL_BOOT_SET} only the started bundles and
+ * their transitive dependencies (Require-Bundle and Import-Package) are kept,
+ * together with their fragments. Bundles only contributing to the extension
+ * registry are then left out so this policy should only be used when all
+ * the needed bundles are reachable from a started bundle.
+ * 
+ * @author sarod
+ *
+ */
+public class ActivationPlanner {
+
+	public ActivationPlanner() {
+	}
+
+	/**
+	 * @param bundleInfos
+	 *            the resolved bundles and fragments
+	 * @param startPolicy
+	 * @param startedBundleNames
+	 *            names of the bundles that must be started whatever their
+	 *            manifest says
+	 * @return
+	 */
+	public ActivationPlan plan(Collection<BundleInfo> bundleInfos, StartPolicy startPolicy, Set<String> startedBundleNames) {
+		checkNotNull(bundleInfos);
+		checkNotNull(startPolicy);
+		checkNotNull(startedBundleNames);
+		List<BundleInfo> all = new ArrayList<BundleInfo>(bundleInfos);
+		if (startPolicy == StartPolicy.START_ALL) {
+			return new ActivationPlan(all, Collections.<String> emptySet(), countBundles(all), 0, 0);
+		}
+
+		Set<String> hostsWithServiceComponents = new HashSet<String>();
+		for (BundleInfo bundleInfo : all) {
+			if (bundleInfo.isFragment() && bundleInfo.hasServiceComponents()) {
+				hostsWithServiceComponents.add(bundleInfo.getHostName());
+			}
+		}
+		// Several versions of a bundle share the same name in config.ini
+		Set<String> eagerBundleNames = new HashSet<String>();
+		for (BundleInfo bundleInfo : all) {
+			if (!bundleInfo.isFragment()
+					&& needsEagerStart(bundleInfo, startedBundleNames, hostsWithServiceComponents)) {
+				eagerBundleNames.add(bundleInfo.getBundleName());
+			}
+		}
+
+		List<BundleInfo> kept = all;
+		if (startPolicy == StartPolicy.MINIMAL_BOOT_SET) {
+			kept = minimalBootSet(all, eagerBundleNames);
+		}
+
+		Set<String> installOnlyBundleNames = new HashSet<String>();
+		int startedCount = 0;
+		for (BundleInfo bundleInfo : kept) {
+			if (!bundleInfo.isFragment()) {
+				if (eagerBundleNames.contains(bundleInfo.getBundleName())) {
+					startedCount++;
+				} else {
+					installOnlyBundleNames.add(bundleInfo.getBundleName());
+				}
+			}
+		}
+		return new ActivationPlan(kept, installOnlyBundleNames, startedCount, countBundles(all) - startedCount, all.size()
+				- kept.size());
+	}
+
+	private static int countBundles(List<BundleInfo> bundleInfos) {
+		int bundleCount = 0;
+		for (BundleInfo bundleInfo : bundleInfos) {
+			if (!bundleInfo.isFragment()) {
+				bundleCount++;
+			}
+		}
+		return bundleCount;
+	}
+
+	private boolean needsEagerStart(BundleInfo bundleInfo, Set<String> startedBundleNames,
+			Set<String> hostsWithServiceComponents) {
+		if (startedBundleNames.contains(bundleInfo.getBundleName())) {
+			return true;
+		}
+		if (bundleInfo.isLazyActivation()) {
+			return false;
+		}
+		return bundleInfo.getActivator() != null || bundleInfo.hasServiceComponents()
+				|| hostsWithServiceComponents.contains(bundleInfo.getBundleName());
+	}
+
+	private List<BundleInfo> minimalBootSet(List<BundleInfo> all, Set<String> eagerBundleNames) {
+		DependencyGraph graph = new DependencyGraph(all);
+		boolean[] roots = new boolean[graph.size()];
+		for (int node = 0; node < graph.size(); node++) {
+			roots[node] = eagerBundleNames.contains(graph.bundle(node).getBundleName());
+		}
+		boolean[] reached = graph.reachableFrom(roots);
+		Set<String> keptBundleNames = new HashSet<String>();
+		for (int node = 0; node < graph.size(); node++) {
+			if (reached[node]) {
+				keptBundleNames.add(graph.bundle(node).getBundleName());
+			}
+		}
+		List<BundleInfo> kept = new ArrayList<BundleInfo>();
+		for (BundleInfo bundleInfo : all) {
+			String name = bundleInfo.isFragment() ? bundleInfo.getHostName() : bundleInfo.getBundleName();
+			if (keptBundleNames.contains(name)) {
+				kept.add(bundleInfo);
+			}
+		}
+		return kept;
+	}
+
+}
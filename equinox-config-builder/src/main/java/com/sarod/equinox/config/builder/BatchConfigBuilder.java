@@ -0,0 +1,247 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sarod.equinox.config.builder.utils.DaemonThreadFactory;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Generate config.ini for several eclipse directories in one go.
+ * <p>
+ * Products built from the same plugins share most of their jars. The plugin
+ * files of all the products are first listed and each distinct file
+ * (canonical path) is read once, in parallel, into a
+ * {@link MemoryBundleInfoCache} shared by the builders. The config.ini files
+ * are then generated in parallel, the builders finding all their plugins in
+ * the shared cache.
+ *
+ * @author sarod
+ *
+ */
+public class BatchConfigBuilder {
+
+	private static final Logger LOGGER = Logger.getLogger(BatchConfigBuilder.class.getName());
+
+	private final List<ConfigBuilder> builders = new ArrayList<ConfigBuilder>();
+
+	private final MemoryBundleInfoCache sharedCache;
+
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	private boolean jsonReports;
+
+	public BatchConfigBuilder() {
+		this(new MemoryBundleInfoCache());
+	}
+
+	/**
+	 * @param sharedCache
+	 *            cache shared by the builders, may already contain entries
+	 */
+	public BatchConfigBuilder(MemoryBundleInfoCache sharedCache) {
+		this.sharedCache = checkNotNull(sharedCache);
+	}
+
+	/**
+	 * Add a product. The builder is configured to use the shared cache.
+	 *
+	 * @param builder
+	 */
+	public void add(ConfigBuilder builder) {
+		checkNotNull(builder);
+		builder.setSharedBundleInfoCache(sharedCache);
+		builders.add(builder);
+	}
+
+	public List<ConfigBuilder> getBuilders() {
+		return Collections.unmodifiableList(builders);
+	}
+
+	public MemoryBundleInfoCache getSharedCache() {
+		return sharedCache;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * @param threadCount
+	 *            number of threads used to read plugins and write config.ini
+	 *            files. Defaults to the number of processors.
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount <= 0) {
+			throw new IllegalArgumentException("threadCount should be a strictly positive integer.");
+		}
+		this.threadCount = threadCount;
+	}
+
+	public boolean isJsonReports() {
+		return jsonReports;
+	}
+
+	/**
+	 * @param jsonReports
+	 *            true to write the {@link BuildMetrics} of each product to
+	 *            {@link ConfigBuilder#getReportFile()} as soon as it is
+	 *            generated, so the products generated before a failure keep
+	 *            their report
+	 */
+	public void setJsonReports(boolean jsonReports) {
+		this.jsonReports = jsonReports;
+	}
+
+	/**
+	 * Generate config.ini for all the products.
+	 *
+	 * @return the metrics of each product, including whether its config.ini
+	 *         was written, keyed by eclipse directory in the order products
+	 *         were added
+	 * @throws ConfigBuildingException
+	 *             if some products failed. The exception reports all the
+	 *             failing products, the other ones are generated anyway.
+	 */
+	public Map<File, BuildMetrics> buildConfigFiles() throws ConfigBuildingException {
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory("batch-config-builder"));
+		try {
+			preload(executor);
+			return build(executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Read each distinct plugin file once into the shared cache. Errors are
+	 * ignored here: the failing plugins are not cached and the builders
+	 * report them.
+	 */
+	private void preload(ExecutorService executor) {
+		final BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(sharedCache);
+		final Map<String, PluginFile> distinctPluginFiles = new LinkedHashMap<String, PluginFile>();
+		final int[] pluginFileCount = new int[1];
+		BundleInfoLoader.PluginVisitor visitor = new BundleInfoLoader.PluginVisitor() {
+			public void visit(File pluginFile, String fileName) {
+				pluginFileCount[0]++;
+				String key = canonicalPath(pluginFile);
+				if (!distinctPluginFiles.containsKey(key)) {
+					distinctPluginFiles.put(key, new PluginFile(pluginFile, fileName));
+				}
+			}
+		};
+		for (ConfigBuilder builder : builders) {
+			File pluginsDirectory = builder.getPluginsDirectory();
+			if (pluginsDirectory.isDirectory()) {
+				loader.visitPluginFiles(pluginsDirectory, builder.isRecursiveScan(), "", visitor);
+			}
+			File dropinsDirectory = builder.getDropinsDirectory();
+			if (builder.isScanDropins() && dropinsDirectory.isDirectory()) {
+				loader.visitPluginFiles(dropinsDirectory, true, "../" + dropinsDirectory.getName() + "/", visitor);
+			}
+		}
+		List<Future<?>> futures = new ArrayList<Future<?>>(distinctPluginFiles.size());
+		for (final PluginFile pluginFile : distinctPluginFiles.values()) {
+			futures.add(executor.submit(new Runnable() {
+				public void run() {
+					try {
+						loader.loadPluginBundleInfo(pluginFile.file, pluginFile.fileName);
+					} catch (ConfigBuildingException e) {
+						LOGGER.log(Level.FINE, "Error preloading " + pluginFile.file, e);
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ConfigBuildingException("Interrupted while loading plugins", e);
+			} catch (ExecutionException e) {
+				LOGGER.log(Level.FINE, "Error preloading plugin", e.getCause());
+			}
+		}
+		LOGGER.log(Level.INFO, "Loaded " + distinctPluginFiles.size() + " distinct plugins for " + pluginFileCount[0]
+				+ " plugins of " + builders.size() + " products.");
+	}
+
+	private Map<File, BuildMetrics> build(ExecutorService executor) {
+		List<Future<BuildMetrics>> futures = new ArrayList<Future<BuildMetrics>>(builders.size());
+		for (final ConfigBuilder builder : builders) {
+			futures.add(executor.submit(new Callable<BuildMetrics>() {
+				public BuildMetrics call() {
+					BuildMetrics metrics = builder.build();
+					if (jsonReports) {
+						metrics.writeJson(builder.getReportFile());
+					}
+					return metrics;
+				}
+			}));
+		}
+		Map<File, BuildMetrics> results = new LinkedHashMap<File, BuildMetrics>();
+		List<ConfigBuildingException> errors = new ArrayList<ConfigBuildingException>();
+		for (int i = 0; i < futures.size(); i++) {
+			File eclipseDirectory = builders.get(i).getEclipseDirectory();
+			try {
+				results.put(eclipseDirectory, futures.get(i).get());
+			} catch (InterruptedException e) {
+				for (Future<BuildMetrics> future : futures) {
+					future.cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				throw new ConfigBuildingException("Interrupted while generating config.ini files", e);
+			} catch (ExecutionException e) {
+				errors.add(new ConfigBuildingException("Error generating config.ini for " + eclipseDirectory + ": "
+						+ e.getCause().getMessage(), e.getCause()));
+			}
+		}
+		if (!errors.isEmpty()) {
+			StringBuilder message = new StringBuilder("Error generating config.ini for " + errors.size() + " products:");
+			for (ConfigBuildingException error : errors) {
+				message.append("\n\t").append(error.getMessage());
+			}
+			ConfigBuildingException exception = new ConfigBuildingException(message.toString(), errors.get(0));
+			for (int i = 1; i < errors.size(); i++) {
+				exception.addSuppressed(errors.get(i));
+			}
+			throw exception;
+		}
+		return results;
+	}
+
+	private static String canonicalPath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private static final class PluginFile {
+
+		private final File file;
+		private final String fileName;
+
+		PluginFile(File file, String fileName) {
+			this.file = file;
+			this.fileName = fileName;
+		}
+	}
+
+}
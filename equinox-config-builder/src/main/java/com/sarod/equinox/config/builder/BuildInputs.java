@@ -0,0 +1,270 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * What a config.ini generation depends on: the plugin files with their size
+ * and modification time, the start levels and the settings of the
+ * {@link ConfigBuilder}. Build tools record the inputs of a generation and
+ * skip the next one when the inputs are equal and the generated files are
+ * still there, without reading any plugin.
+ * <p>
+ * Plugins are listed the way the builder does, the modification time of an
+ * exploded bundle being the one of its manifest. When the fingerprint is
+ * enabled it depends on every file of an exploded bundle, which is then
+ * stamped the way {@link BundleSetFingerprinter} does. A product archive is
+ * a single input file. This class is immutable.
+ *
+ * @author sarod
+ *
+ */
+public final class BuildInputs {
+
+	/**
+	 * First line of the inputs file, must change each time its format or
+	 * the recorded inputs change
+	 */
+	private static final String HEADER = "#equinox-config-builder inputs 2";
+
+	private static final String SETTING = "setting";
+
+	private static final String FILE = "file";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Logger LOGGER = Logger.getLogger(BuildInputs.class.getName());
+
+	private final Map<String, String> settings;
+
+	private final Map<String, String> files;
+
+	private BuildInputs(Map<String, String> settings, Map<String, String> files) {
+		this.settings = Collections.unmodifiableMap(new TreeMap<String, String>(settings));
+		this.files = Collections.unmodifiableMap(new TreeMap<String, String>(files));
+	}
+
+	/**
+	 * Record the current inputs of a builder.
+	 *
+	 * @param builder
+	 * @param extraFiles
+	 *            other files the generation depends on, e.g. the start level
+	 *            property file the builder start levels were read from or
+	 *            the startup profile
+	 * @return
+	 * @throws ConfigBuildingException
+	 *             if the plugins cannot be listed
+	 */
+	public static BuildInputs of(ConfigBuilder builder, File... extraFiles) throws ConfigBuildingException {
+		Map<String, String> settings = new TreeMap<String, String>();
+		settings.put("eclipseDirectory", builder.getEclipseDirectory().getAbsolutePath());
+		settings.put("defaultStartLevel", String.valueOf(builder.getDefaultStartLevel()));
+		settings.put("bundleStartLevels", new TreeMap<String, Integer>(builder.getBundleStartLevels()).toString());
+		settings.put("recursive", String.valueOf(builder.isRecursiveScan()));
+		settings.put("dropins", String.valueOf(builder.isScanDropins()));
+		settings.put("referenceDirectoryBundles", String.valueOf(builder.isReferenceDirectoryBundles()));
+		settings.put("format", builder.getConfigFormat().name());
+		settings.put("fingerprint", String.valueOf(builder.isFingerprintEnabled()));
+		settings.put("updateArchive", String.valueOf(builder.isUpdateArchive()));
+		settings.put("duplicates", builder.getDuplicateBundlePolicy().name());
+		settings.put("resolution", builder.getResolutionPolicy().name());
+		settings.put("autoStartLevels", String.valueOf(builder.isAutoStartLevels()));
+		settings.put("startPolicy", builder.getStartPolicy().name());
+		settings.put("startupProfile", String.valueOf(builder.getStartupProfile() != null));
+		settings.put("slowActivationMillis", String.valueOf(builder.getSlowActivationMillis()));
+		settings.put("parallelActivationThreads", String.valueOf(builder.getParallelActivationThreads()));
+
+		final Map<String, String> files = new TreeMap<String, String>();
+		final boolean fingerprintEnabled = builder.isFingerprintEnabled();
+		if (builder.getProductArchive() != null) {
+			files.put(builder.getEclipseDirectory().getName(), stamp(builder.getEclipseDirectory()));
+		} else {
+			BundleInfoLoader.PluginVisitor visitor = new BundleInfoLoader.PluginVisitor() {
+				public void visit(File pluginFile, String fileName) {
+					if (fingerprintEnabled && pluginFile.isDirectory()) {
+						files.put(fileName, BundleSetFingerprinter.contentStamp(pluginFile));
+					} else {
+						files.put(fileName, stamp(BundleInfoLoader.stampFile(pluginFile)));
+					}
+				}
+			};
+			// Plugins are only listed, a missing plugins directory is
+			// reported by the build
+			BundleInfoLoader loader = new BundleInfoLoader();
+			File pluginsDirectory = builder.getPluginsDirectory();
+			if (pluginsDirectory.isDirectory()) {
+				loader.visitPluginFiles(pluginsDirectory, builder.isRecursiveScan(), "", visitor);
+			}
+			File dropinsDirectory = builder.getDropinsDirectory();
+			if (builder.isScanDropins() && dropinsDirectory.isDirectory()) {
+				loader.visitPluginFiles(dropinsDirectory, true, "../" + dropinsDirectory.getName() + "/", visitor);
+			}
+		}
+		for (File extraFile : extraFiles) {
+			if (extraFile != null) {
+				settings.put("extraFile." + extraFile.getAbsolutePath(), stamp(extraFile));
+			}
+		}
+		return new BuildInputs(settings, files);
+	}
+
+	private static String stamp(File file) {
+		return file.length() + "," + file.lastModified();
+	}
+
+	/**
+	 * @return the settings, keyed by name
+	 */
+	public Map<String, String> getSettings() {
+		return settings;
+	}
+
+	/**
+	 * @return the size and modification time of the plugins keyed by plugin
+	 *         file name
+	 */
+	public Map<String, String> getFiles() {
+		return files;
+	}
+
+	/**
+	 * Read inputs written by {@link #write(File)}.
+	 *
+	 * @param inputsFile
+	 * @return the inputs or null if the file is missing or invalid
+	 */
+	public static BuildInputs read(File inputsFile) {
+		if (!inputsFile.isFile()) {
+			return null;
+		}
+		Map<String, String> settings = new TreeMap<String, String>();
+		Map<String, String> files = new TreeMap<String, String>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputsFile), UTF_8));
+			if (!HEADER.equals(reader.readLine())) {
+				return null;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 3);
+				if (fields.length != 3) {
+					return null;
+				}
+				if (fields[0].equals(SETTING)) {
+					settings.put(fields[1], fields[2]);
+				} else if (fields[0].equals(FILE)) {
+					files.put(fields[1], fields[2]);
+				} else {
+					return null;
+				}
+			}
+			return new BuildInputs(settings, files);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Ignoring unreadable inputs file " + inputsFile + ": " + e.getMessage());
+			return null;
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Write the inputs to a text file, one line per setting or plugin.
+	 *
+	 * @param inputsFile
+	 * @throws ConfigBuildingException
+	 */
+	public void write(File inputsFile) throws ConfigBuildingException {
+		checkNotNull(inputsFile);
+		inputsFile.getAbsoluteFile().getParentFile().mkdirs();
+		Writer out = null;
+		try {
+			out = new OutputStreamWriter(new FileOutputStream(inputsFile), UTF_8);
+			out.write(HEADER + "\n");
+			for (Map.Entry<String, String> setting : settings.entrySet()) {
+				out.write(SETTING + "\t" + setting.getKey() + "\t" + setting.getValue() + "\n");
+			}
+			for (Map.Entry<String, String> file : files.entrySet()) {
+				out.write(FILE + "\t" + file.getKey() + "\t" + file.getValue() + "\n");
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error writing inputs file: " + inputsFile, e);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * @param other
+	 * @return a short description of what changed since other, for logs
+	 */
+	public String describeChanges(BuildInputs other) {
+		if (other == null) {
+			return "no previous inputs";
+		}
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			if (!setting.getValue().equals(other.settings.get(setting.getKey()))) {
+				return "setting " + setting.getKey() + " changed";
+			}
+		}
+		if (!settings.keySet().equals(other.settings.keySet())) {
+			return "settings changed";
+		}
+		for (Map.Entry<String, String> file : files.entrySet()) {
+			String otherStamp = other.files.get(file.getKey());
+			if (otherStamp == null) {
+				return "plugin " + file.getKey() + " added";
+			}
+			if (!file.getValue().equals(otherStamp)) {
+				return "plugin " + file.getKey() + " changed";
+			}
+		}
+		for (String fileName : other.files.keySet()) {
+			if (!files.containsKey(fileName)) {
+				return "plugin " + fileName + " removed";
+			}
+		}
+		return "unchanged";
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * settings.hashCode() + files.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BuildInputs)) {
+			return false;
+		}
+		BuildInputs other = (BuildInputs) obj;
+		return settings.equals(other.settings) && files.equals(other.files);
+	}
+
+	@Override
+	public String toString() {
+		return settings.size() + " settings, " + files.size() + " plugins";
+	}
+
+}
@@ -0,0 +1,385 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+/**
+ * Timings and counters of a config.ini generation, see
+ * {@link ConfigBuilder#build()}.
+ * <p>
+ * Metrics are recorded while the build runs, possibly from several scan
+ * threads, and read once it is done. This class is thread safe.
+ *
+ * @author sarod
+ *
+ */
+public final class BuildMetrics {
+
+	/**
+	 * Steps of a build, in execution order.
+	 */
+	public enum Phase {
+		/**
+		 * Listing the plugins directory
+		 */
+		LIST,
+		/**
+		 * Reading the manifests of the plugins, wall clock time whatever the
+		 * number of scan threads
+		 */
+		LOAD,
+		/**
+		 * Sorting the loaded bundles
+		 */
+		SORT,
+		/**
+		 * Excluding bundles and resolving duplicates
+		 */
+		RESOLVE,
+		/**
+		 * Computing what is written: activation policy and start levels
+		 */
+		CONTENT,
+		/**
+		 * Writing config.ini, including the comparison with the existing file
+		 */
+		WRITE;
+
+		String jsonName() {
+			return name().toLowerCase();
+		}
+	}
+
+	public static final int DEFAULT_SLOWEST_PLUGIN_COUNT = 10;
+
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+	private final AtomicLong listedFileCount = new AtomicLong();
+	private final AtomicLong skippedFileCount = new AtomicLong();
+	private final AtomicLong readPluginCount = new AtomicLong();
+	private final AtomicLong cachedPluginCount = new AtomicLong();
+	private final AtomicLong bundleCount = new AtomicLong();
+	private final AtomicLong fragmentCount = new AtomicLong();
+	private final AtomicLong nonBundleCount = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong pluginReadNanos = new AtomicLong();
+
+	private final int slowestPluginCount;
+
+	/**
+	 * Fastest of the slowest plugins first
+	 */
+	private final PriorityQueue<PluginTiming> slowestPlugins;
+
+	private volatile int configuredBundleCount;
+
+	private volatile WriteResult writeResult;
+
+	public BuildMetrics() {
+		this(DEFAULT_SLOWEST_PLUGIN_COUNT);
+	}
+
+	/**
+	 * @param slowestPluginCount
+	 *            number of slowest plugins kept
+	 */
+	public BuildMetrics(int slowestPluginCount) {
+		if (slowestPluginCount < 0) {
+			throw new IllegalArgumentException("slowestPluginCount should be a positive integer.");
+		}
+		this.slowestPluginCount = slowestPluginCount;
+		this.slowestPlugins = new PriorityQueue<PluginTiming>(Math.max(1, slowestPluginCount), PluginTiming.FASTEST_FIRST);
+	}
+
+	void addPhaseNanos(Phase phase, long nanos) {
+		phaseNanos.addAndGet(phase.ordinal(), nanos);
+	}
+
+	void listed(int pluginFileCount, int skippedFileCount) {
+		this.listedFileCount.addAndGet(pluginFileCount + skippedFileCount);
+		this.skippedFileCount.addAndGet(skippedFileCount);
+	}
+
+	void pluginLoaded(BundleInfo bundleInfo) {
+		if (bundleInfo == null) {
+			nonBundleCount.incrementAndGet();
+		} else if (bundleInfo.isFragment()) {
+			fragmentCount.incrementAndGet();
+		} else {
+			bundleCount.incrementAndGet();
+		}
+	}
+
+	void pluginCached() {
+		cachedPluginCount.incrementAndGet();
+	}
+
+	void pluginRead(File pluginFile, long nanos) {
+		readPluginCount.incrementAndGet();
+		pluginReadNanos.addAndGet(nanos);
+		if (slowestPluginCount == 0) {
+			return;
+		}
+		synchronized (slowestPlugins) {
+			if (slowestPlugins.size() < slowestPluginCount) {
+				slowestPlugins.add(new PluginTiming(pluginFile.getName(), nanos));
+			} else if (slowestPlugins.peek().getNanos() < nanos) {
+				slowestPlugins.poll();
+				slowestPlugins.add(new PluginTiming(pluginFile.getName(), nanos));
+			}
+		}
+	}
+
+	void addBytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	void configured(int configuredBundleCount, WriteResult writeResult) {
+		this.configuredBundleCount = configuredBundleCount;
+		this.writeResult = writeResult;
+	}
+
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos.get(phase.ordinal());
+	}
+
+	public long getPhaseMillis(Phase phase) {
+		return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase));
+	}
+
+	/**
+	 * @return sum of the phases
+	 */
+	public long getTotalNanos() {
+		long total = 0;
+		for (Phase phase : Phase.values()) {
+			total += getPhaseNanos(phase);
+		}
+		return total;
+	}
+
+	public long getTotalMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getTotalNanos());
+	}
+
+	/**
+	 * @return number of entries found in the plugins directory
+	 */
+	public long getListedFileCount() {
+		return listedFileCount.get();
+	}
+
+	/**
+	 * @return number of entries of the plugins directory that are neither
+	 *         jars nor directories
+	 */
+	public long getSkippedFileCount() {
+		return skippedFileCount.get();
+	}
+
+	/**
+	 * @return number of plugins whose manifest was read
+	 */
+	public long getReadPluginCount() {
+		return readPluginCount.get();
+	}
+
+	/**
+	 * @return number of plugins taken from a cache
+	 */
+	public long getCachedPluginCount() {
+		return cachedPluginCount.get();
+	}
+
+	/**
+	 * @return number of loaded bundles, fragments excluded
+	 */
+	public long getBundleCount() {
+		return bundleCount.get();
+	}
+
+	public long getFragmentCount() {
+		return fragmentCount.get();
+	}
+
+	/**
+	 * @return number of plugins skipped because they are not bundles
+	 */
+	public long getNonBundleCount() {
+		return nonBundleCount.get();
+	}
+
+	/**
+	 * @return uncompressed size of the manifests read
+	 */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	/**
+	 * @return time spent reading plugins summed over the scan threads
+	 */
+	public long getPluginReadNanos() {
+		return pluginReadNanos.get();
+	}
+
+	/**
+	 * @return the slowest plugins to read, slowest first
+	 */
+	public List<PluginTiming> getSlowestPlugins() {
+		List<PluginTiming> slowest;
+		synchronized (slowestPlugins) {
+			slowest = new ArrayList<PluginTiming>(slowestPlugins);
+		}
+		Collections.sort(slowest, Collections.reverseOrder(PluginTiming.FASTEST_FIRST));
+		return slowest;
+	}
+
+	/**
+	 * @return number of bundles written to config.ini
+	 */
+	public int getConfiguredBundleCount() {
+		return configuredBundleCount;
+	}
+
+	/**
+	 * @return the result of the write or null if the build did not write
+	 *         config.ini
+	 */
+	public WriteResult getWriteResult() {
+		return writeResult;
+	}
+
+	/**
+	 * @return the metrics as a JSON object
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"result\": ").append(writeResult == null ? "null" : quote(writeResult.name())).append(",\n");
+		json.append("  \"totalMillis\": ").append(getTotalMillis()).append(",\n");
+		json.append("  \"phaseMillis\": {");
+		for (Phase phase : Phase.values()) {
+			json.append(phase.ordinal() == 0 ? "" : ",").append("\n    ").append(quote(phase.jsonName())).append(": ")
+					.append(getPhaseMillis(phase));
+		}
+		json.append("\n  },\n");
+		json.append("  \"listedFiles\": ").append(getListedFileCount()).append(",\n");
+		json.append("  \"skippedFiles\": ").append(getSkippedFileCount()).append(",\n");
+		json.append("  \"readPlugins\": ").append(getReadPluginCount()).append(",\n");
+		json.append("  \"cachedPlugins\": ").append(getCachedPluginCount()).append(",\n");
+		json.append("  \"bundles\": ").append(getBundleCount()).append(",\n");
+		json.append("  \"fragments\": ").append(getFragmentCount()).append(",\n");
+		json.append("  \"nonBundles\": ").append(getNonBundleCount()).append(",\n");
+		json.append("  \"configuredBundles\": ").append(getConfiguredBundleCount()).append(",\n");
+		json.append("  \"bytesRead\": ").append(getBytesRead()).append(",\n");
+		json.append("  \"pluginReadMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(getPluginReadNanos())).append(",\n");
+		json.append("  \"slowestPlugins\": [");
+		List<PluginTiming> slowest = getSlowestPlugins();
+		for (int i = 0; i < slowest.size(); i++) {
+			PluginTiming timing = slowest.get(i);
+			json.append(i == 0 ? "" : ",").append("\n    {\"file\": ").append(quote(timing.getFileName()))
+					.append(", \"micros\": ").append(TimeUnit.NANOSECONDS.toMicros(timing.getNanos())).append("}");
+		}
+		json.append(slowest.isEmpty() ? "]\n" : "\n  ]\n");
+		json.append("}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Write {@link #toJson()} to a file encoded in UTF-8.
+	 *
+	 * @param reportFile
+	 * @throws ConfigBuildingException
+	 */
+	public void writeJson(File reportFile) throws ConfigBuildingException {
+		File directory = reportFile.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		Writer out = null;
+		try {
+			out = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+			out.write(toJson());
+			out.close();
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error writing report file: " + reportFile, e);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(getTotalMillis()).append(" ms (");
+		for (Phase phase : Phase.values()) {
+			summary.append(phase.ordinal() == 0 ? "" : ", ").append(phase.jsonName()).append(' ')
+					.append(getPhaseMillis(phase)).append(" ms");
+		}
+		summary.append("), ").append(getReadPluginCount()).append(" plugins read, ").append(getCachedPluginCount())
+				.append(" cached, ").append(getBundleCount()).append(" bundles, ").append(getFragmentCount())
+				.append(" fragments, ").append(getNonBundleCount()).append(" non bundles, ").append(getSkippedFileCount())
+				.append(" other files, ").append(getBytesRead()).append(" manifest bytes");
+		return summary.toString();
+	}
+
+	/**
+	 * Time spent reading a plugin. This class is immutable.
+	 */
+	public static final class PluginTiming {
+
+		static final Comparator<PluginTiming> FASTEST_FIRST = new Comparator<PluginTiming>() {
+			public int compare(PluginTiming timing1, PluginTiming timing2) {
+				return timing1.nanos < timing2.nanos ? -1 : (timing1.nanos == timing2.nanos ? 0 : 1);
+			}
+		};
+
+		private final String fileName;
+		private final long nanos;
+
+		PluginTiming(String fileName, long nanos) {
+			this.fileName = fileName;
+			this.nanos = nanos;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			return fileName + " " + TimeUnit.NANOSECONDS.toMicros(nanos) + " us";
+		}
+	}
+
+}
@@ -0,0 +1,444 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+public final class BundleInfo implements Comparable<BundleInfo> {
+
+	private final String fileName;
+	private final String bundleName;
+	private final String bundleVersion;
+	/**
+	 * Parsed once as it is used by each comparison when sorting
+	 */
+	private final BundleVersion version;
+	private final boolean validVersion;
+
+	private final String fragmentHostName;
+
+	private final boolean directory;
+
+	/**
+	 * Raw dependency headers, only parsed when needed as most builds do not
+	 * use them
+	 */
+	private final String requireBundleHeader;
+	private final String importPackageHeader;
+	private final String exportPackageHeader;
+
+	/**
+	 * Raw activation headers: Bundle-Activator, Bundle-ActivationPolicy and
+	 * Service-Component
+	 */
+	private final String activator;
+	private final String activationPolicyHeader;
+	private final String serviceComponentHeader;
+
+	private volatile List<Requirement> requiredBundles;
+	private volatile List<Requirement> importedPackages;
+	private volatile List<ExportedPackage> exportedPackages;
+
+	private BundleInfo(Builder builder) {
+		this.fileName = checkNotNull(builder.fileName);
+		this.bundleName = checkNotNull(builder.bundleName);
+		this.bundleVersion = builder.bundleVersion;
+		BundleVersion parsedVersion;
+		boolean valid = true;
+		try {
+			parsedVersion = BundleVersion.parseVersion(bundleVersion);
+		} catch (IllegalArgumentException e) {
+			// e.g. 1.0.0-SNAPSHOT, equinox only rejects it when installing
+			parsedVersion = BundleVersion.EMPTY;
+			valid = false;
+		}
+		this.version = parsedVersion;
+		this.validVersion = valid;
+		this.fragmentHostName = builder.fragmentHostName;
+		this.directory = builder.directory;
+		this.requireBundleHeader = builder.requireBundleHeader;
+		this.importPackageHeader = builder.importPackageHeader;
+		this.exportPackageHeader = builder.exportPackageHeader;
+		this.activator = builder.activator;
+		this.activationPolicyHeader = builder.activationPolicyHeader;
+		this.serviceComponentHeader = builder.serviceComponentHeader;
+	}
+
+	public static BundleInfo fragment(String fileName, String bundleName, String bundleVersion, String fragmentHostName) {
+		return builder(fileName, bundleName).bundleVersion(bundleVersion).fragmentHostName(checkNotNull(fragmentHostName)).build();
+	}
+
+	public static BundleInfo bundle(String fileName, String bundleName, String bundleVersion) {
+		return builder(fileName, bundleName).bundleVersion(bundleVersion).build();
+	}
+
+	public static Builder builder(String fileName, String bundleName) {
+		return new Builder(fileName, bundleName);
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public String getBundleName() {
+		return bundleName;
+	}
+
+	public String getBundleVersion() {
+		return bundleVersion;
+	}
+
+	/**
+	 * @return the parsed {@link #getBundleVersion()},
+	 *         {@link BundleVersion#EMPTY} when the bundle has no version or
+	 *         an invalid one
+	 */
+	public BundleVersion getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return false when {@link #getBundleVersion()} is not a valid OSGi
+	 *         version, {@link #getVersion()} is then
+	 *         {@link BundleVersion#EMPTY} and cannot be compared
+	 */
+	public boolean isValidVersion() {
+		return validVersion;
+	}
+
+	public boolean isFragment() {
+		return fragmentHostName != null;
+	}
+
+	/**
+	 * Return the name of the host when {@link #isFragment()}
+	 * 
+	 * @return
+	 */
+	public String getHostName() {
+		checkState(isFragment(), "not a fragment");
+		return fragmentHostName;
+	}
+
+	/**
+	 * @return true for an exploded bundle i.e. {@link #getFileName()} is a
+	 *         directory rather than a jar
+	 */
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return true for a plugin found below a subdirectory of the plugins
+	 *         directory or outside of it, {@link #getFileName()} is then a
+	 *         path relative to the plugins directory using / separators
+	 */
+	public boolean isNested() {
+		return fileName.indexOf('/') != -1;
+	}
+
+	public String getRequireBundleHeader() {
+		return requireBundleHeader;
+	}
+
+	public String getImportPackageHeader() {
+		return importPackageHeader;
+	}
+
+	public String getExportPackageHeader() {
+		return exportPackageHeader;
+	}
+
+	/**
+	 * @return the Bundle-Activator class name, null if the bundle has no
+	 *         activator
+	 */
+	public String getActivator() {
+		return activator;
+	}
+
+	public String getActivationPolicyHeader() {
+		return activationPolicyHeader;
+	}
+
+	public String getServiceComponentHeader() {
+		return serviceComponentHeader;
+	}
+
+	/**
+	 * @return true if the bundle declares Bundle-ActivationPolicy: lazy
+	 */
+	public boolean isLazyActivation() {
+		return activationPolicyHeader != null && activationPolicyHeader.trim().startsWith("lazy");
+	}
+
+	/**
+	 * @return true if the bundle declares declarative services components
+	 */
+	public boolean hasServiceComponents() {
+		return serviceComponentHeader != null && serviceComponentHeader.trim().length() > 0;
+	}
+
+	/**
+	 * @return the Require-Bundle requirements
+	 * @throws ConfigBuildingException
+	 *             if the header is malformed
+	 */
+	public List<Requirement> getRequiredBundles() {
+		List<Requirement> result = requiredBundles;
+		if (result == null) {
+			result = parseRequirements(requireBundleHeader, "Require-Bundle", "bundle-version");
+			requiredBundles = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the Import-Package requirements
+	 * @throws ConfigBuildingException
+	 *             if the header is malformed
+	 */
+	public List<Requirement> getImportedPackages() {
+		List<Requirement> result = importedPackages;
+		if (result == null) {
+			result = parseRequirements(importPackageHeader, "Import-Package", "version");
+			importedPackages = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the Export-Package packages
+	 * @throws ConfigBuildingException
+	 *             if the header is malformed
+	 */
+	public List<ExportedPackage> getExportedPackages() {
+		List<ExportedPackage> result = exportedPackages;
+		if (result == null) {
+			result = parseExportedPackages();
+			exportedPackages = result;
+		}
+		return result;
+	}
+
+	private List<Requirement> parseRequirements(String header, String headerName, String versionAttribute) {
+		if (header == null) {
+			return Collections.emptyList();
+		}
+		try {
+			List<Requirement> requirements = new ArrayList<Requirement>();
+			for (ManifestElement element : ManifestElement.parseHeader(header)) {
+				boolean optional = "optional".equals(element.getDirective("resolution"));
+				for (String name : element.getValues()) {
+					requirements.add(new Requirement(name, element.getAttribute(versionAttribute), optional));
+				}
+			}
+			return Collections.unmodifiableList(requirements);
+		} catch (IllegalArgumentException e) {
+			throw new ConfigBuildingException("Invalid " + headerName + " header in " + fileName, e);
+		}
+	}
+
+	private List<ExportedPackage> parseExportedPackages() {
+		if (exportPackageHeader == null) {
+			return Collections.emptyList();
+		}
+		try {
+			List<ExportedPackage> packages = new ArrayList<ExportedPackage>();
+			for (ManifestElement element : ManifestElement.parseHeader(exportPackageHeader)) {
+				String packageVersion = element.getAttribute("version");
+				if (packageVersion == null) {
+					packageVersion = element.getAttribute("specification-version");
+				}
+				BundleVersion parsedVersion = BundleVersion.parseVersion(packageVersion);
+				for (String name : element.getValues()) {
+					packages.add(new ExportedPackage(name, parsedVersion));
+				}
+			}
+			return Collections.unmodifiableList(packages);
+		} catch (IllegalArgumentException e) {
+			throw new ConfigBuildingException("Invalid Export-Package header in " + fileName, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		String kind = isFragment() ? "Fragment" : "Bundle";
+		String directoryPart = isDirectory() ? ", directory" : "";
+		if (!isFragment()) {
+			return kind + ": [fileName=" + getFileName() + ", bundleName=" + getBundleName() + ", bundleVersion=" + getBundleVersion()
+					+ directoryPart + "]";
+		} else {
+			return kind + ": [fileName=" + getFileName() + ", bundleName=" + getBundleName() + ", bundleVersion=" + getBundleVersion()
+					+ ", hostName=" + getHostName() + directoryPart + "]";
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = fileName.hashCode();
+		result = prime * result + bundleName.hashCode();
+		result = prime * result + ((bundleVersion == null) ? 0 : bundleVersion.hashCode());
+		result = prime * result + ((fragmentHostName == null) ? 0 : fragmentHostName.hashCode());
+		result = prime * result + (directory ? 1231 : 1237);
+		result = prime * result + ((requireBundleHeader == null) ? 0 : requireBundleHeader.hashCode());
+		result = prime * result + ((importPackageHeader == null) ? 0 : importPackageHeader.hashCode());
+		result = prime * result + ((exportPackageHeader == null) ? 0 : exportPackageHeader.hashCode());
+		result = prime * result + ((activator == null) ? 0 : activator.hashCode());
+		result = prime * result + ((activationPolicyHeader == null) ? 0 : activationPolicyHeader.hashCode());
+		result = prime * result + ((serviceComponentHeader == null) ? 0 : serviceComponentHeader.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BundleInfo)) {
+			return false;
+		}
+		BundleInfo other = (BundleInfo) obj;
+		return fileName.equals(other.fileName) && bundleName.equals(other.bundleName) && equal(bundleVersion, other.bundleVersion)
+				&& equal(fragmentHostName, other.fragmentHostName) && directory == other.directory
+				&& equal(requireBundleHeader, other.requireBundleHeader) && equal(importPackageHeader, other.importPackageHeader)
+				&& equal(exportPackageHeader, other.exportPackageHeader) && equal(activator, other.activator)
+				&& equal(activationPolicyHeader, other.activationPolicyHeader)
+				&& equal(serviceComponentHeader, other.serviceComponentHeader);
+	}
+
+	private static boolean equal(Object o1, Object o2) {
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+
+	/**
+	 * Compare on bundle name, then version, then file name.
+	 */
+	public int compareTo(BundleInfo anotherBi) {
+		int result = bundleName.compareTo(anotherBi.bundleName);
+		if (result == 0) {
+			result = version.compareTo(anotherBi.version);
+		}
+		if (result == 0) {
+			result = fileName.compareTo(anotherBi.fileName);
+		}
+		return result;
+	}
+
+	/**
+	 * Builder for {@link BundleInfo} with optional information.
+	 */
+	public static final class Builder {
+
+		private final String fileName;
+		private final String bundleName;
+		private String bundleVersion;
+		private String fragmentHostName;
+		private boolean directory;
+		private String requireBundleHeader;
+		private String importPackageHeader;
+		private String exportPackageHeader;
+		private String activator;
+		private String activationPolicyHeader;
+		private String serviceComponentHeader;
+
+		private Builder(String fileName, String bundleName) {
+			this.fileName = checkNotNull(fileName);
+			this.bundleName = checkNotNull(bundleName);
+		}
+
+		public Builder bundleVersion(String bundleVersion) {
+			this.bundleVersion = bundleVersion;
+			return this;
+		}
+
+		/**
+		 * @param fragmentHostName
+		 *            the host name for a fragment, null for a bundle
+		 * @return
+		 */
+		public Builder fragmentHostName(String fragmentHostName) {
+			this.fragmentHostName = fragmentHostName;
+			return this;
+		}
+
+		public Builder directory(boolean directory) {
+			this.directory = directory;
+			return this;
+		}
+
+		/**
+		 * @param requireBundleHeader
+		 *            the Require-Bundle header value, may be null
+		 * @return
+		 */
+		public Builder requireBundleHeader(String requireBundleHeader) {
+			this.requireBundleHeader = requireBundleHeader;
+			return this;
+		}
+
+		/**
+		 * @param importPackageHeader
+		 *            the Import-Package header value, may be null
+		 * @return
+		 */
+		public Builder importPackageHeader(String importPackageHeader) {
+			this.importPackageHeader = importPackageHeader;
+			return this;
+		}
+
+		/**
+		 * @param exportPackageHeader
+		 *            the Export-Package header value, may be null
+		 * @return
+		 */
+		public Builder exportPackageHeader(String exportPackageHeader) {
+			this.exportPackageHeader = exportPackageHeader;
+			return this;
+		}
+
+		/**
+		 * @param activator
+		 *            the Bundle-Activator header value, may be null
+		 * @return
+		 */
+		public Builder activator(String activator) {
+			this.activator = activator;
+			return this;
+		}
+
+		/**
+		 * @param activationPolicyHeader
+		 *            the Bundle-ActivationPolicy header value, may be null
+		 * @return
+		 */
+		public Builder activationPolicyHeader(String activationPolicyHeader) {
+			this.activationPolicyHeader = activationPolicyHeader;
+			return this;
+		}
+
+		/**
+		 * @param serviceComponentHeader
+		 *            the Service-Component header value, may be null
+		 * @return
+		 */
+		public Builder serviceComponentHeader(String serviceComponentHeader) {
+			this.serviceComponentHeader = serviceComponentHeader;
+			return this;
+		}
+
+		/**
+		 * @return the bundle info. A bundle version that is not a valid OSGi
+		 *         version is kept as is, {@link BundleInfo#getVersion()} is
+		 *         then {@link BundleVersion#EMPTY} and
+		 *         {@link BundleInfo#isValidVersion()} false.
+		 */
+		public BundleInfo build() {
+			return new BundleInfo(this);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+
+/**
+ * Cache of {@link BundleInfo} loaded from plugin files used by
+ * {@link BundleInfoLoader} to avoid reading plugins that did not change.
+ * <p>
+ * Implementations only store entries, {@link BundleInfoLoader} is responsible
+ * for checking that an entry is still up to date. Implementations may drop
+ * outdated entries on lookup. Implementations must be
+ * thread safe as plugins may be loaded in parallel.
+ * 
+ * @author sarod
+ *
+ */
+public interface BundleInfoCache {
+
+	/**
+	 * @param pluginFile
+	 * @return the entry stored for pluginFile or null
+	 */
+	Entry get(File pluginFile);
+
+	void put(File pluginFile, Entry entry);
+
+	/**
+	 * A cached {@link BundleInfo} with the size and modification time of the
+	 * plugin file it was loaded from. This class is immutable.
+	 */
+	final class Entry {
+
+		private final long length;
+		private final long lastModified;
+		private final BundleInfo bundleInfo;
+
+		/**
+		 * @param length
+		 * @param lastModified
+		 * @param bundleInfo
+		 *            the loaded {@link BundleInfo} or null when the plugin is
+		 *            not a bundle
+		 */
+		public Entry(long length, long lastModified, BundleInfo bundleInfo) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.bundleInfo = bundleInfo;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return the cached {@link BundleInfo} or null when the plugin is not
+		 *         a bundle
+		 */
+		public BundleInfo getBundleInfo() {
+			return bundleInfo;
+		}
+
+		public boolean isUpToDate(File pluginFile) {
+			return pluginFile.length() == length && pluginFile.lastModified() == lastModified;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = (int) (length ^ (length >>> 32));
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			result = 31 * result + (bundleInfo == null ? 0 : bundleInfo.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+			Entry other = (Entry) obj;
+			return length == other.length && lastModified == other.lastModified
+					&& (bundleInfo == null ? other.bundleInfo == null : bundleInfo.equals(other.bundleInfo));
+		}
+	}
+}
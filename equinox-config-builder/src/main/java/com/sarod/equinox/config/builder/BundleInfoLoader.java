@@ -0,0 +1,846 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import com.sarod.equinox.config.builder.utils.DaemonThreadFactory;
+import com.sarod.equinox.config.builder.utils.IOUtils;
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+public class BundleInfoLoader {
+
+	private static final String MANIFEST_ENTRY_NAME = "META-INF/MANIFEST.MF";
+
+	private static final String MF_ATTRIBUTE_BUNDLE_VERSION = "Bundle-Version";
+	private static final String MF_ATTRIBUTE_FRAGMENT_HOST = "Fragment-Host";
+	private static final String MF_ATTRIBUTE_BUNDLE_SYMBOLIC_NAME = "Bundle-SymbolicName";
+	private static final String MF_ATTRIBUTE_REQUIRE_BUNDLE = "Require-Bundle";
+	private static final String MF_ATTRIBUTE_IMPORT_PACKAGE = "Import-Package";
+	private static final String MF_ATTRIBUTE_EXPORT_PACKAGE = "Export-Package";
+	private static final String MF_ATTRIBUTE_BUNDLE_ACTIVATOR = "Bundle-Activator";
+	private static final String MF_ATTRIBUTE_BUNDLE_ACTIVATION_POLICY = "Bundle-ActivationPolicy";
+	private static final String MF_ATTRIBUTE_SERVICE_COMPONENT = "Service-Component";
+
+	private static final ManifestHeaderScanner HEADER_SCANNER = new ManifestHeaderScanner(MF_ATTRIBUTE_BUNDLE_SYMBOLIC_NAME,
+			MF_ATTRIBUTE_BUNDLE_VERSION, MF_ATTRIBUTE_FRAGMENT_HOST, MF_ATTRIBUTE_REQUIRE_BUNDLE, MF_ATTRIBUTE_IMPORT_PACKAGE,
+			MF_ATTRIBUTE_EXPORT_PACKAGE, MF_ATTRIBUTE_BUNDLE_ACTIVATOR, MF_ATTRIBUTE_BUNDLE_ACTIVATION_POLICY,
+			MF_ATTRIBUTE_SERVICE_COMPONENT);
+
+	/**
+	 * Plugins submitted to an executor set by
+	 * {@link #setExecutor(ExecutorService)} and not collected yet
+	 */
+	private static final int DEFAULT_MAX_PENDING_PLUGINS = 64;
+
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	private int threadCount = 1;
+
+	private ExecutorService executor;
+
+	private BundleInfoCache cache;
+
+	private boolean memoryMapped;
+
+	private boolean recursive;
+
+	private BuildMetrics metrics;
+
+	public BundleInfoLoader() {
+
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Set the number of threads used by {@link #loadBundleInfos(File)} to
+	 * read plugin jars. 1 (the default) means jars are read sequentially on
+	 * the calling thread.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount <= 0) {
+			throw new IllegalArgumentException("threadCount should be a strictly positive integer.");
+		}
+		this.threadCount = threadCount;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Set an executor used by {@link #loadBundleInfos(File)} to read plugin
+	 * jars. When set it takes precedence over {@link #getThreadCount()}. The
+	 * executor is not shutdown by this loader.
+	 * 
+	 * @param executor
+	 *            the executor or null to use {@link #getThreadCount()}
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public BundleInfoCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Set a cache used by {@link #loadBundleInfos(File)} to avoid reading
+	 * plugin jars that did not change since they were cached. A jar is
+	 * considered unchanged when its size and modification time are the same.
+	 * 
+	 * @param cache
+	 *            the cache or null to always read jars
+	 */
+	public void setCache(BundleInfoCache cache) {
+		this.cache = cache;
+	}
+
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * When true {@link #loadBundleInfo(File)} memory maps the jars and reads
+	 * the manifest directly from the mapped zip structures instead of going
+	 * through {@link ZipFile}. Jars that cannot be read this way (too large,
+	 * zip64, mapping not supported by the file system...) are read with
+	 * {@link ZipFile}. Mapped files are only released when the buffers are
+	 * garbage collected, which on Windows prevents deleting the jars
+	 * meanwhile.
+	 * 
+	 * @param memoryMapped
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	public BuildMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set metrics recording the listing, reading and sorting times and the
+	 * plugin counters of the next loads.
+	 * 
+	 * @param metrics
+	 *            the metrics or null to record nothing
+	 */
+	public void setMetrics(BuildMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Load BundleInfo from a jar inputStream.
+	 * 
+	 * 
+	 * @param jarInputStream
+	 * @param pluginFileName
+	 * @return the {@link BundleInfo} or null if jar does not contain a MANIFEST
+	 *         file or if jar is not an osgi bundle or fragment (MANIFEST does
+	 *         not contain a {@value #MF_ATTRIBUTE_BUNDLE_SYMBOLIC_NAME}
+	 *         attribute)
+	 * @throws ConfigBuildingException
+	 */
+	public BundleInfo loadBundleInfo(InputStream jarInputStream, String pluginFileName) throws ConfigBuildingException {
+		checkNotNull(jarInputStream);
+		checkNotNull(pluginFileName);
+		if (pluginFileName == null) {
+			throw new NullPointerException("pluginFileName must be not null");
+		}
+		try {
+			return bundleInfo(loadManifest(jarInputStream, null), pluginFileName, false);
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error loading manifest information for " + pluginFileName, e);
+		}
+
+	}
+
+	/**
+	 * Load the BundleInfo of a plugin read from a product archive, see
+	 * {@link ProductArchive}. Caches are not used: archived plugins have no
+	 * file to check whether they changed.
+	 * 
+	 * @param in
+	 *            content of the jar or, for an exploded bundle, of its
+	 *            manifest. The stream is not closed.
+	 * @param fileName
+	 *            file name of the {@link BundleInfo}
+	 * @param directory
+	 *            true for an exploded bundle
+	 * @return the {@link BundleInfo} or null if the plugin is not a bundle
+	 * @throws ConfigBuildingException
+	 */
+	BundleInfo loadArchivedBundleInfo(InputStream in, String fileName, boolean directory) throws ConfigBuildingException {
+		long start = startTime();
+		BundleInfo bundleInfo;
+		try {
+			InputStream unclosed = new FilterInputStream(in) {
+				@Override
+				public void close() {
+					// The archive stream is read further
+				}
+			};
+			bundleInfo = bundleInfo(directory ? HEADER_SCANNER.scan(unclosed) : loadManifest(unclosed, metrics), fileName,
+					directory);
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error loading manifest information for " + fileName, e);
+		}
+		if (metrics != null) {
+			metrics.pluginRead(new File(fileName), System.nanoTime() - start);
+			metrics.pluginLoaded(bundleInfo);
+		}
+		return bundleInfo;
+	}
+
+	private BundleInfo bundleInfo(Map<String, String> headers, String pluginFileName, boolean directory) {
+		if (headers == null) {
+			logger.log(Level.FINE, "No manifest in plugin");
+			return null;
+		}
+		String symbolicName = symbolicName(headers);
+		if (symbolicName == null) {
+			logger.log(Level.FINE, "Not a bundle: No symbolic name in manifest");
+			return null;
+		}
+
+		String bundleVersion = headers.get(MF_ATTRIBUTE_BUNDLE_VERSION);
+
+		String fragmentHost = headers.get(MF_ATTRIBUTE_FRAGMENT_HOST);
+		String fragmentHostName = null;
+		if (fragmentHost != null) {
+			String[] fragmentHostParts = fragmentHost.split(";");
+			fragmentHostName = fragmentHostParts[0];
+		}
+		return BundleInfo.builder(pluginFileName, symbolicName).bundleVersion(bundleVersion).fragmentHostName(fragmentHostName)
+				.directory(directory).requireBundleHeader(headers.get(MF_ATTRIBUTE_REQUIRE_BUNDLE))
+				.importPackageHeader(headers.get(MF_ATTRIBUTE_IMPORT_PACKAGE))
+				.exportPackageHeader(headers.get(MF_ATTRIBUTE_EXPORT_PACKAGE))
+				.activator(headers.get(MF_ATTRIBUTE_BUNDLE_ACTIVATOR))
+				.activationPolicyHeader(headers.get(MF_ATTRIBUTE_BUNDLE_ACTIVATION_POLICY))
+				.serviceComponentHeader(headers.get(MF_ATTRIBUTE_SERVICE_COMPONENT)).build();
+	}
+
+	/**
+	 * Loads a list of BundleInfo for each bundles/fragments found in a
+	 * directory.
+	 * <p>
+	 * The directory is streamed rather than listed upfront: each plugin is
+	 * handed to the manifest reading as soon as it is found. Jars are read
+	 * using {@link #getExecutor()} when set, in parallel on
+	 * {@link #getThreadCount()} threads when greater than 1 and sequentially
+	 * otherwise. The result is the same in all cases.
+	 * 
+	 * @param directory
+	 * @return
+	 * @throws ConfigBuildingException
+	 *             if some jars could not be read. The exception reports all
+	 *             the failing jars not only the first one.
+	 * @see #setRecursive(boolean)
+	 */
+	public Collection<BundleInfo> loadBundleInfos(File directory) throws ConfigBuildingException {
+		return loadBundleInfos(directory, recursive, "");
+	}
+
+	/**
+	 * Loads a list of BundleInfo for each bundles/fragments found in a
+	 * directory reading jars with the given executor.
+	 * 
+	 * @param directory
+	 * @param executor
+	 * @return
+	 * @throws ConfigBuildingException
+	 *             if some jars could not be read. The exception reports all
+	 *             the failing jars not only the first one.
+	 */
+	public Collection<BundleInfo> loadBundleInfos(File directory, ExecutorService executor) throws ConfigBuildingException {
+		checkNotNull(executor);
+		return load(directory, recursive, "", new PipelinedLoad(executor, DEFAULT_MAX_PENDING_PLUGINS));
+	}
+
+	/**
+	 * @param directory
+	 * @param recursive
+	 *            whether nested directories are walked
+	 * @param fileNamePrefix
+	 *            prefix of the file names of the loaded {@link BundleInfo}
+	 *            e.g. ../dropins/ to name them relatively to another directory
+	 */
+	Collection<BundleInfo> loadBundleInfos(File directory, boolean recursive, String fileNamePrefix) {
+		if (executor != null) {
+			return load(directory, recursive, fileNamePrefix, new PipelinedLoad(executor, DEFAULT_MAX_PENDING_PLUGINS));
+		}
+		if (threadCount <= 1) {
+			return load(directory, recursive, fileNamePrefix, new SequentialLoad());
+		}
+		ExecutorService scanExecutor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory("bundle-info-loader"));
+		try {
+			return load(directory, recursive, fileNamePrefix, new PipelinedLoad(scanExecutor, threadCount * 4));
+		} finally {
+			scanExecutor.shutdownNow();
+		}
+	}
+
+	private Collection<BundleInfo> load(File directory, boolean recursive, String fileNamePrefix, PluginLoad pluginLoad) {
+		checkNotNull(directory);
+		long start = startTime();
+		long loadNanos = visitPluginFiles(directory, recursive, fileNamePrefix, pluginLoad);
+		long listEnd = startTime();
+		pluginLoad.finish(directory);
+		if (metrics != null) {
+			// Reading happens while the directory is walked: time spent
+			// handing plugins to the reading is counted as reading
+			long walkNanos = listEnd - start;
+			metrics.addPhaseNanos(BuildMetrics.Phase.LIST, walkNanos - loadNanos);
+			metrics.addPhaseNanos(BuildMetrics.Phase.LOAD, loadNanos + System.nanoTime() - listEnd);
+		}
+		checkNoErrors(pluginLoad.errors);
+		return sortBundleInfos(pluginLoad.bundleInfos);
+	}
+
+	/**
+	 * Walk a directory handing each plugin found to the visitor.
+	 * 
+	 * @return time spent in the visitor when metrics are recorded
+	 */
+	long visitPluginFiles(File directory, boolean recursive, String fileNamePrefix, PluginVisitor visitor) {
+		PluginWalker walker = new PluginWalker(directory.toPath(), fileNamePrefix, visitor);
+		try {
+			if (recursive) {
+				Files.walkFileTree(directory.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, walker);
+			} else {
+				DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath());
+				try {
+					for (Path path : stream) {
+						walker.visitEntry(path);
+					}
+				} finally {
+					IOUtils.closeQuietly(stream);
+				}
+			}
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error listing plugins in " + directory, e);
+		} catch (DirectoryIteratorException e) {
+			throw new ConfigBuildingException("Error listing plugins in " + directory, e.getCause());
+		}
+		if (metrics != null) {
+			metrics.listed(walker.pluginFileCount, walker.skippedFileCount);
+		}
+		return walker.visitorNanos;
+	}
+
+	/**
+	 * @param file
+	 * @return true if file is a candidate plugin that
+	 *         {@link #loadBundleInfos(File)} would load: a jar or a directory
+	 *         (exploded bundle)
+	 */
+	public boolean isPluginFile(File file) {
+		return file.getName().endsWith(".jar") || file.isDirectory();
+	}
+
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	/**
+	 * When true {@link #loadBundleInfos(File)} also looks for plugins in the
+	 * subdirectories that are not exploded bundles (no META-INF/MANIFEST.MF),
+	 * following symbolic links, e.g. plugins grouped in subfolders of a shared
+	 * bundle pool. The file name of such plugins is their path relative to
+	 * the directory, see {@link BundleInfo#isNested()}.
+	 * 
+	 * @param recursive
+	 */
+	public void setRecursive(boolean recursive) {
+		this.recursive = recursive;
+	}
+
+	/**
+	 * Receives the plugins found while walking a directory.
+	 */
+	interface PluginVisitor {
+
+		/**
+		 * @param pluginFile
+		 * @param fileName
+		 *            the file name for the {@link BundleInfo}
+		 */
+		void visit(File pluginFile, String fileName);
+	}
+
+	private final class PluginWalker extends SimpleFileVisitor<Path> {
+
+		private final Path root;
+		private final String fileNamePrefix;
+		private final PluginVisitor visitor;
+		private int pluginFileCount;
+		private int skippedFileCount;
+		private long visitorNanos;
+
+		PluginWalker(Path root, String fileNamePrefix, PluginVisitor visitor) {
+			this.root = root;
+			this.fileNamePrefix = fileNamePrefix;
+			this.visitor = visitor;
+		}
+
+		/**
+		 * Entry of a directory listed without recursion
+		 */
+		void visitEntry(Path path) {
+			File file = path.toFile();
+			if (isPluginFile(file)) {
+				visitPlugin(path);
+			} else {
+				skip(path);
+			}
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+			if (dir.equals(root)) {
+				return FileVisitResult.CONTINUE;
+			}
+			if (Files.isRegularFile(dir.resolve(MANIFEST_ENTRY_NAME))) {
+				visitPlugin(dir);
+				return FileVisitResult.SKIP_SUBTREE;
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+			if (file.getFileName().toString().endsWith(".jar")) {
+				visitPlugin(file);
+			} else {
+				skip(file);
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+			if (e instanceof FileSystemLoopException) {
+				logger.log(Level.WARNING, "Skipping symbolic link cycle: " + file);
+				return FileVisitResult.CONTINUE;
+			}
+			throw e;
+		}
+
+		private void visitPlugin(Path path) {
+			pluginFileCount++;
+			String fileName = root.relativize(path).toString();
+			if (File.separatorChar != '/') {
+				fileName = fileName.replace(File.separatorChar, '/');
+			}
+			if (metrics == null) {
+				visitor.visit(path.toFile(), fileNamePrefix + fileName);
+			} else {
+				long start = System.nanoTime();
+				visitor.visit(path.toFile(), fileNamePrefix + fileName);
+				visitorNanos += System.nanoTime() - start;
+			}
+		}
+
+		private void skip(Path path) {
+			// Skip non jars
+			logger.log(Level.FINE, "Skipping non jar: " + path.getFileName());
+			skippedFileCount++;
+		}
+	}
+
+	/**
+	 * Loads the plugins handed by a directory walk.
+	 */
+	private abstract class PluginLoad implements PluginVisitor {
+
+		final List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>();
+
+		final List<ConfigBuildingException> errors = new ArrayList<ConfigBuildingException>();
+
+		/**
+		 * Wait for the plugins being loaded once the walk is done.
+		 */
+		abstract void finish(File directory);
+
+		void add(BundleInfo bundleInfo) {
+			if (bundleInfo != null) {
+				bundleInfos.add(bundleInfo);
+			}
+		}
+	}
+
+	private final class SequentialLoad extends PluginLoad {
+
+		public void visit(File pluginFile, String fileName) {
+			try {
+				add(loadAndLogPluginBundleInfo(pluginFile, fileName));
+			} catch (ConfigBuildingException e) {
+				errors.add(e);
+			}
+		}
+
+		@Override
+		void finish(File directory) {
+		}
+	}
+
+	/**
+	 * Reads plugins on an executor while the directory is walked. The number
+	 * of plugins submitted and not collected yet is bounded so that memory
+	 * does not grow with the directory size when the walk is faster than the
+	 * reading.
+	 */
+	private final class PipelinedLoad extends PluginLoad {
+
+		private final CompletionService<BundleInfo> completionService;
+		private final Set<Future<BundleInfo>> pending = new HashSet<Future<BundleInfo>>();
+		private final int maxPending;
+
+		PipelinedLoad(ExecutorService executor, int maxPending) {
+			this.completionService = new ExecutorCompletionService<BundleInfo>(executor);
+			this.maxPending = maxPending;
+		}
+
+		public void visit(final File pluginFile, final String fileName) {
+			while (pending.size() >= maxPending) {
+				collect(pluginFile.getParentFile());
+			}
+			pending.add(completionService.submit(new Callable<BundleInfo>() {
+				public BundleInfo call() {
+					try {
+						return loadAndLogPluginBundleInfo(pluginFile, fileName);
+					} catch (ConfigBuildingException e) {
+						throw e;
+					} catch (RuntimeException e) {
+						throw new ConfigBuildingException("Error loading manifest information for " + pluginFile, e);
+					}
+				}
+			}));
+		}
+
+		@Override
+		void finish(File directory) {
+			while (!pending.isEmpty()) {
+				collect(directory);
+			}
+		}
+
+		private void collect(File directory) {
+			Future<BundleInfo> future;
+			try {
+				future = completionService.take();
+			} catch (InterruptedException e) {
+				for (Future<BundleInfo> pendingFuture : pending) {
+					pendingFuture.cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				throw new ConfigBuildingException("Interrupted while loading bundle informations from " + directory, e);
+			}
+			pending.remove(future);
+			try {
+				add(future.get());
+			} catch (InterruptedException e) {
+				// Cannot happen, the future is done
+				Thread.currentThread().interrupt();
+				throw new ConfigBuildingException("Interrupted while loading bundle informations from " + directory, e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof ConfigBuildingException) {
+					errors.add((ConfigBuildingException) cause);
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				} else {
+					errors.add(new ConfigBuildingException("Error loading manifest information", cause));
+				}
+			}
+		}
+	}
+
+	private BundleInfo loadAndLogPluginBundleInfo(File pluginFile, String fileName) {
+		BundleInfo bundleInfo = loadPluginBundleInfo(pluginFile, fileName);
+		if (bundleInfo == null) {
+			logger.log(Level.FINE, "Skipping non bundle plugin: " + pluginFile);
+		} else {
+			logger.log(Level.FINE, "Adding : " + bundleInfo);
+		}
+		return bundleInfo;
+	}
+
+	/**
+	 * Load a plugin file the way {@link #loadBundleInfos(File)} does, using
+	 * the cache if any.
+	 */
+	BundleInfo loadPluginBundleInfo(File pluginFile) {
+		return loadPluginBundleInfo(pluginFile, pluginFile.getName());
+	}
+
+	/**
+	 * @param pluginFile
+	 * @param fileName
+	 *            file name of the {@link BundleInfo}, may be a relative path
+	 *            for nested plugins
+	 */
+	BundleInfo loadPluginBundleInfo(File pluginFile, String fileName) {
+		if (cache == null) {
+			return readPluginBundleInfo(pluginFile, fileName);
+		}
+		File stampFile = stampFile(pluginFile);
+		BundleInfoCache.Entry entry = cache.get(pluginFile);
+		// A shared cache may hold the same jar under another name
+		if (entry != null && entry.isUpToDate(stampFile)
+				&& (entry.getBundleInfo() == null || entry.getBundleInfo().getFileName().equals(fileName))) {
+			logger.log(Level.FINE, "Using cached bundle information for " + pluginFile);
+			if (metrics != null) {
+				metrics.pluginCached();
+				metrics.pluginLoaded(entry.getBundleInfo());
+			}
+			return entry.getBundleInfo();
+		}
+		// Read size and time before the content so that a jar modified while
+		// being read is seen as changed next time
+		long length = stampFile.length();
+		long lastModified = stampFile.lastModified();
+		BundleInfo bundleInfo = readPluginBundleInfo(pluginFile, fileName);
+		cache.put(pluginFile, new BundleInfoCache.Entry(length, lastModified, bundleInfo));
+		return bundleInfo;
+	}
+
+	private BundleInfo readPluginBundleInfo(File pluginFile, String fileName) {
+		if (metrics == null) {
+			return loadBundleInfo(pluginFile, fileName, null);
+		}
+		long start = System.nanoTime();
+		BundleInfo bundleInfo = loadBundleInfo(pluginFile, fileName, metrics);
+		metrics.pluginRead(pluginFile, System.nanoTime() - start);
+		metrics.pluginLoaded(bundleInfo);
+		return bundleInfo;
+	}
+
+	private long startTime() {
+		return metrics == null ? 0 : System.nanoTime();
+	}
+
+	private void recordPhase(BuildMetrics.Phase phase, long start) {
+		if (metrics != null) {
+			metrics.addPhaseNanos(phase, System.nanoTime() - start);
+		}
+	}
+
+	private List<BundleInfo> sortBundleInfos(List<BundleInfo> bundleInfos) {
+		long start = startTime();
+		// Sort bundle infos in alphabetical order to make config.ini more
+		// readable by humans
+		Collections.sort(bundleInfos);
+		recordPhase(BuildMetrics.Phase.SORT, start);
+		return bundleInfos;
+	}
+
+	/**
+	 * Throw a single exception reporting all the errors. The first error is
+	 * used as cause and the others are added as suppressed exceptions.
+	 */
+	static void checkNoErrors(List<ConfigBuildingException> errors) {
+		if (errors.isEmpty()) {
+			return;
+		}
+		if (errors.size() == 1) {
+			throw errors.get(0);
+		}
+		StringBuilder message = new StringBuilder("Error loading manifest information for " + errors.size() + " plugins:");
+		for (ConfigBuildingException error : errors) {
+			message.append("\n\t").append(error.getMessage());
+		}
+		ConfigBuildingException exception = new ConfigBuildingException(message.toString(), errors.get(0));
+		for (int i = 1; i < errors.size(); i++) {
+			exception.addSuppressed(errors.get(i));
+		}
+		throw exception;
+	}
+
+	/**
+	 * Load BundleInfo from a jar file or from an exploded bundle directory.
+	 * <p>
+	 * For jars, unlike {@link #loadBundleInfo(InputStream, String)}, the
+	 * manifest is located through the zip central directory so only the
+	 * manifest entry is inflated whatever its position in the jar. For
+	 * directories the manifest is read directly from META-INF/MANIFEST.MF.
+	 * 
+	 * @param pluginFile
+	 * @return the {@link BundleInfo} or null if plugin does not contain a
+	 *         MANIFEST file or if plugin is not an osgi bundle or fragment
+	 *         (MANIFEST does not contain a
+	 *         {@value #MF_ATTRIBUTE_BUNDLE_SYMBOLIC_NAME} attribute)
+	 * @throws ConfigBuildingException
+	 */
+	public BundleInfo loadBundleInfo(File pluginFile) throws ConfigBuildingException {
+		checkNotNull(pluginFile);
+		return loadBundleInfo(pluginFile, pluginFile.getName(), null);
+	}
+
+	private BundleInfo loadBundleInfo(File pluginFile, String fileName, BuildMetrics metrics) throws ConfigBuildingException {
+		try {
+			if (pluginFile.isDirectory()) {
+				return bundleInfo(loadDirectoryManifest(pluginFile, metrics), fileName, true);
+			}
+			return bundleInfo(loadManifest(pluginFile, metrics), fileName, false);
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error loading manifest information for " + pluginFile, e);
+		}
+	}
+
+	/**
+	 * @return the file whose size and modification time tell whether a
+	 *         plugin changed: the plugin itself or the manifest of a
+	 *         directory bundle
+	 */
+	static File stampFile(File pluginFile) {
+		return pluginFile.isDirectory() ? manifestFile(pluginFile) : pluginFile;
+	}
+
+	private static File manifestFile(File bundleDirectory) {
+		return new File(bundleDirectory, MANIFEST_ENTRY_NAME);
+	}
+
+	private Map<String, String> loadDirectoryManifest(File bundleDirectory, BuildMetrics metrics) throws IOException {
+		File manifestFile = manifestFile(bundleDirectory);
+		if (!manifestFile.isFile()) {
+			return null;
+		}
+		if (metrics != null) {
+			metrics.addBytesRead(manifestFile.length());
+		}
+		InputStream manifestStream = new FileInputStream(manifestFile);
+		try {
+			return HEADER_SCANNER.scan(manifestStream);
+		} finally {
+			IOUtils.closeQuietly(manifestStream);
+		}
+	}
+
+	private Map<String, String> loadManifest(File jarFile, BuildMetrics metrics) throws IOException {
+		if (memoryMapped) {
+			byte[] manifest;
+			try {
+				manifest = MappedJarReader.readEntry(jarFile, MANIFEST_ENTRY_NAME);
+			} catch (IOException e) {
+				logger.log(Level.FINE, "Cannot read memory mapped " + jarFile + ", falling back to ZipFile", e);
+				return loadManifestWithZipFile(jarFile, metrics);
+			} catch (InternalError e) {
+				// Thrown on access to a mapped file truncated meanwhile
+				logger.log(Level.FINE, "Cannot read memory mapped " + jarFile + ", falling back to ZipFile", e);
+				return loadManifestWithZipFile(jarFile, metrics);
+			}
+			if (manifest == null) {
+				return null;
+			}
+			if (metrics != null) {
+				metrics.addBytesRead(manifest.length);
+			}
+			return HEADER_SCANNER.scan(manifest, 0, manifest.length);
+		}
+		return loadManifestWithZipFile(jarFile, metrics);
+	}
+
+	private Map<String, String> loadManifestWithZipFile(File jarFile, BuildMetrics metrics) throws IOException {
+		ZipFile zipFile;
+		try {
+			zipFile = new ZipFile(jarFile);
+		} catch (ZipException e) {
+			// Same as the streaming case where a non zip file has no entries
+			logger.log(Level.FINE, "Not a zip file: " + jarFile);
+			return null;
+		}
+		try {
+			ZipEntry entry = zipFile.getEntry(MANIFEST_ENTRY_NAME);
+			if (entry == null) {
+				return null;
+			}
+			if (metrics != null && entry.getSize() != -1) {
+				metrics.addBytesRead(entry.getSize());
+			}
+			InputStream manifestStream = zipFile.getInputStream(entry);
+			try {
+				return HEADER_SCANNER.scan(manifestStream);
+			} finally {
+				IOUtils.closeQuietly(manifestStream);
+			}
+		} finally {
+			IOUtils.closeQuietly(zipFile);
+		}
+	}
+
+	private Map<String, String> loadManifest(InputStream jarStream, BuildMetrics metrics) throws IOException {
+		ZipInputStream zis = null;
+		try {
+			zis = new ZipInputStream(jarStream);
+
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null) {
+				if (entry.getName().equals(MANIFEST_ENTRY_NAME)) {
+					Map<String, String> headers = HEADER_SCANNER.scan(zis);
+					if (metrics != null && entry.getSize() != -1) {
+						metrics.addBytesRead(entry.getSize());
+					}
+					return headers;
+				}
+			}
+			return null;
+		} finally {
+			IOUtils.closeQuietly(zis);
+		}
+	}
+
+	private String symbolicName(Map<String, String> headers) {
+		String symbolicName = headers.get(MF_ATTRIBUTE_BUNDLE_SYMBOLIC_NAME);
+		if (symbolicName == null) {
+			return null;
+		}
+
+		// Remove the configuration part (;singleton:=true...)
+		int semColonIndex = symbolicName.indexOf(";");
+		if (semColonIndex != -1) {
+			symbolicName = symbolicName.substring(0, semColonIndex);
+		}
+		symbolicName = symbolicName.trim();
+		return symbolicName;
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Offline check of what equinox will be able to resolve, so that bundles
+ * failing resolution can be reported or left out of osgi.bundles instead of
+ * being retried by the framework at each start.
+ * <p>
+ * A bundle is unresolvable when a mandatory Require-Bundle or Import-Package
+ * has no resolvable provider in its version range; a fragment when its host
+ * is absent or unresolvable or when one of its own mandatory requirements
+ * fails. Packages exported by fragments are provided by the fragment, as
+ * long as it is resolvable. Removing a bundle can make its dependents
+ * unresolvable in turn: the resolution is iterated to a fixed point.
+ * <p>
+ * The framework provides system.bundle and the packages of the Java runtime
+ * (java.*, javax.xml.*, org.w3c.dom.*, org.xml.sax.*...), which are always
+ * considered available. When the framework bundle (org.eclipse.osgi) is part
+ * of the bundles it is the system.bundle: its exports, such as
+ * org.osgi.framework, satisfy imports, Require-Bundle and Fragment-Host may
+ * name it either way and it is always resolved. Uses constraints, singletons, execution environments and
+ * Fragment-Host version ranges are not checked: equinox may still reject a
+ * bundle found resolvable here.
+ *
+ * @author sarod
+ *
+ */
+public class BundleResolver {
+
+	static final String SYSTEM_BUNDLE = "system.bundle";
+
+	static final String FRAMEWORK_BUNDLE = "org.eclipse.osgi";
+
+	/**
+	 * Packages exported by the system bundle from the Java runtime rather
+	 * than from a manifest
+	 */
+	private static final String[] RUNTIME_PACKAGE_PREFIXES = { "java.", "javax.accessibility", "javax.annotation.processing",
+			"javax.crypto", "javax.imageio", "javax.lang.model", "javax.management", "javax.naming", "javax.net",
+			"javax.print", "javax.script", "javax.security", "javax.sound", "javax.sql", "javax.swing", "javax.tools",
+			"javax.transaction.xa", "javax.xml", "org.ietf.jgss", "org.w3c.dom", "org.xml.sax", "com.sun.", "sun.", "jdk." };
+
+	public BundleResolver() {
+	}
+
+	/**
+	 * @param bundleInfos
+	 *            the bundles and fragments to install, including the
+	 *            framework bundle when available
+	 * @return the resolvable bundles and the reason why the others are not
+	 * @throws ConfigBuildingException
+	 *             if a manifest header or version range is malformed
+	 */
+	public Resolution resolve(Collection<BundleInfo> bundleInfos) {
+		checkNotNull(bundleInfos);
+		List<BundleInfo> all = new ArrayList<BundleInfo>(bundleInfos);
+		int n = all.size();
+
+		Map<String, List<Integer>> bundlesByName = new HashMap<String, List<Integer>>();
+		Map<String, List<Provider>> exportersByPackage = new HashMap<String, List<Provider>>();
+		for (int node = 0; node < n; node++) {
+			BundleInfo bundleInfo = all.get(node);
+			if (!bundleInfo.isFragment()) {
+				add(bundlesByName, bundleInfo.getBundleName(), node);
+				if (isFramework(bundleInfo)) {
+					add(bundlesByName, SYSTEM_BUNDLE, node);
+				}
+			}
+			for (ExportedPackage exportedPackage : bundleInfo.getExportedPackages()) {
+				List<Provider> exporters = exportersByPackage.get(exportedPackage.getName());
+				if (exporters == null) {
+					exporters = new ArrayList<Provider>(1);
+					exportersByPackage.put(exportedPackage.getName(), exporters);
+				}
+				exporters.add(new Provider(node, exportedPackage.getVersion()));
+			}
+		}
+
+		// Each constraint counts its resolvable providers, a node dies when
+		// one of its constraints has none left
+		List<List<Constraint>> dependentsByProvider = new ArrayList<List<Constraint>>(n);
+		for (int node = 0; node < n; node++) {
+			dependentsByProvider.add(new ArrayList<Constraint>(0));
+		}
+		List<Constraint> constraints = new ArrayList<Constraint>();
+		for (int node = 0; node < n; node++) {
+			BundleInfo bundleInfo = all.get(node);
+			if (isFramework(bundleInfo)) {
+				continue;
+			}
+			if (bundleInfo.isFragment() && !isSystemBundle(bundlesByName, bundleInfo.getHostName())) {
+				List<Integer> hosts = bundlesByName.get(bundleInfo.getHostName());
+				constraints.add(new Constraint(node, "host " + bundleInfo.getHostName(), hosts == null ? new ArrayList<Integer>(0)
+						: hosts));
+			}
+			for (Requirement requirement : bundleInfo.getRequiredBundles()) {
+				if (!requirement.isOptional() && !isSystemBundle(bundlesByName, requirement.getName())) {
+					VersionRange range = versionRange(bundleInfo, requirement);
+					List<Integer> providers = new ArrayList<Integer>(1);
+					List<Integer> candidates = bundlesByName.get(requirement.getName());
+					if (candidates != null) {
+						for (Integer candidate : candidates) {
+							if (range.includes(all.get(candidate).getVersion())) {
+								providers.add(candidate);
+							}
+						}
+					}
+					constraints.add(new Constraint(node, "Require-Bundle " + requirement, providers));
+				}
+			}
+			for (Requirement requirement : bundleInfo.getImportedPackages()) {
+				if (!requirement.isOptional() && !isRuntimePackage(requirement.getName())) {
+					VersionRange range = versionRange(bundleInfo, requirement);
+					List<Integer> providers = new ArrayList<Integer>(1);
+					List<Provider> exporters = exportersByPackage.get(requirement.getName());
+					if (exporters != null) {
+						for (Provider exporter : exporters) {
+							if (range.includes(exporter.version)) {
+								providers.add(exporter.node);
+							}
+						}
+					}
+					constraints.add(new Constraint(node, "Import-Package " + requirement, providers));
+				}
+			}
+		}
+
+		String[] reasons = new String[n];
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		for (Constraint constraint : constraints) {
+			for (Integer provider : constraint.providers) {
+				dependentsByProvider.get(provider).add(constraint);
+			}
+			if (constraint.resolvableProviderCount == 0 && reasons[constraint.node] == null) {
+				reasons[constraint.node] = "missing " + constraint.description;
+				queue[tail++] = constraint.node;
+			}
+		}
+		while (head < tail) {
+			int dead = queue[head++];
+			for (Constraint constraint : dependentsByProvider.get(dead)) {
+				constraint.resolvableProviderCount--;
+				if (constraint.resolvableProviderCount == 0 && reasons[constraint.node] == null) {
+					reasons[constraint.node] = "unresolvable " + constraint.description + " ("
+							+ providerNames(all, constraint.providers) + ")";
+					queue[tail++] = constraint.node;
+				}
+			}
+		}
+
+		List<BundleInfo> resolved = new ArrayList<BundleInfo>(n - tail);
+		Map<BundleInfo, String> unresolved = new LinkedHashMap<BundleInfo, String>();
+		for (int node = 0; node < n; node++) {
+			if (reasons[node] == null) {
+				resolved.add(all.get(node));
+			} else {
+				unresolved.put(all.get(node), reasons[node]);
+			}
+		}
+		return new Resolution(resolved, unresolved);
+	}
+
+	private static VersionRange versionRange(BundleInfo bundleInfo, Requirement requirement) {
+		try {
+			return VersionRange.parseVersionRange(requirement.getVersionRange());
+		} catch (IllegalArgumentException e) {
+			throw new ConfigBuildingException("Invalid version range of " + requirement + " in " + bundleInfo.getFileName(), e);
+		}
+	}
+
+	private static boolean isFramework(BundleInfo bundleInfo) {
+		return !bundleInfo.isFragment() && FRAMEWORK_BUNDLE.equals(bundleInfo.getBundleName());
+	}
+
+	/**
+	 * @return true for system.bundle when the framework bundle is not part of
+	 *         the bundles, the framework providing it anyway
+	 */
+	private static boolean isSystemBundle(Map<String, List<Integer>> bundlesByName, String bundleName) {
+		return SYSTEM_BUNDLE.equals(bundleName) && !bundlesByName.containsKey(SYSTEM_BUNDLE);
+	}
+
+	static boolean isRuntimePackage(String packageName) {
+		for (String prefix : RUNTIME_PACKAGE_PREFIXES) {
+			if (packageName.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String providerNames(List<BundleInfo> all, List<Integer> providers) {
+		StringBuilder names = new StringBuilder();
+		for (Integer provider : providers) {
+			if (names.length() > 0) {
+				names.append(", ");
+			}
+			names.append(all.get(provider).getBundleName()).append(' ').append(all.get(provider).getBundleVersion());
+		}
+		return names.toString();
+	}
+
+	private static void add(Map<String, List<Integer>> multimap, String key, int value) {
+		List<Integer> values = multimap.get(key);
+		if (values == null) {
+			values = new ArrayList<Integer>(1);
+			multimap.put(key, values);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * A bundle exporting a package at a version
+	 */
+	private static final class Provider {
+
+		private final int node;
+		private final BundleVersion version;
+
+		Provider(int node, BundleVersion version) {
+			this.node = node;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * A mandatory requirement of a bundle and the bundles able to satisfy it
+	 */
+	private static final class Constraint {
+
+		private final int node;
+		private final String description;
+		private final List<Integer> providers;
+		private int resolvableProviderCount;
+
+		Constraint(int node, String description, List<Integer> providers) {
+			this.node = node;
+			this.description = description;
+			this.providers = providers;
+			this.resolvableProviderCount = providers.size();
+		}
+	}
+}
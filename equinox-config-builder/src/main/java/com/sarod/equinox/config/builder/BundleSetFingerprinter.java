@@ -0,0 +1,433 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sarod.equinox.config.builder.utils.DaemonThreadFactory;
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Compute a stable fingerprint of a {@link ConfigDescriptor}: a SHA-256 over
+ * the format, the default start level and, for each bundle in sorted order,
+ * its name, version, location, start level, whether it is started and the
+ * SHA-256 of its content. Two descriptors have the same fingerprint only if
+ * equinox would install the same bundles the same way, so a launcher can
+ * reuse the configuration area instead of starting with -clean.
+ * <p>
+ * Hashing the plugin contents is the expensive part: it is done in parallel
+ * and incrementally, the content hashes being kept in a hash cache file
+ * keyed by plugin file name with the size and modification time of the
+ * plugin. Only the plugins that changed since the previous computation are
+ * hashed again. The content of an exploded bundle is the sorted list of its
+ * files with their length and contents, its stamp being the sum of the sizes,
+ * the latest modification time, the number and a hash of the paths of its
+ * files so that renaming a file is seen as a change.
+ *
+ * @author sarod
+ *
+ */
+public class BundleSetFingerprinter {
+
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * First line of the hash cache file, must change each time the format or
+	 * the hashing changes
+	 */
+	private static final String HASH_CACHE_HEADER = "#bundle-content-hashes 2";
+
+	private static final Logger LOGGER = Logger.getLogger(BundleSetFingerprinter.class.getName());
+
+	private final File pluginsDirectory;
+
+	private int threadCount = 1;
+
+	private ExecutorService executor;
+
+	private File hashCacheFile;
+
+	private int hashedPluginCount;
+
+	/**
+	 * @param pluginsDirectory
+	 *            directory the file names of the bundles are relative to
+	 */
+	public BundleSetFingerprinter(File pluginsDirectory) {
+		this.pluginsDirectory = checkNotNull(pluginsDirectory);
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Set the number of threads hashing plugins. Defaults to 1 meaning
+	 * plugins are hashed sequentially.
+	 *
+	 * @param threadCount
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount <= 0) {
+			throw new IllegalArgumentException("threadCount should be a strictly positive integer.");
+		}
+		this.threadCount = threadCount;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Set an executor used to hash plugins instead of threads created for
+	 * each computation. The executor is not shutdown by the fingerprinter.
+	 *
+	 * @param executor
+	 *            the executor or null to use {@link #getThreadCount()}
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public File getHashCacheFile() {
+		return hashCacheFile;
+	}
+
+	/**
+	 * @param hashCacheFile
+	 *            file keeping the content hashes between computations or
+	 *            null to hash all the plugins each time
+	 */
+	public void setHashCacheFile(File hashCacheFile) {
+		this.hashCacheFile = hashCacheFile;
+	}
+
+	/**
+	 * @return number of plugins whose content was hashed by the last
+	 *         {@link #fingerprint(ConfigDescriptor, ConfigFormat)}, the other
+	 *         ones coming from the hash cache
+	 */
+	public int getHashedPluginCount() {
+		return hashedPluginCount;
+	}
+
+	/**
+	 * @param descriptor
+	 * @param format
+	 * @return the fingerprint as lower case hexadecimal
+	 * @throws ConfigBuildingException
+	 *             if a plugin cannot be read
+	 */
+	public String fingerprint(ConfigDescriptor descriptor, ConfigFormat format) throws ConfigBuildingException {
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>(descriptor.getBundleInfos());
+		Collections.sort(bundleInfos);
+		List<String> contentHashes = contentHashes(bundleInfos);
+
+		MessageDigest digest = newDigest();
+		update(digest, "format=" + format);
+		update(digest, "defaultStartLevel=" + descriptor.getDefaultStartLevel());
+		for (int i = 0; i < bundleInfos.size(); i++) {
+			BundleInfo bundleInfo = bundleInfos.get(i);
+			Integer startLevel = descriptor.getBundleStartLevels().get(bundleInfo.getBundleName());
+			boolean start = !bundleInfo.isFragment()
+					&& !descriptor.getInstallOnlyBundleNames().contains(bundleInfo.getBundleName());
+			update(digest, bundleInfo.getBundleName() + "," + bundleInfo.getBundleVersion() + "," + bundleInfo.getFileName()
+					+ "," + (bundleInfo.isFragment() ? null : startLevel) + "," + start + "," + contentHashes.get(i));
+		}
+		return toHex(digest.digest());
+	}
+
+	private List<String> contentHashes(List<BundleInfo> bundleInfos) {
+		Map<String, CachedHash> cachedHashes = loadHashCache();
+		Map<String, CachedHash> usedHashes = new ConcurrentHashMap<String, CachedHash>();
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>(bundleInfos.size());
+		for (BundleInfo bundleInfo : bundleInfos) {
+			tasks.add(new ContentHashTask(bundleInfo.getFileName(), cachedHashes, usedHashes));
+		}
+		List<String> hashes = new ArrayList<String>(tasks.size());
+		if (executor == null && threadCount <= 1) {
+			for (Callable<String> task : tasks) {
+				hashes.add(call(task));
+			}
+		} else {
+			ExecutorService hashExecutor = executor == null ? Executors.newFixedThreadPool(threadCount,
+					new DaemonThreadFactory("bundle-set-fingerprinter")) : executor;
+			try {
+				List<Future<String>> futures = new ArrayList<Future<String>>(tasks.size());
+				for (Callable<String> task : tasks) {
+					futures.add(hashExecutor.submit(task));
+				}
+				for (Future<String> future : futures) {
+					hashes.add(get(future));
+				}
+			} finally {
+				if (hashExecutor != executor) {
+					hashExecutor.shutdownNow();
+				}
+			}
+		}
+		int hashed = 0;
+		for (Map.Entry<String, CachedHash> entry : usedHashes.entrySet()) {
+			if (cachedHashes.get(entry.getKey()) != entry.getValue()) {
+				hashed++;
+			}
+		}
+		hashedPluginCount = hashed;
+		if (hashed > 0 || usedHashes.size() != cachedHashes.size()) {
+			saveHashCache(usedHashes);
+		}
+		return hashes;
+	}
+
+	private static String call(Callable<String> task) {
+		try {
+			return task.call();
+		} catch (ConfigBuildingException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ConfigBuildingException("Error hashing plugin", e);
+		}
+	}
+
+	private static String get(Future<String> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConfigBuildingException("Interrupted while hashing plugins", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ConfigBuildingException) {
+				throw (ConfigBuildingException) e.getCause();
+			}
+			throw new ConfigBuildingException("Error hashing plugin", e.getCause());
+		}
+	}
+
+	private final class ContentHashTask implements Callable<String> {
+
+		private final String fileName;
+		private final Map<String, CachedHash> cachedHashes;
+		private final Map<String, CachedHash> usedHashes;
+
+		ContentHashTask(String fileName, Map<String, CachedHash> cachedHashes, Map<String, CachedHash> usedHashes) {
+			this.fileName = fileName;
+			this.cachedHashes = cachedHashes;
+			this.usedHashes = usedHashes;
+		}
+
+		public String call() {
+			File pluginFile = new File(pluginsDirectory, fileName);
+			List<File> files = new ArrayList<File>();
+			listFiles(pluginFile, files);
+			String stamp = contentStamp(pluginFile, files);
+			CachedHash cachedHash = cachedHashes.get(fileName);
+			if (cachedHash == null || !cachedHash.stamp.equals(stamp)) {
+				cachedHash = new CachedHash(stamp, hash(pluginFile, files));
+			}
+			usedHashes.put(fileName, cachedHash);
+			return cachedHash.hash;
+		}
+	}
+
+	/**
+	 * @return what tells whether the content of a plugin changed without
+	 *         reading it: for an exploded bundle the sum of the sizes, the
+	 *         latest modification time, the number and a hash of the paths of
+	 *         its files
+	 * @throws ConfigBuildingException
+	 *             if a plugin directory cannot be listed
+	 */
+	static String contentStamp(File pluginFile) {
+		List<File> files = new ArrayList<File>();
+		listFiles(pluginFile, files);
+		return contentStamp(pluginFile, files);
+	}
+
+	private static String contentStamp(File pluginFile, List<File> files) {
+		long length = 0;
+		long lastModified = 0;
+		MessageDigest paths = newDigest();
+		for (File file : files) {
+			length += file.length();
+			lastModified = Math.max(lastModified, file.lastModified());
+			if (file != pluginFile) {
+				update(paths, relativePath(pluginFile, file));
+			}
+		}
+		return length + "," + lastModified + "," + files.size() + "," + toHex(paths.digest()).substring(0, 16);
+	}
+
+	private static String relativePath(File pluginFile, File file) {
+		return file.getPath().substring(pluginFile.getPath().length() + 1).replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * @return the files of an exploded bundle sorted by path, the file itself
+	 *         for a jar
+	 */
+	private static void listFiles(File file, List<File> files) {
+		if (!file.isDirectory()) {
+			files.add(file);
+			return;
+		}
+		File[] children = file.listFiles();
+		if (children == null) {
+			throw new ConfigBuildingException("Cannot list plugin directory: " + file);
+		}
+		Arrays.sort(children);
+		for (File child : children) {
+			listFiles(child, files);
+		}
+	}
+
+	private static String hash(File pluginFile, List<File> files) {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[8192];
+		for (File file : files) {
+			if (file != pluginFile) {
+				update(digest, relativePath(pluginFile, file));
+			}
+			// The length delimits the content of each file
+			update(digest, String.valueOf(file.length()));
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			} catch (IOException e) {
+				throw new ConfigBuildingException("Error hashing plugin file: " + file, e);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Hash cache file layout: a header line then one
+	 * <code>&lt;stamp&gt;\t&lt;hash&gt;\t&lt;fileName&gt;</code> line per
+	 * plugin, see {@link #contentStamp(File)}. A missing or invalid file is ignored.
+	 */
+	private Map<String, CachedHash> loadHashCache() {
+		Map<String, CachedHash> cachedHashes = new ConcurrentHashMap<String, CachedHash>();
+		if (hashCacheFile == null || !hashCacheFile.isFile()) {
+			return cachedHashes;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(hashCacheFile), UTF_8));
+			if (!HASH_CACHE_HEADER.equals(reader.readLine())) {
+				throw new IOException("unsupported header");
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 3);
+				if (fields.length != 3) {
+					throw new IOException("invalid line " + line);
+				}
+				cachedHashes.put(fields[2], new CachedHash(fields[0], fields[1]));
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Ignoring invalid hash cache " + hashCacheFile + ": " + e.getMessage());
+			cachedHashes.clear();
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+		return cachedHashes;
+	}
+
+	/**
+	 * Save the hashes used by the last computation. Errors are logged and
+	 * ignored as the cache is only an optimization.
+	 */
+	private void saveHashCache(Map<String, CachedHash> hashes) {
+		if (hashCacheFile == null) {
+			return;
+		}
+		File tmpFile = new File(hashCacheFile.getPath() + ".tmp");
+		Writer out = null;
+		try {
+			hashCacheFile.getAbsoluteFile().getParentFile().mkdirs();
+			out = new OutputStreamWriter(new FileOutputStream(tmpFile), UTF_8);
+			out.write(HASH_CACHE_HEADER + "\n");
+			for (Map.Entry<String, CachedHash> entry : hashes.entrySet()) {
+				CachedHash hash = entry.getValue();
+				out.write(hash.stamp + "\t" + hash.hash + "\t" + entry.getKey() + "\n");
+			}
+			out.close();
+			if (!tmpFile.renameTo(hashCacheFile) && !(hashCacheFile.delete() && tmpFile.renameTo(hashCacheFile))) {
+				throw new IOException("Cannot rename " + tmpFile + " to " + hashCacheFile);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Error saving hash cache " + hashCacheFile, e);
+			IOUtils.closeQuietly(out);
+			tmpFile.delete();
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every java platform supports SHA-256
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(UTF_8));
+		digest.update((byte) '\n');
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Content hash of a plugin with the {@link #contentStamp(File)} it was
+	 * computed for. This class is immutable.
+	 */
+	private static final class CachedHash {
+
+		private final String stamp;
+		private final String hash;
+
+		CachedHash(String stamp, String hash) {
+			this.stamp = stamp;
+			this.hash = hash;
+		}
+	}
+
+}
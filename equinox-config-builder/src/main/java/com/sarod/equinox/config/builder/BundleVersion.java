@@ -0,0 +1,137 @@
+package com.sarod.equinox.config.builder;
+
+/**
+ * OSGi bundle version: major.minor.micro.qualifier. This class is immutable.
+ * <p>
+ * Versions are compared numerically on major, minor and micro then
+ * lexicographically on qualifier as specified by OSGi.
+ * 
+ * @author sarod
+ *
+ */
+public final class BundleVersion implements Comparable<BundleVersion> {
+
+	public static final BundleVersion EMPTY = new BundleVersion(0, 0, 0, "");
+
+	private final int major;
+	private final int minor;
+	private final int micro;
+	private final String qualifier;
+
+	public BundleVersion(int major, int minor, int micro, String qualifier) {
+		if (major < 0 || minor < 0 || micro < 0) {
+			throw new IllegalArgumentException("Negative version component " + major + "." + minor + "." + micro);
+		}
+		if (qualifier == null) {
+			qualifier = "";
+		}
+		for (int i = 0; i < qualifier.length(); i++) {
+			char c = qualifier.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-')) {
+				throw new IllegalArgumentException("Invalid character '" + c + "' in version qualifier " + qualifier);
+			}
+		}
+		this.major = major;
+		this.minor = minor;
+		this.micro = micro;
+		this.qualifier = qualifier;
+	}
+
+	/**
+	 * Parse an OSGi version.
+	 * 
+	 * @param version
+	 *            the version to parse, null or empty string means
+	 *            {@link #EMPTY}
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if version is not a valid OSGi version
+	 */
+	public static BundleVersion parseVersion(String version) {
+		if (version == null) {
+			return EMPTY;
+		}
+		version = version.trim();
+		if (version.length() == 0) {
+			return EMPTY;
+		}
+		int[] numbers = new int[3];
+		int start = 0;
+		for (int i = 0; i < 3; i++) {
+			int end = version.indexOf('.', start);
+			if (end == -1) {
+				end = version.length();
+			}
+			numbers[i] = parseNumber(version, start, end);
+			if (end == version.length()) {
+				return new BundleVersion(numbers[0], numbers[1], numbers[2], "");
+			}
+			start = end + 1;
+		}
+		return new BundleVersion(numbers[0], numbers[1], numbers[2], version.substring(start));
+	}
+
+	private static int parseNumber(String version, int start, int end) {
+		if (start == end) {
+			throw new IllegalArgumentException("Invalid version " + version);
+		}
+		try {
+			return Integer.parseInt(version.substring(start, end));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid version " + version, e);
+		}
+	}
+
+	public int getMajor() {
+		return major;
+	}
+
+	public int getMinor() {
+		return minor;
+	}
+
+	public int getMicro() {
+		return micro;
+	}
+
+	public String getQualifier() {
+		return qualifier;
+	}
+
+	public int compareTo(BundleVersion other) {
+		if (major != other.major) {
+			return major < other.major ? -1 : 1;
+		}
+		if (minor != other.minor) {
+			return minor < other.minor ? -1 : 1;
+		}
+		if (micro != other.micro) {
+			return micro < other.micro ? -1 : 1;
+		}
+		return qualifier.compareTo(other.qualifier);
+	}
+
+	@Override
+	public int hashCode() {
+		return ((major * 31 + minor) * 31 + micro) * 31 + qualifier.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BundleVersion)) {
+			return false;
+		}
+		BundleVersion other = (BundleVersion) obj;
+		return major == other.major && minor == other.minor && micro == other.micro && qualifier.equals(other.qualifier);
+	}
+
+	@Override
+	public String toString() {
+		String version = major + "." + minor + "." + micro;
+		return qualifier.length() == 0 ? version : version + "." + qualifier;
+	}
+
+}
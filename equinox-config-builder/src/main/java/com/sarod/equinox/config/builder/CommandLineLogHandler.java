@@ -0,0 +1,107 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.PrintStream;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Log handler of the command line writing "LEVEL: message" lines to the
+ * standard error.
+ * <p>
+ * The default console handler formats the date in the default time zone,
+ * walks the stack to find the logging class and localizes the level name.
+ * Loading and initializing what it needs takes longer than generating a
+ * small config.ini, this handler only uses classes every JVM already
+ * loaded. Parameters are substituted to their {0}, {1}... placeholders
+ * without the number and date formats of {@link java.text.MessageFormat}.
+ *
+ * @author sarod
+ *
+ */
+final class CommandLineLogHandler extends Handler {
+
+	private final PrintStream out;
+
+	CommandLineLogHandler(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Replace the handlers of the root logger by a handler logging INFO and
+	 * above to the standard error, unless the logging configuration was
+	 * customized with java.util.logging.config.file or
+	 * java.util.logging.config.class.
+	 */
+	static void install() {
+		if (System.getProperty("java.util.logging.config.file") != null
+				|| System.getProperty("java.util.logging.config.class") != null) {
+			return;
+		}
+		LogManager.getLogManager().reset();
+		Logger rootLogger = Logger.getLogger("");
+		rootLogger.setLevel(Level.INFO);
+		rootLogger.addHandler(new CommandLineLogHandler(System.err));
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+		if (!isLoggable(record)) {
+			return;
+		}
+		StringBuilder message = new StringBuilder();
+		message.append(record.getLevel().getName()).append(": ");
+		appendMessage(message, record.getMessage(), record.getParameters());
+		synchronized (out) {
+			out.println(message);
+			if (record.getThrown() != null) {
+				record.getThrown().printStackTrace(out);
+			}
+		}
+	}
+
+	private static void appendMessage(StringBuilder builder, String message, Object[] parameters) {
+		if (message == null || parameters == null || parameters.length == 0) {
+			builder.append(message);
+			return;
+		}
+		int start = 0;
+		int open;
+		while ((open = message.indexOf('{', start)) != -1) {
+			int close = message.indexOf('}', open);
+			if (close == -1) {
+				break;
+			}
+			builder.append(message, start, open);
+			int index = parameterIndex(message.substring(open + 1, close));
+			if (index >= 0 && index < parameters.length) {
+				builder.append(parameters[index]);
+			} else {
+				builder.append(message, open, close + 1);
+			}
+			start = close + 1;
+		}
+		builder.append(message, start, message.length());
+	}
+
+	private static int parameterIndex(String placeholder) {
+		try {
+			return Integer.parseInt(placeholder);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void flush() {
+		out.flush();
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+}
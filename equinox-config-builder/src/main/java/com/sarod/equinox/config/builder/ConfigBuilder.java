@@ -0,0 +1,1229 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+import com.sarod.equinox.config.builder.utils.Preconditions;
+
+public final class ConfigBuilder {
+
+	private static final String CONFIG_INI_FILE = "config.ini";
+
+	private static final String CONFIGURATION_DIR = "configuration";
+
+	private static final String BUNDLE_CACHE_FILE = ".bundle-cache";
+
+	private static final String REPORT_FILE = "config-report.json";
+
+	private static final String DROPINS_DIR = "dropins";
+
+	private static final String FINGERPRINT_FILE = "config.fingerprint";
+
+	private static final String CONTENT_HASH_CACHE_FILE = ".content-hashes";
+
+	/**
+	 * Suffix of the configuration directory written next to a product
+	 * archive
+	 */
+	private static final String ARCHIVE_CONFIGURATION_DIR_SUFFIX = "-" + CONFIGURATION_DIR;
+
+	protected final static Logger LOGGER = Logger.getLogger(ConfigBuilder.class.getName());
+
+	public static final int DEFAULT_DEFAULT_START_LEVEL = 4;
+
+	/**
+	 * Parallel activation threads meaning one thread per available processor
+	 */
+	public static final int AUTO_PARALLEL_ACTIVATION_THREADS = -1;
+
+	static final String START_LEVEL_THREAD_COUNT_PROPERTY = "equinox.start.level.thread.count";
+
+	static final String START_LEVEL_RESTRICT_PARALLEL_PROPERTY = "equinox.start.level.restrict.parallel";
+
+	private final File eclipseDirectory;
+	private final ProductArchive productArchive;
+	private final int defaultStartLevel;
+	private final Map<String, Integer> bundleStartLevels;
+
+	private BundleInfoLoader bundleInfoLoader;
+	private ConfigWriter configWriter;
+
+	private boolean bundleCacheEnabled;
+
+	private boolean scanDropins;
+
+	private boolean fingerprintEnabled;
+
+	private boolean updateArchive;
+
+	private BundleInfoCache sharedBundleInfoCache;
+
+	private DuplicateBundlePolicy duplicateBundlePolicy = DuplicateBundlePolicy.KEEP_ALL;
+
+	private ResolutionPolicy resolutionPolicy = ResolutionPolicy.NONE;
+
+	private boolean autoStartLevels;
+
+	private StartPolicy startPolicy = StartPolicy.START_ALL;
+
+	private StartupProfile startupProfile;
+
+	private long slowActivationMillis = StartLevelPlanner.DEFAULT_SLOW_ACTIVATION_MILLIS;
+
+	private int parallelActivationThreads;
+
+	public static Map<String, Integer> startLevelsMapFromPropertyFile(File bundleStartLevelsPropertyFile) {
+		Properties bundleStartLevelsProperties = new Properties();
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(bundleStartLevelsPropertyFile);
+			bundleStartLevelsProperties.load(fis);
+			return startLevelsMapFromProperties(bundleStartLevelsProperties);
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error loading bundleStartLevelsPropertyFile: " + bundleStartLevelsPropertyFile, e);
+		} finally {
+			IOUtils.closeQuietly(fis);
+		}
+	}
+
+	public static Map<String, Integer> startLevelsMapFromProperties(Properties bundleStartLevelsProperties) {
+		Map<String, Integer> bundleStartLevelsMap = new HashMap<String, Integer>();
+		for (Map.Entry<Object, Object> entry : bundleStartLevelsProperties.entrySet()) {
+			try {
+				int startLevel = Integer.parseInt((String) entry.getValue());
+				bundleStartLevelsMap.put((String) entry.getKey(), startLevel);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Properties contain invalid start level " + entry.getValue() + "for bundle: "
+						+ entry.getKey());
+			}
+		}
+		return bundleStartLevelsMap;
+	}
+
+	public ConfigBuilder(File eclipseDirectory) {
+		this(eclipseDirectory, DEFAULT_DEFAULT_START_LEVEL);
+	}
+
+	public ConfigBuilder(File eclipseDirectory, int defaultStartLevel) {
+		this(eclipseDirectory, defaultStartLevel, Collections.<String, Integer> emptyMap());
+	}
+
+	public ConfigBuilder(File eclipseDirectory, int defaultStartLevel, Map<String, Integer> bundleStartLevels) {
+		Preconditions.checkNotNull(eclipseDirectory);
+		if (eclipseDirectory.isFile() && ProductArchive.isProductArchive(eclipseDirectory)) {
+			if (!eclipseDirectory.canRead()) {
+				throw new IllegalArgumentException("Product archive " + eclipseDirectory + " is not readable.");
+			}
+			this.productArchive = new ProductArchive(eclipseDirectory);
+		} else {
+			if (!eclipseDirectory.exists() || !eclipseDirectory.isDirectory() || !eclipseDirectory.canRead()) {
+				throw new IllegalArgumentException("eclipseDirectory " + eclipseDirectory + " is not a readable directory.");
+			}
+			this.productArchive = null;
+		}
+		this.eclipseDirectory = eclipseDirectory;
+
+		if (defaultStartLevel <= 0) {
+			throw new IllegalArgumentException("deafultStartLevel should be a stritcly positive integer.");
+		}
+		this.defaultStartLevel = defaultStartLevel;
+		if (bundleStartLevels == null) {
+			throw new NullPointerException("bundleStartLevels should not be null");
+		}
+		// Defensive copy
+		this.bundleStartLevels = Collections.unmodifiableMap(new HashMap<String, Integer>(bundleStartLevels));
+
+		this.bundleInfoLoader = new BundleInfoLoader();
+		this.configWriter = new ConfigWriter();
+	}
+
+	public File getEclipseDirectory() {
+		return eclipseDirectory;
+	}
+
+	/**
+	 * @return the product archive when the eclipse directory given to the
+	 *         constructor is a zip or tar.gz file, null otherwise
+	 */
+	public ProductArchive getProductArchive() {
+		return productArchive;
+	}
+
+	public boolean isUpdateArchive() {
+		return updateArchive;
+	}
+
+	/**
+	 * When building from a zip product archive, also add the generated
+	 * configuration files to the archive, in the configuration directory of
+	 * the eclipse directory of the archive. They are always written next to
+	 * the archive, in &lt;archive name&gt;-configuration.
+	 * 
+	 * @param updateArchive
+	 * @throws IllegalArgumentException
+	 *             if the builder is not building from a zip archive
+	 */
+	public void setUpdateArchive(boolean updateArchive) {
+		if (updateArchive && (productArchive == null || productArchive.getType() != ProductArchive.Type.ZIP)) {
+			throw new IllegalArgumentException("Only zip product archives can be updated: " + eclipseDirectory);
+		}
+		this.updateArchive = updateArchive;
+	}
+
+	public Map<String, Integer> getBundleStartLevels() {
+		return bundleStartLevels;
+	}
+
+	public int getDefaultStartLevel() {
+		return defaultStartLevel;
+	}
+
+	public static int getDefaultDefaultStartLevel() {
+		return DEFAULT_DEFAULT_START_LEVEL;
+	}
+
+	public int getScanThreads() {
+		return bundleInfoLoader.getThreadCount();
+	}
+
+	/**
+	 * Set the number of threads used to read the plugin jars. Defaults to 1
+	 * meaning jars are read sequentially.
+	 * 
+	 * @param scanThreads
+	 */
+	public void setScanThreads(int scanThreads) {
+		bundleInfoLoader.setThreadCount(scanThreads);
+	}
+
+	/**
+	 * Set an executor used to read the plugin jars instead of threads created
+	 * for each build. The executor is not shutdown by the builder.
+	 * 
+	 * @param scanExecutor
+	 *            the executor or null to use {@link #getScanThreads()}
+	 */
+	public void setScanExecutor(ExecutorService scanExecutor) {
+		bundleInfoLoader.setExecutor(scanExecutor);
+	}
+
+	public boolean isMemoryMappedScan() {
+		return bundleInfoLoader.isMemoryMapped();
+	}
+
+	/**
+	 * Read the plugin jars through memory mapping instead of
+	 * {@link java.util.zip.ZipFile}.
+	 * 
+	 * @param memoryMappedScan
+	 * @see BundleInfoLoader#setMemoryMapped(boolean)
+	 */
+	public void setMemoryMappedScan(boolean memoryMappedScan) {
+		bundleInfoLoader.setMemoryMapped(memoryMappedScan);
+	}
+
+	public boolean isRecursiveScan() {
+		return bundleInfoLoader.isRecursive();
+	}
+
+	/**
+	 * Also look for plugins in the subdirectories of the plugins directory
+	 * that are not exploded bundles. Such plugins are written as
+	 * reference:file: entries.
+	 * 
+	 * @param recursiveScan
+	 * @see BundleInfoLoader#setRecursive(boolean)
+	 */
+	public void setRecursiveScan(boolean recursiveScan) {
+		bundleInfoLoader.setRecursive(recursiveScan);
+	}
+
+	public boolean isScanDropins() {
+		return scanDropins;
+	}
+
+	/**
+	 * Also configure the plugins of the dropins directory of the eclipse
+	 * directory, whatever their layout: jars or exploded bundles directly in
+	 * dropins, dropins/&lt;name&gt;/plugins or
+	 * dropins/&lt;name&gt;/eclipse/plugins. They are written as
+	 * reference:file:../dropins/... entries.
+	 * 
+	 * @param scanDropins
+	 */
+	public void setScanDropins(boolean scanDropins) {
+		this.scanDropins = scanDropins;
+	}
+
+	public File getDropinsDirectory() {
+		return new File(eclipseDirectory, DROPINS_DIR);
+	}
+
+	public boolean isBundleCacheEnabled() {
+		return bundleCacheEnabled;
+	}
+
+	/**
+	 * Enable the persistent bundle cache stored in
+	 * configuration/.bundle-cache. When enabled only the plugin jars that
+	 * changed since the previous build are read.
+	 * 
+	 * @param bundleCacheEnabled
+	 */
+	public void setBundleCacheEnabled(boolean bundleCacheEnabled) {
+		this.bundleCacheEnabled = bundleCacheEnabled;
+	}
+
+	public boolean isFingerprintEnabled() {
+		return fingerprintEnabled;
+	}
+
+	/**
+	 * Write the fingerprint of the configured bundle set, including the
+	 * content of the plugins, to configuration/config.fingerprint so that
+	 * launchers only start equinox with -clean when it changes. Plugins are
+	 * hashed with the scan threads and only when they changed since the
+	 * previous build, the hashes being kept in configuration/.content-hashes.
+	 * 
+	 * @param fingerprintEnabled
+	 * @see BundleSetFingerprinter
+	 */
+	public void setFingerprintEnabled(boolean fingerprintEnabled) {
+		this.fingerprintEnabled = fingerprintEnabled;
+	}
+
+	/**
+	 * @return configuration/config.fingerprint written when
+	 *         {@link #isFingerprintEnabled()}
+	 */
+	public File getFingerprintFile() {
+		return new File(configurationDirectory(), FINGERPRINT_FILE);
+	}
+
+	public BundleInfoCache getSharedBundleInfoCache() {
+		return sharedBundleInfoCache;
+	}
+
+	/**
+	 * Set an in memory cache shared with other builders, typically a
+	 * {@link MemoryBundleInfoCache}, so that plugins common to several
+	 * eclipse directories are only read once. When the persistent bundle
+	 * cache is enabled too, the shared cache is looked up first.
+	 * 
+	 * @param sharedBundleInfoCache
+	 *            the cache or null
+	 */
+	public void setSharedBundleInfoCache(BundleInfoCache sharedBundleInfoCache) {
+		this.sharedBundleInfoCache = sharedBundleInfoCache;
+	}
+
+	public boolean isReferenceDirectoryBundles() {
+		return configWriter.isReferenceDirectoryBundles();
+	}
+
+	/**
+	 * Write exploded bundles found in the plugins directory as
+	 * reference:file: URLs instead of symbolic names.
+	 * 
+	 * @param referenceDirectoryBundles
+	 * @see ConfigWriter#setReferenceDirectoryBundles(boolean)
+	 */
+	public void setReferenceDirectoryBundles(boolean referenceDirectoryBundles) {
+		configWriter.setReferenceDirectoryBundles(referenceDirectoryBundles);
+	}
+
+	public ConfigFormat getConfigFormat() {
+		return configWriter.getFormat();
+	}
+
+	/**
+	 * Set how the bundles are handed to equinox. Defaults to
+	 * {@link ConfigFormat#OSGI_BUNDLES}. With
+	 * {@link ConfigFormat#SIMPLE_CONFIGURATOR} the bundles are written to
+	 * configuration/org.eclipse.equinox.simpleconfigurator/bundles.info and
+	 * config.ini only starts the simple configurator, which has to be in the
+	 * plugins directory.
+	 * 
+	 * @param configFormat
+	 * @see ConfigWriter#setFormat(ConfigFormat)
+	 */
+	public void setConfigFormat(ConfigFormat configFormat) {
+		configWriter.setFormat(configFormat);
+	}
+
+	public DuplicateBundlePolicy getDuplicateBundlePolicy() {
+		return duplicateBundlePolicy;
+	}
+
+	/**
+	 * Set what to do when several versions of the same bundle are found.
+	 * Defaults to {@link DuplicateBundlePolicy#KEEP_ALL}.
+	 * 
+	 * @param duplicateBundlePolicy
+	 */
+	public void setDuplicateBundlePolicy(DuplicateBundlePolicy duplicateBundlePolicy) {
+		this.duplicateBundlePolicy = Preconditions.checkNotNull(duplicateBundlePolicy);
+	}
+
+	public ResolutionPolicy getResolutionPolicy() {
+		return resolutionPolicy;
+	}
+
+	/**
+	 * Set what to do with the bundles equinox would fail to resolve. Defaults
+	 * to {@link ResolutionPolicy#NONE}.
+	 * 
+	 * @param resolutionPolicy
+	 * @see BundleResolver
+	 */
+	public void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+		this.resolutionPolicy = Preconditions.checkNotNull(resolutionPolicy);
+	}
+
+	public boolean isAutoStartLevels() {
+		return autoStartLevels;
+	}
+
+	/**
+	 * Compute start levels from the bundle dependencies so that bundles start
+	 * after the bundles they require or import packages from. Explicit bundle
+	 * start levels still win.
+	 * 
+	 * @param autoStartLevels
+	 * @see StartLevelPlanner
+	 */
+	public void setAutoStartLevels(boolean autoStartLevels) {
+		this.autoStartLevels = autoStartLevels;
+	}
+
+	public StartPolicy getStartPolicy() {
+		return startPolicy;
+	}
+
+	/**
+	 * Set which bundles are started at boot. Defaults to
+	 * {@link StartPolicy#START_ALL}.
+	 * 
+	 * @param startPolicy
+	 * @see ActivationPlanner
+	 */
+	public void setStartPolicy(StartPolicy startPolicy) {
+		this.startPolicy = Preconditions.checkNotNull(startPolicy);
+	}
+
+	public StartupProfile getStartupProfile() {
+		return startupProfile;
+	}
+
+	/**
+	 * Use measured activation times to move slow bundles nothing depends on
+	 * after the other bundles. Implies {@link #setAutoStartLevels(boolean)}.
+	 * The predicted startup times are logged.
+	 * 
+	 * @param startupProfile
+	 *            the profile or null
+	 * @see StartLevelPlanner#setStartupProfile(StartupProfile)
+	 */
+	public void setStartupProfile(StartupProfile startupProfile) {
+		this.startupProfile = startupProfile;
+	}
+
+	public long getSlowActivationMillis() {
+		return slowActivationMillis;
+	}
+
+	/**
+	 * @param slowActivationMillis
+	 *            activation time from which a bundle of the startup profile
+	 *            can be deferred. Defaults to
+	 *            {@link StartLevelPlanner#DEFAULT_SLOW_ACTIVATION_MILLIS}.
+	 */
+	public void setSlowActivationMillis(long slowActivationMillis) {
+		if (slowActivationMillis < 0) {
+			throw new IllegalArgumentException("slowActivationMillis should be a positive integer.");
+		}
+		this.slowActivationMillis = slowActivationMillis;
+	}
+
+	public int getParallelActivationThreads() {
+		return parallelActivationThreads;
+	}
+
+	/**
+	 * Let equinox activate the bundles of a start level in parallel. Implies
+	 * {@link #setAutoStartLevels(boolean)}: the computed start levels are
+	 * balanced so that each level is wide enough and
+	 * config.ini sets equinox.start.level.thread.count, capped to the number
+	 * of bundles started at the widest level, and
+	 * equinox.start.level.restrict.parallel=false so that all the bundles are
+	 * activated in parallel rather than only the ones marked for it. Nothing
+	 * is written when a single thread would be used.
+	 * 
+	 * @param parallelActivationThreads
+	 *            the number of activation threads,
+	 *            {@link #AUTO_PARALLEL_ACTIVATION_THREADS} for one per
+	 *            available processor or 0 to disable parallel activation,
+	 *            the default
+	 * @see StartLevelPlanner#setBalanceLevels(boolean)
+	 */
+	public void setParallelActivationThreads(int parallelActivationThreads) {
+		if (parallelActivationThreads < AUTO_PARALLEL_ACTIVATION_THREADS) {
+			throw new IllegalArgumentException("parallelActivationThreads should be a positive integer or -1.");
+		}
+		this.parallelActivationThreads = parallelActivationThreads;
+	}
+
+	/**
+	 * Parse a number of parallel activation threads.
+	 * 
+	 * @param value
+	 *            auto for {@link #AUTO_PARALLEL_ACTIVATION_THREADS}, a
+	 *            number of threads or 0 to disable parallel activation
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if value is neither auto nor a positive integer
+	 */
+	public static int parseParallelActivationThreads(String value) {
+		value = value.trim();
+		if (value.equalsIgnoreCase("auto")) {
+			return AUTO_PARALLEL_ACTIVATION_THREADS;
+		}
+		int threads;
+		try {
+			threads = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			threads = -1;
+		}
+		if (threads < 0) {
+			throw new IllegalArgumentException("Invalid number of parallel activation threads " + value);
+		}
+		return threads;
+	}
+
+	/**
+	 * Generate configuration/config.ini.
+	 * 
+	 * @return whether config.ini was created, updated or already up to date
+	 */
+	public WriteResult buildConfigFile() {
+		return build().getWriteResult();
+	}
+
+	/**
+	 * Generate configuration/config.ini and measure each step of the
+	 * generation.
+	 * 
+	 * @return the timings and counters of the generation, including whether
+	 *         config.ini was created, updated or already up to date
+	 */
+	public BuildMetrics build() {
+		BuildMetrics metrics = new BuildMetrics();
+		Collection<BundleInfo> loadedBundleInfos;
+		if (productArchive != null) {
+			if (fingerprintEnabled) {
+				throw new ConfigBuildingException("Fingerprints are not supported for product archives: " + productArchive);
+			}
+			LOGGER.log(Level.INFO, "Generating configuration/config.ini from " + productArchive + "....");
+			loadedBundleInfos = loadArchiveBundleInfos(metrics);
+		} else {
+			File pluginsDirectory = checkedPluginsDirectory();
+			LOGGER.log(Level.INFO, "Generating configuration/config.ini....");
+			loadedBundleInfos = loadBundleInfos(pluginsDirectory, metrics);
+		}
+		long start = System.nanoTime();
+		List<BundleInfo> bundleInfos = resolveBundleInfos(loadedBundleInfos);
+		metrics.addPhaseNanos(BuildMetrics.Phase.RESOLVE, System.nanoTime() - start);
+		WriteResult result = writeConfigFile(bundleInfos, metrics);
+
+		LOGGER.log(Level.INFO, "Generating configuration/config.ini: Done " + bundleInfos.size() + " plugins configured ("
+				+ result + ").");
+		LOGGER.log(Level.FINE, "Build metrics: {0}", metrics);
+		LOGGER.log(Level.FINE, "Slowest plugins: {0}", metrics.getSlowestPlugins());
+		return metrics;
+	}
+
+	public File getPluginsDirectory() {
+		return new File(eclipseDirectory, "plugins");
+	}
+
+	/**
+	 * @return configuration/config-report.json where the command line writes
+	 *         the {@link BuildMetrics} when asked to
+	 */
+	public File getReportFile() {
+		return new File(configurationDirectory(), REPORT_FILE);
+	}
+
+	File checkedPluginsDirectory() {
+		File pluginsDirectory = getPluginsDirectory();
+		if (!pluginsDirectory.exists() || !pluginsDirectory.canRead()) {
+			throw new ConfigBuildingException("Cannot read <eclipseDirectory>/plugins directory: " + pluginsDirectory);
+		}
+		return pluginsDirectory;
+	}
+
+	BundleInfoLoader getBundleInfoLoader() {
+		return bundleInfoLoader;
+	}
+
+	/**
+	 * Select the bundles that should be written to config.ini among the loaded
+	 * ones.
+	 * 
+	 * @param loadedBundleInfos
+	 * @return
+	 */
+	List<BundleInfo> resolveBundleInfos(Collection<BundleInfo> loadedBundleInfos) {
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>();
+		List<BundleInfo> excludedBundleInfos = new ArrayList<BundleInfo>();
+		for (BundleInfo bundleInfo : loadedBundleInfos) {
+			if (shouldExcludeBundle(bundleInfo)) {
+				LOGGER.log(Level.FINE, "Excluding {0}", bundleInfo);
+				excludedBundleInfos.add(bundleInfo);
+			} else {
+				LOGGER.log(Level.FINE, "Adding {0}", bundleInfo);
+				if (!bundleInfo.isValidVersion()) {
+					LOGGER.log(Level.WARNING, "Invalid Bundle-Version {0} in {1}: it is not an OSGi version", new Object[] {
+							bundleInfo.getBundleVersion(), bundleInfo.getFileName() });
+				}
+				bundleInfos.add(bundleInfo);
+			}
+		}
+		return checkResolution(resolveDuplicates(bundleInfos), excludedBundleInfos);
+	}
+
+	/**
+	 * @param bundleInfos
+	 *            the bundles to write
+	 * @param frameworkBundleInfos
+	 *            the framework bundles, not written but providing the
+	 *            system.bundle
+	 */
+	private List<BundleInfo> checkResolution(List<BundleInfo> bundleInfos, List<BundleInfo> frameworkBundleInfos) {
+		if (resolutionPolicy == ResolutionPolicy.NONE) {
+			return bundleInfos;
+		}
+		List<BundleInfo> candidates = new ArrayList<BundleInfo>(frameworkBundleInfos);
+		candidates.addAll(bundleInfos);
+		Resolution resolution = new BundleResolver().resolve(candidates);
+		boolean exclude = resolutionPolicy == ResolutionPolicy.EXCLUDE;
+		for (Map.Entry<BundleInfo, String> unresolved : resolution.getUnresolvedBundleInfos().entrySet()) {
+			if (exclude) {
+				LOGGER.log(Level.WARNING, "Excluding " + unresolved.getKey() + ", equinox cannot resolve it: " + unresolved.getValue());
+			} else {
+				LOGGER.log(Level.WARNING, "Equinox cannot resolve " + unresolved.getKey() + ": " + unresolved.getValue());
+			}
+		}
+		if (!resolution.getUnresolvedBundleInfos().isEmpty()) {
+			LOGGER.log(Level.INFO, "Resolution check: {0}", resolution);
+		}
+		if (!exclude) {
+			return bundleInfos;
+		}
+		List<BundleInfo> resolved = new ArrayList<BundleInfo>(resolution.getResolvedBundleInfos());
+		resolved.removeAll(frameworkBundleInfos);
+		return resolved;
+	}
+
+	private List<BundleInfo> resolveDuplicates(List<BundleInfo> bundleInfos) {
+		if (duplicateBundlePolicy == DuplicateBundlePolicy.KEEP_ALL) {
+			return bundleInfos;
+		}
+		Map<String, BundleInfo> highestByName = new LinkedHashMap<String, BundleInfo>();
+		StringBuilder duplicates = new StringBuilder();
+		int duplicateCount = 0;
+		for (BundleInfo bundleInfo : bundleInfos) {
+			BundleInfo previous = highestByName.get(bundleInfo.getBundleName());
+			if (previous == null) {
+				highestByName.put(bundleInfo.getBundleName(), bundleInfo);
+			} else {
+				duplicateCount++;
+				duplicates.append("\n\t").append(previous.getFileName()).append(" and ").append(bundleInfo.getFileName());
+				if (duplicateBundlePolicy == DuplicateBundlePolicy.KEEP_HIGHEST) {
+					checkComparableVersion(previous);
+					checkComparableVersion(bundleInfo);
+				}
+				if (previous.getVersion().compareTo(bundleInfo.getVersion()) < 0) {
+					highestByName.put(bundleInfo.getBundleName(), bundleInfo);
+				}
+			}
+		}
+		if (duplicateCount == 0) {
+			return bundleInfos;
+		}
+		if (duplicateBundlePolicy == DuplicateBundlePolicy.FAIL) {
+			throw new ConfigBuildingException("Several versions of the same bundles found:" + duplicates);
+		}
+		List<BundleInfo> highest = new ArrayList<BundleInfo>(bundleInfos.size() - duplicateCount);
+		for (BundleInfo bundleInfo : bundleInfos) {
+			if (highestByName.get(bundleInfo.getBundleName()) == bundleInfo) {
+				highest.add(bundleInfo);
+			} else {
+				LOGGER.log(Level.INFO, "Excluding {0}: a higher version is present", bundleInfo);
+			}
+		}
+		return highest;
+	}
+
+	private static void checkComparableVersion(BundleInfo bundleInfo) {
+		if (!bundleInfo.isValidVersion()) {
+			throw new ConfigBuildingException("Cannot find the highest version of " + bundleInfo.getBundleName()
+					+ ": invalid Bundle-Version " + bundleInfo.getBundleVersion() + " in " + bundleInfo.getFileName());
+		}
+	}
+
+	/**
+	 * Write config.ini, and bundles.info for the simple configurator format,
+	 * for the resolved bundles recording the
+	 * {@link BuildMetrics.Phase#CONTENT} and {@link BuildMetrics.Phase#WRITE}
+	 * phases.
+	 */
+	WriteResult writeConfigFile(List<BundleInfo> bundleInfos, BuildMetrics metrics) {
+		long start = System.nanoTime();
+		File configFile = new File(configurationDirectory(), CONFIG_INI_FILE);
+		ActivationPlan activationPlan = new ActivationPlanner().plan(bundleInfos, startPolicy, bundleStartLevels.keySet());
+		if (startPolicy != StartPolicy.START_ALL) {
+			LOGGER.log(Level.INFO, "Start policy " + startPolicy + ": " + activationPlan.getStartedCount()
+					+ " bundles started at boot, " + activationPlan.getAvoidedActivationCount() + " activations avoided, "
+					+ activationPlan.getOmittedCount() + " plugins left out of osgi.bundles.");
+		}
+		List<BundleInfo> configuredBundleInfos = activationPlan.getBundleInfos();
+		Map<String, Integer> startLevels = startLevels(configuredBundleInfos);
+		ConfigDescriptor descriptor = new ConfigDescriptor(defaultStartLevel, configuredBundleInfos, startLevels,
+				activationPlan.getInstallOnlyBundleNames(), frameworkProperties(configuredBundleInfos, startLevels,
+						activationPlan.getInstallOnlyBundleNames()));
+		String fingerprint = fingerprintEnabled ? fingerprint(descriptor) : null;
+		long contentEnd = System.nanoTime();
+		metrics.addPhaseNanos(BuildMetrics.Phase.CONTENT, contentEnd - start);
+		WriteResult result = configWriter.writeConfig(descriptor, configFile);
+		if (configWriter.getFormat() == ConfigFormat.SIMPLE_CONFIGURATOR) {
+			File bundlesInfoFile = new File(configurationDirectory(), ConfigWriter.BUNDLES_INFO_PATH);
+			result = combine(result, configWriter.writeBundlesInfo(descriptor, bundlesInfoFile));
+		}
+		if (fingerprint != null) {
+			result = combine(result, configWriter.writeFingerprint(fingerprint, getFingerprintFile()));
+		}
+		if (updateArchive) {
+			result = combine(result, updateArchive(configFile));
+		}
+		metrics.addPhaseNanos(BuildMetrics.Phase.WRITE, System.nanoTime() - contentEnd);
+		metrics.configured(configuredBundleInfos.size(), result);
+		return result;
+	}
+
+	/**
+	 * Copy the written configuration files into the product archive.
+	 */
+	private WriteResult updateArchive(File configFile) {
+		Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+		try {
+			files.put(CONFIGURATION_DIR + "/" + CONFIG_INI_FILE, Files.readAllBytes(configFile.toPath()));
+			if (configWriter.getFormat() == ConfigFormat.SIMPLE_CONFIGURATOR) {
+				File bundlesInfoFile = new File(configurationDirectory(), ConfigWriter.BUNDLES_INFO_PATH);
+				files.put(CONFIGURATION_DIR + "/" + ConfigWriter.BUNDLES_INFO_PATH,
+						Files.readAllBytes(bundlesInfoFile.toPath()));
+			}
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error reading configuration files of " + productArchive, e);
+		}
+		if (productArchive.updateEntries(files)) {
+			LOGGER.log(Level.INFO, "Updated configuration of product archive {0}", productArchive);
+			return WriteResult.UPDATED;
+		}
+		return WriteResult.UNCHANGED;
+	}
+
+	private String fingerprint(ConfigDescriptor descriptor) {
+		BundleSetFingerprinter fingerprinter = new BundleSetFingerprinter(getPluginsDirectory());
+		fingerprinter.setThreadCount(bundleInfoLoader.getThreadCount());
+		fingerprinter.setExecutor(bundleInfoLoader.getExecutor());
+		fingerprinter.setHashCacheFile(new File(configurationDirectory(), CONTENT_HASH_CACHE_FILE));
+		String fingerprint = fingerprinter.fingerprint(descriptor, configWriter.getFormat());
+		LOGGER.log(Level.FINE, "Bundle set fingerprint {0}, {1} plugins hashed", new Object[] { fingerprint,
+				fingerprinter.getHashedPluginCount() });
+		return fingerprint;
+	}
+
+	/**
+	 * @return the result of writing several files: created if one was
+	 *         created, updated if one was updated, unchanged otherwise
+	 */
+	private static WriteResult combine(WriteResult result1, WriteResult result2) {
+		return result1.compareTo(result2) <= 0 ? result1 : result2;
+	}
+
+	private Map<String, Integer> startLevels(List<BundleInfo> bundleInfos) {
+		if (!autoStartLevels && startupProfile == null && parallelActivationThreads == 0) {
+			return bundleStartLevels;
+		}
+		StartLevelPlanner planner = new StartLevelPlanner();
+		planner.setStartupProfile(startupProfile);
+		planner.setSlowActivationMillis(slowActivationMillis);
+		planner.setBalanceLevels(parallelActivationThreads != 0);
+		StartLevelPlan plan = planner.plan(bundleInfos, defaultStartLevel, bundleStartLevels);
+		for (List<String> cycle : plan.getCycles()) {
+			LOGGER.log(Level.WARNING, "Dependency cycle between bundles {0}: they share the same start level", cycle);
+		}
+		LOGGER.log(Level.INFO, "Computed start levels up to {0}", plan.getMaxStartLevel());
+		if (plan.getStartupPrediction() != null) {
+			LOGGER.log(Level.INFO, "Predicted startup: {0}", plan.getStartupPrediction());
+		}
+		return plan.getStartLevels();
+	}
+
+	private Map<String, String> frameworkProperties(List<BundleInfo> bundleInfos, Map<String, Integer> startLevels,
+			Set<String> installOnlyBundleNames) {
+		Map<String, String> properties = new HashMap<String, String>();
+		if (parallelActivationThreads == 0) {
+			return properties;
+		}
+		// Bundles started at each start level, fragments are not activated
+		Map<Integer, Integer> widths = new HashMap<Integer, Integer>();
+		int maxWidth = 0;
+		for (BundleInfo bundleInfo : bundleInfos) {
+			if (!bundleInfo.isFragment() && !installOnlyBundleNames.contains(bundleInfo.getBundleName())) {
+				Integer startLevel = startLevels.get(bundleInfo.getBundleName());
+				Integer level = startLevel != null ? startLevel : defaultStartLevel;
+				Integer width = widths.get(level);
+				width = width == null ? 1 : width + 1;
+				widths.put(level, width);
+				maxWidth = Math.max(maxWidth, width);
+			}
+		}
+		int threads = parallelActivationThreads == AUTO_PARALLEL_ACTIVATION_THREADS ? Runtime.getRuntime()
+				.availableProcessors() : parallelActivationThreads;
+		threads = Math.min(threads, maxWidth);
+		if (threads < 2) {
+			LOGGER.log(Level.INFO, "Parallel activation not enabled: {0} thread for {1} start levels of at most {2} bundles",
+					new Object[] { threads, widths.size(), maxWidth });
+			return properties;
+		}
+		LOGGER.log(Level.INFO, "Parallel activation with {0} threads for {1} start levels of at most {2} bundles",
+				new Object[] { threads, widths.size(), maxWidth });
+		properties.put(START_LEVEL_THREAD_COUNT_PROPERTY, String.valueOf(threads));
+		properties.put(START_LEVEL_RESTRICT_PARALLEL_PROPERTY, "false");
+		return properties;
+	}
+
+	private File configurationDirectory() {
+		if (productArchive != null) {
+			return new File(eclipseDirectory.getAbsoluteFile().getParentFile(), productArchive.getBaseName()
+					+ ARCHIVE_CONFIGURATION_DIR_SUFFIX);
+		}
+		return new File(eclipseDirectory, CONFIGURATION_DIR);
+	}
+
+	/**
+	 * @return the directory where the configuration files are written:
+	 *         configuration in the eclipse directory or &lt;archive
+	 *         name&gt;-configuration next to a product archive
+	 */
+	public File getConfigurationDirectory() {
+		return configurationDirectory();
+	}
+
+	/**
+	 * @return the files written by {@link #buildConfigFile()} with the current
+	 *         settings: config.ini, bundles.info for the simple configurator
+	 *         format and config.fingerprint when {@link #isFingerprintEnabled()}
+	 */
+	public List<File> getGeneratedFiles() {
+		List<File> files = new ArrayList<File>();
+		files.add(new File(configurationDirectory(), CONFIG_INI_FILE));
+		if (configWriter.getFormat() == ConfigFormat.SIMPLE_CONFIGURATOR) {
+			files.add(new File(configurationDirectory(), ConfigWriter.BUNDLES_INFO_PATH));
+		}
+		if (fingerprintEnabled) {
+			files.add(getFingerprintFile());
+		}
+		return files;
+	}
+
+	private Collection<BundleInfo> loadArchiveBundleInfos(BuildMetrics metrics) {
+		long start = System.nanoTime();
+		bundleInfoLoader.setMetrics(metrics);
+		try {
+			return productArchive.loadBundleInfos(bundleInfoLoader, bundleInfoLoader.isRecursive(), scanDropins);
+		} finally {
+			bundleInfoLoader.setMetrics(null);
+			metrics.addPhaseNanos(BuildMetrics.Phase.LOAD, System.nanoTime() - start);
+		}
+	}
+
+	private Collection<BundleInfo> loadBundleInfos(File pluginsDirectory, BuildMetrics metrics) {
+		FileBundleInfoCache fileCache = null;
+		BundleInfoCache cache = sharedBundleInfoCache;
+		if (bundleCacheEnabled) {
+			fileCache = new FileBundleInfoCache(new File(configurationDirectory(), BUNDLE_CACHE_FILE));
+			fileCache.load();
+			cache = sharedBundleInfoCache == null ? fileCache : new TieredBundleInfoCache(sharedBundleInfoCache, fileCache);
+		}
+		bundleInfoLoader.setCache(cache);
+		bundleInfoLoader.setMetrics(metrics);
+		try {
+			Collection<BundleInfo> bundleInfos = bundleInfoLoader.loadBundleInfos(pluginsDirectory);
+			File dropinsDirectory = getDropinsDirectory();
+			if (scanDropins && dropinsDirectory.isDirectory()) {
+				List<BundleInfo> allBundleInfos = new ArrayList<BundleInfo>(bundleInfos);
+				allBundleInfos.addAll(bundleInfoLoader.loadBundleInfos(dropinsDirectory, true, "../" + DROPINS_DIR + "/"));
+				Collections.sort(allBundleInfos);
+				bundleInfos = allBundleInfos;
+			}
+			if (fileCache != null) {
+				fileCache.save();
+			}
+			return bundleInfos;
+		} finally {
+			bundleInfoLoader.setCache(null);
+			bundleInfoLoader.setMetrics(null);
+		}
+	}
+
+	private boolean shouldExcludeBundle(BundleInfo bundleInfo) {
+		// Exclude osgi framework
+		return bundleInfo.getBundleName().equals(BundleResolver.FRAMEWORK_BUNDLE);
+	}
+
+	/**
+	 * Command line entry point.
+	 * 
+	 * <pre>
+	 * java -jar equinox-config-builder.jar [--scan-threads=&lt;n&gt;] [--mmap] [--recursive] [--dropins] [--cache] [--watch] [--reference-directory-bundles] [--format=osgi-bundles|simple-configurator] [--fingerprint] [--update-archive] [--duplicates=keep-all|keep-highest|fail] [--resolve=none|report|exclude] [--auto-start-levels] [--start-policy=start-all|lazy|minimal-boot-set] [--startup-profile=&lt;csv&gt;] [--slow-activation-millis=&lt;ms&gt;] [--parallel-activation[=auto|&lt;threads&gt;]] [--report=json] &lt;eclipseDirectory&gt; [&lt;defaultStartLevel&gt; [&lt;bundleStartLevelsPropertyFile&gt;]]
+	 * java -jar equinox-config-builder.jar [options] --batch=&lt;file&gt;
+	 * java -jar equinox-config-builder.jar --help
+	 * </pre>
+	 * 
+	 * In batch mode each line of the file holds the arguments of one eclipse
+	 * directory, the options apply to all of them and --scan-threads sets the
+	 * number of threads shared by all the products.
+	 * <p>
+	 * Errors are reported on a single ERROR: line. The exit code is 2 for
+	 * invalid arguments, also followed by the usage, and 1 when the
+	 * generation fails.
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		CommandLineLogHandler.install();
+		int exitCode = run(args);
+		if (exitCode != 0) {
+			System.exit(exitCode);
+		}
+	}
+
+	/**
+	 * Run the command line, reporting errors to the standard error.
+	 * 
+	 * @param args
+	 * @return the exit code
+	 */
+	static int run(String[] args) {
+		try {
+			return execute(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println("ERROR: " + e.getMessage());
+			printUsage(System.err);
+			return 2;
+		} catch (ConfigBuildingException e) {
+			System.err.println("ERROR: " + e.getMessage() + (e.getCause() == null ? "" : " (" + e.getCause() + ")"));
+			return 1;
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the arguments are invalid
+	 * @throws ConfigBuildingException
+	 *             if the generation fails
+	 */
+	private static int execute(String[] args) {
+		List<String> arguments = new ArrayList<String>();
+		int scanThreads = 1;
+		boolean bundleCacheEnabled = false;
+		boolean memoryMappedScan = false;
+		boolean watch = false;
+		boolean referenceDirectoryBundles = false;
+		ConfigFormat configFormat = ConfigFormat.OSGI_BUNDLES;
+		DuplicateBundlePolicy duplicateBundlePolicy = DuplicateBundlePolicy.KEEP_ALL;
+		ResolutionPolicy resolutionPolicy = ResolutionPolicy.NONE;
+		boolean autoStartLevels = false;
+		StartPolicy startPolicy = StartPolicy.START_ALL;
+		File startupProfileFile = null;
+		long slowActivationMillis = StartLevelPlanner.DEFAULT_SLOW_ACTIVATION_MILLIS;
+		int parallelActivationThreads = 0;
+		File batchFile = null;
+		boolean jsonReport = false;
+		boolean recursiveScan = false;
+		boolean scanDropins = false;
+		boolean fingerprint = false;
+		boolean updateArchive = false;
+		for (String arg : args) {
+			if (arg.equals("--help")) {
+				printUsage(System.out);
+				return 0;
+			} else if (arg.startsWith("--scan-threads=")) {
+				scanThreads = parseIntOption(arg, 1);
+			} else if (arg.equals("--mmap")) {
+				memoryMappedScan = true;
+			} else if (arg.equals("--cache")) {
+				bundleCacheEnabled = true;
+			} else if (arg.equals("--watch")) {
+				watch = true;
+			} else if (arg.equals("--reference-directory-bundles")) {
+				referenceDirectoryBundles = true;
+			} else if (arg.startsWith("--format=")) {
+				configFormat = parseConfigFormat(arg);
+			} else if (arg.startsWith("--duplicates=")) {
+				duplicateBundlePolicy = parseDuplicateBundlePolicy(arg);
+			} else if (arg.startsWith("--resolve=")) {
+				resolutionPolicy = parseResolutionPolicy(arg);
+			} else if (arg.equals("--auto-start-levels")) {
+				autoStartLevels = true;
+			} else if (arg.startsWith("--start-policy=")) {
+				startPolicy = parseStartPolicy(arg);
+			} else if (arg.startsWith("--startup-profile=")) {
+				startupProfileFile = new File(arg.substring(arg.indexOf('=') + 1));
+			} else if (arg.startsWith("--slow-activation-millis=")) {
+				slowActivationMillis = parseIntOption(arg, 0);
+			} else if (arg.equals("--parallel-activation")) {
+				parallelActivationThreads = AUTO_PARALLEL_ACTIVATION_THREADS;
+			} else if (arg.startsWith("--parallel-activation=")) {
+				parallelActivationThreads = parseParallelActivationOption(arg);
+			} else if (arg.equals("--recursive")) {
+				recursiveScan = true;
+			} else if (arg.equals("--dropins")) {
+				scanDropins = true;
+			} else if (arg.equals("--fingerprint")) {
+				fingerprint = true;
+			} else if (arg.equals("--update-archive")) {
+				updateArchive = true;
+			} else if (arg.equals("--report=json")) {
+				jsonReport = true;
+			} else if (arg.startsWith("--report=")) {
+				throw new IllegalArgumentException("Unsupported report format " + arg.substring(arg.indexOf('=') + 1));
+			} else if (arg.startsWith("--batch=")) {
+				batchFile = new File(arg.substring(arg.indexOf('=') + 1));
+			} else if (arg.startsWith("--")) {
+				throw new IllegalArgumentException("Unknown option " + arg);
+			} else {
+				arguments.add(arg);
+			}
+		}
+		List<ConfigBuilder> builders = new ArrayList<ConfigBuilder>();
+		if (batchFile != null) {
+			if (!arguments.isEmpty()) {
+				throw new IllegalArgumentException("No eclipseDirectory argument expected with --batch");
+			}
+			if (watch) {
+				throw new IllegalArgumentException("--watch cannot be used with --batch");
+			}
+			for (List<String> batchArguments : readBatchFile(batchFile)) {
+				builders.add(builder(batchArguments));
+			}
+		} else {
+			builders.add(builder(arguments));
+		}
+
+		StartupProfile startupProfile = startupProfileFile == null ? null : StartupProfile.load(startupProfileFile);
+		for (ConfigBuilder builder : builders) {
+			builder.setScanThreads(batchFile == null ? scanThreads : 1);
+			builder.setMemoryMappedScan(memoryMappedScan);
+			builder.setRecursiveScan(recursiveScan);
+			builder.setScanDropins(scanDropins);
+			builder.setBundleCacheEnabled(bundleCacheEnabled);
+			builder.setReferenceDirectoryBundles(referenceDirectoryBundles);
+			builder.setConfigFormat(configFormat);
+			builder.setFingerprintEnabled(fingerprint);
+			if (updateArchive) {
+				if (builder.getProductArchive() == null || builder.getProductArchive().getType() != ProductArchive.Type.ZIP) {
+					throw new IllegalArgumentException("--update-archive requires a zip product archive: " + builder.getEclipseDirectory());
+				}
+				builder.setUpdateArchive(true);
+			}
+			builder.setDuplicateBundlePolicy(duplicateBundlePolicy);
+			builder.setResolutionPolicy(resolutionPolicy);
+			builder.setAutoStartLevels(autoStartLevels);
+			builder.setStartPolicy(startPolicy);
+			builder.setStartupProfile(startupProfile);
+			builder.setSlowActivationMillis(slowActivationMillis);
+			builder.setParallelActivationThreads(parallelActivationThreads);
+		}
+		if (batchFile != null) {
+			BatchConfigBuilder batchBuilder = new BatchConfigBuilder();
+			batchBuilder.setThreadCount(scanThreads);
+			batchBuilder.setJsonReports(jsonReport);
+			for (ConfigBuilder builder : builders) {
+				batchBuilder.add(builder);
+			}
+			batchBuilder.buildConfigFiles();
+		} else if (watch) {
+			if (builders.get(0).getProductArchive() != null) {
+				throw new IllegalArgumentException("--watch cannot be used with a product archive");
+			}
+			if (builders.get(0).isRecursiveScan()) {
+				throw new IllegalArgumentException("--watch cannot be used with --recursive");
+			}
+			if (builders.get(0).isScanDropins()) {
+				throw new IllegalArgumentException("--watch cannot be used with --dropins");
+			}
+			watch(builders.get(0), jsonReport);
+		} else {
+			BuildMetrics metrics = builders.get(0).build();
+			if (jsonReport) {
+				metrics.writeJson(builders.get(0).getReportFile());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param arguments
+	 *            &lt;eclipseDirectory&gt; [&lt;defaultStartLevel&gt;
+	 *            [&lt;bundleStartLevelsPropertyFile&gt;]]
+	 */
+	private static ConfigBuilder builder(List<String> arguments) {
+		if (arguments.isEmpty() || arguments.size() > 3) {
+			throw new IllegalArgumentException("Invalid number of arguments " + arguments);
+		}
+		File eclipseDirectory = new File(arguments.get(0));
+		int defaultStartLevel = DEFAULT_DEFAULT_START_LEVEL;
+		if (arguments.size() > 1) {
+			defaultStartLevel = parseInt("defaultStartLevel", arguments.get(1), 1);
+		}
+		Map<String, Integer> bundleStartLevels = Collections.<String, Integer> emptyMap();
+		if (arguments.size() > 2) {
+			bundleStartLevels = startLevelsMapFromPropertyFile(new File(arguments.get(2)));
+		}
+		return new ConfigBuilder(eclipseDirectory, defaultStartLevel, bundleStartLevels);
+	}
+
+	/**
+	 * Read the products of a batch file: one line per eclipse directory with
+	 * the same arguments as the command line separated by whitespaces. Empty
+	 * lines and lines starting with # are ignored.
+	 * 
+	 * @param batchFile
+	 * @return the arguments of each product
+	 */
+	static List<List<String>> readBatchFile(File batchFile) {
+		List<List<String>> products = new ArrayList<List<String>>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(batchFile), "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				products.add(Arrays.asList(line.split("\\s+")));
+			}
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error reading batch file: " + batchFile, e);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+		return products;
+	}
+
+	private static void watch(ConfigBuilder builder, boolean jsonReport) {
+		final ConfigWatcher watcher = new ConfigWatcher(builder);
+		watcher.setJsonReport(jsonReport);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				watcher.close();
+			}
+		}, "equinox-config-watcher-shutdown"));
+		watcher.start();
+		watcher.registerMBean();
+		try {
+			watcher.join();
+		} catch (InterruptedException e) {
+			watcher.close();
+		}
+	}
+
+	private static ConfigFormat parseConfigFormat(String arg) {
+		String value = arg.substring(arg.indexOf('=') + 1);
+		try {
+			return ConfigFormat.fromString(value);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid format " + value);
+		}
+	}
+
+	private static DuplicateBundlePolicy parseDuplicateBundlePolicy(String arg) {
+		String value = arg.substring(arg.indexOf('=') + 1);
+		try {
+			return DuplicateBundlePolicy.fromString(value);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid duplicates policy " + value);
+		}
+	}
+
+	private static ResolutionPolicy parseResolutionPolicy(String arg) {
+		String value = arg.substring(arg.indexOf('=') + 1);
+		try {
+			return ResolutionPolicy.fromString(value);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid resolution policy " + value);
+		}
+	}
+
+	private static int parseParallelActivationOption(String arg) {
+		return parseParallelActivationThreads(arg.substring(arg.indexOf('=') + 1));
+	}
+
+	private static StartPolicy parseStartPolicy(String arg) {
+		String value = arg.substring(arg.indexOf('=') + 1);
+		try {
+			return StartPolicy.fromString(value);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid start policy " + value);
+		}
+	}
+
+	private static int parseIntOption(String arg, int min) {
+		int equals = arg.indexOf('=');
+		return parseInt(arg.substring(0, equals), arg.substring(equals + 1), min);
+	}
+
+	private static int parseInt(String name, String value, int min) {
+		int result;
+		try {
+			result = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid integer " + value + " for " + name);
+		}
+		if (result < min) {
+			throw new IllegalArgumentException("Invalid " + name + " " + value + ", expected at least " + min);
+		}
+		return result;
+	}
+
+	private static void printUsage(PrintStream out) {
+		out.println("Usage: java -jar equinox-config-builder.jar [--scan-threads=<n>] [--mmap] [--recursive] [--dropins] [--cache] [--watch] [--reference-directory-bundles] [--format=osgi-bundles|simple-configurator] [--fingerprint] [--update-archive] [--duplicates=keep-all|keep-highest|fail] [--resolve=none|report|exclude] [--auto-start-levels] [--start-policy=start-all|lazy|minimal-boot-set] [--startup-profile=<csv>] [--slow-activation-millis=<ms>] [--parallel-activation[=auto|<threads>]] [--report=json] <eclipseDirectory> [<defaultStartLevel> [<bundleStartLevelsPropertyFile>]]");
+		out.println("       java -jar equinox-config-builder.jar [options] --batch=<file>");
+	}
+
+}
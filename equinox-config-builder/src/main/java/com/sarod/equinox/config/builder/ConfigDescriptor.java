@@ -0,0 +1,89 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * In memory description of an equinox config This class is immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class ConfigDescriptor {
+
+	private final int defaultStartLevel;
+	private final Map<String, Integer> bundleStartLevels;
+	private final Collection<BundleInfo> bundleInfos;
+	private final Set<String> installOnlyBundleNames;
+	private final Map<String, String> frameworkProperties;
+
+	/**
+	 * @param defaultStartLevel
+	 * @param bundleInfos
+	 * @param bundleStartLevels
+	 * @param installOnlyBundleNames
+	 *            names of the bundles that should be installed but not
+	 *            started
+	 * @param frameworkProperties
+	 *            framework properties to write in config.ini e.g. equinox
+	 *            tuning properties
+	 */
+	public ConfigDescriptor(int defaultStartLevel, Collection<BundleInfo> bundleInfos, Map<String, Integer> bundleStartLevels,
+			Set<String> installOnlyBundleNames, Map<String, String> frameworkProperties) {
+		checkNotNull(bundleInfos);
+		checkNotNull(bundleStartLevels);
+		checkNotNull(installOnlyBundleNames);
+		checkNotNull(frameworkProperties);
+		this.defaultStartLevel = defaultStartLevel;
+		this.bundleInfos = Collections.unmodifiableList(new ArrayList<BundleInfo>(bundleInfos));
+		this.bundleStartLevels = Collections.unmodifiableMap(new HashMap<String, Integer>(bundleStartLevels));
+		this.installOnlyBundleNames = Collections.unmodifiableSet(new HashSet<String>(installOnlyBundleNames));
+		this.frameworkProperties = Collections.unmodifiableMap(new TreeMap<String, String>(frameworkProperties));
+	}
+
+	public ConfigDescriptor(int defaultStartLevel, Collection<BundleInfo> bundleInfos, Map<String, Integer> bundleStartLevels,
+			Set<String> installOnlyBundleNames) {
+		this(defaultStartLevel, bundleInfos, bundleStartLevels, installOnlyBundleNames, Collections.<String, String> emptyMap());
+	}
+
+	public ConfigDescriptor(int defaultStartLevel, Collection<BundleInfo> bundleInfos, Map<String, Integer> bundleStartLevels) {
+		this(defaultStartLevel, bundleInfos, bundleStartLevels, Collections.<String> emptySet());
+	}
+
+	public ConfigDescriptor(int defaultStartLevel, Collection<BundleInfo> bundleInfos) {
+		this(defaultStartLevel, bundleInfos, Collections.<String, Integer> emptyMap());
+	}
+
+	public int getDefaultStartLevel() {
+		return defaultStartLevel;
+	}
+
+	public Map<String, Integer> getBundleStartLevels() {
+		return bundleStartLevels;
+	}
+
+	public Collection<BundleInfo> getBundleInfos() {
+		return bundleInfos;
+	}
+
+	public Set<String> getInstallOnlyBundleNames() {
+		return installOnlyBundleNames;
+	}
+
+	/**
+	 * @return the framework properties sorted by name
+	 */
+	public Map<String, String> getFrameworkProperties() {
+		return frameworkProperties;
+	}
+
+}
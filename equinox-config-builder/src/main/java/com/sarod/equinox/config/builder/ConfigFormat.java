@@ -0,0 +1,37 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Locale;
+
+/**
+ * How the bundles to install are handed to equinox.
+ * 
+ * @author sarod
+ *
+ */
+public enum ConfigFormat {
+
+	/**
+	 * List the bundles in the osgi.bundles property of config.ini.
+	 */
+	OSGI_BUNDLES,
+
+	/**
+	 * List the bundles in the p2 bundles.info file read by
+	 * org.eclipse.equinox.simpleconfigurator, config.ini only starting the
+	 * simple configurator.
+	 */
+	SIMPLE_CONFIGURATOR;
+
+	/**
+	 * Parse a format name, case insensitive, accepting '-' instead of '_'
+	 * e.g. simple-configurator
+	 * 
+	 * @param value
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if value is not a format name
+	 */
+	public static ConfigFormat fromString(String value) {
+		return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+	}
+}
@@ -0,0 +1,469 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Watch the plugins directory of a {@link ConfigBuilder} and regenerate
+ * config.ini when plugins are added, changed or removed.
+ * <p>
+ * Events are debounced: changes are processed once no new event was received
+ * during the debounce delay. Directory bundles and their META-INF directory
+ * are watched too so that a manifest written or edited in place is seen.
+ * Recursive scan and dropins are not supported. Only the changed plugins are read again, the
+ * other ones are kept in an in-memory index. config.ini is only rewritten
+ * when the resolved bundle list changes.
+ * <p>
+ * The metrics of the last regeneration are available from
+ * {@link #getLastBuildMetrics()} and through JMX once
+ * {@link #registerMBean()} is called.
+ *
+ * @author sarod
+ *
+ */
+public class ConfigWatcher implements Closeable, ConfigWatcherMBean {
+
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+	private static final Logger LOGGER = Logger.getLogger(ConfigWatcher.class.getName());
+
+	private final ConfigBuilder configBuilder;
+
+	private final long debounceMillis;
+
+	/**
+	 * Loaded plugins by file name, value is null for non bundle plugins. Only
+	 * accessed from the watcher thread after {@link #start()}.
+	 */
+	private final Map<String, BundleInfo> index = new HashMap<String, BundleInfo>();
+
+	private List<BundleInfo> writtenBundleInfos;
+
+	private WatchService watchService;
+
+	private WatchKey pluginsDirectoryKey;
+
+	/**
+	 * File name of the directory bundle watched by each key, for the bundle
+	 * directory and its META-INF directory. Only accessed from the watcher
+	 * thread after {@link #start()}.
+	 */
+	private final Map<WatchKey, String> bundleDirectoryKeys = new HashMap<WatchKey, String>();
+
+	private Thread thread;
+
+	private volatile boolean closed;
+
+	private volatile int generationCount;
+
+	private volatile BuildMetrics lastBuildMetrics;
+
+	private volatile boolean jsonReport;
+
+	private ObjectName objectName;
+
+	public ConfigWatcher(ConfigBuilder configBuilder) {
+		this(configBuilder, DEFAULT_DEBOUNCE_MILLIS);
+	}
+
+	public ConfigWatcher(ConfigBuilder configBuilder, long debounceMillis) {
+		this.configBuilder = checkNotNull(configBuilder);
+		if (debounceMillis < 0) {
+			throw new IllegalArgumentException("debounceMillis should be a positive integer.");
+		}
+		this.debounceMillis = debounceMillis;
+	}
+
+	/**
+	 * Generate config.ini from the current plugins then start watching the
+	 * plugins directory in a background thread.
+	 *
+	 * @throws ConfigBuildingException
+	 *             if initial generation fails or if the directory cannot be
+	 *             watched
+	 */
+	public synchronized void start() throws ConfigBuildingException {
+		checkState(thread == null, "already started");
+		checkState(!closed, "closed");
+		checkState(!configBuilder.isRecursiveScan() && !configBuilder.isScanDropins(),
+				"recursive scan and dropins cannot be watched");
+		File pluginsDirectory = configBuilder.checkedPluginsDirectory();
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			// Register before the initial scan so that no change is missed
+			pluginsDirectoryKey = register(pluginsDirectory);
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Cannot watch plugins directory: " + pluginsDirectory, e);
+		}
+		rescanAll();
+
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch();
+			}
+		}, "equinox-config-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		LOGGER.log(Level.INFO, "Watching {0} for changes", pluginsDirectory);
+	}
+
+	/**
+	 * Wait until the watcher is closed.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		Thread watcherThread;
+		synchronized (this) {
+			watcherThread = thread;
+		}
+		if (watcherThread != null) {
+			watcherThread.join();
+		}
+	}
+
+	/**
+	 * Stop watching. Changes pending debounce are discarded.
+	 */
+	public void close() {
+		Thread watcherThread;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			watcherThread = thread;
+			unregisterMBean();
+			if (watchService != null) {
+				try {
+					watchService.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Error closing watch service", e);
+				}
+			}
+		}
+		if (watcherThread != null && watcherThread != Thread.currentThread()) {
+			try {
+				watcherThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return number of times config.ini was written since {@link #start()}
+	 *         including the initial generation
+	 */
+	public int getGenerationCount() {
+		return generationCount;
+	}
+
+	/**
+	 * @return metrics of the last regeneration, null before the initial one
+	 */
+	public BuildMetrics getLastBuildMetrics() {
+		return lastBuildMetrics;
+	}
+
+	public boolean isJsonReport() {
+		return jsonReport;
+	}
+
+	/**
+	 * @param jsonReport
+	 *            true to write the {@link BuildMetrics} of the initial
+	 *            generation and of each regeneration to
+	 *            {@link ConfigBuilder#getReportFile()}
+	 */
+	public void setJsonReport(boolean jsonReport) {
+		this.jsonReport = jsonReport;
+	}
+
+	/**
+	 * Register this watcher in the platform MBean server under
+	 * com.sarod.equinox.config.builder:type=ConfigWatcher,directory=&lt;eclipse
+	 * directory&gt;. It is unregistered by {@link #close()}.
+	 * 
+	 * @return the name of the MBean
+	 * @throws ConfigBuildingException
+	 *             if the MBean cannot be registered
+	 */
+	public synchronized ObjectName registerMBean() throws ConfigBuildingException {
+		checkState(!closed, "closed");
+		if (objectName == null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				ObjectName name = new ObjectName("com.sarod.equinox.config.builder:type=ConfigWatcher,directory="
+						+ ObjectName.quote(getEclipseDirectory()));
+				server.registerMBean(this, name);
+				objectName = name;
+			} catch (JMException e) {
+				throw new ConfigBuildingException("Cannot register MBean for " + getEclipseDirectory(), e);
+			}
+		}
+		return objectName;
+	}
+
+	private void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			LOGGER.log(Level.WARNING, "Error unregistering MBean " + objectName, e);
+		}
+		objectName = null;
+	}
+
+	public String getEclipseDirectory() {
+		return configBuilder.getEclipseDirectory().getAbsolutePath();
+	}
+
+	public String getLastResult() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null || metrics.getWriteResult() == null ? null : metrics.getWriteResult().name();
+	}
+
+	public long getLastBuildMillis() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getTotalMillis();
+	}
+
+	public long getLastReadPluginCount() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getReadPluginCount();
+	}
+
+	public long getLastCachedPluginCount() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getCachedPluginCount();
+	}
+
+	public long getLastBundleCount() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getBundleCount();
+	}
+
+	public long getLastFragmentCount() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getFragmentCount();
+	}
+
+	public long getLastNonBundleCount() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getNonBundleCount();
+	}
+
+	public long getLastBytesRead() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? 0 : metrics.getBytesRead();
+	}
+
+	public String[] getLastSlowestPlugins() {
+		BuildMetrics metrics = lastBuildMetrics;
+		if (metrics == null) {
+			return new String[0];
+		}
+		List<BuildMetrics.PluginTiming> slowest = metrics.getSlowestPlugins();
+		String[] timings = new String[slowest.size()];
+		for (int i = 0; i < timings.length; i++) {
+			timings[i] = slowest.get(i).toString();
+		}
+		return timings;
+	}
+
+	public String getLastReport() {
+		BuildMetrics metrics = lastBuildMetrics;
+		return metrics == null ? null : metrics.toJson();
+	}
+
+	private void watch() {
+		try {
+			while (!closed) {
+				WatchKey key = watchService.take();
+				Set<String> changedFileNames = new LinkedHashSet<String>();
+				boolean overflow = collectEvents(key, changedFileNames);
+				// Debounce: wait until no event was received during the delay
+				while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+					overflow |= collectEvents(key, changedFileNames);
+				}
+				try {
+					if (overflow) {
+						rescanAll();
+					} else {
+						rescan(changedFileNames);
+					}
+				} catch (ConfigBuildingException e) {
+					LOGGER.log(Level.WARNING, "Error regenerating config.ini", e);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// closed
+		} catch (InterruptedException e) {
+			close();
+		} catch (ConfigBuildingException e) {
+			LOGGER.log(Level.SEVERE, "Stopping watcher", e);
+			close();
+		}
+	}
+
+	/**
+	 * @return true if events were lost
+	 */
+	private boolean collectEvents(WatchKey key, Set<String> changedFileNames) {
+		boolean overflow = false;
+		String bundleDirectoryName = bundleDirectoryKeys.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else if (key == pluginsDirectoryKey) {
+				changedFileNames.add(((Path) event.context()).getFileName().toString());
+			} else if (bundleDirectoryName != null) {
+				changedFileNames.add(bundleDirectoryName);
+			}
+		}
+		if (!key.reset()) {
+			if (key == pluginsDirectoryKey) {
+				throw new ConfigBuildingException("Plugins directory is no longer accessible: " + key.watchable());
+			}
+			// Deleted bundle directory, reported by the plugins directory
+			bundleDirectoryKeys.remove(key);
+		}
+		return overflow;
+	}
+
+	private WatchKey register(File directory) throws IOException {
+		return directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	/**
+	 * Watch a directory bundle and its META-INF directory once it exists.
+	 * Done before reading the manifest so that no later change is missed.
+	 */
+	private void watchBundleDirectory(File bundleDirectory, String fileName) {
+		File metaInfDirectory = new File(bundleDirectory, "META-INF");
+		try {
+			bundleDirectoryKeys.put(register(bundleDirectory), fileName);
+			if (metaInfDirectory.isDirectory()) {
+				bundleDirectoryKeys.put(register(metaInfDirectory), fileName);
+			}
+		} catch (IOException e) {
+			// Probably deleted meanwhile: the plugins directory reports it
+			LOGGER.log(Level.FINE, "Cannot watch bundle directory " + bundleDirectory, e);
+		}
+	}
+
+	private void rescanAll() {
+		index.clear();
+		for (WatchKey key : bundleDirectoryKeys.keySet()) {
+			key.cancel();
+		}
+		bundleDirectoryKeys.clear();
+		long start = System.nanoTime();
+		Set<String> fileNames = new LinkedHashSet<String>();
+		String[] names = configBuilder.checkedPluginsDirectory().list();
+		if (names != null) {
+			Collections.addAll(fileNames, names);
+		}
+		BuildMetrics metrics = new BuildMetrics();
+		metrics.addPhaseNanos(BuildMetrics.Phase.LIST, System.nanoTime() - start);
+		rescan(fileNames, metrics);
+	}
+
+	private void rescan(Set<String> changedFileNames) {
+		rescan(changedFileNames, new BuildMetrics());
+	}
+
+	private void rescan(Set<String> changedFileNames, BuildMetrics metrics) {
+		BundleInfoLoader loader = configBuilder.getBundleInfoLoader();
+		File pluginsDirectory = configBuilder.getPluginsDirectory();
+		long start = System.nanoTime();
+		loader.setMetrics(metrics);
+		try {
+			for (String fileName : changedFileNames) {
+				File pluginFile = new File(pluginsDirectory, fileName);
+				index.remove(fileName);
+				if (pluginFile.exists() && loader.isPluginFile(pluginFile)) {
+					if (pluginFile.isDirectory()) {
+						watchBundleDirectory(pluginFile, fileName);
+					}
+					try {
+						index.put(fileName, loader.loadPluginBundleInfo(pluginFile));
+					} catch (ConfigBuildingException e) {
+						// Probably still being copied: a modify event will follow
+						LOGGER.log(Level.WARNING, "Ignoring unreadable plugin " + pluginFile + ": " + e.getMessage());
+					}
+				}
+			}
+		} finally {
+			loader.setMetrics(null);
+		}
+		long loadEnd = System.nanoTime();
+		metrics.addPhaseNanos(BuildMetrics.Phase.LOAD, loadEnd - start);
+
+		List<BundleInfo> loaded = new ArrayList<BundleInfo>();
+		for (BundleInfo bundleInfo : index.values()) {
+			if (bundleInfo != null) {
+				loaded.add(bundleInfo);
+			}
+		}
+		Collections.sort(loaded);
+		long sortEnd = System.nanoTime();
+		metrics.addPhaseNanos(BuildMetrics.Phase.SORT, sortEnd - loadEnd);
+		List<BundleInfo> bundleInfos = configBuilder.resolveBundleInfos(loaded);
+		metrics.addPhaseNanos(BuildMetrics.Phase.RESOLVE, System.nanoTime() - sortEnd);
+		// The fingerprint also covers the content of the plugins
+		if (bundleInfos.equals(writtenBundleInfos) && !configBuilder.isFingerprintEnabled()) {
+			LOGGER.log(Level.FINE, "Bundle list unchanged: config.ini not regenerated");
+			metrics.configured(bundleInfos.size(), WriteResult.UNCHANGED);
+			setLastBuildMetrics(metrics);
+			return;
+		}
+		WriteResult result = configBuilder.writeConfigFile(bundleInfos, metrics);
+		setLastBuildMetrics(metrics);
+		writtenBundleInfos = bundleInfos;
+		generationCount++;
+		LOGGER.log(Level.INFO, "Regenerated configuration/config.ini: " + bundleInfos.size() + " plugins configured (" + result
+				+ ").");
+	}
+
+	private void setLastBuildMetrics(BuildMetrics metrics) {
+		lastBuildMetrics = metrics;
+		if (jsonReport) {
+			metrics.writeJson(configBuilder.getReportFile());
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.sarod.equinox.config.builder;
+
+/**
+ * JMX view of a running {@link ConfigWatcher}: generation count and the
+ * metrics of the last regeneration, see {@link BuildMetrics}. Values are 0 or
+ * null until the initial generation is done.
+ * 
+ * @author sarod
+ *
+ */
+public interface ConfigWatcherMBean {
+
+	String getEclipseDirectory();
+
+	int getGenerationCount();
+
+	/**
+	 * @return CREATED, UPDATED or UNCHANGED
+	 */
+	String getLastResult();
+
+	long getLastBuildMillis();
+
+	long getLastReadPluginCount();
+
+	long getLastCachedPluginCount();
+
+	long getLastBundleCount();
+
+	long getLastFragmentCount();
+
+	long getLastNonBundleCount();
+
+	long getLastBytesRead();
+
+	/**
+	 * @return the slowest plugins of the last regeneration as "file time"
+	 *         strings, slowest first
+	 */
+	String[] getLastSlowestPlugins();
+
+	/**
+	 * @return {@link BuildMetrics#toJson()} of the last regeneration
+	 */
+	String getLastReport();
+
+}
@@ -0,0 +1,457 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+public class ConfigWriter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Framework start level used by equinox when osgi.startLevel is not set.
+	 */
+	private static final int EQUINOX_DEFAULT_FRAMEWORK_START_LEVEL = 6;
+
+	public static final String SIMPLE_CONFIGURATOR_BUNDLE_NAME = "org.eclipse.equinox.simpleconfigurator";
+
+	/**
+	 * Location of bundles.info relative to the configuration directory
+	 */
+	public static final String BUNDLES_INFO_PATH = SIMPLE_CONFIGURATOR_BUNDLE_NAME + "/bundles.info";
+
+	/**
+	 * Start level of the simple configurator, it installs the other bundles
+	 * so it has to start first
+	 */
+	private static final int SIMPLE_CONFIGURATOR_START_LEVEL = 1;
+
+	/**
+	 * Directory of the plugins relative to the install area, the base of the
+	 * bundles.info locations
+	 */
+	private static final String PLUGINS_LOCATION = "plugins/";
+
+	private final Random random = new Random();
+
+	private boolean referenceDirectoryBundles;
+
+	private ConfigFormat format = ConfigFormat.OSGI_BUNDLES;
+
+	public ConfigWriter() {
+	}
+
+	public boolean isReferenceDirectoryBundles() {
+		return referenceDirectoryBundles;
+	}
+
+	/**
+	 * When true exploded bundles ({@link BundleInfo#isDirectory()}) are
+	 * written as reference:file:&lt;directory&gt; URLs, relative to the
+	 * plugins directory, instead of their symbolic names so that equinox uses
+	 * the directory in place. Nested bundles ({@link BundleInfo#isNested()})
+	 * are always written this way.
+	 * 
+	 * @param referenceDirectoryBundles
+	 */
+	public void setReferenceDirectoryBundles(boolean referenceDirectoryBundles) {
+		this.referenceDirectoryBundles = referenceDirectoryBundles;
+	}
+
+	public ConfigFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Set how config.ini lists the bundles. Defaults to
+	 * {@link ConfigFormat#OSGI_BUNDLES}. With
+	 * {@link ConfigFormat#SIMPLE_CONFIGURATOR} config.ini only starts the
+	 * simple configurator and the bundles are written by
+	 * {@link #writeBundlesInfo(ConfigDescriptor, File)}.
+	 * 
+	 * @param format
+	 */
+	public void setFormat(ConfigFormat format) {
+		this.format = checkNotNull(format);
+	}
+
+	/**
+	 * Build the config content in memory. Convenience wrapper around
+	 * {@link #writeConfig(ConfigDescriptor, Writer)}.
+	 * 
+	 * @param descriptor
+	 * @return
+	 */
+	public String buildConfigContent(ConfigDescriptor descriptor) {
+		StringWriter configWriter = new StringWriter();
+		try {
+			writeConfig(descriptor, configWriter);
+		} catch (IOException e) {
+			// StringWriter does not throw IOException
+			throw new AssertionError(e);
+		}
+		return configWriter.toString();
+	}
+
+	/**
+	 * Stream the config content to a writer. The writer is flushed but not
+	 * closed.
+	 * 
+	 * @param descriptor
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeConfig(ConfigDescriptor descriptor, Writer out) throws IOException {
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>(descriptor.getBundleInfos());
+		// Sort bundle info to make the config file more readable
+		Collections.sort(bundleInfos);
+
+		out.write("#Product Runtime Configuration File\n");
+		out.write("osgi.bundles.defaultStartLevel=" + descriptor.getDefaultStartLevel() + "\n");
+		int maxStartLevel = maxStartLevel(descriptor, bundleInfos);
+		if (maxStartLevel > EQUINOX_DEFAULT_FRAMEWORK_START_LEVEL) {
+			// Otherwise bundles above the framework start level are never started
+			out.write("osgi.startLevel=" + maxStartLevel + "\n");
+		}
+		for (Map.Entry<String, String> property : descriptor.getFrameworkProperties().entrySet()) {
+			out.write(property.getKey() + "=" + property.getValue() + "\n");
+		}
+		if (format == ConfigFormat.SIMPLE_CONFIGURATOR) {
+			writeSimpleConfiguratorBundles(bundleInfos, out);
+		} else {
+			writeOsgiBundles(descriptor, bundleInfos, out);
+		}
+		out.flush();
+	}
+
+	private void writeSimpleConfiguratorBundles(List<BundleInfo> bundleInfos, Writer out) throws IOException {
+		BundleInfo simpleConfigurator = findSimpleConfigurator(bundleInfos);
+		// Relative to the configuration directory
+		out.write(SIMPLE_CONFIGURATOR_BUNDLE_NAME + ".configUrl=file:" + BUNDLES_INFO_PATH + "\n");
+		out.write("osgi.bundles=reference:file:");
+		out.write(simpleConfigurator.getFileName());
+		out.write("@" + SIMPLE_CONFIGURATOR_START_LEVEL + ":start,\\\n");
+		out.write("org.eclipse.rap.servletbridge.extensionbundle");
+	}
+
+	private BundleInfo findSimpleConfigurator(List<BundleInfo> bundleInfos) {
+		BundleInfo simpleConfigurator = null;
+		for (BundleInfo bundleInfo : bundleInfos) {
+			if (bundleInfo.getBundleName().equals(SIMPLE_CONFIGURATOR_BUNDLE_NAME)
+					&& (simpleConfigurator == null || simpleConfigurator.getVersion().compareTo(bundleInfo.getVersion()) < 0)) {
+				simpleConfigurator = bundleInfo;
+			}
+		}
+		if (simpleConfigurator == null) {
+			throw new ConfigBuildingException("Bundle " + SIMPLE_CONFIGURATOR_BUNDLE_NAME
+					+ " is required to write a simple configurator config.ini");
+		}
+		return simpleConfigurator;
+	}
+
+	private void writeOsgiBundles(ConfigDescriptor descriptor, List<BundleInfo> bundleInfos, Writer out) throws IOException {
+		out.write("osgi.bundles=");
+		for (BundleInfo bundleInfo : bundleInfos) {
+			if (bundleInfo.isNested() || (referenceDirectoryBundles && bundleInfo.isDirectory())) {
+				// Equinox only finds bundles by symbolic name directly in the
+				// plugins directory
+				out.write("reference:file:");
+				out.write(bundleInfo.getFileName());
+			} else {
+				out.write(bundleInfo.getBundleName());
+			}
+			if (!bundleInfo.isFragment()) {
+				Integer startLevel = descriptor.getBundleStartLevels().get(bundleInfo.getBundleName());
+				boolean start = !descriptor.getInstallOnlyBundleNames().contains(bundleInfo.getBundleName());
+				if (startLevel != null) {
+					out.write("@");
+					out.write(String.valueOf(startLevel));
+					if (start) {
+						out.write(":start");
+					}
+				} else if (start) {
+					out.write("@start");
+				}
+			}
+			out.write(",\\\n");
+		}
+		out.write("org.eclipse.rap.servletbridge.extensionbundle");
+	}
+
+	/**
+	 * Build the bundles.info content in memory. Convenience wrapper around
+	 * {@link #writeBundlesInfo(ConfigDescriptor, Writer)}.
+	 * 
+	 * @param descriptor
+	 * @return
+	 */
+	public String buildBundlesInfoContent(ConfigDescriptor descriptor) {
+		StringWriter bundlesInfoWriter = new StringWriter();
+		try {
+			writeBundlesInfo(descriptor, bundlesInfoWriter);
+		} catch (IOException e) {
+			// StringWriter does not throw IOException
+			throw new AssertionError(e);
+		}
+		return bundlesInfoWriter.toString();
+	}
+
+	/**
+	 * Stream the p2 bundles.info read by the simple configurator to a
+	 * writer: one
+	 * <code>&lt;name&gt;,&lt;version&gt;,&lt;location&gt;,&lt;start level&gt;,&lt;autostart&gt;</code>
+	 * line per bundle, locations being relative to the install area. Bundles
+	 * without explicit start level use the default start level, fragments
+	 * are never started. The writer is flushed but not closed.
+	 * 
+	 * @param descriptor
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeBundlesInfo(ConfigDescriptor descriptor, Writer out) throws IOException {
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>(descriptor.getBundleInfos());
+		Collections.sort(bundleInfos);
+
+		out.write("#encoding=UTF-8\n");
+		out.write("#version=1\n");
+		for (BundleInfo bundleInfo : bundleInfos) {
+			int startLevel = descriptor.getDefaultStartLevel();
+			boolean start = false;
+			if (bundleInfo.getBundleName().equals(SIMPLE_CONFIGURATOR_BUNDLE_NAME)) {
+				startLevel = SIMPLE_CONFIGURATOR_START_LEVEL;
+				start = true;
+			} else if (!bundleInfo.isFragment()) {
+				Integer bundleStartLevel = descriptor.getBundleStartLevels().get(bundleInfo.getBundleName());
+				if (bundleStartLevel != null) {
+					startLevel = bundleStartLevel;
+				}
+				start = !descriptor.getInstallOnlyBundleNames().contains(bundleInfo.getBundleName());
+			}
+			out.write(bundleInfo.getBundleName());
+			out.write(',');
+			out.write(bundleInfo.getBundleVersion() == null ? BundleVersion.EMPTY.toString() : bundleInfo.getBundleVersion());
+			out.write(',');
+			out.write(location(bundleInfo));
+			out.write(',');
+			out.write(String.valueOf(startLevel));
+			out.write(',');
+			out.write(String.valueOf(start));
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write the bundles.info file for the descriptor, the same way as
+	 * {@link #writeConfig(ConfigDescriptor, File)}.
+	 * 
+	 * @param descriptor
+	 * @param targetBundlesInfoFile
+	 * @return whether the file was created, updated or left unchanged
+	 */
+	public WriteResult writeBundlesInfo(final ConfigDescriptor descriptor, File targetBundlesInfoFile) {
+		return writeFile(targetBundlesInfoFile, new Content() {
+			public void write(Writer out) throws IOException {
+				writeBundlesInfo(descriptor, out);
+			}
+		});
+	}
+
+	/**
+	 * Write a fingerprint computed by {@link BundleSetFingerprinter} on a
+	 * single line, the same way as
+	 * {@link #writeConfig(ConfigDescriptor, File)}.
+	 * 
+	 * @param fingerprint
+	 * @param targetFingerprintFile
+	 * @return whether the file was created, updated or left unchanged
+	 */
+	public WriteResult writeFingerprint(final String fingerprint, File targetFingerprintFile) {
+		checkNotNull(fingerprint);
+		return writeFile(targetFingerprintFile, new Content() {
+			public void write(Writer out) throws IOException {
+				out.write(fingerprint);
+				out.write('\n');
+				out.flush();
+			}
+		});
+	}
+
+	/**
+	 * @return the plugin location relative to the install area, directories
+	 *         ending with /
+	 */
+	private String location(BundleInfo bundleInfo) {
+		String fileName = bundleInfo.getFileName();
+		String location = fileName.startsWith("../") ? fileName.substring(3) : PLUGINS_LOCATION + fileName;
+		return bundleInfo.isDirectory() ? location + "/" : location;
+	}
+
+	private int maxStartLevel(ConfigDescriptor descriptor, List<BundleInfo> bundleInfos) {
+		int maxStartLevel = descriptor.getDefaultStartLevel();
+		for (BundleInfo bundleInfo : bundleInfos) {
+			Integer startLevel = descriptor.getBundleStartLevels().get(bundleInfo.getBundleName());
+			if (startLevel != null && !bundleInfo.isFragment()) {
+				maxStartLevel = Math.max(maxStartLevel, startLevel);
+			}
+		}
+		return maxStartLevel;
+	}
+
+	/**
+	 * Stream the config content encoded in UTF-8 to an output stream. The
+	 * stream is flushed but not closed.
+	 * 
+	 * @param descriptor
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeConfig(ConfigDescriptor descriptor, OutputStream out) throws IOException {
+		writeConfig(descriptor, new BufferedWriter(new OutputStreamWriter(out, UTF_8), BUFFER_SIZE));
+	}
+
+	/**
+	 * Write the config file for the descriptor.
+	 * <p>
+	 * The content is streamed to a temporary file next to the target file
+	 * which is then atomically moved in place so that the target file is never
+	 * seen partially written. The file is left untouched, including its
+	 * modification time, when it already has the expected content.
+	 * 
+	 * @param descriptor
+	 * @param targetConfigFile
+	 * @return whether the file was created, updated or left unchanged
+	 */
+	public WriteResult writeConfig(final ConfigDescriptor descriptor, File targetConfigFile) {
+		return writeFile(targetConfigFile, new Content() {
+			public void write(Writer out) throws IOException {
+				writeConfig(descriptor, out);
+			}
+		});
+	}
+
+	private WriteResult writeFile(File targetConfigFile, Content content) {
+		File directory = targetConfigFile.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		Path target = targetConfigFile.toPath();
+		Path tmp = new File(directory, targetConfigFile.getName() + "." + Long.toHexString(random.nextLong()) + ".tmp").toPath();
+		try {
+			try {
+				writeTmpConfig(content, tmp);
+				boolean exists = Files.exists(target);
+				if (exists && sameContent(tmp, target)) {
+					return WriteResult.UNCHANGED;
+				}
+				moveAtomically(tmp, target);
+				return exists ? WriteResult.UPDATED : WriteResult.CREATED;
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error writing config file: " + targetConfigFile, e);
+		}
+	}
+
+	private void writeTmpConfig(Content content, Path tmp) throws IOException {
+		FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try {
+			Writer out = new BufferedWriter(Channels.newWriter(channel, UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+			content.write(out);
+			// Make sure content is on disk before the file is moved in place
+			channel.force(false);
+		} finally {
+			IOUtils.closeQuietly(channel);
+		}
+	}
+
+	private void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private boolean sameContent(Path file1, Path file2) throws IOException {
+		if (!Files.isRegularFile(file2) || Files.size(file1) != Files.size(file2)) {
+			return false;
+		}
+		FileChannel channel1 = FileChannel.open(file1, StandardOpenOption.READ);
+		try {
+			FileChannel channel2 = FileChannel.open(file2, StandardOpenOption.READ);
+			try {
+				ByteBuffer buffer1 = ByteBuffer.allocate(BUFFER_SIZE);
+				ByteBuffer buffer2 = ByteBuffer.allocate(BUFFER_SIZE);
+				while (true) {
+					buffer1.clear();
+					buffer2.clear();
+					int read1 = readFully(channel1, buffer1);
+					int read2 = readFully(channel2, buffer2);
+					if (read1 != read2) {
+						return false;
+					}
+					if (read1 == 0) {
+						return true;
+					}
+					buffer1.flip();
+					buffer2.flip();
+					if (!buffer1.equals(buffer2)) {
+						return false;
+					}
+				}
+			} finally {
+				IOUtils.closeQuietly(channel2);
+			}
+		} finally {
+			IOUtils.closeQuietly(channel1);
+		}
+	}
+
+	private int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer);
+			if (read == -1) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Content of a file written by {@link ConfigWriter#writeFile(File, Content)}
+	 */
+	private interface Content {
+
+		/**
+		 * Write and flush the content
+		 */
+		void write(Writer out) throws IOException;
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependency graph of the non fragment bundles. Nodes are indexes in the
+ * bundle list, edges go from a bundle to the bundles it depends on.
+ * 
+ * @author sarod
+ *
+ */
+final class DependencyGraph {
+
+	private static final int[] NO_DEPENDENCIES = new int[0];
+
+	private final List<BundleInfo> bundles = new ArrayList<BundleInfo>();
+	private final int[][] dependencies;
+
+	DependencyGraph(Collection<BundleInfo> bundleInfos) {
+		Map<String, List<Integer>> nodesByName = new HashMap<String, List<Integer>>();
+		List<BundleInfo> fragments = new ArrayList<BundleInfo>();
+		for (BundleInfo bundleInfo : bundleInfos) {
+			if (bundleInfo.isFragment()) {
+				fragments.add(bundleInfo);
+			} else {
+				add(nodesByName, bundleInfo.getBundleName(), bundles.size());
+				bundles.add(bundleInfo);
+			}
+		}
+
+		// Fragments contribute their requirements and exports to hosts
+		Map<Integer, List<BundleInfo>> fragmentsByNode = new HashMap<Integer, List<BundleInfo>>();
+		for (BundleInfo fragment : fragments) {
+			List<Integer> hosts = nodesByName.get(fragment.getHostName());
+			if (hosts != null) {
+				for (Integer host : hosts) {
+					List<BundleInfo> hostFragments = fragmentsByNode.get(host);
+					if (hostFragments == null) {
+						hostFragments = new ArrayList<BundleInfo>(1);
+						fragmentsByNode.put(host, hostFragments);
+					}
+					hostFragments.add(fragment);
+				}
+			}
+		}
+
+		Map<String, List<Integer>> exportersByPackage = new HashMap<String, List<Integer>>();
+		for (int node = 0; node < bundles.size(); node++) {
+			for (BundleInfo contributor : contributors(node, fragmentsByNode)) {
+				for (ExportedPackage exportedPackage : contributor.getExportedPackages()) {
+					add(exportersByPackage, exportedPackage.getName(), node);
+				}
+			}
+		}
+
+		dependencies = new int[bundles.size()][];
+		for (int node = 0; node < bundles.size(); node++) {
+			List<Integer> nodeDependencies = new ArrayList<Integer>();
+			for (BundleInfo contributor : contributors(node, fragmentsByNode)) {
+				addDependencies(nodeDependencies, node, contributor.getRequiredBundles(), nodesByName);
+				addDependencies(nodeDependencies, node, contributor.getImportedPackages(), exportersByPackage);
+			}
+			dependencies[node] = toArray(nodeDependencies);
+		}
+	}
+
+	private List<BundleInfo> contributors(int node, Map<Integer, List<BundleInfo>> fragmentsByNode) {
+		List<BundleInfo> hostFragments = fragmentsByNode.get(node);
+		if (hostFragments == null) {
+			return Collections.singletonList(bundles.get(node));
+		}
+		List<BundleInfo> contributors = new ArrayList<BundleInfo>(hostFragments.size() + 1);
+		contributors.add(bundles.get(node));
+		contributors.addAll(hostFragments);
+		return contributors;
+	}
+
+	private static void addDependencies(List<Integer> nodeDependencies, int node, List<Requirement> requirements,
+			Map<String, List<Integer>> providersByName) {
+		for (Requirement requirement : requirements) {
+			List<Integer> providers = providersByName.get(requirement.getName());
+			if (providers != null) {
+				for (Integer provider : providers) {
+					if (provider != node) {
+						nodeDependencies.add(provider);
+					}
+				}
+			}
+		}
+	}
+
+	private static void add(Map<String, List<Integer>> multimap, String key, int value) {
+		List<Integer> values = multimap.get(key);
+		if (values == null) {
+			values = new ArrayList<Integer>(1);
+			multimap.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		if (list.isEmpty()) {
+			return NO_DEPENDENCIES;
+		}
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	int size() {
+		return bundles.size();
+	}
+
+	BundleInfo bundle(int node) {
+		return bundles.get(node);
+	}
+
+	int[] dependencies(int node) {
+		return dependencies[node];
+	}
+
+	/**
+	 * Breadth first traversal of the dependencies.
+	 * 
+	 * @param roots
+	 *            the nodes to start from, indexed by node
+	 * @return the nodes reachable from the roots, roots included
+	 */
+	boolean[] reachableFrom(boolean[] roots) {
+		boolean[] reached = roots.clone();
+		int[] queue = new int[size()];
+		int head = 0;
+		int tail = 0;
+		for (int node = 0; node < reached.length; node++) {
+			if (reached[node]) {
+				queue[tail++] = node;
+			}
+		}
+		while (head < tail) {
+			for (int dependency : dependencies[queue[head++]]) {
+				if (!reached[dependency]) {
+					reached[dependency] = true;
+					queue[tail++] = dependency;
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Iterative Tarjan algorithm, recursion would overflow the stack on
+	 * long dependency chains.
+	 * 
+	 * @param sccOf
+	 *            receives the component index of each node
+	 * @return the components, a component being emitted after all the
+	 *         components it depends on
+	 */
+	List<int[]> stronglyConnectedComponents(int[] sccOf) {
+		int n = size();
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] lowLink = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n];
+		int[] edgePosition = new int[n];
+		int counter = 0;
+		List<int[]> sccs = new ArrayList<int[]>();
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			int callStackSize = 0;
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			callStack[callStackSize++] = root;
+			while (callStackSize > 0) {
+				int node = callStack[callStackSize - 1];
+				if (edgePosition[node] < dependencies[node].length) {
+					int dependency = dependencies[node][edgePosition[node]++];
+					if (index[dependency] == -1) {
+						index[dependency] = lowLink[dependency] = counter++;
+						stack[stackSize++] = dependency;
+						onStack[dependency] = true;
+						callStack[callStackSize++] = dependency;
+					} else if (onStack[dependency]) {
+						lowLink[node] = Math.min(lowLink[node], index[dependency]);
+					}
+				} else {
+					callStackSize--;
+					if (lowLink[node] == index[node]) {
+						int sccStart = stackSize;
+						do {
+							sccStart--;
+						} while (stack[sccStart] != node);
+						int[] members = Arrays.copyOfRange(stack, sccStart, stackSize);
+						for (int member : members) {
+							onStack[member] = false;
+							sccOf[member] = sccs.size();
+						}
+						stackSize = sccStart;
+						sccs.add(members);
+					}
+					if (callStackSize > 0) {
+						int caller = callStack[callStackSize - 1];
+						lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+					}
+				}
+			}
+		}
+		return sccs;
+	}
+}
@@ -0,0 +1,41 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Locale;
+
+/**
+ * What to do when several versions of the same bundle are found in the
+ * plugins directory.
+ * 
+ * @author sarod
+ *
+ */
+public enum DuplicateBundlePolicy {
+
+	/**
+	 * Keep only the highest version of each bundle.
+	 */
+	KEEP_HIGHEST,
+
+	/**
+	 * Keep all versions.
+	 */
+	KEEP_ALL,
+
+	/**
+	 * Fail the build.
+	 */
+	FAIL;
+
+	/**
+	 * Parse a policy name, case insensitive, accepting '-' instead of '_'
+	 * e.g. keep-highest
+	 * 
+	 * @param value
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if value is not a policy name
+	 */
+	public static DuplicateBundlePolicy fromString(String value) {
+		return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+	}
+}
@@ -0,0 +1,50 @@
+package com.sarod.equinox.config.builder;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * A package exported by a bundle. This class is immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class ExportedPackage {
+
+	private final String name;
+	private final BundleVersion version;
+
+	public ExportedPackage(String name, BundleVersion version) {
+		this.name = checkNotNull(name);
+		this.version = checkNotNull(version);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BundleVersion getVersion() {
+		return version;
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode() * 31 + version.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ExportedPackage)) {
+			return false;
+		}
+		ExportedPackage other = (ExportedPackage) obj;
+		return name.equals(other.name) && version.equals(other.version);
+	}
+
+	@Override
+	public String toString() {
+		return name + ";version=\"" + version + "\"";
+	}
+}
@@ -0,0 +1,277 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * {@link BundleInfoCache} persisted in a file between builds. Entries are
+ * keyed by plugin file name so a cache file is meant to be used for a single
+ * plugins directory.
+ * <p>
+ * The cache file is protected by a format version and a checksum. A cache
+ * file that is missing, corrupted or written by another format version is
+ * ignored and rebuilt.
+ * 
+ * @author sarod
+ *
+ */
+public class FileBundleInfoCache implements BundleInfoCache {
+
+	private static final int MAGIC = 0xEC0B1C4C;
+
+	/**
+	 * Must be incremented each time the serialized form changes.
+	 */
+	static final int FORMAT_VERSION = 4;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Logger LOGGER = Logger.getLogger(FileBundleInfoCache.class.getName());
+
+	private final File cacheFile;
+
+	private final Map<String, Entry> loadedEntries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Entries used or added since {@link #load()}. Only those are saved so
+	 * that removed plugins do not stay in the cache forever.
+	 */
+	private final Map<String, Entry> usedEntries = new ConcurrentHashMap<String, Entry>();
+
+	private volatile boolean modified;
+
+	public FileBundleInfoCache(File cacheFile) {
+		this.cacheFile = checkNotNull(cacheFile);
+	}
+
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+	public Entry get(File pluginFile) {
+		String key = pluginFile.getName();
+		Entry entry = loadedEntries.get(key);
+		if (entry != null) {
+			usedEntries.put(key, entry);
+		}
+		return entry;
+	}
+
+	public void put(File pluginFile, Entry entry) {
+		checkNotNull(entry);
+		String key = pluginFile.getName();
+		loadedEntries.put(key, entry);
+		usedEntries.put(key, entry);
+		modified = true;
+	}
+
+	public int size() {
+		return loadedEntries.size();
+	}
+
+	/**
+	 * Load the entries from the cache file. Never fails: a missing or invalid
+	 * cache file results in an empty cache.
+	 */
+	public void load() {
+		loadedEntries.clear();
+		usedEntries.clear();
+		modified = false;
+		if (!cacheFile.isFile()) {
+			return;
+		}
+		try {
+			loadedEntries.putAll(readEntries(readFully(cacheFile)));
+			LOGGER.log(Level.FINE, "Loaded {0} entries from bundle cache {1}", new Object[] { loadedEntries.size(), cacheFile });
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Ignoring invalid bundle cache " + cacheFile + ": " + e.getMessage());
+			loadedEntries.clear();
+			modified = true;
+		}
+	}
+
+	/**
+	 * Save the entries used or added since {@link #load()} to the cache file
+	 * if they changed. Errors are logged and ignored as the cache is only an
+	 * optimization.
+	 */
+	public void save() {
+		if (!modified && usedEntries.size() == loadedEntries.size()) {
+			return;
+		}
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		try {
+			byte[] content = writeEntries(usedEntries);
+			cacheFile.getParentFile().mkdirs();
+			FileOutputStream out = new FileOutputStream(tmpFile);
+			try {
+				out.write(content);
+			} finally {
+				IOUtils.closeQuietly(out);
+			}
+			if (!tmpFile.renameTo(cacheFile) && !(cacheFile.delete() && tmpFile.renameTo(cacheFile))) {
+				throw new IOException("Cannot rename " + tmpFile + " to " + cacheFile);
+			}
+			modified = false;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Error saving bundle cache " + cacheFile, e);
+			tmpFile.delete();
+		}
+	}
+
+	private static byte[] readFully(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Layout: magic, format version, entries, CRC32 of everything before it.
+	 */
+	static byte[] writeEntries(Map<String, Entry> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes));
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(entries.size());
+		for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+			Entry entry = mapEntry.getValue();
+			out.writeUTF(mapEntry.getKey());
+			out.writeLong(entry.getLength());
+			out.writeLong(entry.getLastModified());
+			writeBundleInfo(out, entry.getBundleInfo());
+		}
+		out.flush();
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static Map<String, Entry> readEntries(byte[] content) throws IOException {
+		if (content.length < 8) {
+			throw new IOException("truncated cache file");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length - 8);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+		in.skipBytes(content.length - 8);
+		if (in.readLong() != crc.getValue()) {
+			throw new IOException("checksum mismatch");
+		}
+
+		in = new DataInputStream(new ByteArrayInputStream(content, 0, content.length - 8));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a bundle cache file");
+		}
+		int formatVersion = in.readInt();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("unsupported format version " + formatVersion);
+		}
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("invalid entry count " + size);
+		}
+		Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+		for (int i = 0; i < size; i++) {
+			String key = in.readUTF();
+			long length = in.readLong();
+			long lastModified = in.readLong();
+			entries.put(key, new Entry(length, lastModified, readBundleInfo(in)));
+		}
+		if (in.available() != 0) {
+			throw new IOException("unexpected trailing content");
+		}
+		return entries;
+	}
+
+	private static void writeBundleInfo(DataOutputStream out, BundleInfo bundleInfo) throws IOException {
+		out.writeBoolean(bundleInfo != null);
+		if (bundleInfo == null) {
+			return;
+		}
+		out.writeUTF(bundleInfo.getFileName());
+		out.writeUTF(bundleInfo.getBundleName());
+		writeNullableString(out, bundleInfo.getBundleVersion());
+		writeNullableString(out, bundleInfo.isFragment() ? bundleInfo.getHostName() : null);
+		out.writeBoolean(bundleInfo.isDirectory());
+		writeNullableString(out, bundleInfo.getRequireBundleHeader());
+		writeNullableString(out, bundleInfo.getImportPackageHeader());
+		writeNullableString(out, bundleInfo.getExportPackageHeader());
+		writeNullableString(out, bundleInfo.getActivator());
+		writeNullableString(out, bundleInfo.getActivationPolicyHeader());
+		writeNullableString(out, bundleInfo.getServiceComponentHeader());
+	}
+
+	private static BundleInfo readBundleInfo(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		String fileName = in.readUTF();
+		String bundleName = in.readUTF();
+		String bundleVersion = readNullableString(in);
+		String hostName = readNullableString(in);
+		boolean directory = in.readBoolean();
+		return BundleInfo.builder(fileName, bundleName).bundleVersion(bundleVersion).fragmentHostName(hostName).directory(directory)
+				.requireBundleHeader(readNullableString(in)).importPackageHeader(readNullableString(in))
+				.exportPackageHeader(readNullableString(in)).activator(readNullableString(in))
+				.activationPolicyHeader(readNullableString(in)).serviceComponentHeader(readNullableString(in)).build();
+	}
+
+	/**
+	 * Strings are written as length prefixed UTF-8 as manifest headers can
+	 * exceed the 64KB limit of {@link DataOutputStream#writeUTF(String)}
+	 */
+	private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readNullableString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > in.available()) {
+			throw new IOException("invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A clause of an OSGi manifest header such as Import-Package or
+ * Require-Bundle: one or more values followed by attributes (name=value) and
+ * directives (name:=value). This class is immutable.
+ * 
+ * <pre>
+ * Import-Package: org.a;org.b;version="[1.0,2.0)";resolution:=optional,org.c
+ * </pre>
+ * 
+ * @author sarod
+ *
+ */
+public final class ManifestElement {
+
+	private final List<String> values;
+	private final Map<String, String> attributes;
+	private final Map<String, String> directives;
+
+	private ManifestElement(List<String> values, Map<String, String> attributes, Map<String, String> directives) {
+		this.values = Collections.unmodifiableList(values);
+		this.attributes = Collections.unmodifiableMap(attributes);
+		this.directives = Collections.unmodifiableMap(directives);
+	}
+
+	/**
+	 * Parse a header value into its clauses. Commas and semicolons inside
+	 * quoted strings are not separators.
+	 * 
+	 * @param header
+	 *            the header value, may be null
+	 * @return the clauses, empty if header is null or empty
+	 * @throws IllegalArgumentException
+	 *             if header is malformed (unterminated quote, clause without
+	 *             value)
+	 */
+	public static List<ManifestElement> parseHeader(String header) {
+		if (header == null) {
+			return Collections.emptyList();
+		}
+		List<ManifestElement> elements = new ArrayList<ManifestElement>();
+		for (String clause : split(header, ',')) {
+			if (clause.trim().length() == 0) {
+				continue;
+			}
+			List<String> values = new ArrayList<String>(1);
+			Map<String, String> attributes = new HashMap<String, String>();
+			Map<String, String> directives = new HashMap<String, String>();
+			for (String part : split(clause, ';')) {
+				int equalIndex = indexOfUnquoted(part, '=');
+				if (equalIndex == -1) {
+					String value = part.trim();
+					if (value.length() > 0) {
+						values.add(value);
+					}
+				} else if (equalIndex > 0 && part.charAt(equalIndex - 1) == ':') {
+					directives.put(part.substring(0, equalIndex - 1).trim(), unquote(part.substring(equalIndex + 1)));
+				} else {
+					attributes.put(part.substring(0, equalIndex).trim(), unquote(part.substring(equalIndex + 1)));
+				}
+			}
+			if (values.isEmpty()) {
+				throw new IllegalArgumentException("Clause without value in header: " + header);
+			}
+			elements.add(new ManifestElement(values, attributes, directives));
+		}
+		return elements;
+	}
+
+	private static List<String> split(String value, char separator) {
+		List<String> parts = new ArrayList<String>();
+		boolean quoted = false;
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == separator && !quoted) {
+				parts.add(value.substring(start, i));
+				start = i + 1;
+			}
+		}
+		if (quoted) {
+			throw new IllegalArgumentException("Unterminated quoted string in header: " + value);
+		}
+		parts.add(value.substring(start));
+		return parts;
+	}
+
+	private static int indexOfUnquoted(String value, char searched) {
+		boolean quoted = false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == searched && !quoted) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String unquote(String value) {
+		value = value.trim();
+		if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * @return the first value of the clause
+	 */
+	public String getValue() {
+		return values.get(0);
+	}
+
+	public List<String> getValues() {
+		return values;
+	}
+
+	public String getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	public String getDirective(String name) {
+		return directives.get(name);
+	}
+
+	@Override
+	public String toString() {
+		return "ManifestElement [values=" + values + ", attributes=" + attributes + ", directives=" + directives + "]";
+	}
+
+}
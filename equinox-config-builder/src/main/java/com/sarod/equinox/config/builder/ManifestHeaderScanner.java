@@ -0,0 +1,214 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Read a few headers from the main section of a manifest without building
+ * a {@link java.util.jar.Manifest}.
+ * <p>
+ * Manifests of real bundles contain many headers, Export-Package alone often
+ * spans hundreds of 72 bytes continuation lines. The scanner compares header
+ * names directly on the bytes and only decodes the values of the requested
+ * headers, skipping the other ones without creating strings. Sections after
+ * the main one are not read.
+ * <p>
+ * Results are the same as {@link java.util.jar.Attributes#getValue(String)}
+ * on the main attributes of a valid manifest: header names are case
+ * insensitive, continuation lines start with a space, lines end with CR, LF
+ * or CRLF, an unterminated last line is ignored and the last occurrence of a
+ * repeated header wins. This class is thread safe.
+ *
+ * @author sarod
+ *
+ */
+public final class ManifestHeaderScanner {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private static final int NOT_REQUESTED = -1;
+
+	private static final int NO_HEADER = -2;
+
+	private final String[] headerNames;
+
+	/**
+	 * Requested names in lower case ASCII bytes
+	 */
+	private final byte[][] lowerCaseNames;
+
+	/**
+	 * Manifest bytes, reused between scans of the same thread
+	 */
+	private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+	public ManifestHeaderScanner(Collection<String> headerNames) {
+		checkNotNull(headerNames);
+		this.headerNames = headerNames.toArray(new String[headerNames.size()]);
+		this.lowerCaseNames = new byte[this.headerNames.length][];
+		for (int i = 0; i < this.headerNames.length; i++) {
+			byte[] name = this.headerNames[i].getBytes(UTF_8);
+			for (int j = 0; j < name.length; j++) {
+				name[j] = toLowerCase(name[j]);
+			}
+			lowerCaseNames[i] = name;
+		}
+	}
+
+	public ManifestHeaderScanner(String... headerNames) {
+		this(Arrays.asList(headerNames));
+	}
+
+	/**
+	 * Read the manifest until the end of the stream and extract the requested
+	 * headers. The stream is not closed.
+	 *
+	 * @param manifestStream
+	 * @return the values of the requested headers present in the manifest,
+	 *         keyed by the requested names
+	 * @throws IOException
+	 *             if the stream cannot be read or the main section is
+	 *             malformed
+	 */
+	public Map<String, String> scan(InputStream manifestStream) throws IOException {
+		byte[] buffer = buffers.get();
+		if (buffer == null) {
+			buffer = new byte[INITIAL_BUFFER_SIZE];
+		}
+		int length = 0;
+		int read;
+		while ((read = manifestStream.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+		buffers.set(buffer);
+		return scan(buffer, 0, length);
+	}
+
+	/**
+	 * Extract the requested headers from manifest bytes.
+	 *
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return the values of the requested headers present in the manifest,
+	 *         keyed by the requested names
+	 * @throws IOException
+	 *             if the main section is malformed
+	 */
+	public Map<String, String> scan(byte[] bytes, int offset, int length) throws IOException {
+		Map<String, String> headers = new HashMap<String, String>();
+		int end = offset + length;
+		int position = offset;
+		int lineNumber = 0;
+		int current = NO_HEADER;
+		// Value of the current requested header: a slice of bytes until a
+		// continuation line is found then a copy in valueBuffer
+		int valueStart = 0;
+		int valueEnd = 0;
+		byte[] valueBuffer = null;
+		int valueLength = -1;
+		while (position < end) {
+			int lineEnd = position;
+			while (lineEnd < end && bytes[lineEnd] != '\n' && bytes[lineEnd] != '\r') {
+				lineEnd++;
+			}
+			if (lineEnd == end) {
+				// Unterminated last line, ignored like Manifest does
+				break;
+			}
+			int next = lineEnd + 1;
+			if (bytes[lineEnd] == '\r' && next < end && bytes[next] == '\n') {
+				next++;
+			}
+			lineNumber++;
+			if (lineEnd == position) {
+				// Empty line: end of the main section
+				break;
+			}
+			if (bytes[position] == ' ') {
+				if (current == NO_HEADER) {
+					throw new IOException("misplaced continuation line (line " + lineNumber + ")");
+				}
+				if (current != NOT_REQUESTED) {
+					if (valueLength == -1) {
+						valueBuffer = new byte[Math.max(2 * (valueEnd - valueStart + lineEnd - position), 128)];
+						System.arraycopy(bytes, valueStart, valueBuffer, 0, valueEnd - valueStart);
+						valueLength = valueEnd - valueStart;
+					}
+					int continuationLength = lineEnd - position - 1;
+					if (valueLength + continuationLength > valueBuffer.length) {
+						valueBuffer = Arrays.copyOf(valueBuffer, 2 * (valueLength + continuationLength));
+					}
+					System.arraycopy(bytes, position + 1, valueBuffer, valueLength, continuationLength);
+					valueLength += continuationLength;
+				}
+			} else {
+				if (current >= 0) {
+					headers.put(headerNames[current], value(bytes, valueStart, valueEnd, valueBuffer, valueLength));
+				}
+				int colon = position;
+				while (colon < lineEnd && bytes[colon] != ':') {
+					colon++;
+				}
+				if (colon + 1 >= lineEnd || bytes[colon + 1] != ' ') {
+					throw new IOException("invalid header field (line " + lineNumber + ")");
+				}
+				current = requestedHeader(bytes, position, colon);
+				valueStart = colon + 2;
+				valueEnd = lineEnd;
+				valueLength = -1;
+			}
+			position = next;
+		}
+		if (current >= 0) {
+			headers.put(headerNames[current], value(bytes, valueStart, valueEnd, valueBuffer, valueLength));
+		}
+		return headers;
+	}
+
+	private static String value(byte[] bytes, int valueStart, int valueEnd, byte[] valueBuffer, int valueLength) {
+		if (valueLength == -1) {
+			return new String(bytes, valueStart, valueEnd - valueStart, UTF_8);
+		}
+		// Continuation lines are joined before decoding as they may split a
+		// multi byte character
+		return new String(valueBuffer, 0, valueLength, UTF_8);
+	}
+
+	private int requestedHeader(byte[] bytes, int nameStart, int nameEnd) {
+		int nameLength = nameEnd - nameStart;
+		for (int i = 0; i < lowerCaseNames.length; i++) {
+			byte[] name = lowerCaseNames[i];
+			if (name.length == nameLength && sameName(name, bytes, nameStart)) {
+				return i;
+			}
+		}
+		return NOT_REQUESTED;
+	}
+
+	private static boolean sameName(byte[] lowerCaseName, byte[] bytes, int nameStart) {
+		for (int i = 0; i < lowerCaseName.length; i++) {
+			if (lowerCaseName[i] != toLowerCase(bytes[nameStart + i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+}
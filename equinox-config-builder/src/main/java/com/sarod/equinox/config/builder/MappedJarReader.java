@@ -0,0 +1,200 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+/**
+ * Read a single entry of a jar by memory mapping the file and walking the
+ * zip structures in the mapped buffer: end of central directory record,
+ * central directory then local header of the entry.
+ * <p>
+ * Only the pages holding these structures and the entry data are touched so
+ * nothing is copied through a stream buffer. Zip64 archives, encrypted
+ * entries and compression methods other than stored and deflated are not
+ * supported: a {@link ZipException} is thrown and callers should fall back
+ * to {@link java.util.zip.ZipFile}.
+ *
+ * @author sarod
+ *
+ */
+final class MappedJarReader {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int EOCD_SIGNATURE = 0x06054b50;
+	private static final int EOCD_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	private static final int CEN_SIGNATURE = 0x02014b50;
+	private static final int CEN_SIZE = 46;
+
+	private static final int LOC_SIGNATURE = 0x04034b50;
+	private static final int LOC_SIZE = 30;
+
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+
+	private static final int ENCRYPTED_FLAG = 1;
+
+	/**
+	 * Larger entries are not expected in the central directory of a plugin
+	 * jar and are left to ZipFile
+	 */
+	private static final int MAX_ENTRY_SIZE = 16 * 1024 * 1024;
+
+	private MappedJarReader() {
+	}
+
+	/**
+	 * @param jarFile
+	 * @param entryName
+	 * @return the uncompressed entry content, null if the jar has no such
+	 *         entry
+	 * @throws ZipException
+	 *             if the file is not a zip file or uses an unsupported zip
+	 *             feature
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	static byte[] readEntry(File jarFile, String entryName) throws IOException {
+		FileChannel channel = FileChannel.open(jarFile.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new ZipException("File too large to be mapped: " + jarFile);
+			}
+			if (size < EOCD_SIZE) {
+				throw new ZipException("Not a zip file: " + jarFile);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return readEntry(buffer, entryName.getBytes(UTF_8), jarFile);
+		} finally {
+			IOUtils.closeQuietly(channel);
+		}
+	}
+
+	private static byte[] readEntry(MappedByteBuffer buffer, byte[] entryName, File jarFile) throws IOException {
+		int eocd = findEndOfCentralDirectory(buffer, jarFile);
+		int entryCount = unsignedShort(buffer, eocd + 10);
+		long centralDirectorySize = unsignedInt(buffer, eocd + 12);
+		long centralDirectoryOffset = unsignedInt(buffer, eocd + 16);
+		if (entryCount == 0xFFFF || centralDirectoryOffset == 0xFFFFFFFFL) {
+			throw new ZipException("Zip64 not supported: " + jarFile);
+		}
+		if (centralDirectoryOffset + centralDirectorySize > eocd) {
+			throw new ZipException("Invalid central directory: " + jarFile);
+		}
+
+		int position = (int) centralDirectoryOffset;
+		for (int i = 0; i < entryCount; i++) {
+			if (position + CEN_SIZE > eocd || buffer.getInt(position) != CEN_SIGNATURE) {
+				throw new ZipException("Invalid central directory entry: " + jarFile);
+			}
+			int nameLength = unsignedShort(buffer, position + 28);
+			int extraLength = unsignedShort(buffer, position + 30);
+			int commentLength = unsignedShort(buffer, position + 32);
+			if (nameLength == entryName.length && sameBytes(buffer, position + CEN_SIZE, entryName)) {
+				return readEntryData(buffer, position, jarFile);
+			}
+			position += CEN_SIZE + nameLength + extraLength + commentLength;
+		}
+		return null;
+	}
+
+	private static int findEndOfCentralDirectory(MappedByteBuffer buffer, File jarFile) throws ZipException {
+		int limit = Math.max(0, buffer.capacity() - EOCD_SIZE - MAX_COMMENT_SIZE);
+		for (int position = buffer.capacity() - EOCD_SIZE; position >= limit; position--) {
+			if (buffer.getInt(position) == EOCD_SIGNATURE
+					&& position + EOCD_SIZE + unsignedShort(buffer, position + 20) == buffer.capacity()) {
+				return position;
+			}
+		}
+		throw new ZipException("Not a zip file: " + jarFile);
+	}
+
+	private static byte[] readEntryData(MappedByteBuffer buffer, int centralEntry, File jarFile) throws IOException {
+		int flags = unsignedShort(buffer, centralEntry + 8);
+		int method = unsignedShort(buffer, centralEntry + 10);
+		long compressedSize = unsignedInt(buffer, centralEntry + 20);
+		long uncompressedSize = unsignedInt(buffer, centralEntry + 24);
+		long localHeaderOffset = unsignedInt(buffer, centralEntry + 42);
+		if ((flags & ENCRYPTED_FLAG) != 0 || (method != STORED && method != DEFLATED)) {
+			throw new ZipException("Unsupported entry encoding: " + jarFile);
+		}
+		if (compressedSize > MAX_ENTRY_SIZE || uncompressedSize > MAX_ENTRY_SIZE) {
+			throw new ZipException("Entry too large: " + jarFile);
+		}
+		if (localHeaderOffset + LOC_SIZE > buffer.capacity() || buffer.getInt((int) localHeaderOffset) != LOC_SIGNATURE) {
+			throw new ZipException("Invalid local header: " + jarFile);
+		}
+		int local = (int) localHeaderOffset;
+		// Sizes come from the central directory: the local ones are zero when
+		// a data descriptor follows the data
+		long dataOffset = local + LOC_SIZE + unsignedShort(buffer, local + 26) + unsignedShort(buffer, local + 28);
+		if (dataOffset + compressedSize > buffer.capacity()) {
+			throw new ZipException("Truncated entry: " + jarFile);
+		}
+		byte[] compressed = new byte[(int) compressedSize];
+		buffer.position((int) dataOffset);
+		buffer.get(compressed);
+		if (method == STORED) {
+			return compressed;
+		}
+		return inflate(compressed, (int) uncompressedSize, jarFile);
+	}
+
+	private static byte[] inflate(byte[] compressed, int uncompressedSize, File jarFile) throws ZipException {
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			byte[] uncompressed = new byte[uncompressedSize];
+			int length = 0;
+			while (length < uncompressedSize && !inflater.finished()) {
+				int inflated = inflater.inflate(uncompressed, length, uncompressedSize - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != uncompressedSize) {
+				throw new ZipException("Invalid entry size: " + jarFile);
+			}
+			return uncompressed;
+		} catch (DataFormatException e) {
+			ZipException zipException = new ZipException("Invalid compressed entry: " + jarFile);
+			zipException.initCause(e);
+			throw zipException;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static boolean sameBytes(MappedByteBuffer buffer, int position, byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (buffer.get(position + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int unsignedShort(MappedByteBuffer buffer, int position) {
+		return buffer.getShort(position) & 0xFFFF;
+	}
+
+	private static long unsignedInt(MappedByteBuffer buffer, int position) {
+		return buffer.getInt(position) & 0xFFFFFFFFL;
+	}
+
+}
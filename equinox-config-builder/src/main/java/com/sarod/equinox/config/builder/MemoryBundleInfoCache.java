@@ -0,0 +1,148 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * In memory {@link BundleInfoCache} keyed by the canonical path of the plugin
+ * files so that it can be shared by builders of several eclipse directories:
+ * a jar reached through different symbolic links is only read once.
+ * <p>
+ * The cache can be bounded, the least recently used entries being evicted
+ * when it is full. Entries whose plugin file, or manifest for a directory
+ * bundle, changed size or modification time are dropped on lookup. Lookups are counted as hits when an up to date
+ * entry is found and as misses otherwise. This class is thread safe.
+ *
+ * @author sarod
+ *
+ */
+public class MemoryBundleInfoCache implements BundleInfoCache {
+
+	public static final int UNBOUNDED = 0;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	private int maxEntries;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	public MemoryBundleInfoCache() {
+		this(UNBOUNDED);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            maximum number of entries or {@link #UNBOUNDED}
+	 */
+	public MemoryBundleInfoCache(int maxEntries) {
+		setMaxEntries(maxEntries);
+	}
+
+	public Entry get(File pluginFile) {
+		String key = key(pluginFile);
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		// File system checks are done outside of the lock
+		boolean upToDate = entry != null && entry.isUpToDate(BundleInfoLoader.stampFile(pluginFile));
+		synchronized (this) {
+			if (upToDate) {
+				hitCount++;
+				return entry;
+			}
+			missCount++;
+			if (entry != null && entries.get(key) == entry) {
+				entries.remove(key);
+			}
+			return null;
+		}
+	}
+
+	public void put(File pluginFile, Entry entry) {
+		checkNotNull(entry);
+		String key = key(pluginFile);
+		synchronized (this) {
+			entries.put(key, entry);
+			evictEldestEntries();
+		}
+	}
+
+	public synchronized int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Change the maximum number of entries, evicting the least recently used
+	 * entries if needed.
+	 *
+	 * @param maxEntries
+	 *            maximum number of entries or {@link #UNBOUNDED}
+	 */
+	public synchronized void setMaxEntries(int maxEntries) {
+		if (maxEntries < 0) {
+			throw new IllegalArgumentException("maxEntries should be a positive integer.");
+		}
+		this.maxEntries = maxEntries;
+		evictEldestEntries();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Remove all the entries. Statistics are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return hitCount + " hits, " + missCount + " misses, " + evictionCount + " evictions, " + entries.size()
+				+ " entries" + (maxEntries == UNBOUNDED ? "" : " (max " + maxEntries + ")");
+	}
+
+	private void evictEldestEntries() {
+		if (maxEntries == UNBOUNDED) {
+			return;
+		}
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxEntries) {
+			iterator.next();
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	private static String key(File pluginFile) {
+		try {
+			return pluginFile.getCanonicalPath();
+		} catch (IOException e) {
+			return pluginFile.getAbsolutePath();
+		}
+	}
+
+}
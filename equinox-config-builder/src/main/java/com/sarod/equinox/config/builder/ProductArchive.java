@@ -0,0 +1,356 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * A product distribution packaged as a zip or tar.gz archive, read without
+ * extracting it.
+ * <p>
+ * The eclipse directory is either the root of the archive or its top level
+ * directory containing plugins, e.g. eclipse/plugins/. The archive is
+ * streamed once: the manifests of the plugin jars are read from the nested
+ * jar streams as their entries come and exploded bundles are recognized by
+ * their META-INF/MANIFEST.MF entries.
+ *
+ * @author sarod
+ *
+ */
+public final class ProductArchive {
+
+	/**
+	 * Supported archive formats, recognized by file extension
+	 */
+	public enum Type {
+		/**
+		 * .zip
+		 */
+		ZIP,
+		/**
+		 * .tar.gz or .tgz
+		 */
+		TAR_GZ
+	}
+
+	private static final String PLUGINS_DIR = "plugins/";
+
+	private static final String DROPINS_DIR = "dropins/";
+
+	private static final String MANIFEST_SUFFIX = "/META-INF/MANIFEST.MF";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private final Type type;
+
+	private volatile String root;
+
+	/**
+	 * @param file
+	 *            a zip or tar.gz file
+	 * @throws IllegalArgumentException
+	 *             if the file extension is not a supported archive extension
+	 */
+	public ProductArchive(File file) {
+		this.file = checkNotNull(file);
+		this.type = type(file);
+		if (type == null) {
+			throw new IllegalArgumentException(file + " is not a zip or tar.gz archive.");
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return true if the file name has a supported archive extension
+	 */
+	public static boolean isProductArchive(File file) {
+		return type(file) != null;
+	}
+
+	private static Type type(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".zip")) {
+			return Type.ZIP;
+		}
+		if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+			return Type.TAR_GZ;
+		}
+		return null;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the archive file name without its extension
+	 */
+	public String getBaseName() {
+		String name = file.getName();
+		String lowerCaseName = name.toLowerCase();
+		for (String extension : Arrays.asList(".tar.gz", ".tgz", ".zip")) {
+			if (lowerCaseName.endsWith(extension)) {
+				return name.substring(0, name.length() - extension.length());
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * @return the path of the eclipse directory in the archive ending with /
+	 *         or empty for the archive root, null until
+	 *         {@link #loadBundleInfos(BundleInfoLoader, boolean, boolean)}
+	 *         found it
+	 */
+	public String getRoot() {
+		return root;
+	}
+
+	/**
+	 * Stream through the archive once and load the bundles of its plugins
+	 * directory the way
+	 * {@link BundleInfoLoader#loadBundleInfos(java.io.File)} does for a
+	 * directory. The loader metrics, if any, are updated.
+	 *
+	 * @param loader
+	 * @param recursive
+	 *            also load plugins below subdirectories of plugins
+	 * @param dropins
+	 *            also load the plugins of the dropins directory, named
+	 *            ../dropins/...
+	 * @return the sorted bundles
+	 * @throws ConfigBuildingException
+	 *             if the archive cannot be read, has no plugins directory or
+	 *             some plugins could not be read
+	 */
+	public List<BundleInfo> loadBundleInfos(BundleInfoLoader loader, boolean recursive, boolean dropins)
+			throws ConfigBuildingException {
+		Scan scan = new Scan(loader, recursive, dropins);
+		InputStream in = null;
+		try {
+			if (type == Type.ZIP) {
+				ZipInputStream zipIn = new ZipInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+				in = zipIn;
+				ZipEntry entry;
+				while ((entry = zipIn.getNextEntry()) != null) {
+					if (!entry.isDirectory()) {
+						scan.entry(entry.getName(), zipIn);
+					}
+				}
+			} else {
+				TarInputStream tarIn = new TarInputStream(new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE));
+				in = tarIn;
+				TarInputStream.TarEntry entry;
+				while ((entry = tarIn.getNextEntry()) != null) {
+					if (entry.isFile()) {
+						scan.entry(entry.getName(), tarIn);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error reading product archive: " + file, e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		if (scan.root == null) {
+			throw new ConfigBuildingException("Cannot find the plugins directory in product archive: " + file);
+		}
+		root = scan.root;
+		return scan.bundleInfos();
+	}
+
+	/**
+	 * Add or replace files of the eclipse directory in a zip archive. Other
+	 * entries are copied without being recompressed and the archive is left
+	 * untouched when all the files already have the given content.
+	 *
+	 * @param files
+	 *            content keyed by path relative to the eclipse directory e.g.
+	 *            configuration/config.ini
+	 * @return true if the archive was modified
+	 * @throws IllegalStateException
+	 *             if the archive is not a zip or was not scanned yet
+	 * @throws ConfigBuildingException
+	 */
+	public boolean updateEntries(Map<String, byte[]> files) throws ConfigBuildingException {
+		checkState(type == Type.ZIP, "only zip archives can be updated");
+		checkState(root != null, "archive not scanned");
+		URI uri = URI.create("jar:" + file.getAbsoluteFile().toURI());
+		boolean modified = false;
+		try {
+			FileSystem zipFileSystem = FileSystems.newFileSystem(uri, Collections.<String, Object> emptyMap());
+			try {
+				for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+					Path path = zipFileSystem.getPath("/" + root + entry.getKey());
+					if (Files.isRegularFile(path) && Arrays.equals(Files.readAllBytes(path), entry.getValue())) {
+						continue;
+					}
+					if (path.getParent() != null) {
+						Files.createDirectories(path.getParent());
+					}
+					Files.write(path, entry.getValue());
+					modified = true;
+				}
+			} finally {
+				// Rewrites the archive if it was modified
+				zipFileSystem.close();
+			}
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error updating product archive: " + file, e);
+		}
+		return modified;
+	}
+
+	@Override
+	public String toString() {
+		return file.toString();
+	}
+
+	/**
+	 * State of a pass through the archive
+	 */
+	private final class Scan {
+
+		private final BundleInfoLoader loader;
+		private final boolean recursive;
+		private final boolean dropins;
+
+		private String root;
+
+		/**
+		 * Loaded plugins, null values for non bundles
+		 */
+		private final Map<String, BundleInfo> plugins = new LinkedHashMap<String, BundleInfo>();
+
+		private final Set<String> explodedBundles = new HashSet<String>();
+
+		private final List<ConfigBuildingException> errors = new ArrayList<ConfigBuildingException>();
+
+		private int skippedCount;
+
+		Scan(BundleInfoLoader loader, boolean recursive, boolean dropins) {
+			this.loader = loader;
+			this.recursive = recursive;
+			this.dropins = dropins;
+		}
+
+		void entry(String name, InputStream in) {
+			if (root == null) {
+				root = root(name);
+				if (root == null) {
+					return;
+				}
+			}
+			if (!name.startsWith(root)) {
+				return;
+			}
+			String path = name.substring(root.length());
+			if (path.startsWith(PLUGINS_DIR)) {
+				plugin(path.substring(PLUGINS_DIR.length()), "", recursive, in);
+			} else if (dropins && path.startsWith(DROPINS_DIR)) {
+				plugin(path.substring(DROPINS_DIR.length()), "../" + DROPINS_DIR, true, in);
+			}
+		}
+
+		/**
+		 * @return the eclipse directory if the entry is in its plugins or
+		 *         dropins directory
+		 */
+		private String root(String name) {
+			for (String directory : dropins ? Arrays.asList(PLUGINS_DIR, DROPINS_DIR) : Arrays.asList(PLUGINS_DIR)) {
+				if (name.startsWith(directory)) {
+					return "";
+				}
+				int slash = name.indexOf('/');
+				if (slash > 0 && name.startsWith(directory, slash + 1)) {
+					return name.substring(0, slash + 1);
+				}
+			}
+			return null;
+		}
+
+		private void plugin(String path, String fileNamePrefix, boolean recursive, InputStream in) {
+			boolean nested = path.indexOf('/') != -1;
+			if (path.endsWith(MANIFEST_SUFFIX)) {
+				String directory = path.substring(0, path.length() - MANIFEST_SUFFIX.length());
+				if (recursive || directory.indexOf('/') == -1) {
+					explodedBundles.add(fileNamePrefix + directory);
+					load(fileNamePrefix + directory, in, true);
+				}
+			} else if (path.endsWith(".jar")) {
+				if (recursive || !nested) {
+					load(fileNamePrefix + path, in, false);
+				}
+			} else if (!nested) {
+				skippedCount++;
+			}
+		}
+
+		private void load(String fileName, InputStream in, boolean directory) {
+			try {
+				plugins.put(fileName, loader.loadArchivedBundleInfo(in, fileName, directory));
+			} catch (ConfigBuildingException e) {
+				errors.add(e);
+			}
+		}
+
+		List<BundleInfo> bundleInfos() {
+			BundleInfoLoader.checkNoErrors(errors);
+			int pluginCount = 0;
+			List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>();
+			for (Map.Entry<String, BundleInfo> plugin : plugins.entrySet()) {
+				if (isInExplodedBundle(plugin.getKey())) {
+					// Libraries of exploded bundles are not plugins
+					continue;
+				}
+				pluginCount++;
+				if (plugin.getValue() != null) {
+					bundleInfos.add(plugin.getValue());
+				}
+			}
+			if (loader.getMetrics() != null) {
+				loader.getMetrics().listed(pluginCount, skippedCount);
+			}
+			Collections.sort(bundleInfos);
+			return bundleInfos;
+		}
+
+		private boolean isInExplodedBundle(String fileName) {
+			for (int slash = fileName.indexOf('/'); slash != -1; slash = fileName.indexOf('/', slash + 1)) {
+				if (explodedBundles.contains(fileName.substring(0, slash))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.sarod.equinox.config.builder;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * A Require-Bundle or Import-Package requirement of a bundle. This class is
+ * immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class Requirement {
+
+	private final String name;
+	private final String versionRange;
+	private final boolean optional;
+
+	/**
+	 * @param name
+	 *            the required bundle symbolic name or imported package name
+	 * @param versionRange
+	 *            the version range as written in the manifest, null when not
+	 *            specified
+	 * @param optional
+	 *            true for resolution:=optional
+	 */
+	public Requirement(String name, String versionRange, boolean optional) {
+		this.name = checkNotNull(name);
+		this.versionRange = versionRange;
+		this.optional = optional;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the version range as written in the manifest, null when not
+	 *         specified
+	 */
+	public String getVersionRange() {
+		return versionRange;
+	}
+
+	public boolean isOptional() {
+		return optional;
+	}
+
+	@Override
+	public int hashCode() {
+		return (name.hashCode() * 31 + (versionRange == null ? 0 : versionRange.hashCode())) * 31 + (optional ? 1231 : 1237);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Requirement)) {
+			return false;
+		}
+		Requirement other = (Requirement) obj;
+		return name.equals(other.name) && (versionRange == null ? other.versionRange == null : versionRange.equals(other.versionRange))
+				&& optional == other.optional;
+	}
+
+	@Override
+	public String toString() {
+		return name + (versionRange == null ? "" : ";version=\"" + versionRange + "\"") + (optional ? ";resolution:=optional" : "");
+	}
+}
@@ -0,0 +1,59 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of {@link BundleResolver#resolve(java.util.Collection)}. This class
+ * is immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class Resolution {
+
+	private final List<BundleInfo> resolvedBundleInfos;
+	private final Map<BundleInfo, String> unresolvedBundleInfos;
+
+	Resolution(List<BundleInfo> resolvedBundleInfos, Map<BundleInfo, String> unresolvedBundleInfos) {
+		this.resolvedBundleInfos = Collections.unmodifiableList(resolvedBundleInfos);
+		this.unresolvedBundleInfos = Collections.unmodifiableMap(unresolvedBundleInfos);
+	}
+
+	/**
+	 * @return the resolvable bundles and fragments in their original order
+	 */
+	public List<BundleInfo> getResolvedBundleInfos() {
+		return resolvedBundleInfos;
+	}
+
+	/**
+	 * @return the unresolvable bundles and fragments in their original order
+	 *         with the first requirement found failing e.g. missing
+	 *         Import-Package org.foo;version="[1.0,2.0)" or missing host
+	 *         org.bar for an orphan fragment
+	 */
+	public Map<BundleInfo, String> getUnresolvedBundleInfos() {
+		return unresolvedBundleInfos;
+	}
+
+	/**
+	 * @return number of unresolvable fragments, orphan or not
+	 */
+	public int getUnresolvedFragmentCount() {
+		int fragmentCount = 0;
+		for (BundleInfo bundleInfo : unresolvedBundleInfos.keySet()) {
+			if (bundleInfo.isFragment()) {
+				fragmentCount++;
+			}
+		}
+		return fragmentCount;
+	}
+
+	@Override
+	public String toString() {
+		return resolvedBundleInfos.size() + " resolvable, " + (unresolvedBundleInfos.size() - getUnresolvedFragmentCount())
+				+ " unresolvable bundles, " + getUnresolvedFragmentCount() + " unresolvable fragments";
+	}
+}
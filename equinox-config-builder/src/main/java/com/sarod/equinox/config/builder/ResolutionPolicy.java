@@ -0,0 +1,43 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Locale;
+
+/**
+ * What to do with the bundles that equinox cannot resolve: missing
+ * Require-Bundle or Import-Package providers in the required version range
+ * and fragments whose host is absent or unresolvable.
+ *
+ * @author sarod
+ *
+ */
+public enum ResolutionPolicy {
+
+	/**
+	 * Do not check the resolution of the bundles.
+	 */
+	NONE,
+
+	/**
+	 * Log the unresolvable bundles and fragments and keep them.
+	 */
+	REPORT,
+
+	/**
+	 * Log the unresolvable bundles and fragments and leave them out of
+	 * osgi.bundles.
+	 */
+	EXCLUDE;
+
+	/**
+	 * Parse a policy name, case insensitive, accepting '-' instead of '_'
+	 * e.g. report
+	 *
+	 * @param value
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if value is not a policy name
+	 */
+	public static ResolutionPolicy fromString(String value) {
+		return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+	}
+}
@@ -0,0 +1,61 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of {@link StartLevelPlanner#plan(java.util.Collection, int, Map)}.
+ * This class is immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class StartLevelPlan {
+
+	private final Map<String, Integer> startLevels;
+	private final List<List<String>> cycles;
+	private final int maxStartLevel;
+	private final StartupPrediction startupPrediction;
+
+	StartLevelPlan(Map<String, Integer> startLevels, List<List<String>> cycles, int maxStartLevel,
+			StartupPrediction startupPrediction) {
+		this.startLevels = Collections.unmodifiableMap(startLevels);
+		this.cycles = Collections.unmodifiableList(cycles);
+		this.maxStartLevel = maxStartLevel;
+		this.startupPrediction = startupPrediction;
+	}
+
+	/**
+	 * @return start levels by bundle name for bundles that should not use the
+	 *         default start level, including the explicit ones
+	 */
+	public Map<String, Integer> getStartLevels() {
+		return startLevels;
+	}
+
+	/**
+	 * @return the dependency cycles found, each cycle being the sorted names
+	 *         of the bundles involved. Bundles of a cycle share the same start
+	 *         level unless explicitly set.
+	 */
+	public List<List<String>> getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the highest start level of the plan
+	 */
+	public int getMaxStartLevel() {
+		return maxStartLevel;
+	}
+
+	/**
+	 * @return the predicted startup times, null when the planner had no
+	 *         {@link StartupProfile}
+	 */
+	public StartupPrediction getStartupPrediction() {
+		return startupPrediction;
+	}
+
+}
@@ -0,0 +1,412 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Compute bundle start levels from the dependency graph so that a bundle
+ * starts after the bundles it depends on.
+ * <p>
+ * A bundle depends on the bundles it requires (Require-Bundle) and on the
+ * bundles exporting the packages it imports (Import-Package). Fragment
+ * requirements and exports are attributed to their host. Bundles without
+ * dependencies get the default start level, other bundles get one more than
+ * the highest start level of their dependencies (topological layering).
+ * Explicit start levels always win and are propagated to dependents.
+ * <p>
+ * Bundles belonging to a dependency cycle cannot be ordered: they get the
+ * same start level and the cycle is reported in the {@link StartLevelPlan}.
+ * <p>
+ * When a {@link StartupProfile} is set, slow bundles on which no other
+ * bundle depends (or only other deferred bundles) are moved to start levels
+ * above all the other bundles so that the framework reaches a usable state
+ * sooner. Dependency constraints still hold. The plan then contains a
+ * {@link StartupPrediction}.
+ * <p>
+ * When levels are balanced, bundles that can move without breaking a
+ * dependency constraint are spread over the levels computed by the layering
+ * so that each level holds about the same number of bundles, which is what
+ * equinox needs to activate the bundles of a start level in parallel. The
+ * number of levels does not change.
+ * <p>
+ * Planning is linear in the number of bundles and requirements: packages and
+ * bundle names are indexed in hash maps and cycles are found with Tarjan's
+ * strongly connected components algorithm.
+ * 
+ * @author sarod
+ *
+ */
+public class StartLevelPlanner {
+
+	public static final long DEFAULT_SLOW_ACTIVATION_MILLIS = 100;
+
+	private StartupProfile startupProfile;
+
+	private long slowActivationMillis = DEFAULT_SLOW_ACTIVATION_MILLIS;
+
+	private boolean balanceLevels;
+
+	public StartLevelPlanner() {
+	}
+
+	public StartupProfile getStartupProfile() {
+		return startupProfile;
+	}
+
+	/**
+	 * @param startupProfile
+	 *            the measured activation times, null to ignore activation
+	 *            times
+	 */
+	public void setStartupProfile(StartupProfile startupProfile) {
+		this.startupProfile = startupProfile;
+	}
+
+	public long getSlowActivationMillis() {
+		return slowActivationMillis;
+	}
+
+	/**
+	 * @param slowActivationMillis
+	 *            activation time from which a bundle can be deferred
+	 */
+	public void setSlowActivationMillis(long slowActivationMillis) {
+		if (slowActivationMillis < 0) {
+			throw new IllegalArgumentException("slowActivationMillis should be a positive integer.");
+		}
+		this.slowActivationMillis = slowActivationMillis;
+	}
+
+	public boolean isBalanceLevels() {
+		return balanceLevels;
+	}
+
+	/**
+	 * @param balanceLevels
+	 *            true to spread the bundles evenly over the start levels for
+	 *            parallel activation
+	 */
+	public void setBalanceLevels(boolean balanceLevels) {
+		this.balanceLevels = balanceLevels;
+	}
+
+	public StartLevelPlan plan(Collection<BundleInfo> bundleInfos, int defaultStartLevel, Map<String, Integer> explicitStartLevels) {
+		checkNotNull(bundleInfos);
+		checkNotNull(explicitStartLevels);
+		DependencyGraph graph = new DependencyGraph(bundleInfos);
+		int[] sccOf = new int[graph.size()];
+		List<int[]> sccs = graph.stronglyConnectedComponents(sccOf);
+		long[] nodeMillis = activationMillis(graph);
+		boolean[] deferred = deferredComponents(graph, sccs, sccOf, nodeMillis, explicitStartLevels);
+
+		int[] levels = new int[graph.size()];
+		layer(graph, sccs, sccOf, levels, explicitStartLevels, deferred, false, defaultStartLevel);
+		boolean[] movable = balanceLevels ? movableComponents(graph, sccs, explicitStartLevels) : null;
+		if (balanceLevels) {
+			balance(graph, sccs, sccOf, levels, movable, deferred, false);
+		}
+		int usableStartLevel = defaultStartLevel;
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			if (!deferred[scc]) {
+				for (int node : sccs.get(scc)) {
+					usableStartLevel = Math.max(usableStartLevel, levels[node]);
+				}
+			}
+		}
+		layer(graph, sccs, sccOf, levels, explicitStartLevels, deferred, true, usableStartLevel + 1);
+		if (balanceLevels) {
+			balance(graph, sccs, sccOf, levels, movable, deferred, true);
+		}
+
+		List<List<String>> cycles = new ArrayList<List<String>>();
+		for (int[] members : sccs) {
+			if (members.length > 1) {
+				cycles.add(bundleNames(graph, members));
+			}
+		}
+
+		Map<String, Integer> startLevels = new HashMap<String, Integer>(explicitStartLevels);
+		int maxStartLevel = defaultStartLevel;
+		for (int node = 0; node < graph.size(); node++) {
+			String bundleName = graph.bundle(node).getBundleName();
+			maxStartLevel = Math.max(maxStartLevel, levels[node]);
+			if (levels[node] != defaultStartLevel && !explicitStartLevels.containsKey(bundleName)) {
+				Integer previous = startLevels.get(bundleName);
+				// Several versions of the same bundle share the start level
+				if (previous == null || previous < levels[node]) {
+					startLevels.put(bundleName, levels[node]);
+				}
+			}
+		}
+		StartupPrediction prediction = null;
+		if (startupProfile != null) {
+			prediction = predict(graph, sccs, sccOf, nodeMillis, deferred, levels, usableStartLevel);
+		}
+		return new StartLevelPlan(startLevels, cycles, maxStartLevel, prediction);
+	}
+
+	private long[] activationMillis(DependencyGraph graph) {
+		long[] nodeMillis = new long[graph.size()];
+		if (startupProfile != null) {
+			for (int node = 0; node < graph.size(); node++) {
+				nodeMillis[node] = startupProfile.getActivationMillis(graph.bundle(node).getBundleName());
+			}
+		}
+		return nodeMillis;
+	}
+
+	/**
+	 * A component is deferred when it is slow and all the components
+	 * depending on it are deferred. Dependents are emitted after their
+	 * dependencies so components are visited in reverse order.
+	 */
+	private boolean[] deferredComponents(DependencyGraph graph, List<int[]> sccs, int[] sccOf, long[] nodeMillis,
+			Map<String, Integer> explicitStartLevels) {
+		boolean[] deferred = new boolean[sccs.size()];
+		if (startupProfile == null) {
+			return deferred;
+		}
+		boolean[] hasEagerDependent = new boolean[sccs.size()];
+		for (int scc = sccs.size() - 1; scc >= 0; scc--) {
+			long sccMillis = 0;
+			boolean explicit = false;
+			for (int node : sccs.get(scc)) {
+				sccMillis += nodeMillis[node];
+				explicit |= explicitStartLevels.containsKey(graph.bundle(node).getBundleName());
+			}
+			deferred[scc] = !hasEagerDependent[scc] && !explicit && sccMillis > 0 && sccMillis >= slowActivationMillis;
+			if (!deferred[scc]) {
+				for (int node : sccs.get(scc)) {
+					for (int dependency : graph.dependencies(node)) {
+						hasEagerDependent[sccOf[dependency]] = true;
+					}
+				}
+			}
+		}
+		return deferred;
+	}
+
+	/**
+	 * Topological layering of the deferred or non deferred components.
+	 * Tarjan emits a component after all the components it depends on.
+	 */
+	private void layer(DependencyGraph graph, List<int[]> sccs, int[] sccOf, int[] levels,
+			Map<String, Integer> explicitStartLevels, boolean[] deferred, boolean layerDeferred, int minStartLevel) {
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			if (deferred[scc] != layerDeferred) {
+				continue;
+			}
+			int[] members = sccs.get(scc);
+			int sccLevel = minStartLevel;
+			for (int node : members) {
+				for (int dependency : graph.dependencies(node)) {
+					if (sccOf[dependency] != scc) {
+						sccLevel = Math.max(sccLevel, levels[dependency] + 1);
+					}
+				}
+			}
+			for (int node : members) {
+				Integer explicit = explicitStartLevels.get(graph.bundle(node).getBundleName());
+				levels[node] = explicit != null ? explicit : sccLevel;
+			}
+		}
+	}
+
+	/**
+	 * A component can move when none of its bundles has an explicit start
+	 * level or shares its name with another version, versions of a bundle
+	 * sharing the highest of their start levels.
+	 */
+	private boolean[] movableComponents(DependencyGraph graph, List<int[]> sccs, Map<String, Integer> explicitStartLevels) {
+		Map<String, Integer> versionCounts = new HashMap<String, Integer>();
+		for (int node = 0; node < graph.size(); node++) {
+			String bundleName = graph.bundle(node).getBundleName();
+			Integer count = versionCounts.get(bundleName);
+			versionCounts.put(bundleName, count == null ? 1 : count + 1);
+		}
+		boolean[] movable = new boolean[sccs.size()];
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			movable[scc] = true;
+			for (int node : sccs.get(scc)) {
+				String bundleName = graph.bundle(node).getBundleName();
+				if (explicitStartLevels.containsKey(bundleName) || versionCounts.get(bundleName) > 1) {
+					movable[scc] = false;
+				}
+			}
+		}
+		return movable;
+	}
+
+	/**
+	 * Spread the movable deferred or non deferred components between the
+	 * lowest and highest levels of the layering. The layering gives the
+	 * earliest level of each component, its latest level is one less than
+	 * the latest level of its dependents. Levels are then filled in order up
+	 * to the average width: components reaching their latest level are always
+	 * placed, the others by increasing latest level while there is room.
+	 */
+	private void balance(DependencyGraph graph, List<int[]> sccs, int[] sccOf, int[] levels, boolean[] movable,
+			boolean[] deferred, boolean balanceDeferred) {
+		int minLevel = Integer.MAX_VALUE;
+		int maxLevel = Integer.MIN_VALUE;
+		int bundleCount = 0;
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			if (deferred[scc] == balanceDeferred) {
+				for (int node : sccs.get(scc)) {
+					minLevel = Math.min(minLevel, levels[node]);
+					maxLevel = Math.max(maxLevel, levels[node]);
+					bundleCount++;
+				}
+			}
+		}
+		if (bundleCount == 0 || minLevel == maxLevel) {
+			return;
+		}
+
+		final int[] latest = new int[sccs.size()];
+		int[] earliest = new int[sccs.size()];
+		int[] pendingDependencies = new int[sccs.size()];
+		List<List<Integer>> dependents = new ArrayList<List<Integer>>(sccs.size());
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			dependents.add(new ArrayList<Integer>(0));
+			latest[scc] = maxLevel;
+		}
+		// Dependents are emitted after their dependencies
+		for (int scc = sccs.size() - 1; scc >= 0; scc--) {
+			if (deferred[scc] != balanceDeferred) {
+				continue;
+			}
+			int[] members = sccs.get(scc);
+			if (movable[scc]) {
+				latest[scc] = Math.max(latest[scc], levels[members[0]]);
+			}
+			for (int node : members) {
+				int level = movable[scc] ? latest[scc] : levels[node];
+				for (int dependency : graph.dependencies(node)) {
+					int dependencyScc = sccOf[dependency];
+					if (dependencyScc != scc && deferred[dependencyScc] == balanceDeferred && movable[dependencyScc]) {
+						latest[dependencyScc] = Math.min(latest[dependencyScc], level - 1);
+						if (movable[scc]) {
+							pendingDependencies[scc]++;
+							dependents.get(dependencyScc).add(scc);
+						}
+					}
+				}
+			}
+		}
+
+		int[] widths = new int[maxLevel - minLevel + 1];
+		List<Integer> ready = new ArrayList<Integer>();
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			if (deferred[scc] != balanceDeferred) {
+				continue;
+			}
+			if (!movable[scc]) {
+				for (int node : sccs.get(scc)) {
+					widths[levels[node] - minLevel]++;
+				}
+			} else {
+				earliest[scc] = levels[sccs.get(scc)[0]];
+				if (pendingDependencies[scc] == 0) {
+					ready.add(scc);
+				}
+			}
+		}
+		int targetWidth = (bundleCount + widths.length - 1) / widths.length;
+		Comparator<Integer> byLatestLevel = new Comparator<Integer>() {
+			public int compare(Integer scc1, Integer scc2) {
+				return latest[scc1] - latest[scc2];
+			}
+		};
+		for (int level = minLevel; level <= maxLevel; level++) {
+			Collections.sort(ready, byLatestLevel);
+			List<Integer> placed = new ArrayList<Integer>();
+			for (Iterator<Integer> it = ready.iterator(); it.hasNext();) {
+				int scc = it.next();
+				int size = sccs.get(scc).length;
+				if (earliest[scc] <= level && (latest[scc] <= level || widths[level - minLevel] + size <= targetWidth)) {
+					it.remove();
+					placed.add(scc);
+					widths[level - minLevel] += size;
+					for (int node : sccs.get(scc)) {
+						levels[node] = level;
+					}
+				}
+			}
+			for (int scc : placed) {
+				for (int dependent : dependents.get(scc)) {
+					earliest[dependent] = Math.max(earliest[dependent], level + 1);
+					if (--pendingDependencies[dependent] == 0) {
+						ready.add(dependent);
+					}
+				}
+			}
+		}
+	}
+
+	private StartupPrediction predict(DependencyGraph graph, List<int[]> sccs, int[] sccOf, long[] nodeMillis,
+			boolean[] deferred, int[] levels, int usableStartLevel) {
+		Set<String> deferredBundleNames = new HashSet<String>();
+		long usableMillis = 0;
+		long totalMillis = 0;
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			for (int node : sccs.get(scc)) {
+				totalMillis += nodeMillis[node];
+				if (deferred[scc]) {
+					deferredBundleNames.add(graph.bundle(node).getBundleName());
+				} else {
+					usableMillis += nodeMillis[node];
+				}
+			}
+		}
+
+		// Longest dependency chain, components in topological order
+		long[] pathMillis = new long[sccs.size()];
+		int[] previous = new int[sccs.size()];
+		int last = -1;
+		for (int scc = 0; scc < sccs.size(); scc++) {
+			long longestDependency = 0;
+			previous[scc] = -1;
+			for (int node : sccs.get(scc)) {
+				pathMillis[scc] += nodeMillis[node];
+				for (int dependency : graph.dependencies(node)) {
+					int dependencyScc = sccOf[dependency];
+					if (dependencyScc != scc && pathMillis[dependencyScc] > longestDependency) {
+						longestDependency = pathMillis[dependencyScc];
+						previous[scc] = dependencyScc;
+					}
+				}
+			}
+			pathMillis[scc] += longestDependency;
+			if (last == -1 || pathMillis[scc] > pathMillis[last]) {
+				last = scc;
+			}
+		}
+		List<String> criticalPath = new ArrayList<String>();
+		for (int scc = last; scc != -1; scc = previous[scc]) {
+			criticalPath.addAll(0, bundleNames(graph, sccs.get(scc)));
+		}
+		return new StartupPrediction(deferredBundleNames, usableStartLevel, usableMillis, totalMillis,
+				last == -1 ? 0 : pathMillis[last], criticalPath);
+	}
+
+	private static List<String> bundleNames(DependencyGraph graph, int[] nodes) {
+		List<String> names = new ArrayList<String>(nodes.length);
+		for (int node : nodes) {
+			names.add(graph.bundle(node).getBundleName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+}
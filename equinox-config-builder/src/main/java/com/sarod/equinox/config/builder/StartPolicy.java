@@ -0,0 +1,44 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Locale;
+
+/**
+ * Which bundles are started (@start) by equinox at boot.
+ * 
+ * @author sarod
+ *
+ * @see ActivationPlanner
+ */
+public enum StartPolicy {
+
+	/**
+	 * Start all the bundles.
+	 */
+	START_ALL,
+
+	/**
+	 * Only start the bundles that need it: bundles with a Bundle-Activator
+	 * or declarative services components and without lazy activation policy.
+	 * Other bundles are only installed.
+	 */
+	LAZY,
+
+	/**
+	 * Same as {@link #LAZY} and leave out of osgi.bundles the bundles which
+	 * are not dependencies of a started bundle.
+	 */
+	MINIMAL_BOOT_SET;
+
+	/**
+	 * Parse a policy name, case insensitive, accepting '-' instead of '_'
+	 * e.g. minimal-boot-set
+	 * 
+	 * @param value
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if value is not a policy name
+	 */
+	public static StartPolicy fromString(String value) {
+		return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+	}
+}
@@ -0,0 +1,85 @@
+package com.sarod.equinox.config.builder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Startup times predicted from a {@link StartupProfile} for a
+ * {@link StartLevelPlan}, assuming the framework starts bundles one after
+ * the other in start level order. This class is immutable.
+ * 
+ * @author sarod
+ *
+ */
+public final class StartupPrediction {
+
+	private final Set<String> deferredBundleNames;
+	private final int usableStartLevel;
+	private final long usableMillis;
+	private final long totalMillis;
+	private final long criticalPathMillis;
+	private final List<String> criticalPath;
+
+	StartupPrediction(Set<String> deferredBundleNames, int usableStartLevel, long usableMillis, long totalMillis,
+			long criticalPathMillis, List<String> criticalPath) {
+		this.deferredBundleNames = Collections.unmodifiableSet(deferredBundleNames);
+		this.usableStartLevel = usableStartLevel;
+		this.usableMillis = usableMillis;
+		this.totalMillis = totalMillis;
+		this.criticalPathMillis = criticalPathMillis;
+		this.criticalPath = Collections.unmodifiableList(criticalPath);
+	}
+
+	/**
+	 * @return names of the slow bundles moved after the other ones
+	 */
+	public Set<String> getDeferredBundleNames() {
+		return deferredBundleNames;
+	}
+
+	/**
+	 * @return the start level at which all the bundles but the deferred ones
+	 *         are started
+	 */
+	public int getUsableStartLevel() {
+		return usableStartLevel;
+	}
+
+	/**
+	 * @return time to reach {@link #getUsableStartLevel()}
+	 */
+	public long getUsableMillis() {
+		return usableMillis;
+	}
+
+	/**
+	 * @return time to start all the bundles
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	/**
+	 * @return activation time of the slowest dependency chain, the lower bound
+	 *         of the startup time whatever the ordering
+	 */
+	public long getCriticalPathMillis() {
+		return criticalPathMillis;
+	}
+
+	/**
+	 * @return names of the bundles of the slowest dependency chain,
+	 *         dependencies first
+	 */
+	public List<String> getCriticalPath() {
+		return criticalPath;
+	}
+
+	@Override
+	public String toString() {
+		return "usable after " + usableMillis + " ms at start level " + usableStartLevel + ", all bundles started after "
+				+ totalMillis + " ms, " + deferredBundleNames.size() + " slow bundles deferred, critical path "
+				+ criticalPathMillis + " ms " + criticalPath;
+	}
+}
@@ -0,0 +1,119 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sarod.equinox.config.builder.utils.IOUtils;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * Bundle activation times measured on a running product. This class is
+ * immutable.
+ * <p>
+ * The CSV format has one line per bundle: the bundle symbolic name and its
+ * activation time in milliseconds, possibly fractional and then rounded,
+ * separated by a comma. Empty lines, lines starting with # and a first line
+ * whose time is not a number (a header) are ignored.
+ * 
+ * <pre>
+ * bundle,ms
+ * org.eclipse.core.runtime,120
+ * com.sarod.bundle1,15
+ * </pre>
+ * 
+ * @author sarod
+ *
+ */
+public final class StartupProfile {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Map<String, Long> activationMillis;
+
+	public StartupProfile(Map<String, Long> activationMillis) {
+		checkNotNull(activationMillis);
+		this.activationMillis = Collections.unmodifiableMap(new HashMap<String, Long>(activationMillis));
+	}
+
+	/**
+	 * Load a CSV profile.
+	 * 
+	 * @param csvFile
+	 * @return
+	 * @throws ConfigBuildingException
+	 *             if the file cannot be read or contains an invalid line
+	 */
+	public static StartupProfile load(File csvFile) {
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(csvFile);
+			return parse(new InputStreamReader(in, UTF_8), csvFile.getPath());
+		} catch (IOException e) {
+			throw new ConfigBuildingException("Error reading startup profile: " + csvFile, e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	static StartupProfile parse(Reader csv, String source) throws IOException {
+		Map<String, Long> activationMillis = new HashMap<String, Long>();
+		BufferedReader reader = new BufferedReader(csv);
+		String line;
+		int lineNumber = 0;
+		boolean firstLine = true;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			boolean header = firstLine;
+			firstLine = false;
+			int comma = line.indexOf(',');
+			if (comma == -1) {
+				throw new ConfigBuildingException("Invalid startup profile line " + lineNumber + " in " + source
+						+ ": expected <bundle>,<ms>");
+			}
+			String bundleName = line.substring(0, comma).trim();
+			String millis = line.substring(comma + 1).trim();
+			try {
+				double value = Double.parseDouble(millis);
+				if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+					throw new NumberFormatException();
+				}
+				activationMillis.put(bundleName, Math.round(value));
+			} catch (NumberFormatException e) {
+				if (header) {
+					continue;
+				}
+				throw new ConfigBuildingException("Invalid activation time " + millis + " at line " + lineNumber + " in "
+						+ source);
+			}
+		}
+		return new StartupProfile(activationMillis);
+	}
+
+	/**
+	 * @param bundleName
+	 * @return the activation time of the bundle, 0 if it is not in the
+	 *         profile
+	 */
+	public long getActivationMillis(String bundleName) {
+		Long millis = activationMillis.get(bundleName);
+		return millis != null ? millis : 0;
+	}
+
+	public Map<String, Long> getActivationMillis() {
+		return activationMillis;
+	}
+
+}
@@ -0,0 +1,306 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Minimal sequential reader of tar archives: ustar and GNU headers, GNU long
+ * names and pax path records. Like {@link java.util.zip.ZipInputStream} the
+ * stream reads the content of the current entry and
+ * {@link #getNextEntry()} skips what is left of it.
+ *
+ * @author sarod
+ *
+ */
+final class TarInputStream extends InputStream {
+
+	private static final int BLOCK_SIZE = 512;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final byte TYPE_FILE = '0';
+	private static final byte TYPE_OLD_FILE = 0;
+	private static final byte TYPE_CONTIGUOUS_FILE = '7';
+	private static final byte TYPE_DIRECTORY = '5';
+	private static final byte TYPE_GNU_LONG_NAME = 'L';
+	private static final byte TYPE_PAX_HEADER = 'x';
+
+	private final InputStream in;
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+
+	/**
+	 * Bytes of the current entry not read yet
+	 */
+	private long remaining;
+
+	/**
+	 * Bytes after the current entry up to the next block
+	 */
+	private long padding;
+
+	private boolean finished;
+
+	TarInputStream(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Skip what is left of the current entry and read the header of the next
+	 * one.
+	 *
+	 * @return the next entry or null at the end of the archive
+	 * @throws IOException
+	 *             if the archive is truncated or is not a tar archive
+	 */
+	TarEntry getNextEntry() throws IOException {
+		String longName = null;
+		while (true) {
+			skipFully(remaining + padding);
+			remaining = 0;
+			padding = 0;
+			if (finished || !readHeader()) {
+				finished = true;
+				return null;
+			}
+			long size = parseSize();
+			byte type = header[156];
+			remaining = size;
+			padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+			if (type == TYPE_GNU_LONG_NAME) {
+				longName = trimNul(new String(readEntryContent(size), UTF_8));
+			} else if (type == TYPE_PAX_HEADER) {
+				String path = paxPath(readEntryContent(size));
+				if (path != null) {
+					longName = path;
+				}
+			} else {
+				String name = longName != null ? longName : headerName();
+				boolean file = type == TYPE_FILE || type == TYPE_OLD_FILE || type == TYPE_CONTIGUOUS_FILE;
+				boolean directory = type == TYPE_DIRECTORY || (type == TYPE_OLD_FILE && name.endsWith("/"));
+				return new TarEntry(name, size, directory, file && !directory);
+			}
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (remaining <= 0) {
+			return -1;
+		}
+		int b = in.read();
+		if (b == -1) {
+			throw new EOFException("Truncated tar archive");
+		}
+		remaining--;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (remaining <= 0) {
+			return -1;
+		}
+		int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+		if (read == -1) {
+			throw new EOFException("Truncated tar archive");
+		}
+		remaining -= read;
+		return read;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * @return false on the end of archive marker
+	 */
+	private boolean readHeader() throws IOException {
+		int read = 0;
+		while (read < BLOCK_SIZE) {
+			int count = in.read(header, read, BLOCK_SIZE - read);
+			if (count == -1) {
+				if (read == 0) {
+					// Archive without end marker
+					return false;
+				}
+				throw new EOFException("Truncated tar header");
+			}
+			read += count;
+		}
+		boolean empty = true;
+		for (byte b : header) {
+			if (b != 0) {
+				empty = false;
+				break;
+			}
+		}
+		if (empty) {
+			return false;
+		}
+		checkChecksum();
+		return true;
+	}
+
+	private void checkChecksum() throws IOException {
+		long expected = parseOctal(148, 8);
+		long sum = 0;
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			sum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+		}
+		if (sum != expected) {
+			throw new IOException("Not a tar archive: invalid header checksum");
+		}
+	}
+
+	private String headerName() {
+		String name = field(0, 100);
+		if (header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a' && header[261] == 'r') {
+			String prefix = field(345, 155);
+			if (prefix.length() > 0) {
+				return prefix + "/" + name;
+			}
+		}
+		return name;
+	}
+
+	private long parseSize() throws IOException {
+		if ((header[124] & 0x80) != 0) {
+			// GNU base 256 encoding of large sizes
+			long size = header[124] & 0x7F;
+			for (int i = 125; i < 136; i++) {
+				size = (size << 8) | (header[i] & 0xFF);
+			}
+			return size;
+		}
+		return parseOctal(124, 12);
+	}
+
+	private long parseOctal(int offset, int length) throws IOException {
+		long value = 0;
+		int end = offset + length;
+		int i = offset;
+		while (i < end && (header[i] == ' ' || header[i] == 0)) {
+			i++;
+		}
+		for (; i < end && header[i] != ' ' && header[i] != 0; i++) {
+			if (header[i] < '0' || header[i] > '7') {
+				throw new IOException("Not a tar archive: invalid octal field");
+			}
+			value = (value << 3) + (header[i] - '0');
+		}
+		return value;
+	}
+
+	private String field(int offset, int length) {
+		int end = offset;
+		while (end < offset + length && header[end] != 0) {
+			end++;
+		}
+		return new String(header, offset, end - offset, UTF_8);
+	}
+
+	private byte[] readEntryContent(long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Tar header too large: " + size);
+		}
+		ByteArrayOutputStream content = new ByteArrayOutputStream((int) size);
+		byte[] buffer = new byte[BLOCK_SIZE];
+		int read;
+		while ((read = read(buffer, 0, buffer.length)) != -1) {
+			content.write(buffer, 0, read);
+		}
+		return content.toByteArray();
+	}
+
+	/**
+	 * @return the path of pax records "&lt;length&gt; &lt;key&gt;=&lt;value&gt;\n"
+	 */
+	private static String paxPath(byte[] records) {
+		int offset = 0;
+		String path = null;
+		while (offset < records.length) {
+			int space = offset;
+			while (space < records.length && records[space] != ' ') {
+				space++;
+			}
+			int length;
+			try {
+				length = Integer.parseInt(new String(records, offset, space - offset, UTF_8));
+			} catch (NumberFormatException e) {
+				return path;
+			}
+			if (length <= 0 || offset + length > records.length) {
+				return path;
+			}
+			String record = new String(records, space + 1, offset + length - space - 2, UTF_8);
+			if (record.startsWith("path=")) {
+				path = record.substring("path=".length());
+			}
+			offset += length;
+		}
+		return path;
+	}
+
+	private static String trimNul(String value) {
+		int end = value.indexOf(0);
+		return end == -1 ? value : value.substring(0, end);
+	}
+
+	private void skipFully(long count) throws IOException {
+		while (count > 0) {
+			long skipped = in.skip(count);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new EOFException("Truncated tar archive");
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	/**
+	 * Header of a tar entry. This class is immutable.
+	 */
+	static final class TarEntry {
+
+		private final String name;
+		private final long size;
+		private final boolean directory;
+		private final boolean file;
+
+		TarEntry(String name, long size, boolean directory, boolean file) {
+			this.name = name;
+			this.size = size;
+			this.directory = directory;
+			this.file = file;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		boolean isDirectory() {
+			return directory;
+		}
+
+		/**
+		 * @return true for a regular file, false for directories, links and
+		 *         special files
+		 */
+		boolean isFile() {
+			return file;
+		}
+	}
+
+}
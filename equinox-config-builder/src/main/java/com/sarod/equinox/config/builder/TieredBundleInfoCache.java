@@ -0,0 +1,47 @@
+package com.sarod.equinox.config.builder;
+
+import java.io.File;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * A fast cache in front of a slower one, typically a
+ * {@link MemoryBundleInfoCache} shared between builds in front of a
+ * {@link FileBundleInfoCache}. Entries are written to both caches and the
+ * second cache is kept aware of the entries found in the first one so that
+ * it does not prune them.
+ * 
+ * @author sarod
+ *
+ */
+class TieredBundleInfoCache implements BundleInfoCache {
+
+	private final BundleInfoCache first;
+	private final BundleInfoCache second;
+
+	TieredBundleInfoCache(BundleInfoCache first, BundleInfoCache second) {
+		this.first = checkNotNull(first);
+		this.second = checkNotNull(second);
+	}
+
+	public Entry get(File pluginFile) {
+		Entry entry = first.get(pluginFile);
+		Entry secondEntry = second.get(pluginFile);
+		if (entry == null) {
+			if (secondEntry != null) {
+				first.put(pluginFile, secondEntry);
+			}
+			return secondEntry;
+		}
+		if (!entry.equals(secondEntry)) {
+			second.put(pluginFile, entry);
+		}
+		return entry;
+	}
+
+	public void put(File pluginFile, Entry entry) {
+		first.put(pluginFile, entry);
+		second.put(pluginFile, entry);
+	}
+
+}
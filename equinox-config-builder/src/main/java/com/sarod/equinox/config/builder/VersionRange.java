@@ -0,0 +1,132 @@
+package com.sarod.equinox.config.builder;
+
+import static com.sarod.equinox.config.builder.utils.Preconditions.*;
+
+/**
+ * OSGi version range of a version or bundle-version attribute. This class is
+ * immutable.
+ * <p>
+ * A single version such as 1.2 means at least that version, an interval
+ * such as [1.2,2.0) gives both bounds, [ and ] including them, ( and )
+ * excluding them.
+ *
+ * @author sarod
+ *
+ */
+public final class VersionRange {
+
+	/**
+	 * The range of a requirement without version attribute: any version
+	 */
+	public static final VersionRange ANY = new VersionRange(BundleVersion.EMPTY, true, null, false);
+
+	private final BundleVersion floor;
+	private final boolean floorIncluded;
+	/**
+	 * null when unbounded
+	 */
+	private final BundleVersion ceiling;
+	private final boolean ceilingIncluded;
+
+	public VersionRange(BundleVersion floor, boolean floorIncluded, BundleVersion ceiling, boolean ceilingIncluded) {
+		this.floor = checkNotNull(floor);
+		this.floorIncluded = floorIncluded;
+		this.ceiling = ceiling;
+		this.ceilingIncluded = ceilingIncluded;
+	}
+
+	/**
+	 * Parse an OSGi version range.
+	 *
+	 * @param range
+	 *            the range to parse, null or empty string means {@link #ANY}
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if range is not a valid OSGi version range
+	 */
+	public static VersionRange parseVersionRange(String range) {
+		if (range == null) {
+			return ANY;
+		}
+		range = range.trim();
+		if (range.length() == 0) {
+			return ANY;
+		}
+		char first = range.charAt(0);
+		if (first != '[' && first != '(') {
+			return new VersionRange(BundleVersion.parseVersion(range), true, null, false);
+		}
+		char last = range.charAt(range.length() - 1);
+		int comma = range.indexOf(',');
+		if (range.length() < 2 || (last != ']' && last != ')') || comma == -1) {
+			throw new IllegalArgumentException("Invalid version range " + range);
+		}
+		BundleVersion floor = BundleVersion.parseVersion(range.substring(1, comma));
+		BundleVersion ceiling = BundleVersion.parseVersion(range.substring(comma + 1, range.length() - 1));
+		return new VersionRange(floor, first == '[', ceiling, last == ']');
+	}
+
+	public BundleVersion getFloor() {
+		return floor;
+	}
+
+	public boolean isFloorIncluded() {
+		return floorIncluded;
+	}
+
+	/**
+	 * @return the ceiling, null when the range is unbounded
+	 */
+	public BundleVersion getCeiling() {
+		return ceiling;
+	}
+
+	public boolean isCeilingIncluded() {
+		return ceilingIncluded;
+	}
+
+	/**
+	 * @param version
+	 * @return true if version is in the range
+	 */
+	public boolean includes(BundleVersion version) {
+		int floorComparison = floor.compareTo(version);
+		if (floorComparison > 0 || (floorComparison == 0 && !floorIncluded)) {
+			return false;
+		}
+		if (ceiling == null) {
+			return true;
+		}
+		int ceilingComparison = ceiling.compareTo(version);
+		return ceilingComparison > 0 || (ceilingComparison == 0 && ceilingIncluded);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = floor.hashCode() * 31 + (floorIncluded ? 1231 : 1237);
+		hash = hash * 31 + (ceiling == null ? 0 : ceiling.hashCode());
+		return hash * 31 + (ceilingIncluded ? 1231 : 1237);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof VersionRange)) {
+			return false;
+		}
+		VersionRange other = (VersionRange) obj;
+		return floor.equals(other.floor) && floorIncluded == other.floorIncluded
+				&& (ceiling == null ? other.ceiling == null : ceiling.equals(other.ceiling))
+				&& ceilingIncluded == other.ceilingIncluded;
+	}
+
+	@Override
+	public String toString() {
+		if (ceiling == null) {
+			return floor.toString();
+		}
+		return (floorIncluded ? "[" : "(") + floor + "," + ceiling + (ceilingIncluded ? "]" : ")");
+	}
+}
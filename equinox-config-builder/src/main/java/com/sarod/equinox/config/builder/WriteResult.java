@@ -0,0 +1,29 @@
+package com.sarod.equinox.config.builder;
+
+/**
+ * Outcome of writing a configuration file.
+ * 
+ * @author sarod
+ *
+ */
+public enum WriteResult {
+
+	/**
+	 * The file did not exist and was created.
+	 */
+	CREATED,
+
+	/**
+	 * The file existed with another content and was rewritten.
+	 */
+	UPDATED,
+
+	/**
+	 * The file already had the expected content and was not touched.
+	 */
+	UNCHANGED;
+
+	public boolean isChanged() {
+		return this != UNCHANGED;
+	}
+}
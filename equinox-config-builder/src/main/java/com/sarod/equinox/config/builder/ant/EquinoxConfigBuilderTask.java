@@ -0,0 +1,487 @@
+package com.sarod.equinox.config.builder.ant;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.SubBuildListener;
+import org.apache.tools.ant.Task;
+
+import com.sarod.equinox.config.builder.ConfigBuilder;
+import com.sarod.equinox.config.builder.ConfigFormat;
+import com.sarod.equinox.config.builder.DuplicateBundlePolicy;
+import com.sarod.equinox.config.builder.MemoryBundleInfoCache;
+import com.sarod.equinox.config.builder.ResolutionPolicy;
+import com.sarod.equinox.config.builder.StartLevelPlanner;
+import com.sarod.equinox.config.builder.StartPolicy;
+import com.sarod.equinox.config.builder.StartupProfile;
+import com.sarod.equinox.config.builder.WriteResult;
+
+public class EquinoxConfigBuilderTask extends Task {
+
+	private static final String STATISTICS_LOGGER_REFERENCE = "equinox.config.builder.shared.cache.logger";
+
+	/**
+	 * Cache shared by all the task invocations of the JVM, created on first
+	 * use
+	 */
+	private static MemoryBundleInfoCache sharedCache;
+
+	private File eclipseDirectory;
+
+	private File bundlesStartLevelPropertyFile;
+
+	private int defaultStartLevel = ConfigBuilder.DEFAULT_DEFAULT_START_LEVEL;
+
+	private int scanThreads = 1;
+
+	private boolean cache;
+
+	private boolean memoryMapped;
+
+	private boolean recursive;
+
+	private boolean dropins;
+
+	private boolean fingerprint;
+
+	private boolean updateArchive;
+
+	private int sharedCacheSize;
+
+	private String resultProperty;
+
+	private boolean referenceDirectoryBundles;
+
+	private ConfigFormat format = ConfigFormat.OSGI_BUNDLES;
+
+	private DuplicateBundlePolicy duplicates = DuplicateBundlePolicy.KEEP_ALL;
+
+	private ResolutionPolicy resolve = ResolutionPolicy.NONE;
+
+	private boolean autoStartLevels;
+
+	private StartPolicy startPolicy = StartPolicy.START_ALL;
+
+	private File startupProfile;
+
+	private long slowActivationMillis = StartLevelPlanner.DEFAULT_SLOW_ACTIVATION_MILLIS;
+
+	private int parallelActivationThreads;
+
+	private List<BundleStartLevel> bundleStartLevels = new ArrayList<BundleStartLevel>();
+
+	public File getEclipseDirectory() {
+		return eclipseDirectory;
+	}
+
+	/**
+	 * @param eclipseDirectory
+	 *            the eclipse directory or a zip or tar.gz product archive
+	 */
+	public void setEclipseDirectory(File eclipseDirectory) {
+		this.eclipseDirectory = eclipseDirectory;
+	}
+
+	public int getDefaultStartLevel() {
+		return defaultStartLevel;
+	}
+
+	public void setDefaultStartLevel(int defaultStartLevel) {
+		this.defaultStartLevel = defaultStartLevel;
+	}
+
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
+	public boolean isCache() {
+		return cache;
+	}
+
+	public void setCache(boolean cache) {
+		this.cache = cache;
+	}
+
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	/**
+	 * Also look for plugins in the subdirectories of the plugins directory.
+	 * 
+	 * @param recursive
+	 */
+	public void setRecursive(boolean recursive) {
+		this.recursive = recursive;
+	}
+
+	public boolean isDropins() {
+		return dropins;
+	}
+
+	/**
+	 * Also configure the plugins of the dropins directory.
+	 * 
+	 * @param dropins
+	 */
+	public void setDropins(boolean dropins) {
+		this.dropins = dropins;
+	}
+
+	public boolean isFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Write the fingerprint of the bundle set to
+	 * configuration/config.fingerprint.
+	 * 
+	 * @param fingerprint
+	 */
+	public void setFingerprint(boolean fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	public boolean isUpdateArchive() {
+		return updateArchive;
+	}
+
+	/**
+	 * When eclipsedirectory is a zip product archive, also add the generated
+	 * configuration to the archive.
+	 * 
+	 * @param updateArchive
+	 */
+	public void setUpdateArchive(boolean updateArchive) {
+		this.updateArchive = updateArchive;
+	}
+
+	public int getSharedCacheSize() {
+		return sharedCacheSize;
+	}
+
+	/**
+	 * Maximum number of plugins kept in the cache shared by all the
+	 * invocations of the task in the JVM, 0 (the default) to disable it. The
+	 * least recently used plugins are evicted first and a plugin is read
+	 * again when its size or modification time changed. Hit and miss counts
+	 * are logged at the end of the build.
+	 * <p>
+	 * The cache is held by the task class so invocations share it as long as
+	 * the task is loaded by the same class loader, e.g. a single taskdef or
+	 * taskdefs using the same loaderref.
+	 * 
+	 * @param sharedCacheSize
+	 */
+	public void setSharedCacheSize(int sharedCacheSize) {
+		if (sharedCacheSize < 0) {
+			throw new BuildException("sharedcachesize should be a positive integer.");
+		}
+		this.sharedCacheSize = sharedCacheSize;
+	}
+
+	public String getResultProperty() {
+		return resultProperty;
+	}
+
+	/**
+	 * Name of a property set to the {@link WriteResult} of the generation
+	 * (CREATED, UPDATED or UNCHANGED).
+	 * 
+	 * @param resultProperty
+	 */
+	public void setResultProperty(String resultProperty) {
+		this.resultProperty = resultProperty;
+	}
+
+	public boolean isReferenceDirectoryBundles() {
+		return referenceDirectoryBundles;
+	}
+
+	public void setReferenceDirectoryBundles(boolean referenceDirectoryBundles) {
+		this.referenceDirectoryBundles = referenceDirectoryBundles;
+	}
+
+	public String getFormat() {
+		return format.name();
+	}
+
+	/**
+	 * @param format
+	 *            a {@link ConfigFormat} name e.g. simple-configurator
+	 */
+	public void setFormat(String format) {
+		try {
+			this.format = ConfigFormat.fromString(format);
+		} catch (IllegalArgumentException e) {
+			throw new BuildException("Invalid format " + format + " expected osgi-bundles or simple-configurator");
+		}
+	}
+
+	public String getDuplicates() {
+		return duplicates.name();
+	}
+
+	/**
+	 * @param duplicates
+	 *            a {@link DuplicateBundlePolicy} name e.g. keep-highest
+	 */
+	public void setDuplicates(String duplicates) {
+		try {
+			this.duplicates = DuplicateBundlePolicy.fromString(duplicates);
+		} catch (IllegalArgumentException e) {
+			throw new BuildException("Invalid duplicates policy " + duplicates + " expected keep-all, keep-highest or fail");
+		}
+	}
+
+	public String getResolve() {
+		return resolve.name();
+	}
+
+	/**
+	 * @param resolve
+	 *            a {@link ResolutionPolicy} name e.g. exclude
+	 */
+	public void setResolve(String resolve) {
+		try {
+			this.resolve = ResolutionPolicy.fromString(resolve);
+		} catch (IllegalArgumentException e) {
+			throw new BuildException("Invalid resolution policy " + resolve + " expected none, report or exclude");
+		}
+	}
+
+	public boolean isAutoStartLevels() {
+		return autoStartLevels;
+	}
+
+	/**
+	 * Compute start levels from the bundle dependencies. Nested
+	 * bundleStartLevel elements and the property file still win.
+	 * 
+	 * @param autoStartLevels
+	 */
+	public void setAutoStartLevels(boolean autoStartLevels) {
+		this.autoStartLevels = autoStartLevels;
+	}
+
+	public String getStartPolicy() {
+		return startPolicy.name();
+	}
+
+	/**
+	 * @param startPolicy
+	 *            a {@link StartPolicy} name e.g. lazy
+	 */
+	public void setStartPolicy(String startPolicy) {
+		try {
+			this.startPolicy = StartPolicy.fromString(startPolicy);
+		} catch (IllegalArgumentException e) {
+			throw new BuildException("Invalid start policy " + startPolicy + " expected start-all, lazy or minimal-boot-set");
+		}
+	}
+
+	public File getStartupProfile() {
+		return startupProfile;
+	}
+
+	/**
+	 * @param startupProfile
+	 *            a CSV file of bundle activation times, see
+	 *            {@link StartupProfile}
+	 */
+	public void setStartupProfile(File startupProfile) {
+		this.startupProfile = startupProfile;
+	}
+
+	public long getSlowActivationMillis() {
+		return slowActivationMillis;
+	}
+
+	public void setSlowActivationMillis(long slowActivationMillis) {
+		this.slowActivationMillis = slowActivationMillis;
+	}
+
+	public String getParallelActivation() {
+		return parallelActivationThreads == ConfigBuilder.AUTO_PARALLEL_ACTIVATION_THREADS ? "auto" : String
+				.valueOf(parallelActivationThreads);
+	}
+
+	/**
+	 * @param parallelActivation
+	 *            auto for one activation thread per available processor, a
+	 *            number of threads or 0 to disable parallel activation
+	 * @see ConfigBuilder#setParallelActivationThreads(int)
+	 */
+	public void setParallelActivation(String parallelActivation) {
+		try {
+			this.parallelActivationThreads = ConfigBuilder.parseParallelActivationThreads(parallelActivation);
+		} catch (IllegalArgumentException e) {
+			throw new BuildException(e.getMessage() + " expected auto or a number of threads");
+		}
+	}
+
+	public BundleStartLevel createBundleStartLevel() {
+		BundleStartLevel bundleStartLevel = new BundleStartLevel();
+		bundleStartLevels.add(bundleStartLevel);
+		return bundleStartLevel;
+	}
+
+	public File getBundlesStartLevelPropertyFile() {
+		return bundlesStartLevelPropertyFile;
+	}
+
+	public void setBundlesStartLevelPropertyFile(File bundlesStartLevelPropertyFile) {
+		this.bundlesStartLevelPropertyFile = bundlesStartLevelPropertyFile;
+	}
+
+	@Override
+	public void execute() throws BuildException {
+		ConfigBuilder builder = new ConfigBuilder(eclipseDirectory, defaultStartLevel, buildBundleStartLevelMap());
+		builder.setScanThreads(scanThreads);
+		builder.setMemoryMappedScan(memoryMapped);
+		builder.setRecursiveScan(recursive);
+		builder.setScanDropins(dropins);
+		builder.setBundleCacheEnabled(cache);
+		builder.setReferenceDirectoryBundles(referenceDirectoryBundles);
+		builder.setConfigFormat(format);
+		builder.setFingerprintEnabled(fingerprint);
+		if (updateArchive) {
+			try {
+				builder.setUpdateArchive(true);
+			} catch (IllegalArgumentException e) {
+				throw new BuildException(e.getMessage());
+			}
+		}
+		builder.setDuplicateBundlePolicy(duplicates);
+		builder.setResolutionPolicy(resolve);
+		builder.setAutoStartLevels(autoStartLevels);
+		builder.setStartPolicy(startPolicy);
+		if (startupProfile != null) {
+			builder.setStartupProfile(StartupProfile.load(startupProfile));
+		}
+		builder.setSlowActivationMillis(slowActivationMillis);
+		builder.setParallelActivationThreads(parallelActivationThreads);
+		if (sharedCacheSize > 0) {
+			builder.setSharedBundleInfoCache(sharedCache(sharedCacheSize));
+			logStatisticsAtBuildEnd(getProject());
+		}
+		WriteResult result = builder.buildConfigFile();
+		if (resultProperty != null) {
+			getProject().setNewProperty(resultProperty, result.name());
+		}
+	}
+
+	private Map<String, Integer> buildBundleStartLevelMap() {
+		Map<String, Integer> startLevels = new HashMap<String, Integer>();
+		
+		// Load from property file first
+		if (bundlesStartLevelPropertyFile != null) {
+			startLevels.putAll(ConfigBuilder.startLevelsMapFromPropertyFile(bundlesStartLevelPropertyFile));
+		}
+		
+		// Override/complements with child elements
+		for (BundleStartLevel bundleStartLevel : bundleStartLevels) {
+			if (bundleStartLevel.getBundleName() != null) {
+				if (bundleStartLevel.getStartLevel() == -1) {
+					// override to -1 means reset to default
+					startLevels.remove(bundleStartLevel.getBundleName());
+				} else {
+					startLevels.put(bundleStartLevel.getBundleName(), bundleStartLevel.getStartLevel());
+				}
+			}			
+		}
+		
+		return startLevels;
+	}
+	static synchronized MemoryBundleInfoCache sharedCache(int maxEntries) {
+		if (sharedCache == null) {
+			sharedCache = new MemoryBundleInfoCache(maxEntries);
+		} else if (sharedCache.getMaxEntries() != maxEntries) {
+			sharedCache.setMaxEntries(maxEntries);
+		}
+		return sharedCache;
+	}
+
+	private static void logStatisticsAtBuildEnd(Project project) {
+		synchronized (project) {
+			if (project.getReference(STATISTICS_LOGGER_REFERENCE) == null) {
+				SharedCacheStatisticsLogger logger = new SharedCacheStatisticsLogger(project);
+				project.addReference(STATISTICS_LOGGER_REFERENCE, logger);
+				project.addBuildListener(logger);
+			}
+		}
+	}
+
+	/**
+	 * Log the statistics of the shared cache when the build, or the sub
+	 * build in which the task was invoked, finishes.
+	 */
+	private static final class SharedCacheStatisticsLogger implements SubBuildListener {
+
+		private final Project project;
+
+		SharedCacheStatisticsLogger(Project project) {
+			this.project = project;
+		}
+
+		public void buildFinished(BuildEvent event) {
+			logStatistics();
+		}
+
+		public void subBuildFinished(BuildEvent event) {
+			if (event.getProject() == project) {
+				logStatistics();
+			}
+		}
+
+		private void logStatistics() {
+			MemoryBundleInfoCache cache;
+			synchronized (EquinoxConfigBuilderTask.class) {
+				cache = sharedCache;
+			}
+			if (cache != null) {
+				project.log("equinox-config-builder shared cache: " + cache, Project.MSG_INFO);
+			}
+		}
+
+		public void buildStarted(BuildEvent event) {
+		}
+
+		public void subBuildStarted(BuildEvent event) {
+		}
+
+		public void targetStarted(BuildEvent event) {
+		}
+
+		public void targetFinished(BuildEvent event) {
+		}
+
+		public void taskStarted(BuildEvent event) {
+		}
+
+		public void taskFinished(BuildEvent event) {
+		}
+
+		public void messageLogged(BuildEvent event) {
+		}
+	}
+
+}
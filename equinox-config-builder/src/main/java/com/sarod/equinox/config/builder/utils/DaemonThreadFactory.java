@@ -0,0 +1,28 @@
+package com.sarod.equinox.config.builder.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Create daemon threads named &lt;prefix&gt;-&lt;n&gt; so that a pool that is
+ * not shut down never prevents the JVM from exiting.
+ *
+ * @author sarod
+ *
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String prefix;
+
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+	public DaemonThreadFactory(String prefix) {
+		this.prefix = Preconditions.checkNotNull(prefix);
+	}
+
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix + "-" + threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
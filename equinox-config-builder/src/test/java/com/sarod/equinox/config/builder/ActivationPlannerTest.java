@@ -0,0 +1,82 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActivationPlannerTest {
+
+	private final ActivationPlanner planner = new ActivationPlanner();
+
+	private BundleInfo app;
+	private BundleInfo lazy;
+	private BundleInfo library;
+	private BundleInfo unused;
+	private BundleInfo components;
+	private BundleInfo fragment;
+	private List<BundleInfo> bundleInfos;
+
+	@Before
+	public void setup() {
+		app = BundleInfo.builder("app.jar", "app").activator("com.app.Activator").requireBundleHeader("library").build();
+		lazy = BundleInfo.builder("lazy.jar", "lazy").activator("com.lazy.Activator").activationPolicyHeader("lazy")
+				.build();
+		library = BundleInfo.builder("library.jar", "library").exportPackageHeader("com.library").build();
+		unused = BundleInfo.builder("unused.jar", "unused").build();
+		components = BundleInfo.builder("components.jar", "components").importPackageHeader("com.library")
+				.serviceComponentHeader("OSGI-INF/component.xml").build();
+		fragment = BundleInfo.builder("fragment.jar", "fragment").fragmentHostName("library").build();
+		bundleInfos = Arrays.asList(app, lazy, library, unused, components, fragment);
+	}
+
+	@Test
+	public void testStartAll() {
+		ActivationPlan plan = planner.plan(bundleInfos, StartPolicy.START_ALL, Collections.<String> emptySet());
+		assertEquals(bundleInfos, plan.getBundleInfos());
+		assertTrue(plan.getInstallOnlyBundleNames().isEmpty());
+		assertEquals(5, plan.getStartedCount());
+		assertEquals(0, plan.getAvoidedActivationCount());
+	}
+
+	@Test
+	public void testLazy() {
+		ActivationPlan plan = planner.plan(bundleInfos, StartPolicy.LAZY, Collections.<String> emptySet());
+		assertEquals(bundleInfos, plan.getBundleInfos());
+		assertEquals(new HashSet<String>(Arrays.asList("lazy", "library", "unused")), plan.getInstallOnlyBundleNames());
+		assertEquals(2, plan.getStartedCount());
+		assertEquals(3, plan.getAvoidedActivationCount());
+		assertEquals(0, plan.getOmittedCount());
+	}
+
+	@Test
+	public void testExplicitlyStarted() {
+		ActivationPlan plan = planner.plan(bundleInfos, StartPolicy.LAZY, Collections.singleton("unused"));
+		assertEquals(new HashSet<String>(Arrays.asList("lazy", "library")), plan.getInstallOnlyBundleNames());
+	}
+
+	@Test
+	public void testMinimalBootSet() {
+		ActivationPlan plan = planner.plan(bundleInfos, StartPolicy.MINIMAL_BOOT_SET, Collections.<String> emptySet());
+		assertEquals(Arrays.asList(app, library, components, fragment), plan.getBundleInfos());
+		assertEquals(Collections.singleton("library"), plan.getInstallOnlyBundleNames());
+		assertEquals(2, plan.getStartedCount());
+		assertEquals(3, plan.getAvoidedActivationCount());
+		assertEquals(2, plan.getOmittedCount());
+	}
+
+	@Test
+	public void testFragmentServiceComponents() {
+		BundleInfo host = BundleInfo.builder("host.jar", "host").build();
+		BundleInfo componentsFragment = BundleInfo.builder("host.fragment.jar", "host.fragment").fragmentHostName("host")
+				.serviceComponentHeader("OSGI-INF/*.xml").build();
+		ActivationPlan plan = planner.plan(Arrays.asList(host, componentsFragment), StartPolicy.LAZY,
+				Collections.<String> emptySet());
+		assertTrue(plan.getInstallOnlyBundleNames().isEmpty());
+	}
+}
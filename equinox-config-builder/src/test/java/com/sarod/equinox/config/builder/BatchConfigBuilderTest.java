@@ -0,0 +1,96 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class BatchConfigBuilderTest {
+
+	private File root;
+
+	private File product1;
+
+	private File product2;
+
+	@Before
+	public void setup() throws IOException {
+		root = Files.createTempDir();
+		product1 = new File(root, "product1");
+		FileUtils.unzip(getClass().getResourceAsStream("eclipsedir-for-tests.zip"), product1);
+		// product2 links to the plugins of product1 and has one of its own
+		product2 = new File(root, "product2");
+		File plugins2 = new File(product2, "plugins");
+		assertTrue(plugins2.mkdirs());
+		for (File plugin : new File(product1, "plugins").listFiles()) {
+			java.nio.file.Files.createSymbolicLink(new File(plugins2, plugin.getName()).toPath(), plugin.toPath());
+		}
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.product2")), new File(plugins2,
+				"product2.jar"));
+	}
+
+	@Test
+	public void testBuildConfigFiles() throws IOException {
+		BatchConfigBuilder batchBuilder = new BatchConfigBuilder();
+		batchBuilder.setThreadCount(2);
+		batchBuilder.add(new ConfigBuilder(product1));
+		batchBuilder.add(new ConfigBuilder(product2, 3));
+		Map<File, BuildMetrics> results = batchBuilder.buildConfigFiles();
+
+		assertEquals(Arrays.asList(product1, product2), Arrays.asList(results.keySet().toArray()));
+		assertEquals(WriteResult.CREATED, results.get(product1).getWriteResult());
+		assertEquals(WriteResult.CREATED, results.get(product2).getWriteResult());
+		// Linked plugins are only read once
+		assertEquals(new File(product1, "plugins").listFiles().length + 1, batchBuilder.getSharedCache().size());
+
+		String content1 = Files.toString(new File(product1, "configuration/config.ini"), Charsets.UTF_8);
+		assertTrue(content1.contains("osgi.bundles.defaultStartLevel=4\n"));
+		assertFalse(content1.contains("com.sarod.test.product2"));
+		String content2 = Files.toString(new File(product2, "configuration/config.ini"), Charsets.UTF_8);
+		assertTrue(content2.contains("osgi.bundles.defaultStartLevel=3\n"));
+		assertTrue(content2.contains("com.sarod.test.bundle@start"));
+		assertTrue(content2.contains("com.sarod.test.product2@start"));
+
+		// Same result as a single build
+		new ConfigBuilder(product2, 3).buildConfigFile();
+		assertEquals(content2, Files.toString(new File(product2, "configuration/config.ini"), Charsets.UTF_8));
+	}
+
+	@Test
+	public void testFailingProduct() throws IOException {
+		File emptyProduct = new File(root, "empty");
+		assertTrue(emptyProduct.mkdirs());
+		BatchConfigBuilder batchBuilder = new BatchConfigBuilder();
+		batchBuilder.setJsonReports(true);
+		batchBuilder.add(new ConfigBuilder(product1));
+		batchBuilder.add(new ConfigBuilder(emptyProduct));
+		try {
+			batchBuilder.buildConfigFiles();
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(emptyProduct.toString()));
+		}
+		// Other products are generated anyway, with their report
+		assertTrue(new File(product1, "configuration/config.ini").exists());
+		assertTrue(new File(product1, "configuration/config-report.json").isFile());
+		assertFalse(new File(emptyProduct, "configuration/config-report.json").exists());
+	}
+
+	@Test
+	public void testReadBatchFile() throws IOException {
+		File batchFile = new File(root, "products.txt");
+		Files.write("# products\n" + product1 + "\n\n  " + product2 + "\t3  levels.properties\n", batchFile, Charsets.UTF_8);
+		List<List<String>> products = ConfigBuilder.readBatchFile(batchFile);
+		assertEquals(Arrays.asList(Arrays.asList(product1.toString()),
+				Arrays.asList(product2.toString(), "3", "levels.properties")), products);
+	}
+}
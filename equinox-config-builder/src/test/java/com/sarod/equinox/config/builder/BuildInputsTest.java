@@ -0,0 +1,110 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class BuildInputsTest {
+
+	private File eclipseDirectory;
+
+	private File pluginsDirectory;
+
+	@Before
+	public void setup() throws IOException {
+		eclipseDirectory = Files.createTempDir();
+		pluginsDirectory = new File(eclipseDirectory, "plugins");
+		File explodedDirectory = new File(pluginsDirectory, "exploded_1.0.0/META-INF");
+		assertTrue(explodedDirectory.mkdirs());
+		Files.write("Bundle-SymbolicName: exploded", new File(explodedDirectory, "MANIFEST.MF"), Charsets.UTF_8);
+		Files.write("bundle1 content", new File(pluginsDirectory, "bundle1.jar"), Charsets.UTF_8);
+	}
+
+	@Test
+	public void testUnchangedInputs() {
+		BuildInputs inputs = BuildInputs.of(new ConfigBuilder(eclipseDirectory));
+		assertEquals(2, inputs.getFiles().size());
+		assertTrue(inputs.getFiles().containsKey("exploded_1.0.0"));
+		assertEquals(inputs, BuildInputs.of(new ConfigBuilder(eclipseDirectory)));
+		assertEquals("unchanged", inputs.describeChanges(BuildInputs.of(new ConfigBuilder(eclipseDirectory))));
+	}
+
+	@Test
+	public void testChangedInputs() throws IOException {
+		BuildInputs inputs = BuildInputs.of(new ConfigBuilder(eclipseDirectory));
+
+		BuildInputs otherStartLevels = BuildInputs.of(new ConfigBuilder(eclipseDirectory, 4, Collections.singletonMap(
+				"bundle1", 2)));
+		assertFalse(inputs.equals(otherStartLevels));
+		assertEquals("setting bundleStartLevels changed", otherStartLevels.describeChanges(inputs));
+		assertFalse(inputs.equals(BuildInputs.of(new ConfigBuilder(eclipseDirectory, 3))));
+
+		ConfigBuilder simpleConfigurator = new ConfigBuilder(eclipseDirectory);
+		simpleConfigurator.setConfigFormat(ConfigFormat.SIMPLE_CONFIGURATOR);
+		assertFalse(inputs.equals(BuildInputs.of(simpleConfigurator)));
+
+		Files.write("bundle2 content", new File(pluginsDirectory, "bundle2.jar"), Charsets.UTF_8);
+		BuildInputs added = BuildInputs.of(new ConfigBuilder(eclipseDirectory));
+		assertEquals("plugin bundle2.jar added", added.describeChanges(inputs));
+		assertEquals("plugin bundle2.jar removed", inputs.describeChanges(added));
+
+		File bundle1 = new File(pluginsDirectory, "bundle1.jar");
+		Files.write("bundle1 other content", bundle1, Charsets.UTF_8);
+		assertEquals("plugin bundle1.jar changed", BuildInputs.of(new ConfigBuilder(eclipseDirectory)).describeChanges(added));
+
+		BuildInputs beforeTouch = BuildInputs.of(new ConfigBuilder(eclipseDirectory));
+		assertTrue(bundle1.setLastModified(bundle1.lastModified() - 10000));
+		assertFalse(beforeTouch.equals(BuildInputs.of(new ConfigBuilder(eclipseDirectory))));
+	}
+
+	@Test
+	public void testFingerprintedDirectoryBundles() throws IOException {
+		ConfigBuilder builder = new ConfigBuilder(eclipseDirectory);
+		ConfigBuilder fingerprinted = new ConfigBuilder(eclipseDirectory);
+		fingerprinted.setFingerprintEnabled(true);
+		BuildInputs inputs = BuildInputs.of(builder);
+		BuildInputs fingerprintedInputs = BuildInputs.of(fingerprinted);
+
+		// A class of an exploded bundle only matters to the fingerprint
+		Files.write("class content", new File(pluginsDirectory, "exploded_1.0.0/Activator.class"), Charsets.UTF_8);
+		assertEquals(inputs, BuildInputs.of(builder));
+		assertEquals("plugin exploded_1.0.0 changed", BuildInputs.of(fingerprinted).describeChanges(fingerprintedInputs));
+	}
+
+	@Test
+	public void testExtraFiles() throws IOException {
+		File propertyFile = new File(eclipseDirectory, "startlevels.properties");
+		Files.write("bundle1=2", propertyFile, Charsets.UTF_8);
+		ConfigBuilder builder = new ConfigBuilder(eclipseDirectory);
+		BuildInputs inputs = BuildInputs.of(builder, propertyFile);
+		assertEquals(inputs, BuildInputs.of(builder, propertyFile));
+		assertFalse(inputs.equals(BuildInputs.of(builder)));
+
+		Files.write("bundle1=3", propertyFile, Charsets.UTF_8);
+		assertTrue(propertyFile.setLastModified(propertyFile.lastModified() + 10000));
+		assertFalse(inputs.equals(BuildInputs.of(builder, propertyFile)));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		File inputsFile = new File(eclipseDirectory, "target/inputs.txt");
+		assertNull(BuildInputs.read(inputsFile));
+
+		BuildInputs inputs = BuildInputs.of(new ConfigBuilder(eclipseDirectory, 4, Collections.singletonMap("bundle1", 2)));
+		inputs.write(inputsFile);
+		BuildInputs read = BuildInputs.read(inputsFile);
+		assertEquals(inputs, read);
+		assertEquals(inputs.hashCode(), read.hashCode());
+
+		Files.write("#other format\n", inputsFile, Charsets.UTF_8);
+		assertNull(BuildInputs.read(inputsFile));
+	}
+}
@@ -0,0 +1,388 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class BuilderInfoLoaderTest {
+
+	private BundleInfoLoader infoLoader;
+
+	@Before
+	public void setup() {
+		infoLoader = new BundleInfoLoader();
+
+	}
+
+	@Test
+	public void testLoadBundleBundleInfo() {
+
+		String fileName = "bundle.jar";
+		BundleInfo info = infoLoader.loadBundleInfo(getClass().getResourceAsStream(fileName), fileName);
+		assertEquals("com.sarod.test.bundle", info.getBundleName());
+		assertEquals(fileName, info.getFileName());
+		assertEquals("1.0.0", info.getBundleVersion());
+		assertEquals(false, info.isFragment());
+		info.toString();
+	}
+
+	@Test
+	public void testLoadFragmentBundleInfo() {
+
+		String fileName = "fragment.jar";
+		BundleInfo info = infoLoader.loadBundleInfo(getClass().getResourceAsStream(fileName), fileName);
+		assertEquals("com.sarod.test.fragment", info.getBundleName());
+		assertEquals(fileName, info.getFileName());
+		assertEquals(true, info.isFragment());
+
+		assertEquals("com.sarod.test.bundle", info.getHostName());
+		info.toString();
+	}
+
+	@Test
+	public void testLoadNonOsgiBundleInfo() {
+
+		String fileName = "non-osgi.jar";
+		BundleInfo info = infoLoader.loadBundleInfo(getClass().getResourceAsStream(fileName), fileName);
+		assertNull(info);
+	}
+
+	@Test
+	public void testLoadNoManifestBundleInfo() {
+
+		String fileName = "no-manifest.zip";
+		BundleInfo info = infoLoader.loadBundleInfo(getClass().getResourceAsStream(fileName), fileName);
+		assertNull(info);
+	}
+
+	@Test
+	public void testLoadNotAJarBundleInfo() {
+
+		String fileName = "not-a-jar.txt";
+		BundleInfo info = infoLoader.loadBundleInfo(getClass().getResourceAsStream(fileName), fileName);
+		assertNull(info);
+	}
+
+	@Test
+	public void testLoadDiretory() {
+		URL url = getClass().getResource("not-a-jar.txt");
+		if (url.getProtocol().equals("file")) {
+			File directory = new File(url.getFile()).getParentFile();
+			Collection<BundleInfo> bundleInfos = infoLoader.loadBundleInfos(directory);
+			assertEquals(2, bundleInfos.size());
+			
+			List<BundleInfo> sorted = new ArrayList<BundleInfo>(bundleInfos);
+			
+			BundleInfo bundle = sorted.get(0);
+			BundleInfo fragment = sorted.get(1);
+			assertEquals("bundle.jar", bundle.getFileName());
+			assertEquals("com.sarod.test.bundle", bundle.getBundleName());
+
+			assertEquals("fragment.jar", fragment.getFileName());
+			assertEquals("com.sarod.test.fragment", fragment.getBundleName());
+		} else  {
+			// 
+			System.out.println("Skipping directory test");
+		}
+	}
+
+	@Test
+	public void testLoadDirectoryInParallel() throws IOException {
+		File directory = createPluginsDirectory(20);
+
+		List<BundleInfo> sequential = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory));
+		assertEquals(20, sequential.size());
+
+		infoLoader.setThreadCount(4);
+		List<BundleInfo> parallel = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory));
+		assertEquals(bundleInfoStrings(sequential), bundleInfoStrings(parallel));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<BundleInfo> withExecutor = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory, executor));
+			assertEquals(bundleInfoStrings(sequential), bundleInfoStrings(withExecutor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLoadDirectoryReportsAllErrors() throws IOException {
+		File directory = createPluginsDirectory(5);
+		Files.write(corruptedJar("corrupted1"), new File(directory, "corrupted1.jar"));
+		Files.write(corruptedJar("corrupted2"), new File(directory, "corrupted2.jar"));
+
+		for (int threadCount : new int[] { 1, 4 }) {
+			infoLoader.setThreadCount(threadCount);
+			try {
+				infoLoader.loadBundleInfos(directory);
+				fail("Expected ConfigBuildingException");
+			} catch (ConfigBuildingException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("corrupted1.jar"));
+				assertTrue(e.getMessage(), e.getMessage().contains("corrupted2.jar"));
+				assertEquals(1, e.getSuppressed().length);
+			}
+		}
+	}
+
+	@Test
+	public void testLoadFromFileMatchesStream() throws IOException {
+		File directory = Files.createTempDir();
+		for (String fileName : new String[] { "bundle.jar", "fragment.jar", "non-osgi.jar", "no-manifest.zip", "not-a-jar.txt" }) {
+			File file = new File(directory, fileName);
+			Files.write(ByteStreams.toByteArray(getClass().getResourceAsStream(fileName)), file);
+			BundleInfo fromStream = infoLoader.loadBundleInfo(getClass().getResourceAsStream(fileName), fileName);
+			BundleInfo fromFile = infoLoader.loadBundleInfo(file);
+			assertEquals(String.valueOf(fromStream), String.valueOf(fromFile));
+		}
+	}
+
+	@Test
+	public void testLoadMemoryMappedMatchesZipFile() throws IOException {
+		File directory = Files.createTempDir();
+		List<File> files = new ArrayList<File>();
+		for (String fileName : new String[] { "bundle.jar", "fragment.jar", "non-osgi.jar", "no-manifest.zip", "not-a-jar.txt" }) {
+			File file = new File(directory, fileName);
+			Files.write(ByteStreams.toByteArray(getClass().getResourceAsStream(fileName)), file);
+			files.add(file);
+		}
+		File manifestAtEnd = new File(directory, "manifest-at-end.jar");
+		Files.write(manifestAtEndJar(manifest("com.sarod.test.end"), 10, 1024), manifestAtEnd);
+		files.add(manifestAtEnd);
+		File stored = new File(directory, "stored.jar");
+		Files.write(storedManifestJar(manifest("com.sarod.test.stored"), "an archive comment"), stored);
+		files.add(stored);
+
+		BundleInfoLoader mappedLoader = new BundleInfoLoader();
+		mappedLoader.setMemoryMapped(true);
+		for (File file : files) {
+			assertEquals(file.getName(), infoLoader.loadBundleInfo(file), mappedLoader.loadBundleInfo(file));
+		}
+		assertEquals("com.sarod.test.stored", mappedLoader.loadBundleInfo(stored).getBundleName());
+		// Read without falling back to ZipFile
+		assertNotNull(MappedJarReader.readEntry(stored, "META-INF/MANIFEST.MF"));
+		assertNotNull(MappedJarReader.readEntry(manifestAtEnd, "META-INF/MANIFEST.MF"));
+		assertNull(MappedJarReader.readEntry(new File(directory, "no-manifest.zip"), "META-INF/MANIFEST.MF"));
+	}
+
+	@Test(expected = ConfigBuildingException.class)
+	public void testLoadMemoryMappedCorruptedJar() throws IOException {
+		File jarFile = new File(Files.createTempDir(), "corrupted.jar");
+		Files.write(corruptedJar("corrupted"), jarFile);
+		infoLoader.setMemoryMapped(true);
+		infoLoader.loadBundleInfo(jarFile);
+	}
+
+	@Test
+	public void testLoadFromFileManifestAtEnd() throws IOException {
+		File jarFile = new File(Files.createTempDir(), "manifest-at-end.jar");
+		Files.write(manifestAtEndJar(manifest("com.sarod.test.end"), 10, 1024), jarFile);
+
+		BundleInfo info = infoLoader.loadBundleInfo(jarFile);
+		assertEquals("com.sarod.test.end", info.getBundleName());
+		assertEquals("1.0.0", info.getBundleVersion());
+		assertEquals(String.valueOf(info), String.valueOf(infoLoader.loadBundleInfo(new FileInputStream(jarFile), jarFile.getName())));
+	}
+
+	@Test
+	public void testLoadDirectoryBundles() throws IOException {
+		File directory = createPluginsDirectory(2);
+		File exploded = new File(directory, "com.sarod.test.exploded_1.0.0");
+		writeManifest(manifest("com.sarod.test.exploded"), new File(exploded, "META-INF/MANIFEST.MF"));
+		new File(directory, "not-a-bundle-dir").mkdirs();
+
+		BundleInfo info = infoLoader.loadBundleInfo(exploded);
+		assertEquals("com.sarod.test.exploded", info.getBundleName());
+		assertEquals("com.sarod.test.exploded_1.0.0", info.getFileName());
+		assertTrue(info.isDirectory());
+		assertFalse(infoLoader.loadBundleInfo(new File(directory, "generated0.jar")).isDirectory());
+
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory));
+		assertEquals(3, bundleInfos.size());
+		assertEquals(info, bundleInfos.get(0));
+	}
+
+	@Test
+	public void testLoadRecursive() throws IOException {
+		File directory = createPluginsDirectory(2);
+		File group = new File(directory, "pool/group");
+		group.mkdirs();
+		Files.write(jar(manifest("com.sarod.test.nested")), new File(group, "nested.jar"));
+		File exploded = new File(directory, "pool/com.sarod.test.exploded_1.0.0");
+		writeManifest(manifest("com.sarod.test.exploded"), new File(exploded, "META-INF/MANIFEST.MF"));
+		// Exploded bundles are not walked
+		new File(exploded, "lib").mkdirs();
+		Files.write(jar(manifest("com.sarod.test.inner")), new File(exploded, "lib/inner.jar"));
+		java.nio.file.Files.createSymbolicLink(new File(group, "loop").toPath(), directory.toPath());
+
+		assertEquals(2, infoLoader.loadBundleInfos(directory).size());
+
+		infoLoader.setRecursive(true);
+		BuildMetrics metrics = new BuildMetrics();
+		infoLoader.setMetrics(metrics);
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory));
+		assertEquals(4, bundleInfos.size());
+		assertEquals("pool/com.sarod.test.exploded_1.0.0", bundleInfos.get(0).getFileName());
+		assertTrue(bundleInfos.get(0).isNested());
+		assertTrue(bundleInfos.get(0).isDirectory());
+		assertFalse(bundleInfos.get(1).isNested());
+		assertEquals("pool/group/nested.jar", bundleInfos.get(3).getFileName());
+		assertEquals(4, metrics.getReadPluginCount());
+		assertEquals(1, metrics.getSkippedFileCount());
+	}
+
+	@Test
+	public void testLoadManyPluginsPipelined() throws IOException {
+		// More plugins than can be pending on the executor
+		File directory = createPluginsDirectory(300);
+		List<BundleInfo> sequential = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory));
+		assertEquals(300, sequential.size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<BundleInfo> withExecutor = new ArrayList<BundleInfo>(infoLoader.loadBundleInfos(directory, executor));
+			assertEquals(sequential, withExecutor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	static void writeManifest(Manifest manifest, File manifestFile) throws IOException {
+		manifestFile.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(manifestFile);
+		try {
+			manifest.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static List<String> bundleInfoStrings(List<BundleInfo> bundleInfos) {
+		List<String> strings = new ArrayList<String>();
+		for (BundleInfo bundleInfo : bundleInfos) {
+			strings.add(bundleInfo.toString());
+		}
+		return strings;
+	}
+
+	private File createPluginsDirectory(int bundleCount) throws IOException {
+		File directory = Files.createTempDir();
+		for (int i = 0; i < bundleCount; i++) {
+			Files.write(jar(manifest("com.sarod.test.generated" + i)), new File(directory, "generated" + i + ".jar"));
+		}
+		Files.write("not a jar", new File(directory, "not-a-jar.txt"), Charsets.UTF_8);
+		return directory;
+	}
+
+	static Manifest manifest(String symbolicName) {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", symbolicName + ";singleton:=true");
+		manifest.getMainAttributes().putValue("Bundle-Version", "1.0.0");
+		return manifest;
+	}
+
+	static byte[] jar(Manifest manifest) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JarOutputStream jarOut = new JarOutputStream(out, manifest);
+		jarOut.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * A jar with entryCount entries of entrySize bytes each followed by the
+	 * manifest.
+	 */
+	static byte[] manifestAtEndJar(Manifest manifest, int entryCount, int entrySize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ZipOutputStream zipOut = new ZipOutputStream(out);
+		Random random = new Random(entryCount);
+		byte[] content = new byte[entrySize];
+		for (int i = 0; i < entryCount; i++) {
+			// Half random half repeated so entries are actually deflated
+			random.nextBytes(content);
+			Arrays.fill(content, 0, entrySize / 2, (byte) i);
+			zipOut.putNextEntry(new ZipEntry("com/sarod/test/Class" + i + ".class"));
+			zipOut.write(content);
+			zipOut.closeEntry();
+		}
+		zipOut.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		manifest.write(zipOut);
+		zipOut.closeEntry();
+		zipOut.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * A jar with a stored (not deflated) manifest and an archive comment
+	 */
+	private static byte[] storedManifestJar(Manifest manifest, String comment) throws IOException {
+		ByteArrayOutputStream manifestOut = new ByteArrayOutputStream();
+		manifest.write(manifestOut);
+		byte[] manifestBytes = manifestOut.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(manifestBytes);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ZipOutputStream zipOut = new ZipOutputStream(out);
+		zipOut.setComment(comment);
+		ZipEntry entry = new ZipEntry("META-INF/MANIFEST.MF");
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(manifestBytes.length);
+		entry.setCrc(crc.getValue());
+		zipOut.putNextEntry(entry);
+		zipOut.write(manifestBytes);
+		zipOut.closeEntry();
+		zipOut.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * A jar whose deflated manifest data starts with an invalid deflate block
+	 */
+	private static byte[] corruptedJar(String symbolicName) throws IOException {
+		byte[] jar = jar(manifest(symbolicName));
+		byte[] name = "META-INF/MANIFEST.MF".getBytes(Charsets.UTF_8);
+		int nameIndex = indexOf(jar, name);
+		int extraLength = (jar[nameIndex - 2] & 0xFF) | ((jar[nameIndex - 1] & 0xFF) << 8);
+		jar[nameIndex + name.length + extraLength] = (byte) 0xFF;
+		return jar;
+	}
+
+	private static int indexOf(byte[] bytes, byte[] searched) {
+		outer: for (int i = 0; i <= bytes.length - searched.length; i++) {
+			for (int j = 0; j < searched.length; j++) {
+				if (bytes[i + j] != searched[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		throw new IllegalArgumentException("not found");
+	}
+}
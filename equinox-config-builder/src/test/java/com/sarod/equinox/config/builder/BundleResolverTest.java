@@ -0,0 +1,129 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BundleResolverTest {
+
+	private final BundleResolver resolver = new BundleResolver();
+
+	@Test
+	public void testAllResolved() {
+		BundleInfo library = BundleInfo.builder("library.jar", "library").bundleVersion("1.5.0")
+				.exportPackageHeader("com.library;version=\"1.5\"").build();
+		BundleInfo app = BundleInfo.builder("app.jar", "app").requireBundleHeader("library;bundle-version=\"[1.0,2.0)\"")
+				.importPackageHeader("com.library;version=\"1.2\",javax.xml.parsers,org.w3c.dom").build();
+		BundleInfo system = BundleInfo.builder("system.jar", "system").requireBundleHeader("system.bundle").build();
+		BundleInfo optional = BundleInfo.builder("optional.jar", "optional")
+				.importPackageHeader("com.absent;resolution:=optional").requireBundleHeader("absent;resolution:=optional")
+				.build();
+		BundleInfo fragment = BundleInfo.fragment("fragment.jar", "fragment", "1.0.0", "library");
+		BundleInfo extension = BundleInfo.fragment("extension.jar", "extension", "1.0.0", "system.bundle");
+		List<BundleInfo> bundleInfos = Arrays.asList(library, app, system, optional, fragment, extension);
+
+		Resolution resolution = resolver.resolve(bundleInfos);
+		assertEquals(bundleInfos, resolution.getResolvedBundleInfos());
+		assertTrue(resolution.getUnresolvedBundleInfos().isEmpty());
+	}
+
+	@Test
+	public void testUnresolvable() {
+		BundleInfo oldLibrary = BundleInfo.builder("library.jar", "library").bundleVersion("1.0.0")
+				.exportPackageHeader("com.library;version=\"1.0\"").build();
+		BundleInfo tooOld = BundleInfo.builder("too-old.jar", "too-old").requireBundleHeader("library;bundle-version=\"1.1\"")
+				.build();
+		BundleInfo wrongPackageVersion = BundleInfo.builder("wrong-package.jar", "wrong-package")
+				.importPackageHeader("com.library;version=\"[2.0,3.0)\"").build();
+		BundleInfo missingPackage = BundleInfo.builder("missing-package.jar", "missing-package")
+				.importPackageHeader("com.library,com.absent").build();
+		BundleInfo orphan = BundleInfo.fragment("orphan.jar", "orphan", "1.0.0", "absent");
+		BundleInfo resolved = BundleInfo.builder("resolved.jar", "resolved").importPackageHeader("com.library").build();
+
+		Resolution resolution = resolver.resolve(Arrays.asList(oldLibrary, tooOld, wrongPackageVersion, missingPackage, orphan,
+				resolved));
+		assertEquals(Arrays.asList(oldLibrary, resolved), resolution.getResolvedBundleInfos());
+		assertEquals(Arrays.asList(tooOld, wrongPackageVersion, missingPackage, orphan),
+				new ArrayList<BundleInfo>(resolution.getUnresolvedBundleInfos().keySet()));
+		assertEquals("missing Require-Bundle library;version=\"1.1\"", resolution.getUnresolvedBundleInfos().get(tooOld));
+		assertEquals("missing Import-Package com.library;version=\"[2.0,3.0)\"",
+				resolution.getUnresolvedBundleInfos().get(wrongPackageVersion));
+		assertEquals("missing Import-Package com.absent", resolution.getUnresolvedBundleInfos().get(missingPackage));
+		assertEquals("missing host absent", resolution.getUnresolvedBundleInfos().get(orphan));
+		assertEquals(1, resolution.getUnresolvedFragmentCount());
+	}
+
+	@Test
+	public void testFrameworkBundle() {
+		BundleInfo framework = BundleInfo.builder("org.eclipse.osgi_3.10.0.jar", "org.eclipse.osgi").bundleVersion("3.10.0")
+				.exportPackageHeader("org.osgi.framework;version=\"1.7\",org.osgi.service.packageadmin;version=\"1.2\"")
+				.importPackageHeader("org.eclipse.absent").build();
+		BundleInfo importer = BundleInfo.builder("importer.jar", "importer")
+				.importPackageHeader("org.osgi.framework;version=\"[1.5,2)\",org.osgi.service.packageadmin").build();
+		BundleInfo requirer = BundleInfo.builder("requirer.jar", "requirer")
+				.requireBundleHeader("org.eclipse.osgi;bundle-version=\"3.7\",system.bundle").build();
+		BundleInfo extension = BundleInfo.fragment("extension.jar", "extension", "1.0.0", "org.eclipse.osgi");
+		BundleInfo tooRecent = BundleInfo.builder("too-recent.jar", "too-recent")
+				.importPackageHeader("org.osgi.framework;version=\"1.8\"").build();
+
+		Resolution resolution = resolver.resolve(Arrays.asList(framework, importer, requirer, extension, tooRecent));
+		assertEquals(Arrays.asList(framework, importer, requirer, extension), resolution.getResolvedBundleInfos());
+		assertEquals(Collections.singleton(tooRecent), resolution.getUnresolvedBundleInfos().keySet());
+
+		// Without the framework bundle only system.bundle is known
+		resolution = resolver.resolve(Arrays.asList(importer, requirer));
+		assertEquals(Arrays.asList(importer, requirer), new ArrayList<BundleInfo>(resolution.getUnresolvedBundleInfos().keySet()));
+	}
+
+	@Test
+	public void testFixedPoint() {
+		// d needs c needs b needs a, a is missing: all of them fail
+		BundleInfo b = BundleInfo.builder("b.jar", "b").bundleVersion("1.0.0").requireBundleHeader("a")
+				.exportPackageHeader("com.b").build();
+		BundleInfo c = BundleInfo.builder("c.jar", "c").importPackageHeader("com.b").exportPackageHeader("com.c").build();
+		BundleInfo d = BundleInfo.builder("d.jar", "d").importPackageHeader("com.c").build();
+		BundleInfo fragmentOfC = BundleInfo.fragment("c.fragment.jar", "c.fragment", "1.0.0", "c");
+		// e has another provider for com.b that resolves
+		BundleInfo otherB = BundleInfo.builder("other-b.jar", "other-b").exportPackageHeader("com.b").build();
+		BundleInfo e = BundleInfo.builder("e.jar", "e").importPackageHeader("com.b").build();
+
+		Resolution resolution = resolver.resolve(Arrays.asList(d, fragmentOfC, c, b));
+		assertTrue(resolution.getResolvedBundleInfos().isEmpty());
+		assertEquals("missing Require-Bundle a", resolution.getUnresolvedBundleInfos().get(b));
+		assertEquals("unresolvable Import-Package com.b (b 1.0.0)", resolution.getUnresolvedBundleInfos().get(c));
+		assertTrue(resolution.getUnresolvedBundleInfos().get(d).startsWith("unresolvable Import-Package com.c"));
+		assertTrue(resolution.getUnresolvedBundleInfos().get(fragmentOfC).startsWith("unresolvable host c"));
+
+		resolution = resolver.resolve(Arrays.asList(b, c, d, otherB, e));
+		assertEquals(Arrays.asList(c, d, otherB, e), resolution.getResolvedBundleInfos());
+		assertEquals(Collections.singleton(b), resolution.getUnresolvedBundleInfos().keySet());
+	}
+
+	@Test
+	public void testFragmentExports() {
+		BundleInfo host = BundleInfo.bundle("host.jar", "host", "1.0.0");
+		BundleInfo fragment = BundleInfo.builder("fragment.jar", "fragment").fragmentHostName("host")
+				.exportPackageHeader("com.fragment").build();
+		BundleInfo user = BundleInfo.builder("user.jar", "user").importPackageHeader("com.fragment").build();
+		assertTrue(resolver.resolve(Arrays.asList(host, fragment, user)).getUnresolvedBundleInfos().isEmpty());
+		Resolution withoutHost = resolver.resolve(Arrays.asList(fragment, user));
+		assertEquals(Arrays.asList(fragment, user), new ArrayList<BundleInfo>(withoutHost.getUnresolvedBundleInfos().keySet()));
+	}
+
+	@Test
+	public void testInvalidVersionRange() {
+		BundleInfo invalid = BundleInfo.builder("invalid.jar", "invalid").importPackageHeader("com.library;version=\"[1.0\"")
+				.build();
+		try {
+			resolver.resolve(Collections.singletonList(invalid));
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("invalid.jar"));
+		}
+	}
+}
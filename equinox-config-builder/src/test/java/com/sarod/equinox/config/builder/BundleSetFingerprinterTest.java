@@ -0,0 +1,154 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class BundleSetFingerprinterTest {
+
+	private File pluginsDirectory;
+
+	private BundleInfo bundle1;
+
+	private BundleInfo bundle2;
+
+	private BundleInfo exploded;
+
+	private ConfigDescriptor descriptor;
+
+	@Before
+	public void setup() throws IOException {
+		pluginsDirectory = Files.createTempDir();
+		Files.write("bundle1 content", new File(pluginsDirectory, "bundle1.jar"), Charsets.UTF_8);
+		Files.write("bundle2 content", new File(pluginsDirectory, "bundle2.jar"), Charsets.UTF_8);
+		File explodedDirectory = new File(pluginsDirectory, "exploded_1.0.0/META-INF");
+		assertTrue(explodedDirectory.mkdirs());
+		Files.write("Bundle-SymbolicName: exploded", new File(explodedDirectory, "MANIFEST.MF"), Charsets.UTF_8);
+		bundle1 = BundleInfo.bundle("bundle1.jar", "bundle1", "1.0.0");
+		bundle2 = BundleInfo.bundle("bundle2.jar", "bundle2", "1.0.0");
+		exploded = BundleInfo.builder("exploded_1.0.0", "exploded").bundleVersion("1.0.0").directory(true).build();
+		descriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2, exploded));
+	}
+
+	@Test
+	public void testFingerprintIsStable() {
+		String fingerprint = fingerprint(descriptor);
+		assertEquals(64, fingerprint.length());
+		assertEquals(fingerprint, fingerprint(new ConfigDescriptor(4, Arrays.asList(exploded, bundle2, bundle1))));
+
+		BundleSetFingerprinter parallel = new BundleSetFingerprinter(pluginsDirectory);
+		parallel.setThreadCount(3);
+		assertEquals(fingerprint, parallel.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			parallel.setExecutor(executor);
+			assertEquals(fingerprint, parallel.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFingerprintChanges() throws IOException {
+		String fingerprint = fingerprint(descriptor);
+
+		assertFalse(fingerprint.equals(fingerprint(new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2)))));
+		assertFalse(fingerprint.equals(fingerprint(new ConfigDescriptor(3, descriptor.getBundleInfos()))));
+		Map<String, Integer> startLevels = new HashMap<String, Integer>();
+		startLevels.put("bundle1", 2);
+		assertFalse(fingerprint.equals(fingerprint(new ConfigDescriptor(4, descriptor.getBundleInfos(), startLevels))));
+		assertFalse(fingerprint.equals(fingerprint(new ConfigDescriptor(4, descriptor.getBundleInfos(), Collections
+				.<String, Integer> emptyMap(), Collections.singleton("bundle2")))));
+		assertFalse(fingerprint.equals(new BundleSetFingerprinter(pluginsDirectory).fingerprint(descriptor,
+				ConfigFormat.SIMPLE_CONFIGURATOR)));
+
+		// Same name, same size, other content
+		Files.write("bundle1 CONTENT", new File(pluginsDirectory, "bundle1.jar"), Charsets.UTF_8);
+		String jarChangedFingerprint = fingerprint(descriptor);
+		assertFalse(fingerprint.equals(jarChangedFingerprint));
+		// A file of an exploded bundle
+		Files.write("Bundle-SymbolicName: exploded2", new File(pluginsDirectory, "exploded_1.0.0/META-INF/MANIFEST.MF"),
+				Charsets.UTF_8);
+		assertFalse(jarChangedFingerprint.equals(fingerprint(descriptor)));
+	}
+
+	@Test
+	public void testIncrementalHashing() throws IOException {
+		File hashCacheFile = new File(pluginsDirectory.getParentFile(), pluginsDirectory.getName() + ".hashes");
+		BundleSetFingerprinter fingerprinter = new BundleSetFingerprinter(pluginsDirectory);
+		fingerprinter.setHashCacheFile(hashCacheFile);
+
+		String fingerprint = fingerprinter.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES);
+		assertEquals(3, fingerprinter.getHashedPluginCount());
+		assertTrue(hashCacheFile.isFile());
+		assertEquals(fingerprint, fingerprinter.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES));
+		assertEquals(0, fingerprinter.getHashedPluginCount());
+
+		File bundle2File = new File(pluginsDirectory, "bundle2.jar");
+		Files.write("bundle2 changed content", bundle2File, Charsets.UTF_8);
+		String changedFingerprint = fingerprinter.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES);
+		assertEquals(1, fingerprinter.getHashedPluginCount());
+		assertFalse(fingerprint.equals(changedFingerprint));
+		assertEquals(fingerprint(descriptor), changedFingerprint);
+
+		// An invalid cache is ignored
+		Files.write("garbage", hashCacheFile, Charsets.UTF_8);
+		assertEquals(changedFingerprint, fingerprinter.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES));
+		assertEquals(3, fingerprinter.getHashedPluginCount());
+	}
+
+	@Test
+	public void testExplodedBundleLayout() throws IOException {
+		File hashCacheFile = new File(pluginsDirectory.getParentFile(), pluginsDirectory.getName() + ".hashes");
+		BundleSetFingerprinter fingerprinter = new BundleSetFingerprinter(pluginsDirectory);
+		fingerprinter.setHashCacheFile(hashCacheFile);
+		File libDirectory = new File(pluginsDirectory, "exploded_1.0.0/lib");
+		assertTrue(libDirectory.mkdir());
+		File a = new File(libDirectory, "a.txt");
+		File b = new File(libDirectory, "b.txt");
+		Files.write("1", a, Charsets.UTF_8);
+		Files.write("2", b, Charsets.UTF_8);
+		String fingerprint = fingerprinter.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES);
+
+		// Same sizes and modification times, other paths
+		File c = new File(libDirectory, "c.txt");
+		assertTrue(b.renameTo(c));
+		String renamedFingerprint = fingerprinter.fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES);
+		assertEquals(1, fingerprinter.getHashedPluginCount());
+		assertFalse(fingerprint.equals(renamedFingerprint));
+		assertEquals(fingerprint(descriptor), renamedFingerprint);
+
+		// Content moved from one file to the previous one, with the path of
+		// the second file written in the content of the first
+		assertTrue(c.delete());
+		Files.write("1" + "lib/b.txt\n" + "2", a, Charsets.UTF_8);
+		assertFalse(fingerprint.equals(fingerprint(descriptor)));
+	}
+
+	@Test
+	public void testMissingPlugin() {
+		try {
+			fingerprint(new ConfigDescriptor(4, Arrays.asList(BundleInfo.bundle("missing.jar", "missing", "1.0.0"))));
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("missing.jar"));
+		}
+	}
+
+	private String fingerprint(ConfigDescriptor descriptor) {
+		return new BundleSetFingerprinter(pluginsDirectory).fingerprint(descriptor, ConfigFormat.OSGI_BUNDLES);
+	}
+}
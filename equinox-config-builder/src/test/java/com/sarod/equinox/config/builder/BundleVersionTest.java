@@ -0,0 +1,40 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BundleVersionTest {
+
+	@Test
+	public void testParse() {
+		assertEquals(new BundleVersion(1, 2, 3, "v20140101"), BundleVersion.parseVersion("1.2.3.v20140101"));
+		assertEquals(new BundleVersion(1, 2, 3, ""), BundleVersion.parseVersion(" 1.2.3 "));
+		assertEquals(new BundleVersion(1, 2, 0, ""), BundleVersion.parseVersion("1.2"));
+		assertEquals(new BundleVersion(1, 0, 0, ""), BundleVersion.parseVersion("1"));
+		assertEquals(BundleVersion.EMPTY, BundleVersion.parseVersion(null));
+		assertEquals(BundleVersion.EMPTY, BundleVersion.parseVersion(""));
+		assertEquals("1.2.3.qualifier", BundleVersion.parseVersion("1.2.3.qualifier").toString());
+		assertEquals("1.0.0", BundleVersion.parseVersion("1").toString());
+	}
+
+	@Test
+	public void testParseInvalid() {
+		for (String invalid : new String[] { "a", "1..2", "1.2.", "1.2.3.q.u", "-1.0", "1.2.3.4 5" }) {
+			try {
+				BundleVersion.parseVersion(invalid);
+				fail("Expected IllegalArgumentException for " + invalid);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testCompare() {
+		assertTrue(BundleVersion.parseVersion("1.10.0").compareTo(BundleVersion.parseVersion("1.9.0")) > 0);
+		assertTrue(BundleVersion.parseVersion("1.2.3").compareTo(BundleVersion.parseVersion("1.2.3.a")) < 0);
+		assertTrue(BundleVersion.parseVersion("1.2.3.v2").compareTo(BundleVersion.parseVersion("1.2.3.v10")) > 0);
+		assertEquals(0, BundleVersion.parseVersion("1.2").compareTo(BundleVersion.parseVersion("1.2.0")));
+	}
+}
@@ -0,0 +1,451 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class ConfigBuilderTest {
+
+	private File targetUnzipped;
+
+	@Before
+	public void setup() throws IOException {
+
+		// unzip test resources
+
+		targetUnzipped = Files.createTempDir();
+
+		FileUtils.unzip(getClass().getResourceAsStream("eclipsedir-for-tests.zip"), targetUnzipped);
+	}
+
+	@Test
+	public void testConfigBuilder() throws IOException {
+
+		Map<String, Integer> bundleStartLevels = new HashMap<String, Integer>();
+		bundleStartLevels.put("bundle1", 1);
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped, 4, bundleStartLevels);
+		builder.buildConfigFile();
+
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+		assertTrue(configFile.exists());
+
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		assertEquals("#Product Runtime Configuration File\n" + "osgi.bundles.defaultStartLevel=4\n"
+				+ "osgi.bundles=com.sarod.test.bundle@start,\\\n" + "com.sarod.test.fragment,\\\n"
+				+ "org.eclipse.rap.servletbridge.extensionbundle", content);
+	}
+
+	@Test
+	public void testConfigBuilderWithBundleCache() throws IOException {
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setBundleCacheEnabled(true);
+		builder.buildConfigFile();
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		assertTrue(new File(targetUnzipped, "configuration/.bundle-cache").exists());
+
+		builder.buildConfigFile();
+		assertEquals(content, Files.toString(configFile, Charsets.UTF_8));
+	}
+
+	@Test
+	public void testBuildMetrics() throws IOException {
+		Files.write("not a plugin", new File(targetUnzipped, "plugins/readme.txt"), Charsets.UTF_8);
+		Files.write(BuilderInfoLoaderTest.jar(new Manifest()), new File(targetUnzipped, "plugins/non-osgi.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setBundleCacheEnabled(true);
+		BuildMetrics metrics = builder.build();
+
+		assertEquals(WriteResult.CREATED, metrics.getWriteResult());
+		assertEquals(4, metrics.getListedFileCount());
+		assertEquals(1, metrics.getSkippedFileCount());
+		assertEquals(3, metrics.getReadPluginCount());
+		assertEquals(0, metrics.getCachedPluginCount());
+		assertEquals(1, metrics.getBundleCount());
+		assertEquals(1, metrics.getFragmentCount());
+		assertEquals(1, metrics.getNonBundleCount());
+		assertEquals(2, metrics.getConfiguredBundleCount());
+		assertTrue(metrics.getBytesRead() > 0);
+		assertEquals(3, metrics.getSlowestPlugins().size());
+		assertTrue(metrics.getSlowestPlugins().get(0).getNanos() >= metrics.getSlowestPlugins().get(2).getNanos());
+		assertTrue(metrics.getPhaseNanos(BuildMetrics.Phase.LOAD) > 0);
+		assertTrue(metrics.getPhaseNanos(BuildMetrics.Phase.WRITE) > 0);
+
+		String json = metrics.toJson();
+		assertTrue(json, json.contains("\"result\": \"CREATED\""));
+		assertTrue(json, json.contains("\"fragments\": 1,"));
+		assertTrue(json, json.contains("\"load\": "));
+		assertTrue(json, json.contains("{\"file\": \""));
+		metrics.writeJson(builder.getReportFile());
+		assertEquals(json, Files.toString(new File(targetUnzipped, "configuration/config-report.json"), Charsets.UTF_8));
+
+		metrics = builder.build();
+		assertEquals(WriteResult.UNCHANGED, metrics.getWriteResult());
+		assertEquals(0, metrics.getReadPluginCount());
+		assertEquals(3, metrics.getCachedPluginCount());
+		assertEquals(1, metrics.getBundleCount());
+		assertTrue(metrics.getSlowestPlugins().isEmpty());
+	}
+
+	@Test
+	public void testDropins() throws IOException {
+		File dropins = new File(targetUnzipped, "dropins");
+		dropins.mkdirs();
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.dropin")), new File(dropins,
+				"dropin.jar"));
+		File feature = new File(dropins, "feature/eclipse/plugins");
+		feature.mkdirs();
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.feature")), new File(feature,
+				"feature.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+
+		builder.buildConfigFile();
+		assertFalse(Files.toString(configFile, Charsets.UTF_8).contains("dropins"));
+
+		builder.setScanDropins(true);
+		builder.buildConfigFile();
+		assertEquals("#Product Runtime Configuration File\n" + "osgi.bundles.defaultStartLevel=4\n"
+				+ "osgi.bundles=com.sarod.test.bundle@start,\\\n" + "reference:file:../dropins/dropin.jar@start,\\\n"
+				+ "reference:file:../dropins/feature/eclipse/plugins/feature.jar@start,\\\n"
+				+ "com.sarod.test.fragment,\\\n" + "org.eclipse.rap.servletbridge.extensionbundle",
+				Files.toString(configFile, Charsets.UTF_8));
+	}
+
+	@Test
+	public void testSimpleConfiguratorFormat() throws IOException {
+		Files.write(BuilderInfoLoaderTest.jar(versionedManifest("org.eclipse.equinox.simpleconfigurator", "1.1.0")),
+				new File(targetUnzipped, "plugins/org.eclipse.equinox.simpleconfigurator_1.1.0.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setConfigFormat(ConfigFormat.SIMPLE_CONFIGURATOR);
+		assertEquals(WriteResult.CREATED, builder.buildConfigFile());
+
+		String content = Files.toString(new File(targetUnzipped, "configuration/config.ini"), Charsets.UTF_8);
+		assertTrue(content, content.contains("osgi.bundles=reference:file:org.eclipse.equinox.simpleconfigurator_1.1.0.jar@1:start"));
+		assertFalse(content, content.contains("com.sarod.test.bundle"));
+		File bundlesInfoFile = new File(targetUnzipped, "configuration/org.eclipse.equinox.simpleconfigurator/bundles.info");
+		String bundlesInfo = Files.toString(bundlesInfoFile, Charsets.UTF_8);
+		assertTrue(bundlesInfo, bundlesInfo.contains("\ncom.sarod.test.bundle,"));
+		assertTrue(bundlesInfo, bundlesInfo.contains("\ncom.sarod.test.fragment,"));
+
+		assertEquals(WriteResult.UNCHANGED, builder.buildConfigFile());
+		assertTrue(bundlesInfoFile.delete());
+		assertEquals(WriteResult.CREATED, builder.buildConfigFile());
+	}
+
+	@Test
+	public void testFingerprint() throws IOException {
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setFingerprintEnabled(true);
+		assertEquals(WriteResult.CREATED, builder.buildConfigFile());
+		File fingerprintFile = new File(targetUnzipped, "configuration/config.fingerprint");
+		assertEquals(fingerprintFile, builder.getFingerprintFile());
+		String fingerprint = Files.toString(fingerprintFile, Charsets.UTF_8);
+		assertTrue(fingerprint, fingerprint.matches("[0-9a-f]{64}\n"));
+		assertTrue(new File(targetUnzipped, "configuration/.content-hashes").isFile());
+
+		assertEquals(WriteResult.UNCHANGED, builder.buildConfigFile());
+
+		// Plugin rebuilt with the same manifest: config.ini is unchanged but
+		// not the fingerprint
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		File pluginFile = new File(targetUnzipped, "plugins").listFiles()[0];
+		java.nio.file.Files.write(pluginFile.toPath(), new byte[] { 0 }, java.nio.file.StandardOpenOption.APPEND);
+		assertEquals(WriteResult.UPDATED, builder.buildConfigFile());
+		assertEquals(content, Files.toString(configFile, Charsets.UTF_8));
+		assertFalse(fingerprint.equals(Files.toString(fingerprintFile, Charsets.UTF_8)));
+	}
+
+	@Test
+	public void testGeneratedFiles() {
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configurationDirectory = new File(targetUnzipped, "configuration");
+		File configFile = new File(configurationDirectory, "config.ini");
+		assertEquals(Arrays.asList(configFile), builder.getGeneratedFiles());
+
+		builder.setConfigFormat(ConfigFormat.SIMPLE_CONFIGURATOR);
+		builder.setFingerprintEnabled(true);
+		assertEquals(Arrays.asList(configFile,
+				new File(configurationDirectory, "org.eclipse.equinox.simpleconfigurator/bundles.info"),
+				new File(configurationDirectory, "config.fingerprint")), builder.getGeneratedFiles());
+	}
+
+	@Test
+	public void testProductArchive() throws IOException {
+		File archiveFile = new File(targetUnzipped, "product.zip");
+		InputStream in = getClass().getResourceAsStream("ant/ant-test.zip");
+		try {
+			Files.write(ByteStreams.toByteArray(in), archiveFile);
+		} finally {
+			in.close();
+		}
+		ConfigBuilder builder = new ConfigBuilder(archiveFile);
+		assertNotNull(builder.getProductArchive());
+		builder.setUpdateArchive(true);
+		BuildMetrics metrics = builder.build();
+		assertEquals(WriteResult.CREATED, metrics.getWriteResult());
+		assertEquals(3, metrics.getReadPluginCount());
+
+		File configFile = new File(targetUnzipped, "product-configuration/config.ini");
+		assertEquals(configFile.getParentFile().getAbsoluteFile(), builder.getConfigurationDirectory());
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		assertEquals("#Product Runtime Configuration File\n" + "osgi.bundles.defaultStartLevel=4\n"
+				+ "osgi.bundles=com.sarod.test.bundle@start,\\\n" + "com.sarod.test.bundle2@start,\\\n"
+				+ "com.sarod.test.fragment,\\\n" + "org.eclipse.rap.servletbridge.extensionbundle", content);
+		ZipFile zipFile = new ZipFile(archiveFile);
+		try {
+			ZipEntry entry = zipFile.getEntry("eclipse/configuration/config.ini");
+			assertEquals(content, new String(ByteStreams.toByteArray(zipFile.getInputStream(entry)), Charsets.UTF_8));
+		} finally {
+			zipFile.close();
+		}
+		assertEquals(WriteResult.UNCHANGED, builder.buildConfigFile());
+
+		try {
+			new ConfigBuilder(targetUnzipped).setUpdateArchive(true);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// Only archives can be updated
+		}
+	}
+
+	@Test
+	public void testDuplicateBundlePolicies() throws IOException {
+		File pluginsDirectory = new File(targetUnzipped, "plugins");
+		Files.write(BuilderInfoLoaderTest.jar(versionedManifest("com.sarod.test.dup", "1.10.0")), new File(pluginsDirectory,
+				"dup_1.10.0.jar"));
+		Files.write(BuilderInfoLoaderTest.jar(versionedManifest("com.sarod.test.dup", "1.9.0")), new File(pluginsDirectory,
+				"dup_1.9.0.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+
+		builder.buildConfigFile();
+		assertTrue(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.dup@start,\\\ncom.sarod.test.dup@start"));
+
+		builder.setDuplicateBundlePolicy(DuplicateBundlePolicy.KEEP_HIGHEST);
+		List<BundleInfo> resolved = builder.resolveBundleInfos(builder.getBundleInfoLoader().loadBundleInfos(pluginsDirectory));
+		assertEquals(3, resolved.size());
+		assertEquals("dup_1.10.0.jar", resolved.get(1).getFileName());
+
+		builder.setDuplicateBundlePolicy(DuplicateBundlePolicy.FAIL);
+		try {
+			builder.buildConfigFile();
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("dup_1.9.0.jar and dup_1.10.0.jar"));
+		}
+	}
+
+	@Test
+	public void testDuplicateReportNamesEachPair() throws IOException {
+		File pluginsDirectory = new File(targetUnzipped, "plugins");
+		for (String version : new String[] { "1.0.0", "2.0.0", "3.0.0" }) {
+			Files.write(BuilderInfoLoaderTest.jar(versionedManifest("com.sarod.test.dup", version)), new File(pluginsDirectory,
+					"dup_" + version + ".jar"));
+		}
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setDuplicateBundlePolicy(DuplicateBundlePolicy.FAIL);
+		try {
+			builder.buildConfigFile();
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertEquals("Several versions of the same bundles found:\n\tdup_1.0.0.jar and dup_2.0.0.jar"
+					+ "\n\tdup_2.0.0.jar and dup_3.0.0.jar", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testInvalidBundleVersion() throws IOException {
+		File pluginsDirectory = new File(targetUnzipped, "plugins");
+		Files.write(BuilderInfoLoaderTest.jar(versionedManifest("com.sarod.test.snap", "1.0.0-SNAPSHOT")), new File(
+				pluginsDirectory, "snap.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+
+		// Versions are only compared for duplicates
+		builder.buildConfigFile();
+		assertTrue(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.snap@start"));
+		builder.setDuplicateBundlePolicy(DuplicateBundlePolicy.KEEP_HIGHEST);
+		builder.buildConfigFile();
+
+		Files.write(BuilderInfoLoaderTest.jar(versionedManifest("com.sarod.test.snap", "1.0.0")), new File(pluginsDirectory,
+				"snap_1.0.0.jar"));
+		try {
+			builder.buildConfigFile();
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("invalid Bundle-Version 1.0.0-SNAPSHOT in snap.jar"));
+		}
+		builder.setDuplicateBundlePolicy(DuplicateBundlePolicy.KEEP_ALL);
+		builder.buildConfigFile();
+		assertTrue(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.snap@start,\\\ncom.sarod.test.snap@start"));
+	}
+
+	@Test
+	public void testResolutionPolicies() throws IOException {
+		File pluginsDirectory = new File(targetUnzipped, "plugins");
+		Manifest unresolvable = BuilderInfoLoaderTest.manifest("com.sarod.test.unresolvable");
+		unresolvable.getMainAttributes().putValue("Import-Package", "com.sarod.absent;version=\"[1.0,2.0)\"");
+		Files.write(BuilderInfoLoaderTest.jar(unresolvable), new File(pluginsDirectory, "unresolvable.jar"));
+		Manifest orphan = BuilderInfoLoaderTest.manifest("com.sarod.test.orphan");
+		orphan.getMainAttributes().putValue("Fragment-Host", "com.sarod.absent");
+		Files.write(BuilderInfoLoaderTest.jar(orphan), new File(pluginsDirectory, "orphan.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+
+		builder.buildConfigFile();
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		assertTrue(content, content.contains("com.sarod.test.unresolvable@start"));
+		assertTrue(content, content.contains("com.sarod.test.orphan"));
+
+		builder.setResolutionPolicy(ResolutionPolicy.REPORT);
+		builder.buildConfigFile();
+		assertEquals(content, Files.toString(configFile, Charsets.UTF_8));
+
+		builder.setResolutionPolicy(ResolutionPolicy.EXCLUDE);
+		builder.buildConfigFile();
+		content = Files.toString(configFile, Charsets.UTF_8);
+		assertFalse(content, content.contains("com.sarod.test.unresolvable"));
+		assertFalse(content, content.contains("com.sarod.test.orphan"));
+		assertTrue(content, content.contains("com.sarod.test.bundle@start"));
+		assertTrue(content, content.contains("com.sarod.test.fragment"));
+	}
+
+	@Test
+	public void testResolutionWithFrameworkBundle() throws IOException {
+		File pluginsDirectory = new File(targetUnzipped, "plugins");
+		Manifest framework = versionedManifest("org.eclipse.osgi", "3.10.0");
+		framework.getMainAttributes().putValue("Export-Package", "org.osgi.framework;version=\"1.7\"");
+		Files.write(BuilderInfoLoaderTest.jar(framework), new File(pluginsDirectory, "org.eclipse.osgi_3.10.0.jar"));
+		Manifest importer = BuilderInfoLoaderTest.manifest("com.sarod.test.importer");
+		importer.getMainAttributes().putValue("Import-Package", "org.osgi.framework;version=\"[1.5,2)\"");
+		importer.getMainAttributes().putValue("Require-Bundle", "org.eclipse.osgi");
+		Files.write(BuilderInfoLoaderTest.jar(importer), new File(pluginsDirectory, "importer.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setResolutionPolicy(ResolutionPolicy.EXCLUDE);
+
+		builder.buildConfigFile();
+		String content = Files.toString(new File(targetUnzipped, "configuration/config.ini"), Charsets.UTF_8);
+		assertTrue(content, content.contains("com.sarod.test.importer@start"));
+		assertTrue(content, content.contains("com.sarod.test.bundle@start"));
+		assertFalse(content, content.contains("org.eclipse.osgi"));
+	}
+
+	@Test
+	public void testParallelActivation() throws IOException {
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.bundle2")), new File(targetUnzipped,
+				"plugins/bundle2.jar"));
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+
+		builder.setParallelActivationThreads(8);
+		builder.buildConfigFile();
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		// Capped to the 2 bundles started at the default start level
+		assertTrue(content, content.contains("equinox.start.level.thread.count=2\n"));
+		assertTrue(content, content.contains("equinox.start.level.restrict.parallel=false\n"));
+
+		builder.setParallelActivationThreads(1);
+		builder.buildConfigFile();
+		content = Files.toString(configFile, Charsets.UTF_8);
+		assertFalse(content, content.contains("equinox.start.level"));
+
+		assertEquals(ConfigBuilder.AUTO_PARALLEL_ACTIVATION_THREADS, ConfigBuilder.parseParallelActivationThreads("auto"));
+		assertEquals(3, ConfigBuilder.parseParallelActivationThreads(" 3"));
+		try {
+			ConfigBuilder.parseParallelActivationThreads("-2");
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testParallelActivationBalancesStartLevels() throws IOException {
+		writeBundle("core", null);
+		writeBundle("a", "core");
+		writeBundle("b", "a");
+		for (int i = 0; i < 6; i++) {
+			writeBundle("leaf" + i, null);
+		}
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		File configFile = new File(targetUnzipped, "configuration/config.ini");
+
+		// Parallel activation alone computes and balances the start levels
+		builder.setParallelActivationThreads(8);
+		builder.buildConfigFile();
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		assertTrue(content, content.contains("a@5:start,"));
+		assertTrue(content, content.contains("\nb@6:start,"));
+		assertTrue(content, content.matches("(?s).*\nleaf\\d@[56]:start.*"));
+		assertTrue(content, content.contains("equinox.start.level.thread.count="));
+
+		builder.setAutoStartLevels(true);
+		assertEquals(WriteResult.UNCHANGED, builder.buildConfigFile());
+	}
+
+	private void writeBundle(String symbolicName, String requiredBundle) throws IOException {
+		Manifest manifest = BuilderInfoLoaderTest.manifest(symbolicName);
+		if (requiredBundle != null) {
+			manifest.getMainAttributes().putValue("Require-Bundle", requiredBundle);
+		}
+		Files.write(BuilderInfoLoaderTest.jar(manifest), new File(targetUnzipped, "plugins/" + symbolicName + ".jar"));
+	}
+
+	@Test
+	public void testCommandLineErrors() throws IOException {
+		String pluginsDirectory = new File(targetUnzipped, "plugins").getPath();
+		assertCommandLineError(2, "ERROR: eclipseDirectory /nonexistent is not a readable directory.", "/nonexistent");
+		assertCommandLineError(2, "ERROR: Invalid --scan-threads 0, expected at least 1", "--scan-threads=0",
+				targetUnzipped.getPath());
+		assertCommandLineError(2, "ERROR: Invalid integer many for --slow-activation-millis", "--slow-activation-millis=many",
+				targetUnzipped.getPath());
+		assertCommandLineError(2, "ERROR: Invalid defaultStartLevel 0, expected at least 1", targetUnzipped.getPath(), "0");
+		assertCommandLineError(2, "ERROR: --watch cannot be used with --recursive", "--watch", "--recursive",
+				targetUnzipped.getPath());
+		assertCommandLineError(2, "ERROR: --watch cannot be used with --dropins", "--watch", "--dropins",
+				targetUnzipped.getPath());
+		// A directory without plugins fails the generation, not the arguments
+		assertCommandLineError(1, "ERROR: Cannot read <eclipseDirectory>/plugins directory", pluginsDirectory);
+		assertEquals(0, ConfigBuilder.run(new String[] { targetUnzipped.getPath() }));
+	}
+
+	private static void assertCommandLineError(int expectedExitCode, String expectedError, String... args) {
+		PrintStream err = System.err;
+		ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(errBytes, true));
+		try {
+			assertEquals(expectedExitCode, ConfigBuilder.run(args));
+		} finally {
+			System.setErr(err);
+		}
+		String[] lines = new String(errBytes.toByteArray(), Charsets.UTF_8).split("\n");
+		assertTrue(lines[0], lines[0].startsWith(expectedError));
+		assertEquals(expectedExitCode == 2, lines.length > 1 && lines[1].startsWith("Usage:"));
+	}
+
+	private static Manifest versionedManifest(String symbolicName, String version) {
+		Manifest manifest = BuilderInfoLoaderTest.manifest(symbolicName);
+		manifest.getMainAttributes().putValue("Bundle-Version", version);
+		return manifest;
+	}
+}
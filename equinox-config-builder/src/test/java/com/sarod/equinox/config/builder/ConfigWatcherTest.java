@@ -0,0 +1,140 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ConfigWatcherTest {
+
+	private static final long TIMEOUT_MILLIS = 30000;
+
+	private File targetUnzipped;
+	private File configFile;
+	private ConfigWatcher watcher;
+
+	@Before
+	public void setup() throws IOException {
+		targetUnzipped = Files.createTempDir();
+		FileUtils.unzip(getClass().getResourceAsStream("eclipsedir-for-tests.zip"), targetUnzipped);
+		configFile = new File(targetUnzipped, "configuration/config.ini");
+		watcher = new ConfigWatcher(new ConfigBuilder(targetUnzipped), 50);
+	}
+
+	@After
+	public void tearDown() {
+		watcher.close();
+	}
+
+	@Test
+	public void testRegeneratesOnBundleListChanges() throws Exception {
+		watcher.start();
+		assertEquals(1, watcher.getGenerationCount());
+		assertFalse(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.added"));
+
+		File addedJar = new File(targetUnzipped, "plugins/added.jar");
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.added")), addedJar);
+		awaitGenerationCount(2);
+		assertTrue(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.added@start"));
+
+		assertTrue(addedJar.delete());
+		awaitGenerationCount(3);
+		assertFalse(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.added"));
+	}
+
+	@Test
+	public void testJsonReport() throws Exception {
+		File reportFile = new File(targetUnzipped, "configuration/config-report.json");
+		watcher.setJsonReport(true);
+		watcher.start();
+		assertTrue(Files.toString(reportFile, Charsets.UTF_8).contains("\"result\": \"CREATED\""));
+
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.added")), new File(
+				targetUnzipped, "plugins/added.jar"));
+		awaitGenerationCount(2);
+		assertTrue(Files.toString(reportFile, Charsets.UTF_8).contains("\"result\": \"UPDATED\""));
+	}
+
+	@Test
+	public void testIgnoresChangesNotAffectingBundleList() throws Exception {
+		watcher.start();
+		Files.write("not a plugin", new File(targetUnzipped, "plugins/readme.txt"), Charsets.UTF_8);
+		// Followed by a real change to know when the first one was processed
+		Files.write(BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.added")), new File(
+				targetUnzipped, "plugins/added.jar"));
+		awaitGenerationCount(2);
+		Thread.sleep(500);
+		assertEquals(2, watcher.getGenerationCount());
+	}
+
+	@Test
+	public void testDirectoryBundles() throws Exception {
+		watcher.start();
+		File bundleDirectory = new File(targetUnzipped, "plugins/com.sarod.test.exploded_1.0.0");
+		assertTrue(bundleDirectory.mkdir());
+		// Seen before its manifest is written
+		Thread.sleep(500);
+		assertEquals(1, watcher.getGenerationCount());
+
+		File manifestFile = new File(bundleDirectory, "META-INF/MANIFEST.MF");
+		BuilderInfoLoaderTest.writeManifest(BuilderInfoLoaderTest.manifest("com.sarod.test.exploded"), manifestFile);
+		awaitGenerationCount(2);
+		assertTrue(Files.toString(configFile, Charsets.UTF_8).contains("com.sarod.test.exploded@start"));
+
+		// Manifest edited in place
+		BuilderInfoLoaderTest.writeManifest(BuilderInfoLoaderTest.manifest("com.sarod.test.edited"), manifestFile);
+		awaitGenerationCount(3);
+		String content = Files.toString(configFile, Charsets.UTF_8);
+		assertTrue(content, content.contains("com.sarod.test.edited@start"));
+		assertFalse(content, content.contains("com.sarod.test.exploded"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRecursiveScanNotSupported() {
+		ConfigBuilder builder = new ConfigBuilder(targetUnzipped);
+		builder.setRecursiveScan(true);
+		new ConfigWatcher(builder).start();
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		watcher.start();
+		ObjectName name = watcher.registerMBean();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		assertEquals(1, server.getAttribute(name, "GenerationCount"));
+		assertEquals("CREATED", server.getAttribute(name, "LastResult"));
+		assertEquals(1L, server.getAttribute(name, "LastBundleCount"));
+		assertEquals(1L, server.getAttribute(name, "LastFragmentCount"));
+		assertEquals(2, ((String[]) server.getAttribute(name, "LastSlowestPlugins")).length);
+
+		watcher.close();
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		watcher.start();
+		watcher.close();
+		watcher.join();
+		assertTrue(watcher.isClosed());
+	}
+
+	private void awaitGenerationCount(int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (watcher.getGenerationCount() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(expected, watcher.getGenerationCount());
+	}
+}
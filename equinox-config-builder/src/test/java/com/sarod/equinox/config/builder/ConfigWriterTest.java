@@ -0,0 +1,224 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ConfigWriterTest {
+
+	private BundleInfo bundle2;
+	private BundleInfo bundle1;
+	private BundleInfo bundle3;
+	private BundleInfo fragment1;
+	private ConfigWriter writer;
+
+	@Before
+	public void setup() {
+		writer = new ConfigWriter();
+		bundle1 = BundleInfo.bundle("bundle1.jar", "bundle1", "1.0.0");
+		bundle2 = BundleInfo.bundle("bundle2.jar", "bundle2", "1.0.0");
+		bundle3 = BundleInfo.bundle("bundle3.jar", "bundle3", "1.0.0");
+
+		fragment1 = BundleInfo.fragment("fragment1.jar", "fragment1", "1.0.0", "bundle1");
+	}
+
+	@Test
+	public void testBasic() {
+		String result = writer.buildConfigContent(new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2, fragment1)));
+		String expectedResult = "#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"osgi.bundles=bundle1@start,\\\n" + 
+				"bundle2@start,\\\n" + 
+				"fragment1,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle";
+
+		assertEquals(expectedResult, result);
+	}
+
+	@Test
+	public void testFrameworkProperties() {
+		Map<String, String> frameworkProperties = new HashMap<String, String>();
+		frameworkProperties.put("equinox.start.level.thread.count", "4");
+		frameworkProperties.put("equinox.start.level.restrict.parallel", "false");
+		String result = writer.buildConfigContent(new ConfigDescriptor(4, Arrays.asList(bundle1), new HashMap<String, Integer>(),
+				new HashSet<String>(), frameworkProperties));
+		String expectedResult = "#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"equinox.start.level.restrict.parallel=false\n" + 
+				"equinox.start.level.thread.count=4\n" + 
+				"osgi.bundles=bundle1@start,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle";
+
+		assertEquals(expectedResult, result);
+	}
+
+	@Test
+	public void testBundleStartLevels() {
+		
+		List<BundleInfo> bundles = Arrays.asList(bundle1, bundle2, bundle3, fragment1);
+		Map<String, Integer> bundleStartLevels = new HashMap<String, Integer>();
+		bundleStartLevels.put(bundle1.getBundleName(), 1);
+		bundleStartLevels.put(bundle2.getBundleName(), 5);
+
+		// Fragment start level should be ignored
+		bundleStartLevels.put(fragment1.getBundleName(), 5);
+		String result = writer.buildConfigContent(new ConfigDescriptor(4, 
+				bundles, bundleStartLevels));
+		String expectedResult = "#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"osgi.bundles=bundle1@1:start,\\\n" + 
+				"bundle2@5:start,\\\n" + 
+				"bundle3@start,\\\n" + 
+				"fragment1,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle";
+		assertEquals(expectedResult, result);
+	}
+
+	@Test
+	public void testInstallOnlyBundles() {
+		Map<String, Integer> bundleStartLevels = new HashMap<String, Integer>();
+		bundleStartLevels.put(bundle2.getBundleName(), 2);
+		String result = writer.buildConfigContent(new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2, bundle3, fragment1),
+				bundleStartLevels, new HashSet<String>(Arrays.asList("bundle1", "bundle2"))));
+		String expectedResult = "#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"osgi.bundles=bundle1,\\\n" + 
+				"bundle2@2,\\\n" + 
+				"bundle3@start,\\\n" + 
+				"fragment1,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle";
+		assertEquals(expectedResult, result);
+	}
+
+	@Test
+	public void testFrameworkStartLevel() {
+		Map<String, Integer> bundleStartLevels = new HashMap<String, Integer>();
+		bundleStartLevels.put(bundle2.getBundleName(), 8);
+		String result = writer.buildConfigContent(new ConfigDescriptor(3, Arrays.asList(bundle1, bundle2), bundleStartLevels));
+		String expectedResult = "#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=3\n" + 
+				"osgi.startLevel=8\n" + 
+				"osgi.bundles=bundle1@start,\\\n" + 
+				"bundle2@8:start,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle";
+		assertEquals(expectedResult, result);
+	}
+
+	@Test
+	public void testDirectoryBundles() {
+		BundleInfo exploded = BundleInfo.builder("exploded_1.0.0", "exploded").bundleVersion("1.0.0").directory(true).build();
+		ConfigDescriptor descriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, exploded));
+		assertEquals("#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"osgi.bundles=bundle1@start,\\\n" + 
+				"exploded@start,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle", writer.buildConfigContent(descriptor));
+
+		writer.setReferenceDirectoryBundles(true);
+		assertEquals("#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"osgi.bundles=bundle1@start,\\\n" + 
+				"reference:file:exploded_1.0.0@start,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle", writer.buildConfigContent(descriptor));
+	}
+
+	@Test
+	public void testNestedBundles() {
+		BundleInfo nested = BundleInfo.bundle("pool/nested_1.0.0.jar", "nested", "1.0.0");
+		assertEquals("#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"osgi.bundles=bundle1@start,\\\n" + 
+				"reference:file:pool/nested_1.0.0.jar@start,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle",
+				writer.buildConfigContent(new ConfigDescriptor(4, Arrays.asList(bundle1, nested))));
+	}
+
+	@Test
+	public void testBundlesInfo() {
+		BundleInfo exploded = BundleInfo.builder("exploded_1.0.0", "exploded").bundleVersion("1.0.0").directory(true).build();
+		BundleInfo dropin = BundleInfo.bundle("../dropins/dropin.jar", "dropin", null);
+		Map<String, Integer> bundleStartLevels = new HashMap<String, Integer>();
+		bundleStartLevels.put(bundle1.getBundleName(), 2);
+		bundleStartLevels.put(fragment1.getBundleName(), 2);
+		ConfigDescriptor descriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2, fragment1, exploded, dropin),
+				bundleStartLevels, new HashSet<String>(Arrays.asList(bundle2.getBundleName())));
+		assertEquals("#encoding=UTF-8\n" + 
+				"#version=1\n" + 
+				"bundle1,1.0.0,plugins/bundle1.jar,2,true\n" + 
+				"bundle2,1.0.0,plugins/bundle2.jar,4,false\n" + 
+				"dropin,0.0.0,dropins/dropin.jar,4,true\n" + 
+				"exploded,1.0.0,plugins/exploded_1.0.0/,4,true\n" + 
+				"fragment1,1.0.0,plugins/fragment1.jar,4,false\n", writer.buildBundlesInfoContent(descriptor));
+	}
+
+	@Test
+	public void testSimpleConfiguratorConfig() {
+		BundleInfo simpleConfigurator = BundleInfo.bundle("org.eclipse.equinox.simpleconfigurator_1.1.0.jar",
+				"org.eclipse.equinox.simpleconfigurator", "1.1.0");
+		writer.setFormat(ConfigFormat.SIMPLE_CONFIGURATOR);
+		ConfigDescriptor descriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, simpleConfigurator, fragment1));
+		assertEquals("#Product Runtime Configuration File\n" + 
+				"osgi.bundles.defaultStartLevel=4\n" + 
+				"org.eclipse.equinox.simpleconfigurator.configUrl=file:org.eclipse.equinox.simpleconfigurator/bundles.info\n" + 
+				"osgi.bundles=reference:file:org.eclipse.equinox.simpleconfigurator_1.1.0.jar@1:start,\\\n" + 
+				"org.eclipse.rap.servletbridge.extensionbundle", writer.buildConfigContent(descriptor));
+		assertTrue(writer.buildBundlesInfoContent(descriptor).contains(
+				"org.eclipse.equinox.simpleconfigurator,1.1.0,plugins/org.eclipse.equinox.simpleconfigurator_1.1.0.jar,1,true\n"));
+
+		try {
+			writer.buildConfigContent(new ConfigDescriptor(4, Arrays.asList(bundle1)));
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("org.eclipse.equinox.simpleconfigurator"));
+		}
+	}
+
+	@Test
+	public void testWriteConfigSkipsUnchangedContent() throws IOException {
+		File configFile = new File(new File(Files.createTempDir(), "configuration"), "config.ini");
+		ConfigDescriptor descriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2, fragment1));
+
+		assertEquals(WriteResult.CREATED, writer.writeConfig(descriptor, configFile));
+		assertEquals(writer.buildConfigContent(descriptor), Files.toString(configFile, Charsets.UTF_8));
+
+		long lastModified = configFile.lastModified() - 10000;
+		assertTrue(configFile.setLastModified(lastModified));
+		assertEquals(WriteResult.UNCHANGED, writer.writeConfig(descriptor, configFile));
+		assertEquals(lastModified, configFile.lastModified());
+
+		ConfigDescriptor otherDescriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, bundle3, fragment1));
+		assertEquals(WriteResult.UPDATED, writer.writeConfig(otherDescriptor, configFile));
+		assertEquals(writer.buildConfigContent(otherDescriptor), Files.toString(configFile, Charsets.UTF_8));
+	}
+
+	@Test
+	public void testWriteConfigToStream() throws IOException {
+		ConfigDescriptor descriptor = new ConfigDescriptor(4, Arrays.asList(bundle1, bundle2, fragment1));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.writeConfig(descriptor, out);
+		assertEquals(writer.buildConfigContent(descriptor), new String(out.toByteArray(), Charsets.UTF_8));
+	}
+
+	@Test
+	public void testWriteConfigLeavesNoTemporaryFile() throws IOException {
+		File configurationDir = new File(Files.createTempDir(), "configuration");
+		File configFile = new File(configurationDir, "config.ini");
+		writer.writeConfig(new ConfigDescriptor(4, Arrays.asList(bundle1)), configFile);
+		writer.writeConfig(new ConfigDescriptor(4, Arrays.asList(bundle1)), configFile);
+		writer.writeConfig(new ConfigDescriptor(4, Arrays.asList(bundle2)), configFile);
+		assertEquals(Arrays.asList("config.ini"), Arrays.asList(configurationDir.list()));
+	}
+}
@@ -0,0 +1,173 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class FileBundleInfoCacheTest {
+
+	private File directory;
+	private File cacheFile;
+	private File bundleFile;
+	private File nonOsgiFile;
+
+	@Before
+	public void setup() throws IOException {
+		directory = Files.createTempDir();
+		cacheFile = new File(new File(directory, "configuration"), ".bundle-cache");
+		File pluginsDirectory = new File(directory, "plugins");
+		pluginsDirectory.mkdirs();
+		bundleFile = copyResource("bundle.jar", pluginsDirectory);
+		copyResource("fragment.jar", pluginsDirectory);
+		nonOsgiFile = copyResource("non-osgi.jar", pluginsDirectory);
+	}
+
+	private File copyResource(String name, File targetDirectory) throws IOException {
+		File file = new File(targetDirectory, name);
+		Files.write(ByteStreams.toByteArray(getClass().getResourceAsStream(name)), file);
+		return file;
+	}
+
+	@Test
+	public void testSaveAndLoad() {
+		FileBundleInfoCache cache = new FileBundleInfoCache(cacheFile);
+		cache.load();
+		BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(cache);
+		List<BundleInfo> loaded = new ArrayList<BundleInfo>(loader.loadBundleInfos(bundleFile.getParentFile()));
+		assertEquals(3, cache.size());
+		cache.save();
+		assertTrue(cacheFile.exists());
+
+		FileBundleInfoCache reloaded = new FileBundleInfoCache(cacheFile);
+		reloaded.load();
+		assertEquals(3, reloaded.size());
+		assertNull(reloaded.get(nonOsgiFile).getBundleInfo());
+		assertTrue(reloaded.get(bundleFile).isUpToDate(bundleFile));
+
+		loader.setCache(reloaded);
+		List<BundleInfo> fromCache = new ArrayList<BundleInfo>(loader.loadBundleInfos(bundleFile.getParentFile()));
+		assertEquals(loaded, fromCache);
+	}
+
+	@Test
+	public void testDirectoryBundles() throws IOException {
+		File exploded = new File(bundleFile.getParentFile(), "exploded_1.0.0");
+		File manifestFile = new File(exploded, "META-INF/MANIFEST.MF");
+		manifestFile.getParentFile().mkdirs();
+		Files.write("Manifest-Version: 1.0\nBundle-SymbolicName: com.sarod.exploded\n", manifestFile, Charsets.UTF_8);
+
+		FileBundleInfoCache cache = new FileBundleInfoCache(cacheFile);
+		cache.load();
+		BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(cache);
+		loader.loadBundleInfos(bundleFile.getParentFile());
+		cache.save();
+		cache.load();
+		BundleInfo cached = cache.get(exploded).getBundleInfo();
+		assertTrue(cached.isDirectory());
+		assertEquals("com.sarod.exploded", cached.getBundleName());
+
+		// Manifest changes are detected
+		Files.write("Manifest-Version: 1.0\nBundle-SymbolicName: com.sarod.exploded2\n", manifestFile, Charsets.UTF_8);
+		assertTrue(loader.loadBundleInfos(bundleFile.getParentFile()).toString().contains("com.sarod.exploded2"));
+	}
+
+	@Test
+	public void testUnchangedPluginsAreNotRead() {
+		FileBundleInfoCache cache = new FileBundleInfoCache(cacheFile);
+		cache.load();
+		BundleInfo cached = BundleInfo.bundle("bundle.jar", "com.sarod.cached", "2.0.0");
+		cache.put(bundleFile, new BundleInfoCache.Entry(bundleFile.length(), bundleFile.lastModified(), cached));
+
+		BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(cache);
+		assertTrue(loader.loadBundleInfos(bundleFile.getParentFile()).toString().contains("com.sarod.cached"));
+
+		// Changed plugins are read again
+		assertTrue(bundleFile.setLastModified(bundleFile.lastModified() - 10000));
+		assertFalse(loader.loadBundleInfos(bundleFile.getParentFile()).toString().contains("com.sarod.cached"));
+		assertEquals("com.sarod.test.bundle", cache.get(bundleFile).getBundleInfo().getBundleName());
+	}
+
+	@Test
+	public void testRemovedPluginsAreNotSaved() {
+		FileBundleInfoCache cache = new FileBundleInfoCache(cacheFile);
+		cache.load();
+		BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(cache);
+		loader.loadBundleInfos(bundleFile.getParentFile());
+		cache.save();
+
+		assertTrue(nonOsgiFile.delete());
+		cache.load();
+		loader.loadBundleInfos(bundleFile.getParentFile());
+		cache.save();
+
+		cache.load();
+		assertEquals(2, cache.size());
+		assertNull(cache.get(nonOsgiFile));
+	}
+
+	@Test
+	public void testCorruptedCacheIsIgnored() throws IOException {
+		FileBundleInfoCache cache = new FileBundleInfoCache(cacheFile);
+		cache.load();
+		cache.put(bundleFile, new BundleInfoCache.Entry(bundleFile.length(), bundleFile.lastModified(), null));
+		cache.save();
+
+		byte[] content = Files.toByteArray(cacheFile);
+		content[content.length / 2] ^= 0x01;
+		Files.write(content, cacheFile);
+		cache.load();
+		assertEquals(0, cache.size());
+
+		Files.write(new byte[] { 1, 2, 3 }, cacheFile);
+		cache.load();
+		assertEquals(0, cache.size());
+
+		// Invalid cache is rebuilt
+		BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(cache);
+		loader.loadBundleInfos(bundleFile.getParentFile());
+		cache.save();
+		cache.load();
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testOtherFormatVersionIsIgnored() throws IOException {
+		FileBundleInfoCache cache = new FileBundleInfoCache(cacheFile);
+		cache.load();
+		cache.put(bundleFile, new BundleInfoCache.Entry(bundleFile.length(), bundleFile.lastModified(), null));
+		cache.save();
+
+		// Same content with another version and a valid checksum
+		byte[] content = Files.toByteArray(cacheFile);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.write(content, 0, 4);
+		out.writeInt(FileBundleInfoCache.FORMAT_VERSION + 1);
+		out.write(content, 8, content.length - 16);
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		Files.write(bytes.toByteArray(), cacheFile);
+
+		cache.load();
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,31 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ManifestElementTest {
+
+	@Test
+	public void testParseHeader() {
+		List<ManifestElement> elements = ManifestElement
+				.parseHeader("com.a;com.b;version=\"[1.0,2.0)\";resolution:=optional, org.c;x-internal:=true , org.d");
+		assertEquals(3, elements.size());
+		assertEquals(Arrays.asList("com.a", "com.b"), elements.get(0).getValues());
+		assertEquals("[1.0,2.0)", elements.get(0).getAttribute("version"));
+		assertEquals("optional", elements.get(0).getDirective("resolution"));
+		assertNull(elements.get(0).getAttribute("resolution"));
+		assertEquals("org.c", elements.get(1).getValue());
+		assertEquals("true", elements.get(1).getDirective("x-internal"));
+		assertEquals("org.d", elements.get(2).getValue());
+	}
+
+	@Test
+	public void testParseEmptyHeader() {
+		assertTrue(ManifestElement.parseHeader(null).isEmpty());
+		assertTrue(ManifestElement.parseHeader(" ").isEmpty());
+	}
+}
@@ -0,0 +1,147 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+public class ManifestHeaderScannerTest {
+
+	private static final String[] HEADERS = { "Manifest-Version", "Bundle-SymbolicName", "Bundle-Version", "Fragment-Host",
+			"Export-Package", "Import-Package", "Require-Bundle", "A", "B" };
+
+	private final ManifestHeaderScanner scanner = new ManifestHeaderScanner(HEADERS);
+
+	@Test
+	public void testSameAsManifest() throws IOException {
+		String[] manifests = { "Manifest-Version: 1.0\nBundle-SymbolicName: a\n",
+				"Manifest-Version: 1.0\r\nBundle-SymbolicName: a;\r\n singleton:=true\r\n",
+				"Manifest-Version: 1.0\rBundle-SymbolicName: a\r",
+				// Unterminated last line is ignored
+				"Manifest-Version: 1.0\nBundle-SymbolicName: a",
+				// Last occurrence wins
+				"A: 1\nA: 2\n",
+				// Case insensitive names
+				"bundle-symbolicname: lower\nBUNDLE-VERSION: 1.0.0\n",
+				"A: x\n \nB:  spaced \n",
+				"A: \nB: été\n",
+				// Other sections are ignored
+				"A: 1\n\nName: x\nA: 2\nB: 2\n" };
+		for (String manifest : manifests) {
+			assertSameAsManifest(manifest.getBytes(Charsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testLongHeaders() throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", "com.sarod.long;singleton:=true");
+		StringBuilder exportPackage = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			// Non ASCII package names split multi byte characters at the 72
+			// bytes boundaries
+			exportPackage.append(i == 0 ? "" : ",").append("com.sarod.élève").append(i)
+					.append(";version=\"1.0.0\";uses:=\"org.osgi.framework\"");
+		}
+		manifest.getMainAttributes().putValue("Export-Package", exportPackage.toString());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		manifest.write(out);
+		assertSameAsManifest(out.toByteArray());
+		assertEquals(exportPackage.toString(), scanner.scan(new ByteArrayInputStream(out.toByteArray())).get("Export-Package"));
+	}
+
+	@Test
+	public void testInvalidManifests() {
+		for (String invalid : new String[] { "A:1\n", " continuation\n", "no colon\n" }) {
+			try {
+				scanner.scan(new ByteArrayInputStream(invalid.getBytes(Charsets.UTF_8)));
+				fail("Expected IOException for " + invalid);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testTestJars() throws IOException {
+		for (String jar : new String[] { "bundle.jar", "fragment.jar", "non-osgi.jar" }) {
+			InputStream in = getClass().getResourceAsStream(jar);
+			try {
+				byte[] manifest = manifestBytes(in);
+				assertNotNull(manifest);
+				assertSameAsManifest(manifest);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Jars of the test class path, several of them are OSGi bundles
+	 */
+	@Test
+	public void testClassPathJars() throws IOException {
+		int checked = 0;
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (!entry.endsWith(".jar") || !new File(entry).isFile()) {
+				continue;
+			}
+			JarFile jarFile = new JarFile(entry);
+			try {
+				ZipEntry manifestEntry = jarFile.getEntry(JarFile.MANIFEST_NAME);
+				if (manifestEntry != null) {
+					InputStream in = jarFile.getInputStream(manifestEntry);
+					try {
+						assertSameAsManifest(ByteStreams.toByteArray(in));
+					} finally {
+						in.close();
+					}
+					checked++;
+				}
+			} finally {
+				jarFile.close();
+			}
+		}
+		assertTrue(checked > 0);
+	}
+
+	private byte[] manifestBytes(InputStream jarStream) throws IOException {
+		ZipInputStream zis = new ZipInputStream(jarStream);
+		ZipEntry entry;
+		while ((entry = zis.getNextEntry()) != null) {
+			if (entry.getName().equals(JarFile.MANIFEST_NAME)) {
+				return ByteStreams.toByteArray(zis);
+			}
+		}
+		return null;
+	}
+
+	private void assertSameAsManifest(byte[] manifestBytes) throws IOException {
+		Attributes attributes = new Manifest(new ByteArrayInputStream(manifestBytes)).getMainAttributes();
+		Map<String, String> expected = new HashMap<String, String>();
+		for (String header : HEADERS) {
+			String value = attributes.getValue(header);
+			if (value != null) {
+				expected.put(header, value);
+			}
+		}
+		assertEquals(new String(manifestBytes, Charsets.UTF_8), expected, scanner.scan(new ByteArrayInputStream(manifestBytes)));
+		assertEquals(expected, scanner.scan(manifestBytes, 0, manifestBytes.length));
+	}
+}
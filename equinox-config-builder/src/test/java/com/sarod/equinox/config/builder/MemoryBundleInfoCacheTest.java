@@ -0,0 +1,93 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class MemoryBundleInfoCacheTest {
+
+	private File directory;
+
+	@Before
+	public void setup() {
+		directory = Files.createTempDir();
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException {
+		MemoryBundleInfoCache cache = new MemoryBundleInfoCache(2);
+		File a = plugin("a.jar");
+		File b = plugin("b.jar");
+		File c = plugin("c.jar");
+		cache.put(a, entry(a));
+		cache.put(b, entry(b));
+		assertNotNull(cache.get(a));
+		cache.put(c, entry(c));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNotNull(cache.get(a));
+		assertNull(cache.get(b));
+		assertNotNull(cache.get(c));
+		assertEquals(3, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		cache.setMaxEntries(1);
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(c));
+	}
+
+	@Test
+	public void testOutdatedEntriesAreDropped() throws IOException {
+		MemoryBundleInfoCache cache = new MemoryBundleInfoCache();
+		File a = plugin("a.jar");
+		cache.put(a, entry(a));
+		// Symbolic links share the entry of their target
+		File link = new File(directory, "link.jar");
+		java.nio.file.Files.createSymbolicLink(link.toPath(), a.toPath());
+		assertNotNull(cache.get(link));
+
+		Files.write(new byte[] { 1, 2 }, a);
+		assertNull(cache.get(a));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testDirectoryBundles() throws IOException {
+		MemoryBundleInfoCache cache = new MemoryBundleInfoCache();
+		BundleInfoLoader loader = new BundleInfoLoader();
+		loader.setCache(cache);
+		for (int i = 0; i < 3; i++) {
+			BuilderInfoLoaderTest.writeManifest(BuilderInfoLoaderTest.manifest("exploded" + i), new File(directory,
+					"exploded" + i + "_1.0.0/META-INF/MANIFEST.MF"));
+		}
+		assertEquals(3, loader.loadBundleInfos(directory).size());
+		assertEquals(3, loader.loadBundleInfos(directory).size());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(3, cache.size());
+
+		// Only a changed manifest makes the entry outdated
+		File manifestFile = new File(directory, "exploded0_1.0.0/META-INF/MANIFEST.MF");
+		Files.write("Manifest-Version: 1.0\nBundle-SymbolicName: changed\n", manifestFile, Charsets.UTF_8);
+		assertNull(cache.get(new File(directory, "exploded0_1.0.0")));
+		assertNotNull(cache.get(new File(directory, "exploded1_1.0.0")));
+	}
+
+	private File plugin(String name) throws IOException {
+		File plugin = new File(directory, name);
+		Files.write(new byte[] { 1 }, plugin);
+		return plugin;
+	}
+
+	private static BundleInfoCache.Entry entry(File plugin) {
+		return new BundleInfoCache.Entry(plugin.length(), plugin.lastModified(), null);
+	}
+}
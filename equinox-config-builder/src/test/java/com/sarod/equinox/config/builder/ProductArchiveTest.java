@@ -0,0 +1,210 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class ProductArchiveTest {
+
+	private File root;
+
+	private File zipArchive;
+
+	@Before
+	public void setup() throws IOException {
+		root = Files.createTempDir();
+		zipArchive = new File(root, "product.zip");
+		InputStream in = getClass().getResourceAsStream("ant/ant-test.zip");
+		try {
+			Files.write(ByteStreams.toByteArray(in), zipArchive);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testLoadZipBundleInfos() {
+		ProductArchive archive = new ProductArchive(zipArchive);
+		assertEquals(ProductArchive.Type.ZIP, archive.getType());
+		assertEquals("product", archive.getBaseName());
+		assertNull(archive.getRoot());
+
+		BundleInfoLoader loader = new BundleInfoLoader();
+		BuildMetrics metrics = new BuildMetrics();
+		loader.setMetrics(metrics);
+		List<BundleInfo> bundleInfos = archive.loadBundleInfos(loader, false, false);
+		assertEquals("eclipse/", archive.getRoot());
+		assertEquals(3, bundleInfos.size());
+		assertEquals("com.sarod.test.bundle", bundleInfos.get(0).getBundleName());
+		assertEquals("bundle.jar", bundleInfos.get(0).getFileName());
+		assertEquals("com.sarod.test.bundle2", bundleInfos.get(1).getBundleName());
+		assertTrue(bundleInfos.get(2).isFragment());
+		assertEquals(3, metrics.getListedFileCount());
+		assertEquals(3, metrics.getReadPluginCount());
+	}
+
+	@Test
+	public void testLoadTarGzBundleInfos() throws IOException {
+		File tarArchive = new File(root, "product.tar.gz");
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		entries.put("README.txt", "readme".getBytes(Charsets.UTF_8));
+		entries.put("plugins/bundle_1.0.0.jar", BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.tar")));
+		entries.put("plugins/exploded_1.0.0/META-INF/MANIFEST.MF",
+				manifestBytes(BuilderInfoLoaderTest.manifest("com.sarod.test.exploded")));
+		entries.put("plugins/exploded_1.0.0/lib/library.jar",
+				BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.library")));
+		entries.put("plugins/pool/nested.jar", BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.nested")));
+		entries.put("plugins/notes.txt", "not a plugin".getBytes(Charsets.UTF_8));
+		String longName = "plugins/" + Collections.nCopies(30, "long").toString().replaceAll("[^a-z]", "") + ".jar";
+		entries.put(longName, BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.long")));
+		entries.put("dropins/dropin.jar", BuilderInfoLoaderTest.jar(BuilderInfoLoaderTest.manifest("com.sarod.test.dropin")));
+		writeTarGz(tarArchive, entries);
+
+		ProductArchive archive = new ProductArchive(tarArchive);
+		assertEquals(ProductArchive.Type.TAR_GZ, archive.getType());
+		assertEquals("product", archive.getBaseName());
+
+		List<BundleInfo> flat = archive.loadBundleInfos(new BundleInfoLoader(), false, false);
+		assertEquals("", archive.getRoot());
+		assertEquals(names("com.sarod.test.exploded", "com.sarod.test.long", "com.sarod.test.tar"), names(flat));
+		assertTrue(flat.get(0).isDirectory());
+		assertEquals("exploded_1.0.0", flat.get(0).getFileName());
+
+		List<BundleInfo> all = archive.loadBundleInfos(new BundleInfoLoader(), true, true);
+		assertEquals(names("com.sarod.test.dropin", "com.sarod.test.exploded", "com.sarod.test.long", "com.sarod.test.nested",
+				"com.sarod.test.tar"), names(all));
+		assertEquals("../dropins/dropin.jar", all.get(0).getFileName());
+		assertEquals("pool/nested.jar", all.get(3).getFileName());
+	}
+
+	@Test
+	public void testNoPluginsDirectory() throws IOException {
+		File tarArchive = new File(root, "empty.tgz");
+		writeTarGz(tarArchive, Collections.singletonMap("README.txt", new byte[0]));
+		try {
+			new ProductArchive(tarArchive).loadBundleInfos(new BundleInfoLoader(), false, false);
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("plugins"));
+		}
+	}
+
+	@Test
+	public void testUpdateEntries() throws IOException {
+		ProductArchive archive = new ProductArchive(zipArchive);
+		archive.loadBundleInfos(new BundleInfoLoader(), false, false);
+		Map<String, byte[]> files = Collections.singletonMap("configuration/config.ini", "content".getBytes(Charsets.UTF_8));
+		assertTrue(archive.updateEntries(files));
+		long lastModified = zipArchive.lastModified() - 10000;
+		assertTrue(zipArchive.setLastModified(lastModified));
+		assertFalse(archive.updateEntries(files));
+		assertEquals(lastModified, zipArchive.lastModified());
+
+		ZipFile zipFile = new ZipFile(zipArchive);
+		try {
+			ZipEntry entry = zipFile.getEntry("eclipse/configuration/config.ini");
+			assertNotNull(entry);
+			assertEquals("content", new String(ByteStreams.toByteArray(zipFile.getInputStream(entry)), Charsets.UTF_8));
+			assertNotNull(zipFile.getEntry("eclipse/plugins/bundle.jar"));
+		} finally {
+			zipFile.close();
+		}
+		assertEquals(3, archive.loadBundleInfos(new BundleInfoLoader(), false, false).size());
+	}
+
+	private static List<String> names(String... names) {
+		List<String> list = new ArrayList<String>();
+		Collections.addAll(list, names);
+		return list;
+	}
+
+	private static List<String> names(List<BundleInfo> bundleInfos) {
+		List<String> names = new ArrayList<String>();
+		for (BundleInfo bundleInfo : bundleInfos) {
+			names.add(bundleInfo.getBundleName());
+		}
+		return names;
+	}
+
+	private static byte[] manifestBytes(Manifest manifest) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		manifest.write(out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write a gzipped ustar archive, names longer than 100 characters being
+	 * written as pax headers.
+	 */
+	private static void writeTarGz(File file, Map<String, byte[]> entries) throws IOException {
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+		try {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				String name = entry.getKey();
+				if (name.length() > 100) {
+					String record = " path=" + name + "\n";
+					int length = record.length() + 2;
+					length = record.length() + String.valueOf(length).length();
+					byte[] pax = (length + record).getBytes(Charsets.UTF_8);
+					writeTarEntry(out, "PaxHeader", 'x', pax);
+					name = name.substring(0, 100);
+				}
+				writeTarEntry(out, name, '0', entry.getValue());
+			}
+			out.write(new byte[1024]);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void writeTarEntry(OutputStream out, String name, char type, byte[] content) throws IOException {
+		byte[] header = new byte[512];
+		put(header, 0, name);
+		put(header, 100, "0000644");
+		put(header, 108, "0000000");
+		put(header, 116, "0000000");
+		put(header, 124, String.format("%011o", content.length));
+		put(header, 136, String.format("%011o", 0));
+		header[156] = (byte) type;
+		put(header, 257, "ustar");
+		put(header, 263, "00");
+		for (int i = 148; i < 156; i++) {
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xFF;
+		}
+		put(header, 148, String.format("%06o", checksum));
+		header[154] = 0;
+		out.write(header);
+		out.write(content);
+		out.write(new byte[(512 - content.length % 512) % 512]);
+	}
+
+	private static void put(byte[] header, int offset, String value) {
+		byte[] bytes = value.getBytes(Charsets.UTF_8);
+		System.arraycopy(bytes, 0, header, offset, bytes.length);
+	}
+}
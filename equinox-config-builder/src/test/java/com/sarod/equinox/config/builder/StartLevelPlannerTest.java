@@ -0,0 +1,210 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StartLevelPlannerTest {
+
+	private final StartLevelPlanner planner = new StartLevelPlanner();
+
+	@Test
+	public void testLayering() {
+		BundleInfo core = BundleInfo.builder("core.jar", "core").exportPackageHeader("com.core;version=1.0,com.core.util")
+				.build();
+		BundleInfo service = BundleInfo.builder("service.jar", "service").requireBundleHeader("core;bundle-version=\"[1.0,2.0)\"")
+				.exportPackageHeader("com.service").build();
+		BundleInfo ui = BundleInfo.builder("ui.jar", "ui").importPackageHeader("com.service,com.core.util;resolution:=optional")
+				.build();
+		BundleInfo standalone = BundleInfo.builder("standalone.jar", "standalone").importPackageHeader("org.unknown").build();
+
+		StartLevelPlan plan = planner.plan(Arrays.asList(ui, standalone, service, core), 4,
+				Collections.<String, Integer> emptyMap());
+
+		Map<String, Integer> expected = new HashMap<String, Integer>();
+		expected.put("service", 5);
+		expected.put("ui", 6);
+		assertEquals(expected, plan.getStartLevels());
+		assertEquals(6, plan.getMaxStartLevel());
+		assertTrue(plan.getCycles().isEmpty());
+	}
+
+	@Test
+	public void testExplicitStartLevelsWin() {
+		BundleInfo core = BundleInfo.builder("core.jar", "core").exportPackageHeader("com.core").build();
+		BundleInfo service = BundleInfo.builder("service.jar", "service").importPackageHeader("com.core").build();
+		BundleInfo ui = BundleInfo.builder("ui.jar", "ui").requireBundleHeader("service").build();
+
+		Map<String, Integer> explicit = new HashMap<String, Integer>();
+		explicit.put("core", 2);
+		explicit.put("service", 8);
+		StartLevelPlan plan = planner.plan(Arrays.asList(core, service, ui), 4, explicit);
+
+		assertEquals(Integer.valueOf(2), plan.getStartLevels().get("core"));
+		assertEquals(Integer.valueOf(8), plan.getStartLevels().get("service"));
+		assertEquals(Integer.valueOf(9), plan.getStartLevels().get("ui"));
+	}
+
+	@Test
+	public void testCyclesAreReported() {
+		BundleInfo a = BundleInfo.builder("a.jar", "a").requireBundleHeader("b").build();
+		BundleInfo b = BundleInfo.builder("b.jar", "b").importPackageHeader("com.c").build();
+		BundleInfo c = BundleInfo.builder("c.jar", "c").exportPackageHeader("com.c").requireBundleHeader("a,base").build();
+		BundleInfo base = BundleInfo.builder("base.jar", "base").build();
+		BundleInfo client = BundleInfo.builder("client.jar", "client").requireBundleHeader("c").build();
+
+		StartLevelPlan plan = planner.plan(Arrays.asList(client, a, b, c, base), 4, Collections.<String, Integer> emptyMap());
+
+		assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), plan.getCycles());
+		assertEquals(Integer.valueOf(5), plan.getStartLevels().get("a"));
+		assertEquals(Integer.valueOf(5), plan.getStartLevels().get("b"));
+		assertEquals(Integer.valueOf(5), plan.getStartLevels().get("c"));
+		assertEquals(Integer.valueOf(6), plan.getStartLevels().get("client"));
+		assertNull(plan.getStartLevels().get("base"));
+	}
+
+	@Test
+	public void testFragmentsContributeToHost() {
+		BundleInfo core = BundleInfo.builder("core.jar", "core").exportPackageHeader("com.core").build();
+		BundleInfo host = BundleInfo.builder("host.jar", "host").build();
+		BundleInfo fragment = BundleInfo.builder("fragment.jar", "fragment").fragmentHostName("host")
+				.importPackageHeader("com.core").exportPackageHeader("com.fragment").build();
+		BundleInfo client = BundleInfo.builder("client.jar", "client").importPackageHeader("com.fragment").build();
+
+		StartLevelPlan plan = planner.plan(Arrays.asList(core, host, fragment, client), 4,
+				Collections.<String, Integer> emptyMap());
+
+		assertEquals(Integer.valueOf(5), plan.getStartLevels().get("host"));
+		assertEquals(Integer.valueOf(6), plan.getStartLevels().get("client"));
+		assertNull(plan.getStartLevels().get("fragment"));
+	}
+
+	@Test
+	public void testLongChain() {
+		// Deep enough to overflow the stack with a recursive implementation
+		int count = 20000;
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>(count);
+		for (int i = 0; i < count; i++) {
+			BundleInfo.Builder builder = BundleInfo.builder("b" + i + ".jar", "b" + i).exportPackageHeader("p" + i);
+			if (i > 0) {
+				builder.importPackageHeader("p" + (i - 1));
+			}
+			bundleInfos.add(builder.build());
+		}
+		StartLevelPlan plan = planner.plan(bundleInfos, 1, Collections.<String, Integer> emptyMap());
+		assertEquals(count, plan.getMaxStartLevel());
+		assertEquals(Integer.valueOf(count), plan.getStartLevels().get("b" + (count - 1)));
+	}
+
+	@Test
+	public void testBalanceLevels() {
+		List<BundleInfo> bundleInfos = new ArrayList<BundleInfo>();
+		bundleInfos.add(BundleInfo.builder("core.jar", "core").build());
+		bundleInfos.add(BundleInfo.builder("a.jar", "a").requireBundleHeader("core").build());
+		bundleInfos.add(BundleInfo.builder("b.jar", "b").requireBundleHeader("a").build());
+		bundleInfos.add(BundleInfo.builder("x.jar", "x").requireBundleHeader("core").build());
+		for (int i = 0; i < 6; i++) {
+			bundleInfos.add(BundleInfo.builder("leaf" + i + ".jar", "leaf" + i).build());
+		}
+		Map<String, Integer> explicit = Collections.singletonMap("leaf0", 4);
+
+		StartLevelPlan unbalanced = planner.plan(bundleInfos, 4, explicit);
+		assertEquals(Arrays.asList(7, 2, 1), levelWidths(unbalanced, bundleInfos, 4));
+
+		planner.setBalanceLevels(true);
+		StartLevelPlan plan = planner.plan(bundleInfos, 4, explicit);
+		assertEquals(6, plan.getMaxStartLevel());
+		assertEquals(Arrays.asList(4, 4, 2), levelWidths(plan, bundleInfos, 4));
+		assertNull(plan.getStartLevels().get("core"));
+		assertEquals(Integer.valueOf(4), plan.getStartLevels().get("leaf0"));
+		assertEquals(Integer.valueOf(5), plan.getStartLevels().get("a"));
+		assertEquals(Integer.valueOf(6), plan.getStartLevels().get("b"));
+		assertTrue(plan.getStartLevels().get("x") > 4);
+	}
+
+	private static List<Integer> levelWidths(StartLevelPlan plan, List<BundleInfo> bundleInfos, int defaultStartLevel) {
+		List<Integer> widths = new ArrayList<Integer>();
+		for (int level = defaultStartLevel; level <= plan.getMaxStartLevel(); level++) {
+			widths.add(0);
+		}
+		for (BundleInfo bundleInfo : bundleInfos) {
+			Integer level = plan.getStartLevels().get(bundleInfo.getBundleName());
+			int index = (level == null ? defaultStartLevel : level) - defaultStartLevel;
+			widths.set(index, widths.get(index) + 1);
+		}
+		return widths;
+	}
+
+	@Test
+	public void testStartupProfile() {
+		BundleInfo core = BundleInfo.builder("core.jar", "core").build();
+		BundleInfo service = BundleInfo.builder("service.jar", "service").requireBundleHeader("core").build();
+		BundleInfo heavy = BundleInfo.builder("heavy.jar", "heavy").build();
+		BundleInfo ui = BundleInfo.builder("ui.jar", "ui").requireBundleHeader("service,heavy").build();
+		BundleInfo indexer = BundleInfo.builder("indexer.jar", "indexer").requireBundleHeader("core").build();
+		Map<String, Long> activationMillis = new HashMap<String, Long>();
+		activationMillis.put("core", 10L);
+		activationMillis.put("service", 20L);
+		activationMillis.put("heavy", 300L);
+		activationMillis.put("ui", 30L);
+		activationMillis.put("indexer", 500L);
+		planner.setStartupProfile(new StartupProfile(activationMillis));
+
+		StartLevelPlan plan = planner.plan(Arrays.asList(core, service, heavy, ui, indexer), 4,
+				Collections.<String, Integer> emptyMap());
+
+		assertEquals(Integer.valueOf(6), plan.getStartLevels().get("ui"));
+		// heavy is slow but needed by ui
+		assertNull(plan.getStartLevels().get("heavy"));
+		assertEquals(Integer.valueOf(7), plan.getStartLevels().get("indexer"));
+		StartupPrediction prediction = plan.getStartupPrediction();
+		assertEquals(Collections.singleton("indexer"), prediction.getDeferredBundleNames());
+		assertEquals(6, prediction.getUsableStartLevel());
+		assertEquals(360, prediction.getUsableMillis());
+		assertEquals(860, prediction.getTotalMillis());
+		assertEquals(510, prediction.getCriticalPathMillis());
+		assertEquals(Arrays.asList("core", "indexer"), prediction.getCriticalPath());
+	}
+
+	@Test
+	public void testNoStartupProfile() {
+		BundleInfo core = BundleInfo.builder("core.jar", "core").build();
+		assertNull(planner.plan(Arrays.asList(core), 4, Collections.<String, Integer> emptyMap()).getStartupPrediction());
+	}
+
+	@Test
+	public void testParseStartupProfile() throws IOException {
+		StartupProfile profile = StartupProfile.parse(new StringReader("bundle,ms\n# comment\n\ncore, 12\nui,3\n"), "test");
+		assertEquals(12, profile.getActivationMillis("core"));
+		assertEquals(3, profile.getActivationMillis("ui"));
+		assertEquals(0, profile.getActivationMillis("unknown"));
+		try {
+			StartupProfile.parse(new StringReader("core,12\nui,fast\n"), "test");
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			// expected
+		}
+
+		// Header after comments, fractional times
+		profile = StartupProfile.parse(new StringReader("# measured on 4 cores\n\nbundle,ms\ncore,12.5\nui,0.4\n"), "test");
+		assertEquals(13, profile.getActivationMillis("core"));
+		assertEquals(0, profile.getActivationMillis("ui"));
+		assertEquals(2, profile.getActivationMillis().size());
+		try {
+			StartupProfile.parse(new StringReader("bundle,ms\ncore,-1.5\n"), "test");
+			fail("Expected ConfigBuildingException");
+		} catch (ConfigBuildingException e) {
+			// expected
+		}
+	}
+
+}
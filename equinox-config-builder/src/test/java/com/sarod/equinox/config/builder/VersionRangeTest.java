@@ -0,0 +1,50 @@
+package com.sarod.equinox.config.builder;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class VersionRangeTest {
+
+	@Test
+	public void testParse() {
+		assertEquals(VersionRange.ANY, VersionRange.parseVersionRange(null));
+		assertEquals(VersionRange.ANY, VersionRange.parseVersionRange(" "));
+		assertEquals(new VersionRange(BundleVersion.parseVersion("1.2"), true, null, false), VersionRange.parseVersionRange("1.2"));
+		assertEquals(new VersionRange(BundleVersion.parseVersion("1.2"), true, BundleVersion.parseVersion("2"), false),
+				VersionRange.parseVersionRange("[1.2,2.0)"));
+		assertEquals(new VersionRange(BundleVersion.parseVersion("1"), false, BundleVersion.parseVersion("1.5"), true),
+				VersionRange.parseVersionRange(" (1, 1.5] "));
+		assertEquals("[1.2.0,2.0.0)", VersionRange.parseVersionRange("[1.2,2)").toString());
+		assertEquals("1.2.0", VersionRange.parseVersionRange("1.2").toString());
+	}
+
+	@Test
+	public void testParseInvalid() {
+		for (String invalid : new String[] { "[1.0", "[1.0,2.0", "(1.0)", "[a,2)", "1.0,2.0]" }) {
+			try {
+				VersionRange.parseVersionRange(invalid);
+				fail("Expected IllegalArgumentException for " + invalid);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testIncludes() {
+		VersionRange range = VersionRange.parseVersionRange("[1.2,2.0)");
+		assertTrue(range.includes(BundleVersion.parseVersion("1.2")));
+		assertTrue(range.includes(BundleVersion.parseVersion("1.9.9.qualifier")));
+		assertFalse(range.includes(BundleVersion.parseVersion("1.1.9")));
+		assertFalse(range.includes(BundleVersion.parseVersion("2.0")));
+
+		VersionRange exclusiveFloor = VersionRange.parseVersionRange("(1.0,2.0]");
+		assertFalse(exclusiveFloor.includes(BundleVersion.parseVersion("1.0")));
+		assertTrue(exclusiveFloor.includes(BundleVersion.parseVersion("1.0.0.a")));
+		assertTrue(exclusiveFloor.includes(BundleVersion.parseVersion("2.0")));
+
+		assertTrue(VersionRange.parseVersionRange("1.0").includes(BundleVersion.parseVersion("99")));
+		assertTrue(VersionRange.ANY.includes(BundleVersion.EMPTY));
+	}
+}
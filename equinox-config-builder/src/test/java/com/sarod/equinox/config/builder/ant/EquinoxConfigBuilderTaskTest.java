@@ -16,6 +16,7 @@ import org.junit.Test;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import com.sarod.equinox.config.builder.FileUtils;
+import com.sarod.equinox.config.builder.MemoryBundleInfoCache;
 
 public class EquinoxConfigBuilderTaskTest {
 
@@ -68,4 +69,66 @@ public class EquinoxConfigBuilderTaskTest {
 				"com.sarod.test.fragment,\\\n" + 
 				"org.eclipse.rap.servletbridge.extensionbundle", content);
 	}
+
+	@Test
+	public void testResultProperty() {
+		EquinoxConfigBuilderTask task = new EquinoxConfigBuilderTask();
+		task.setProject(project);
+		task.setEclipseDirectory(eclipseDir);
+		task.setResultProperty("first.result");
+		task.execute();
+		assertEquals("CREATED", project.getProperty("first.result"));
+
+		task.setResultProperty("second.result");
+		task.execute();
+		assertEquals("UNCHANGED", project.getProperty("second.result"));
+	}
+
+	@Test
+	public void testSharedCache() {
+		final StringBuilder messages = new StringBuilder();
+		project.addBuildListener(new BuildListener() {
+			public void messageLogged(BuildEvent event) {
+				messages.append(event.getMessage()).append('\n');
+			}
+
+			public void buildStarted(BuildEvent event) {
+			}
+
+			public void buildFinished(BuildEvent event) {
+			}
+
+			public void targetStarted(BuildEvent event) {
+			}
+
+			public void targetFinished(BuildEvent event) {
+			}
+
+			public void taskStarted(BuildEvent event) {
+			}
+
+			public void taskFinished(BuildEvent event) {
+			}
+		});
+		EquinoxConfigBuilderTask task = new EquinoxConfigBuilderTask();
+		task.setProject(project);
+		task.setEclipseDirectory(eclipseDir);
+		task.setSharedCacheSize(100);
+		MemoryBundleInfoCache cache = EquinoxConfigBuilderTask.sharedCache(100);
+		long hits = cache.getHitCount();
+
+		task.execute();
+		new File(eclipseDir, "configuration/config.ini").delete();
+		EquinoxConfigBuilderTask other = new EquinoxConfigBuilderTask();
+		other.setProject(project);
+		other.setEclipseDirectory(eclipseDir);
+		other.setSharedCacheSize(100);
+		other.execute();
+		// The 3 plugins are read once
+		assertEquals(hits + 3, cache.getHitCount());
+		assertTrue(new File(eclipseDir, "configuration/config.ini").exists());
+
+		project.fireBuildFinished(null);
+		assertTrue(messages.toString(), messages.toString().contains("equinox-config-builder shared cache: "));
+	}
 }